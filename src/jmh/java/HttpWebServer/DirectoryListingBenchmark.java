@@ -0,0 +1,67 @@
+package httpwebserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the HTML listing of directories with a growing number of entries, once with
+ * the cached entries and once with a directory which is read again for every listing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectoryListingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int entries;
+
+    private Path directory;
+    private DirectoryListing listing;
+    private RequestMessage request;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("benchmark");
+        for (int i = 0; i < entries; i++) {
+            Files.createFile(directory.resolve("file-" + i + ".txt"));
+        }
+        listing = new DirectoryListing(new ServerConfig());
+        request = new RequestMessage(Method.GET, "/benchmark/?sort=size", "HTTP/1.1");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (File file : directory.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public byte[] cachedListing() throws IOException {
+        return listing.getPage(request, directory.toFile()).render();
+    }
+
+    @Benchmark
+    public byte[] uncachedListing() throws IOException {
+        return new DirectoryListing(new ServerConfig()).getPage(request, directory.toFile()).render();
+    }
+}
@@ -0,0 +1,34 @@
+package httpwebserver;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A channel which accepts and discards all bytes, it replaces the connection to a
+ * client, so the benchmarks measure the server code and not the network.
+ */
+class DiscardingChannel implements WritableByteChannel {
+
+    private long written = 0;
+
+    @Override
+    public int write(ByteBuffer source) {
+        int length = source.remaining();
+        source.position(source.limit());
+        written += length;
+        return length;
+    }
+
+    public long getWritten() {
+        return this.written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,50 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how an error response is selected and written, the responses are
+ * rendered once when the FailedResponse is created.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FailedResponseBenchmark {
+
+    private FailedResponse failedResponse;
+    private RequestMessage request;
+    private DiscardingChannel channel;
+    private HeaderWriter header;
+
+    @Setup
+    public void setUp() {
+        failedResponse = new FailedResponse(new ServerConfig());
+        request = new RequestMessage("GET /notExisting.txt HTTP/1.1");
+        channel = new DiscardingChannel();
+        header = new HeaderWriter();
+    }
+
+    @Benchmark
+    public boolean fileNotFound() throws IOException {
+        return failedResponse.getFileNotFoundMessage(request, header, true).writeTo(channel);
+    }
+
+    @Benchmark
+    public FailedResponse createFailedResponse() {
+        return new FailedResponse(new ServerConfig());
+    }
+}
@@ -0,0 +1,59 @@
+package httpwebserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the parsing of a typical browser request with the RequestParser, which is
+ * used by both engines, and with the String based RequestMessage constructor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestParserBenchmark {
+
+    private static final String REQUEST = "GET /src/test/resources/existing.txt HTTP/1.1\r\n"
+        + "Host: localhost:8080\r\n"
+        + "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:89.0) Gecko/20100101 Firefox/89.0\r\n"
+        + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+        + "Accept-Language: en-US,en;q=0.5\r\n"
+        + "Accept-Encoding: gzip, deflate, br\r\n"
+        + "Connection: keep-alive\r\n"
+        + "If-None-Match: \"c-179c6a2a4e0\"\r\n"
+        + "\r\n";
+
+    private RequestParser parser;
+    private ByteArrayInputStream in;
+
+    @Setup
+    public void setUp() {
+        parser = new RequestParser(new ServerConfig().getMaxRequestHeaderSize());
+        in = new ByteArrayInputStream(REQUEST.getBytes());
+    }
+
+    @Benchmark
+    public RequestMessage parse() throws IOException {
+        in.reset();
+        parser.readFrom(in);
+        return parser.parse();
+    }
+
+    @Benchmark
+    public RequestMessage parseString() {
+        return new RequestMessage(REQUEST);
+    }
+}
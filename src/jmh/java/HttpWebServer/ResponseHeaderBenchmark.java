@@ -0,0 +1,61 @@
+package httpwebserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the writing of the header of a file response into the reused header
+ * writer of a connection, with and without the caching headers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseHeaderBenchmark {
+
+    private File file;
+    private Validators validators;
+    private HeaderWriter header;
+    private MimeTypes.MimeType type;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("benchmark", ".html");
+        Files.write(file.toPath(), new byte[4096]);
+        validators = new Validators(file.length(), file.lastModified(), false);
+        header = new HeaderWriter();
+        type = new MimeTypes().getType(file.getName());
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public ByteBuffer responseHeader() {
+        return ResponseHeader.writeResponseHeader(header, "HTTP/1.1", file, type, 4096, true).finish();
+    }
+
+    @Benchmark
+    public ByteBuffer responseHeaderWithValidators() {
+        return ResponseHeader.writeResponseHeader(header, "HTTP/1.1", file, type, 4096, true, validators,
+                "max-age=3600").finish();
+    }
+}
@@ -0,0 +1,101 @@
+package httpwebserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the assembly and the writing of a file response across file sizes,
+ * streamed from the file, written from its memory mapping and answered from the file cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseMessageBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    private int fileSize;
+
+    private File file;
+    private RequestMessage request;
+    private Validators validators;
+    private FileCache fileCache;
+    private MappedFiles mappedFiles;
+    private DiscardingChannel channel;
+    private HeaderWriter header;
+    private MimeTypes.MimeType type;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("benchmark", ".bin");
+        Files.write(file.toPath(), new byte[fileSize]);
+        request = new RequestMessage("GET /" + file.getName() + " HTTP/1.1");
+        validators = new Validators(file.length(), file.lastModified(), false);
+        ServerConfig config = new ServerConfig();
+        fileCache = new FileCache(config, new MimeTypes(), new CacheControlRules(null), new Compression(config));
+        config.setMmap(true);
+        config.setMmapMinFileSize(0);
+        mappedFiles = new MappedFiles(config);
+        header = new HeaderWriter();
+        type = new MimeTypes().getType(file.getName());
+        fileCache.load(request, header, file, true);
+        channel = new DiscardingChannel();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mappedFiles.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public boolean streamedFile() throws IOException {
+        ResponseMessage message = ResponseMessage.getFileResponseMessage(request, header, file, type,
+                ResponseBody.getFileContent(file), true, validators, null, false);
+        try {
+            return message.writeTo(channel);
+        } finally {
+            message.close();
+        }
+    }
+
+    @Benchmark
+    public boolean mappedFile() throws IOException {
+        MappedFiles.MappedFile mappedFile = mappedFiles.acquire(file,
+                Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+        ResponseMessage message;
+        try {
+            message = ResponseMessage.getFileResponseMessage(request, header, file, type,
+                    mappedFile.getPart(0, mappedFile.getLength()), true, validators, null, false);
+        } finally {
+            mappedFile.release();
+        }
+        try {
+            return message.writeTo(channel);
+        } finally {
+            message.close();
+        }
+    }
+
+    @Benchmark
+    public boolean cachedFile() throws IOException {
+        return fileCache.getResponseMessage(request, header, true).writeTo(channel);
+    }
+}
@@ -0,0 +1,111 @@
+package httpwebserver;
+
+/**
+ * A histogram of latencies in microseconds in the style of HdrHistogram. Values below
+ * 256 are counted exactly, larger values in log-linear buckets: every power of two is
+ * split into 128 sub-buckets, therefore a percentile is off by less than 1%.
+ * The recorded values are bounded by about one hour.
+ * A histogram is not thread-safe, every client records into its own one, they are
+ * merged with add() when the run is finished.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_LIMIT = 256;
+    private static final int SUB_BUCKETS = 128;
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final long MAX_VALUE = 1L << 32;
+
+    private long[] counts = new long[LINEAR_LIMIT + (64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+    private long totalCount = 0;
+    private long maxValue = 0;
+    private double sum = 0;
+
+    /**
+     * @param value The latency in microseconds.
+     */
+    public void record(long value) {
+        long bounded = Math.max(0, Math.min(value, MAX_VALUE));
+        counts[indexOf(bounded)]++;
+        totalCount++;
+        sum += bounded;
+        maxValue = Math.max(maxValue, bounded);
+    }
+
+    /**
+     * Records a latency and corrects the coordinated omission of a closed-loop client:
+     * while a request took longer than the expected interval between two requests,
+     * the client did not send the requests which it should have sent. These requests
+     * are recorded with the latencies they would have seen, like HdrHistogram does.
+     *
+     * @param value The latency in microseconds.
+     * @param expectedInterval The expected interval between two requests in microseconds, 0 disables the correction.
+     */
+    public void recordWithExpectedInterval(long value, long expectedInterval) {
+        record(value);
+        if (expectedInterval <= 0) {
+            return;
+        }
+        for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+            record(missing);
+        }
+    }
+
+    /**
+     * Adds the values of another histogram to this one.
+     *
+     * @param other The other histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    public long getMaxValue() {
+        return this.maxValue;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * @param percentile The percentile, for example 99.9.
+     * @return Returns the highest value which is equivalent to the value at the percentile.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            if (count >= target) {
+                return Math.min(highestEquivalentValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) ((value >> shift) - SUB_BUCKETS);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,241 @@
+package httpwebserver;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A client of the load test, it sends requests over one connection at a time.
+ * A keep-alive client reuses its connection, otherwise every request opens a new
+ * connection and sends "Connection: close".
+ * With a request rate the client sends on a fixed schedule and the latency is
+ * measured from the intended start of a request, so a stalled server is not hidden
+ * by requests which were never sent (coordinated omission). Without a rate the
+ * client sends as fast as possible and the histogram corrects the omitted requests,
+ * the expected interval is either given or the mean service time during the warm-up.
+ *
+ * @param port The port of the server on the loopback interface.
+ * @param keepAlive True if the client reuses its connection.
+ * @param mix The requests to choose from.
+ * @param interval The interval between two requests in nanoseconds or 0 for a closed loop.
+ * @param expectedInterval The expected interval in microseconds for the correction of a closed loop,
+ * 0 disables the correction and -1 estimates it during the warm-up.
+ */
+public class LoadClient implements Runnable {
+
+    private int port;
+    private boolean keepAlive;
+    private RequestMix mix;
+    private long interval;
+    private long expectedInterval;
+    private long measureFrom;
+    private long deadline;
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private LatencyHistogram latencies = new LatencyHistogram();
+    private LatencyHistogram serviceTimes = new LatencyHistogram();
+    private long[] statusCounts = new long[6];
+    private long errors = 0;
+    private long warmupRequests = 0;
+    private long warmupServiceTime = 0;
+    private long bytesReceived = 0;
+
+    public LoadClient(int port, boolean keepAlive, RequestMix mix, long interval, long expectedInterval) {
+        this.port = port;
+        this.keepAlive = keepAlive;
+        this.mix = mix;
+        this.interval = interval;
+        this.expectedInterval = expectedInterval;
+    }
+
+    /**
+     * @param measureFrom The time in nanoseconds (System.nanoTime) when the warm-up ends.
+     * @param deadline The time in nanoseconds when the client stops.
+     */
+    public void setSchedule(long measureFrom, long deadline) {
+        this.measureFrom = measureFrom;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+        // Spreads the clients over the first interval, so they do not send at the same time
+        long intendedStart = System.nanoTime() + (interval > 0 ? ThreadLocalRandom.current().nextLong(interval) : 0);
+        while (intendedStart < deadline) {
+            if (interval > 0) {
+                LockSupport.parkNanos(intendedStart - System.nanoTime());
+            } else {
+                intendedStart = System.nanoTime();
+            }
+            long start = System.nanoTime();
+            int statusCode = send(mix.next());
+            long end = System.nanoTime();
+            if (start >= measureFrom) {
+                record(statusCode, (end - intendedStart) / 1000, (end - start) / 1000);
+            } else if (statusCode >= 0) {
+                warmupRequests++;
+                warmupServiceTime += (end - start) / 1000;
+            }
+            intendedStart = interval > 0 ? intendedStart + interval : end;
+        }
+        closeConnection();
+    }
+
+    private void record(int statusCode, long latency, long serviceTime) {
+        if (statusCode < 0) {
+            errors++;
+            return;
+        }
+        statusCounts[Math.min(statusCode / 100, 5)]++;
+        serviceTimes.record(serviceTime);
+        if (expectedInterval < 0) {
+            expectedInterval = warmupRequests == 0 ? 0 : Math.max(1, warmupServiceTime / warmupRequests);
+        }
+        if (interval > 0) {
+            latencies.record(latency);
+        } else {
+            latencies.recordWithExpectedInterval(latency, expectedInterval);
+        }
+    }
+
+    /**
+     * @return Returns the status code of the response or -1 if the request failed.
+     */
+    private int send(RequestMix.Request request) {
+        try {
+            if (socket == null) {
+                openConnection();
+            }
+            String connection = keepAlive ? "keep-alive" : "close";
+            out.write((request.getMethod() + " " + request.getResource() + " HTTP/1.1\r\n"
+                + "Host: localhost:" + port + "\r\n"
+                + "Connection: " + connection + "\r\n\r\n").getBytes());
+            out.flush();
+            int statusCode = readResponse(request.getMethod().equals("HEAD"));
+            if (!keepAlive) {
+                closeConnection();
+            }
+            return statusCode;
+        } catch (IOException e) {
+            closeConnection();
+            return -1;
+        }
+    }
+
+    private void openConnection() throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(30000);
+        in = new BufferedInputStream(socket.getInputStream(), 65536);
+        out = socket.getOutputStream();
+    }
+
+    private void closeConnection() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // The connection is dropped anyway
+            }
+            socket = null;
+        }
+    }
+
+    /**
+     * Reads the status line and the headers, which end with "\r\n" or "\n", and skips the body.
+     */
+    private int readResponse(boolean head) throws IOException {
+        String statusLine = readLine();
+        if (statusLine == null || statusLine.length() < 12) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        int statusCode = Integer.parseInt(statusLine.substring(9, 12));
+        long contentLength = -1;
+        boolean close = false;
+        String line;
+        while ((line = readLine()) != null && !line.isEmpty()) {
+            int separator = line.indexOf(':');
+            if (separator < 0) {
+                continue;
+            }
+            String name = line.substring(0, separator).trim();
+            String value = line.substring(separator + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Long.parseLong(value);
+            } else if (name.equalsIgnoreCase("Connection")) {
+                close = value.equalsIgnoreCase("close");
+            }
+        }
+        if (!head) {
+            skipBody(contentLength);
+        }
+        if (close) {
+            closeConnection();
+        }
+        return statusCode;
+    }
+
+    private void skipBody(long contentLength) throws IOException {
+        if (contentLength < 0) {
+            // The body ends with the connection
+            while (in.read() >= 0) {
+                bytesReceived++;
+            }
+            return;
+        }
+        long remaining = contentLength;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("Connection closed within the body");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        bytesReceived += contentLength;
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return this.latencies;
+    }
+
+    public LatencyHistogram getServiceTimes() {
+        return this.serviceTimes;
+    }
+
+    /**
+     * @return Returns the number of responses per status class, the index is the first digit of the status code.
+     */
+    public long[] getStatusCounts() {
+        return this.statusCounts;
+    }
+
+    public long getErrors() {
+        return this.errors;
+    }
+
+    public long getBytesReceived() {
+        return this.bytesReceived;
+    }
+}
@@ -0,0 +1,185 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An end-to-end load test on the loopback interface. It starts a Server in-process,
+ * creates the requested files and drives the server with many concurrent clients.
+ * The result contains the throughput, the latency percentiles and the status codes,
+ * it is printed and written as JSON, so runs with different engines and execution
+ * modes can be compared, for example:
+ * ./gradlew loadTest -Pargs="--connections=200 --duration=30 --engine=nio"
+ *
+ * The options of the load test are:
+ * --connections=64 The number of concurrent clients.
+ * --keep-alive-ratio=0.8 The share of clients which reuse their connection.
+ * --duration=10 The duration of the measurement in seconds.
+ * --warmup=3 The duration of the warm-up in seconds, it is not measured.
+ * --rate=0 The total request rate per second, 0 runs a closed loop.
+ * --expected-interval=-1 The expected interval in microseconds for the correction of a closed loop,
+ *   0 disables it and -1 uses the mean service time during the warm-up.
+ * --mix=small=40,medium=20,large=5,directory=5,notfound=15,head=15 The requests, see RequestMix.
+ * --output=build/reports/loadtest/results.json The file of the JSON result.
+ * All other options, for example --engine=nio or --console-log=true, configure the server, see ServerConfig.
+ * The server does not log to the console unless --console-log=true is given.
+ */
+public class LoadTest {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private int connections = 64;
+    private double keepAliveRatio = 0.8;
+    private int durationSeconds = 10;
+    private int warmupSeconds = 3;
+    private long rate = 0;
+    private long expectedInterval = -1;
+    private String mix = "small=40,medium=20,large=5,directory=5,notfound=15,head=15";
+    private String output = "build/reports/loadtest/results.json";
+    private List<String> serverArguments = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LoadTest loadTest = new LoadTest();
+        loadTest.parseArguments(args);
+        loadTest.run();
+    }
+
+    private void parseArguments(String[] args) {
+        serverArguments.add("--port=18080");
+        serverArguments.add("--console-log=false");
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Malformed argument: " + arg);
+            }
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(2, separator)) {
+                case "connections":
+                    this.connections = Integer.parseInt(value);
+                    break;
+                case "keep-alive-ratio":
+                    this.keepAliveRatio = Double.parseDouble(value);
+                    break;
+                case "duration":
+                    this.durationSeconds = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    this.warmupSeconds = Integer.parseInt(value);
+                    break;
+                case "rate":
+                    this.rate = Long.parseLong(value);
+                    break;
+                case "expected-interval":
+                    this.expectedInterval = Long.parseLong(value);
+                    break;
+                case "mix":
+                    this.mix = value;
+                    break;
+                case "output":
+                    this.output = value;
+                    break;
+                default:
+                    serverArguments.add(arg);
+            }
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        Path directory = Paths.get("build", "loadtest");
+        RequestMix.createFiles(directory);
+        RequestMix requestMix = new RequestMix(mix, directory);
+        ServerConfig config = ServerConfig.fromArguments(serverArguments.toArray(new String[0]));
+
+        Server server = new Server(config);
+        List<LoadClient> clients = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        long interval = rate > 0 ? connections * 1_000_000_000L / rate : 0;
+        long measureFrom = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        long deadline = measureFrom + durationSeconds * 1_000_000_000L;
+        for (int i = 0; i < connections; i++) {
+            boolean keepAlive = i < Math.round(connections * keepAliveRatio);
+            LoadClient client = new LoadClient(server.getPort(), keepAlive, requestMix, interval, expectedInterval);
+            client.setSchedule(measureFrom, deadline);
+            clients.add(client);
+            Thread thread = new Thread(client, "load-client-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        server.stop();
+
+        String result = getResult(config, clients);
+        System.out.println(result);
+        Path outputFile = Paths.get(output);
+        if (outputFile.getParent() != null) {
+            Files.createDirectories(outputFile.getParent());
+        }
+        Files.write(outputFile, result.getBytes());
+        System.out.println("Result written to " + outputFile);
+    }
+
+    private String getResult(ServerConfig config, List<LoadClient> clients) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        LatencyHistogram serviceTimes = new LatencyHistogram();
+        long[] statusCounts = new long[6];
+        long errors = 0;
+        long bytesReceived = 0;
+        for (LoadClient client : clients) {
+            latencies.add(client.getLatencies());
+            serviceTimes.add(client.getServiceTimes());
+            for (int i = 0; i < statusCounts.length; i++) {
+                statusCounts[i] += client.getStatusCounts()[i];
+            }
+            errors += client.getErrors();
+            bytesReceived += client.getBytesReceived();
+        }
+        long requests = serviceTimes.getTotalCount();
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"engine\": \"").append(config.getEngine()).append("\",\n");
+        json.append("  \"executionMode\": \"").append(config.getExecutionMode()).append("\",\n");
+        json.append("  \"connections\": ").append(connections).append(",\n");
+        json.append("  \"keepAliveRatio\": ").append(keepAliveRatio).append(",\n");
+        json.append("  \"mix\": \"").append(mix).append("\",\n");
+        json.append("  \"durationSeconds\": ").append(durationSeconds).append(",\n");
+        json.append("  \"targetRate\": ").append(rate).append(",\n");
+        json.append("  \"requests\": ").append(requests).append(",\n");
+        json.append("  \"errors\": ").append(errors).append(",\n");
+        json.append("  \"throughput\": ").append(format((double) requests / durationSeconds)).append(",\n");
+        json.append("  \"megabytesPerSecond\": ")
+            .append(format(bytesReceived / 1048576.0 / durationSeconds)).append(",\n");
+        json.append("  \"statusCodes\": {");
+        for (int i = 1; i < statusCounts.length; i++) {
+            json.append(i > 1 ? ", " : "").append("\"").append(i).append("xx\": ").append(statusCounts[i]);
+        }
+        json.append("},\n");
+        json.append("  \"latencyMicros\": ").append(getPercentiles(latencies)).append(",\n");
+        json.append("  \"serviceTimeMicros\": ").append(getPercentiles(serviceTimes)).append("\n");
+        json.append("}");
+        return json.toString();
+    }
+
+    private static String getPercentiles(LatencyHistogram histogram) {
+        StringBuilder json = new StringBuilder("{");
+        for (double percentile : PERCENTILES) {
+            json.append("\"p").append(format(percentile).replace(".0", "").replace('.', '_')).append("\": ")
+                .append(histogram.getValueAtPercentile(percentile)).append(", ");
+        }
+        json.append("\"max\": ").append(histogram.getMaxValue()).append(", ");
+        json.append("\"mean\": ").append(format(histogram.getMean())).append(", ");
+        json.append("\"count\": ").append(histogram.getTotalCount()).append("}");
+        return json.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,123 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The weighted mix of requests which the load test sends, it is configured as a list of
+ * kinds and weights, for example: small=40,medium=20,large=5,directory=5,notfound=15,head=15
+ * The kinds are a small (4 KB), a medium (64 KB) and a large (1 MB) file, a directory
+ * listing, a file which does not exist and a HEAD request for the small file.
+ * The files are created in a directory below the working directory of the server.
+ *
+ * @param mix The kinds and their weights.
+ * @param directory The directory of the files, relative to the working directory.
+ */
+public class RequestMix {
+
+    private List<Request> requests = new ArrayList<>();
+    private List<Integer> cumulativeWeights = new ArrayList<>();
+    private int totalWeight = 0;
+    private String root;
+
+    public RequestMix(String mix, Path directory) {
+        this.root = "/" + directory.toString().replace('\\', '/');
+        for (String entry : mix.split(",")) {
+            String[] kindAndWeight = entry.trim().split("=");
+            if (kindAndWeight.length != 2) {
+                throw new IllegalArgumentException("Malformed request mix: " + entry);
+            }
+            int weight = Integer.parseInt(kindAndWeight[1].trim());
+            if (weight > 0) {
+                totalWeight += weight;
+                requests.add(getRequest(kindAndWeight[0].trim()));
+                cumulativeWeights.add(totalWeight);
+            }
+        }
+        if (totalWeight == 0) {
+            throw new IllegalArgumentException("The request mix is empty: " + mix);
+        }
+    }
+
+    private Request getRequest(String kind) {
+        switch (kind) {
+            case "small":
+                return new Request("GET", root + "/small.html");
+            case "medium":
+                return new Request("GET", root + "/medium.html");
+            case "large":
+                return new Request("GET", root + "/large.bin");
+            case "directory":
+                return new Request("GET", root + "/");
+            case "notfound":
+                return new Request("GET", root + "/notExisting.html");
+            case "head":
+                return new Request("HEAD", root + "/small.html");
+            default:
+                throw new IllegalArgumentException("Unknown request kind: " + kind);
+        }
+    }
+
+    /**
+     * Creates the files which are requested by the mix.
+     *
+     * @param directory The directory of the files.
+     * @throws Throws an IOException if an I/O error occurs when writing the files.
+     */
+    public static void createFiles(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve("small.html"), getText(4 * 1024));
+        Files.write(directory.resolve("medium.html"), getText(64 * 1024));
+        byte[] large = new byte[1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(large);
+        Files.write(directory.resolve("large.bin"), large);
+    }
+
+    private static byte[] getText(int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append("<p>Simple HTTP web server load test ").append(text.length()).append("</p>\n");
+        }
+        text.setLength(length);
+        return text.toString().getBytes();
+    }
+
+    /**
+     * @return Returns a request, chosen randomly according to the weights.
+     */
+    public Request next() {
+        int value = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (int i = 0; i < requests.size(); i++) {
+            if (value < cumulativeWeights.get(i)) {
+                return requests.get(i);
+            }
+        }
+        return requests.get(requests.size() - 1);
+    }
+
+    /**
+     * A request of the mix.
+     */
+    public static class Request {
+
+        private String method;
+        private String resource;
+
+        private Request(String method, String resource) {
+            this.method = method;
+            this.resource = resource;
+        }
+
+        public String getMethod() {
+            return this.method;
+        }
+
+        public String getResource() {
+            return this.resource;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An access log which is written by a background thread, so the threads which serve
+ * the requests never wait for the file or for a lock. A request is recorded as an
+ * entry in a bounded lock-free ring buffer; the writer thread takes the entries in
+ * batches, formats them (Combined Log Format or JSON) and writes each batch with one
+ * write call. The buffered lines are written at least once per flush interval.
+ * The file is rotated when it exceeds the maximum size: access.log becomes access.log.1,
+ * access.log.1 becomes access.log.2 and so on, the oldest file is deleted.
+ * When the ring buffer is full, new entries are either dropped (and counted) or the
+ * recording thread waits until the writer has made room, depending on the configuration.
+ *
+ * @param config The configuration of the server, the log is disabled without a log file.
+ */
+public class AccessLog {
+
+    private static final DateTimeFormatter COMMON_LOG_DATE =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneId.systemDefault());
+    private static final int BATCH_BYTES = 64 * 1024;
+
+    private Path file;
+    private boolean json;
+    private boolean blockWhenFull;
+    private long flushIntervalNanos;
+    private long maxFileBytes;
+    private int maxFiles;
+
+    private Entry[] entries;
+    private AtomicLongArray sequences;
+    private int mask;
+    private AtomicLong tail = new AtomicLong();
+    private long head = 0;
+    private LongAdder dropped = new LongAdder();
+
+    private FileChannel channel;
+    private long fileBytes;
+    private Thread writer;
+    private volatile boolean running;
+
+    public AccessLog(ServerConfig config) {
+        if (config.getAccessLogFile() == null) {
+            return;
+        }
+        this.file = Paths.get(config.getAccessLogFile());
+        this.json = "json".equalsIgnoreCase(config.getAccessLogFormat());
+        this.blockWhenFull = "block".equalsIgnoreCase(config.getAccessLogOverflow());
+        this.flushIntervalNanos = config.getAccessLogFlushIntervalMillis() * 1_000_000L;
+        this.maxFileBytes = config.getAccessLogMaxFileBytes();
+        this.maxFiles = Math.max(1, config.getAccessLogMaxFiles());
+        int capacity = Integer.highestOneBit(Math.max(1, config.getAccessLogBufferSize() - 1)) << 1;
+        this.entries = new Entry[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Opens the log file and starts the writer thread.
+     *
+     * @throws Throws an IOException if the log file can not be opened.
+     */
+    public void start() throws IOException {
+        if (file == null) {
+            return;
+        }
+        openFile();
+        running = true;
+        writer = new Thread(this::writeEntries, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes the remaining entries and closes the log file.
+     */
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.file != null;
+    }
+
+    /**
+     * @return Returns the number of entries which were dropped because the ring buffer was full.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Records a response. The entry is only formatted by the writer thread.
+     *
+     * @param remoteAddress The address of the client.
+     * @param request The request or null if the request could not be parsed.
+     * @param response The response which was sent.
+     * @param durationNanos The time from the parsed request to the written response in nanoseconds.
+     */
+    public void log(InetAddress remoteAddress, RequestMessage request, ResponseMessage response, long durationNanos) {
+        if (file == null) {
+            return;
+        }
+        Entry entry = new Entry(remoteAddress, request, response, durationNanos);
+        while (!offer(entry)) {
+            if (!blockWhenFull || !running) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    /**
+     * Adds an entry to the ring buffer. Every slot has a sequence number: a producer
+     * claims the slot of position p when its sequence is p, and publishes the entry by
+     * setting the sequence to p + 1. The writer frees the slot by setting it to p + capacity.
+     *
+     * @return Returns false if the ring buffer is full.
+     */
+    private boolean offer(Entry entry) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    entries[slot] = entry;
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false;
+            }
+        }
+    }
+
+    private Entry poll() {
+        int slot = (int) head & mask;
+        if (sequences.get(slot) != head + 1) {
+            return null;
+        }
+        Entry entry = entries[slot];
+        entries[slot] = null;
+        sequences.set(slot, head + entries.length);
+        head++;
+        return entry;
+    }
+
+    private void writeEntries() {
+        StringBuilder batch = new StringBuilder(BATCH_BYTES);
+        long lastFlush = System.nanoTime();
+        while (true) {
+            boolean stopping = !running;
+            Entry entry;
+            while (batch.length() < BATCH_BYTES && (entry = poll()) != null) {
+                format(entry, batch);
+            }
+            long now = System.nanoTime();
+            boolean full = batch.length() >= BATCH_BYTES;
+            if (batch.length() > 0 && (full || stopping || now - lastFlush >= flushIntervalNanos)) {
+                write(batch);
+                lastFlush = now;
+            }
+            if (stopping && batch.length() == 0 && sequences.get((int) head & mask) != head + 1) {
+                break;
+            }
+            if (!full) {
+                LockSupport.parkNanos(Math.min(flushIntervalNanos, 10_000_000L));
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void write(StringBuilder batch) {
+        ByteBuffer bytes = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        batch.setLength(0);
+        try {
+            if (fileBytes > 0 && fileBytes + bytes.remaining() > maxFileBytes) {
+                rotate();
+            }
+            while (bytes.hasRemaining()) {
+                fileBytes += channel.write(bytes);
+            }
+        } catch (IOException e) {
+            // Here: Create a log of the exception and the state of the system
+            e.printStackTrace();
+        }
+    }
+
+    private void openFile() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        Files.deleteIfExists(Paths.get(file + "." + maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path older = Paths.get(file + "." + i);
+            if (Files.exists(older)) {
+                Files.move(older, Paths.get(file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, Paths.get(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        openFile();
+    }
+
+    private void format(Entry entry, StringBuilder line) {
+        if (json) {
+            formatJson(entry, line);
+        } else {
+            formatCombined(entry, line);
+        }
+    }
+
+    /**
+     * The Combined Log Format, extended by the duration in microseconds. The size is the
+     * size of the complete response including the header, for example:
+     * 127.0.0.1 - - [10/Mar/2021:12:00:00 +0100] "GET /index.html HTTP/1.1" 200 1234 "-" "curl/7.68.0" 152
+     */
+    private void formatCombined(Entry entry, StringBuilder line) {
+        line.append(entry.getRemoteAddress()).append(" - - [");
+        line.append(COMMON_LOG_DATE.format(Instant.ofEpochMilli(entry.time))).append("] ");
+        appendQuotedString(line, entry.getRequestLine());
+        line.append(' ').append(entry.statusCode).append(' ').append(entry.bytes).append(' ');
+        appendQuotedString(line, entry.referer);
+        line.append(' ');
+        appendQuotedString(line, entry.userAgent);
+        line.append(' ').append(entry.durationNanos / 1000).append('\n');
+    }
+
+    /**
+     * Quotes a value of the client like nginx does, so that it can not end the field or the line:
+     * a quote and a backslash are escaped with a backslash, control characters as \xHH.
+     */
+    private static void appendQuotedString(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("\"-\"");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x7f) {
+                line.append(String.format("\\x%02X", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private void formatJson(Entry entry, StringBuilder line) {
+        line.append("{\"time\":\"").append(Instant.ofEpochMilli(entry.time)).append('"');
+        line.append(",\"remoteAddress\":\"").append(entry.getRemoteAddress()).append('"');
+        line.append(",\"request\":");
+        appendJsonString(line, entry.getRequestLine());
+        line.append(",\"status\":").append(entry.statusCode);
+        line.append(",\"bytes\":").append(entry.bytes);
+        line.append(",\"referer\":");
+        appendJsonString(line, entry.referer);
+        line.append(",\"userAgent\":");
+        appendJsonString(line, entry.userAgent);
+        line.append(",\"durationMicros\":").append(entry.durationNanos / 1000).append("}\n");
+    }
+
+    private static void appendJsonString(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * A recorded response, it only keeps the values which are logged.
+     */
+    private static class Entry {
+
+        private InetAddress remoteAddress;
+        private long time = System.currentTimeMillis();
+        private Method method;
+        private String resource;
+        private String query;
+        private String httpVersion;
+        private String referer;
+        private String userAgent;
+        private int statusCode;
+        private long bytes;
+        private long durationNanos;
+
+        private Entry(InetAddress remoteAddress, RequestMessage request, ResponseMessage response, long durationNanos) {
+            this.remoteAddress = remoteAddress;
+            if (request != null) {
+                this.method = request.getMethod();
+                this.resource = request.getResource();
+                this.query = request.getQuery();
+                this.httpVersion = request.getHttpVersion();
+                this.referer = request.getHeader("Referer");
+                this.userAgent = request.getHeader("User-Agent");
+            }
+            this.statusCode = response.getStatusCode();
+            this.bytes = response.getLength();
+            this.durationNanos = durationNanos;
+        }
+
+        /**
+         * @return Returns the request line, or null if the request could not be parsed.
+         */
+        private String getRequestLine() {
+            if (resource == null) {
+                return null;
+            }
+            return method + " " + resource + (query == null ? "" : "?" + query) + " " + httpVersion;
+        }
+
+        private String getRemoteAddress() {
+            return remoteAddress == null ? "-" : remoteAddress.getHostAddress();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package httpwebserver;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a connection is accepted and whether a request is processed, so that a
+ * single client can not occupy the server. The connections are admitted by the accept loop
+ * before a handler is scheduled for them: beyond --max-connections open connections in total
+ * a connection is answered with 503, beyond --max-connections-per-ip open connections of the
+ * same address with 429.
+ * The requests of each address are limited to --rate-limit requests per second with bursts of
+ * --rate-limit-burst requests by a token bucket, further requests are answered with 429.
+ * All rejections carry "Retry-After: 1", within a second a limited client has a token again.
+ * The bucket is a single timestamp, the time at which it is full again, which is advanced
+ * with compare-and-set, so requests are admitted without a lock. The state of an address is
+ * kept in a ConcurrentHashMap and removed when it has no open connection and a full bucket,
+ * at which point it does not differ from a new state.
+ *
+ * @param config The configuration of the server.
+ */
+public class AdmissionControl {
+
+    /**
+     * The status code of a connection which is admitted.
+     */
+    public static final int ADMITTED = 0;
+
+    private static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private int maxConnections;
+    private int maxConnectionsPerIp;
+    private long tokenNanos;
+    private long burstNanos;
+    private AtomicInteger connections = new AtomicInteger();
+    private ConcurrentHashMap<InetAddress, Client> clients = new ConcurrentHashMap<>();
+    private AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+    private LongAdder rejectedByLimit = new LongAdder();
+    private LongAdder rejectedByAddressLimit = new LongAdder();
+    private LongAdder rateLimited = new LongAdder();
+
+    public AdmissionControl(ServerConfig config) {
+        this.maxConnections = config.getMaxConnections();
+        this.maxConnectionsPerIp = config.getMaxConnectionsPerIp();
+        int rateLimit = config.getRateLimit();
+        if (rateLimit > 0) {
+            int burst = config.getRateLimitBurst() > 0 ? config.getRateLimitBurst() : rateLimit;
+            this.tokenNanos = 1_000_000_000L / rateLimit;
+            this.burstNanos = tokenNanos * (burst - 1);
+        }
+    }
+
+    /**
+     * Admits a new connection, an admitted connection has to be released when it is closed.
+     *
+     * @param address The address of the client.
+     * @return Returns ADMITTED, or the status code with which the connection is rejected:
+     *         503 if the server has too many connections, 429 if the client has too many.
+     */
+    public int admit(InetAddress address) {
+        if (connections.incrementAndGet() > maxConnections && maxConnections > 0) {
+            connections.decrementAndGet();
+            rejectedByLimit.increment();
+            return 503;
+        }
+        if (maxConnectionsPerIp > 0 && address != null) {
+            boolean[] admitted = new boolean[1];
+            clients.compute(address, (key, client) -> {
+                if (client == null) {
+                    client = new Client();
+                }
+                if (client.connections < maxConnectionsPerIp) {
+                    client.connections++;
+                    admitted[0] = true;
+                }
+                return client;
+            });
+            if (!admitted[0]) {
+                connections.decrementAndGet();
+                rejectedByAddressLimit.increment();
+                return 429;
+            }
+        }
+        return ADMITTED;
+    }
+
+    /**
+     * Releases an admitted connection.
+     *
+     * @param address The address of the client.
+     */
+    public void release(InetAddress address) {
+        connections.decrementAndGet();
+        if (maxConnectionsPerIp > 0 && address != null) {
+            long now = System.nanoTime();
+            clients.computeIfPresent(address, (key, client) -> {
+                client.connections--;
+                return client.isIdle(now) ? null : client;
+            });
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of the client for a request.
+     *
+     * @param address The address of the client.
+     * @return Returns true if the request is processed, false if it exceeds the rate limit.
+     */
+    public boolean tryAcquire(InetAddress address) {
+        if (tokenNanos == 0 || address == null) {
+            return true;
+        }
+        long now = System.nanoTime();
+        sweep(now);
+        Client client = clients.get(address);
+        if (client == null) {
+            client = clients.computeIfAbsent(address, key -> new Client());
+        }
+        while (true) {
+            long full = client.full.get();
+            long start = full - now < 0 ? now : full;
+            if (start - now > burstNanos) {
+                rateLimited.increment();
+                return false;
+            }
+            if (client.full.compareAndSet(full, start + tokenNanos)) {
+                return true;
+            }
+        }
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public int getClients() {
+        return clients.size();
+    }
+
+    public long getRejectedByLimit() {
+        return rejectedByLimit.sum();
+    }
+
+    public long getRejectedByAddressLimit() {
+        return rejectedByAddressLimit.sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * Removes the idle clients, at most once per interval and by one thread at a time.
+     */
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (InetAddress address : clients.keySet()) {
+            clients.computeIfPresent(address, (key, client) -> client.isIdle(now) ? null : client);
+        }
+    }
+
+    /**
+     * The state of a client address: its open connections, which are only changed within
+     * the compute methods of the map, and its token bucket.
+     */
+    private static class Client {
+
+        private int connections = 0;
+        private AtomicLong full = new AtomicLong(System.nanoTime());
+
+        private boolean isIdle(long now) {
+            return connections <= 0 && full.get() - now <= 0;
+        }
+    }
+}
@@ -1,40 +1,205 @@
 package httpwebserver;
 
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
 * A server instance which runs in a thread.
-* AsyncServer itself creates and starts a new thread for each client request.
+* AsyncServer accepts the client connections on the acceptor threads of its Listeners and hands
+* each of them as a ClientHandler to an executor, which is defined by the ExecutionMode of the configuration.
+* Connections which are not admitted by the AdmissionControl are answered without scheduling a ClientHandler.
 *
-* @param port The port on which the server will listen for requests.
+* @param context The shared components of the server.
 */
-public class AsyncServer implements Runnable {
+public class AsyncServer implements ServerInstance {
 
-    private int port;
-    private ServerSocket serverSocket;
+    private ServerContext context;
+    private ServerConfig config;
+    private Listeners listeners;
+    private ExecutorService executor;
+    private Set<ClientHandler> activeHandlers = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
 
-    public AsyncServer(int port) {
-        this.port = port;
+    public AsyncServer(ServerContext context) {
+        this.context = context;
+        this.config = context.getConfig();
+        this.listeners = new Listeners(config);
+        this.executor = createExecutor(config, "client-handler");
+        if (executor instanceof ThreadPoolExecutor) {
+            BlockingQueue<Runnable> queue = ((ThreadPoolExecutor) executor).getQueue();
+            context.getMetrics().setAcceptQueueDepth(queue::size);
+        }
     }
 
     @Override
     public void run() {
+        listeners.runAcceptors("acceptor", this::executeServer);
+    }
+
+    /**
+     * Stops accepting new connections and waits until the in-flight
+     * ClientHandlers are finished or the shutdown timeout is reached.
+     * Persistent connections which are waiting for a further request are closed.
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+        listeners.close();
+        executor.shutdown();
+        for (ClientHandler clientHandler : activeHandlers) {
+            clientHandler.closeWhenIdle();
+        }
         try {
-            executeServer();
-        } catch (IOException e) {
-            // Here: Create a log of the exception and the state of the system -> IMPLEMENT IT!
-            e.printStackTrace();
-        } 
-    }
-
-    private void executeServer() throws IOException {
-        serverSocket = new ServerSocket(port);
-        while (true) {
-            System.out.println("Server is listening for requests...");
-            Socket connection = serverSocket.accept();
-            new Thread(new ClientHandler(connection)).start();
+            if (!executor.awaitTermination(config.getShutdownTimeoutSeconds(), TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The connections are accepted with a blocking ServerSocketChannel, so that the
+     * ClientHandlers can transfer files directly to the SocketChannel of the connection.
+     */
+    @Override
+    public void bind() throws IOException {
+        listeners.bind();
+    }
+
+    @Override
+    public List<InetSocketAddress> getLocalAddresses() {
+        return listeners.getLocalAddresses();
+    }
+
+    private void executeServer(ServerSocketChannel serverChannel, int acceptor) throws IOException {
+        while (running) {
+            if (config.isConsoleLog()) {
+                System.out.println("Server is listening for requests...");
+            }
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                if (!running) {
+                    return;
+                }
+                throw e;
+            }
+            context.getMetrics().connectionAccepted();
+            Socket connection = channel.socket();
+            try {
+                listeners.configure(channel);
+            } catch (IOException e) {
+                // The client has already closed the connection
+                connection.close();
+                continue;
+            }
+            int admission = context.getAdmissionControl().admit(connection.getInetAddress());
+            ClientHandler clientHandler = new ClientHandler(connection, context, activeHandlers, executor);
+            if (admission != AdmissionControl.ADMITTED) {
+                clientHandler.reject(admission);
+                continue;
+            }
+            try {
+                executor.execute(clientHandler);
+            } catch (RejectedExecutionException e) {
+                clientHandler.reject();
+            }
+        }
+    }
+
+    /**
+     * Creates the executor of the ExecutionMode of the configuration, it is also used by the NioServer
+     * for the processing of its requests.
+     *
+     * @param config The configuration of the server.
+     * @param threadName The prefix of the names of the pooled worker threads.
+     * @return Returns the executor, a full pool rejects a ClientHandler with "503 Service Unavailable"
+     *         and other tasks with a RejectedExecutionException.
+     */
+    static ExecutorService createExecutor(ServerConfig config, String threadName) {
+        if (config.getExecutionMode() == ExecutionMode.VIRTUAL_THREADS) {
+            ExecutorService virtualThreadExecutor = createVirtualThreadExecutor();
+            if (virtualThreadExecutor != null) {
+                return virtualThreadExecutor;
+            }
+            if (config.isConsoleLog()) {
+                System.out.println("Virtual threads are not supported by this Java runtime, using a thread pool");
+            }
+        }
+        return new ThreadPoolExecutor(config.getWorkerThreads(), config.getWorkerThreads(),
+                60L, TimeUnit.SECONDS,
+                createQueue(config.getQueueCapacity()),
+                new WorkerThreadFactory(threadName),
+                new RejectConnectionPolicy());
+    }
+
+    private static BlockingQueue<Runnable> createQueue(int capacity) {
+        if (capacity <= 0) {
+            return new SynchronousQueue<>();
+        }
+        return new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Virtual threads are only available since Java 21, therefore the executor
+     * is looked up by reflection to keep the server runnable on older runtimes.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+        private final String threadName;
+
+        private WorkerThreadFactory(String threadName) {
+            this.threadName = threadName;
+        }
+
+        @Override
+        public Thread newThread(Runnable task) {
+            return new Thread(task, threadName + "-" + threadCount.incrementAndGet());
+        }
+    }
+
+    /**
+     * Answers a connection, which can not be executed by the worker pool, with a
+     * "503 Service Unavailable" response instead of letting it wait unboundedly.
+     */
+    private static class RejectConnectionPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (!(task instanceof ClientHandler)) {
+                throw new RejectedExecutionException("Task " + task + " rejected");
+            }
+            ((ClientHandler) task).reject();
         }
     }
 }
@@ -1,6 +1,9 @@
 package httpwebserver;
 
 public class BadRequestException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
     public BadRequestException(String errorMessage) {
         super(errorMessage);
     }
@@ -0,0 +1,41 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A part of a response message which is already in memory.
+ *
+ * @param buffer The content of the part, it is not modified by writing.
+ */
+public class BufferPart implements MessagePart {
+
+    private ByteBuffer buffer;
+    private int length;
+
+    public BufferPart(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        this.length = buffer.remaining();
+    }
+
+    public BufferPart(byte[] bytes) {
+        this.buffer = ByteBuffer.wrap(bytes);
+        this.length = bytes.length;
+    }
+
+    @Override
+    public long getLength() {
+        return this.length;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        channel.write(buffer);
+        return !buffer.hasRemaining();
+    }
+
+    @Override
+    public void close() {
+    }
+}
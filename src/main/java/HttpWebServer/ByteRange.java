@@ -0,0 +1,105 @@
+package httpwebserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A range of bytes of a file which was requested with the Range header, for example
+ * "bytes=0-499" (the first 500 bytes), "bytes=500-" (from byte 500 to the end) or
+ * "bytes=-500" (the last 500 bytes). The last position is inclusive.
+ *
+ * @param first The position of the first byte of the range.
+ * @param last The position of the last byte of the range.
+ */
+public class ByteRange {
+
+    /**
+     * Requests with more ranges are answered with the complete file, many small
+     * ranges would cost more than sending the file at once.
+     */
+    private static final int MAX_RANGES = 16;
+
+    private long first;
+    private long last;
+
+    public ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    public long getFirst() {
+        return this.first;
+    }
+
+    public long getLength() {
+        return last - first + 1;
+    }
+
+    /**
+     * @param fileLength The length of the complete file in bytes.
+     * @return Returns the value of the Content-Range header, for example "bytes 0-499/1234".
+     */
+    public String getContentRange(long fileLength) {
+        return "bytes " + first + "-" + last + "/" + fileLength;
+    }
+
+    /**
+     * Parses the value of a Range header. Ranges which start behind the end of the file
+     * are unsatisfiable and are left out, ranges which end behind it are shortened.
+     *
+     * @param range The value of the Range header.
+     * @param fileLength The length of the file in bytes.
+     * @return Returns the satisfiable ranges, which are empty if no range is satisfiable,
+     * or null if the header is malformed or has too many ranges and has to be ignored.
+     */
+    public static List<ByteRange> parse(String range, long fileLength) {
+        if (!range.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = range.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            String trimmed = spec.trim();
+            int dash = trimmed.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            long start = parsePosition(trimmed.substring(0, dash));
+            long end = parsePosition(trimmed.substring(dash + 1));
+            if (start == -1 && end == -1 || start == -2 || end == -2 || end != -1 && start > end) {
+                return null;
+            }
+            if (start == -1) {
+                // A suffix range, which contains the last bytes of the file
+                if (end > 0 && fileLength > 0) {
+                    ranges.add(new ByteRange(Math.max(0, fileLength - end), fileLength - 1));
+                }
+            } else if (start < fileLength) {
+                ranges.add(new ByteRange(start, end == -1 ? fileLength - 1 : Math.min(end, fileLength - 1)));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * @return Returns the position, -1 if it is empty, or -2 if it is not a number.
+     */
+    private static long parsePosition(String position) {
+        if (position.isEmpty()) {
+            return -1;
+        }
+        if (position.length() > 18) {
+            return -2;
+        }
+        for (int i = 0; i < position.length(); i++) {
+            char c = position.charAt(i);
+            if (c < '0' || c > '9') {
+                return -2;
+            }
+        }
+        return Long.parseLong(position);
+    }
+}
@@ -0,0 +1,50 @@
+package httpwebserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assigns a Cache-Control header value to the requested resources. A rule either
+ * matches a file extension ("*.css") or a path prefix ("/static/"), the first
+ * matching rule wins. The rules are configured as a list separated by ';', for example:
+ * *.css=public, max-age=86400;/static/=max-age=3600
+ *
+ * @param rules The configured rules or null.
+ */
+public class CacheControlRules {
+
+    private List<String[]> rules = new ArrayList<>();
+
+    public CacheControlRules(String rules) {
+        if (rules == null || rules.isEmpty()) {
+            return;
+        }
+        for (String rule : rules.split(";")) {
+            int separator = rule.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Malformed Cache-Control rule: " + rule);
+            }
+            this.rules.add(new String[] {rule.substring(0, separator).trim(), rule.substring(separator + 1).trim()});
+        }
+    }
+
+    /**
+     * @param resource The requested resource.
+     * @return Returns the Cache-Control value for the resource or null if no rule matches.
+     */
+    public String getCacheControl(String resource) {
+        for (String[] rule : rules) {
+            if (matches(rule[0], resource)) {
+                return rule[1];
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(String pattern, String resource) {
+        if (pattern.startsWith("*.")) {
+            return resource.endsWith(pattern.substring(1));
+        }
+        return resource.startsWith(pattern);
+    }
+}
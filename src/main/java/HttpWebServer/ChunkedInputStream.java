@@ -0,0 +1,117 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+
+/**
+ * Decodes a body which is sent with the chunked transfer coding: every chunk starts with
+ * its size in hex on a line of its own, optionally followed by extensions, the data is
+ * followed by CRLF, and the last chunk has the size 0 and is followed by optional trailer
+ * lines and an empty line. Extensions and trailers are skipped. The stream ends after the
+ * empty line, the bytes behind it are not read.
+ *
+ * @param in The stream which provides the encoded body.
+ */
+public class ChunkedInputStream extends InputStream {
+
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    private InputStream in;
+    private long remaining = 0;
+    private boolean started = false;
+    private boolean finished = false;
+    private StringBuilder line = new StringBuilder();
+    private byte[] single = new byte[1];
+
+    public ChunkedInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    /**
+     * @throws Throws a ProtocolException if the chunked coding is malformed or the stream
+     *         ends within the body.
+     */
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (remaining == 0 && !nextChunk()) {
+            return -1;
+        }
+        int read = in.read(target, offset, (int) Math.min(length, remaining));
+        if (read < 0) {
+            throw new ProtocolException("Chunked body ended within a chunk");
+        }
+        remaining -= read;
+        return read;
+    }
+
+    /**
+     * @return Returns true if the complete body was read, including the last chunk and the trailers.
+     */
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+    /**
+     * Reads the line end of the previous chunk and the size line of the next one.
+     *
+     * @return Returns false if the last chunk was reached.
+     */
+    private boolean nextChunk() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (started && !readLine().isEmpty()) {
+            throw new ProtocolException("Chunk data is not followed by CRLF");
+        }
+        started = true;
+        String sizeLine = readLine();
+        int extension = sizeLine.indexOf(';');
+        String size = (extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim();
+        try {
+            remaining = Long.parseLong(size, 16);
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Malformed chunk size: " + size);
+        }
+        if (remaining < 0 || size.startsWith("+") || size.startsWith("-")) {
+            throw new ProtocolException("Malformed chunk size: " + size);
+        }
+        if (remaining > 0) {
+            return true;
+        }
+        while (!readLine().isEmpty()) {
+            // Trailer fields are not used
+        }
+        finished = true;
+        return false;
+    }
+
+    private String readLine() throws IOException {
+        line.setLength(0);
+        while (true) {
+            int character = in.read();
+            if (character < 0) {
+                throw new ProtocolException("Chunked body ended within a line");
+            }
+            if (character == '\n') {
+                int end = line.length();
+                if (end > 0 && line.charAt(end - 1) == '\r') {
+                    line.setLength(end - 1);
+                }
+                return line.toString();
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new ProtocolException("Chunk line exceeds " + MAX_LINE_LENGTH + " bytes");
+            }
+            line.append((char) character);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A body part of unknown length which is sent with the chunked transfer coding.
+ * The content is produced piece by piece by a source while the part is written,
+ * so only one chunk is held in memory at a time. Every piece becomes a chunk
+ * ("size in hex" CRLF data CRLF), the last chunk has the size 0.
+ *
+ * @param source Produces the content.
+ */
+public class ChunkedPart implements MessagePart {
+
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private Source source;
+    private StringBuilder piece = new StringBuilder();
+    private ByteBuffer chunk = ByteBuffer.allocate(0);
+    private boolean finished = false;
+    private long length = 0;
+
+    public ChunkedPart(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * @return Returns the number of bytes which were produced so far, it is the
+     * length of the part when the part was written completely.
+     */
+    @Override
+    public long getLength() {
+        return this.length;
+    }
+
+    @Override
+    public boolean isLengthKnown() {
+        return false;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        while (true) {
+            channel.write(chunk);
+            if (chunk.hasRemaining()) {
+                return false;
+            }
+            if (finished) {
+                return true;
+            }
+            nextChunk();
+        }
+    }
+
+    private void nextChunk() {
+        piece.setLength(0);
+        boolean more = source.appendNext(piece);
+        byte[] data = piece.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] size = data.length == 0 ? new byte[0]
+            : (Integer.toHexString(data.length) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        int trailer = data.length == 0 ? 0 : 2;
+        chunk = ByteBuffer.allocate(size.length + data.length + trailer + (more ? 0 : LAST_CHUNK.length));
+        chunk.put(size).put(data);
+        if (trailer > 0) {
+            chunk.put((byte) '\r').put((byte) '\n');
+        }
+        if (!more) {
+            chunk.put(LAST_CHUNK);
+            finished = true;
+        }
+        chunk.flip();
+        length += chunk.remaining();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Produces the content of a ChunkedPart.
+     */
+    public interface Source {
+
+        /**
+         * Appends the next piece of the content.
+         *
+         * @param piece The builder of the piece, it is empty.
+         * @return Returns false if this was the last piece.
+         */
+        boolean appendNext(StringBuilder piece);
+    }
+}
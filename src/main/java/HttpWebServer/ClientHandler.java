@@ -1,32 +1,57 @@
 package httpwebserver;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.InputStream;
-import java.io.FileNotFoundException;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
- * ClientHandler processes a client request. Instances of
- * ClientHandler are created and started by BackgroundServer instances.
+ * ClientHandler processes the requests of a client on a blocking socket. Instances of
+ * ClientHandler are created by AsyncServer instances and executed by its executor.
+ * The connection stays open for further requests as long as the client and the
+ * configuration allow it (HTTP persistent connections). Pipelined requests are
+ * answered in the order in which they were received. A connection which starts with the
+ * HTTP/2 connection preface or upgrades to h2c is handed over to a Http2Connection.
+ * The body of a request is passed on as a stream, which the reverse proxy forwards while it reads it.
+ * The header, idle, body and write deadlines of the connection are watched by the timer wheel of
+ * the server, which closes the socket when a deadline passes, so a blocked read or write of the
+ * handler ends with an exception. A HTTP/2 connection sets the deadlines of its frames itself.
  *
- * @param connection The socket which is connected to the client.
+ * @param connection The socket which is connected to the client, it has to be the socket of a SocketChannel.
+ * @param context The shared components of the server.
+ * @param activeHandlers The handlers of the server which are currently running.
+ * @param workers The executor which runs the handler, it also computes the responses of HTTP/2 streams.
  */
 public class ClientHandler implements Runnable {
 
     private Socket connection;
+    private ServerContext context;
+    private ServerConfig config;
+    private Set<ClientHandler> activeHandlers;
+    private ExecutorService workers;
     private InputStream in;
-    private OutputStream out;
-    private RequestMessage request;
+    private SocketChannel out;
+    private HeaderWriter header = new HeaderWriter();
+    private ConnectionDeadline deadline;
+    private volatile Http2Connection http2;
+    private volatile boolean waitingForRequest = false;
+    private volatile boolean closing = false;
+    private long parseNanos = 0;
 
-    public ClientHandler(Socket connection) {
+    public ClientHandler(Socket connection, ServerContext context, Set<ClientHandler> activeHandlers,
+            ExecutorService workers) {
         this.connection = connection;
+        this.context = context;
+        this.config = context.getConfig();
+        this.activeHandlers = activeHandlers;
+        this.workers = workers;
+        this.deadline = new ConnectionDeadline(context, this::closeConnection);
         try {
             this.in = connection.getInputStream();
-            this.out = connection.getOutputStream();
+            this.out = connection.getChannel();
         } catch(IOException e) {
             // Here: Create a log of the exception and the state of the system
             e.printStackTrace();
@@ -34,91 +59,198 @@ public class ClientHandler implements Runnable {
     }
 
     /**
-     * Handles a HTTP request in a thread. To do so the class:
-     * Reads in the request message
-     * Processes this message
-     * Returns a response to the caller
+     * Handles the HTTP requests of a connection in a thread. To do so the class:
+     * Reads in a request message
+     * Lets a RequestProcessor compute the response
+     * Returns the response to the caller
+     * Repeats this until the connection is not persistent, misses a deadline,
+     * or has reached the maximum number of requests
      */
     @Override
     public void run() {
+        activeHandlers.add(this);
+        Metrics metrics = context.getMetrics();
+        metrics.connectionOpened();
         try {
-            String request = readInRequest();
-            setRequest(request);
-            processRequest();
+            RequestParser parser = new RequestParser(config.getMaxRequestHeaderSize());
+            boolean keepAlive = true;
+            for (int handledRequests = 0; keepAlive && !closing; handledRequests++) {
+                RequestMessage request = readRequest(parser, handledRequests == 0);
+                if (request == null) {
+                    break;
+                }
+                if (config.isHttp2() && (Http2Connection.isPreface(request) || isUpgrade(request))) {
+                    deadline.cancel();
+                    http2 = new Http2Connection(connection, context, workers);
+                    if (closing) {
+                        http2.closeWhenIdle();
+                    }
+                    http2.serve(request, parser.takeBuffered());
+                    break;
+                }
+                long handleStart = System.nanoTime();
+                RequestProcessor processor = new RequestProcessor(connection, context, header);
+                boolean keepAliveAllowed = !closing && handledRequests + 1 < config.getMaxRequestsPerConnection();
+                RequestBody body = RequestBody.of(request, parser, in, out, deadline);
+                ResponseMessage response;
+                try {
+                    response = processor.process(request, body, keepAliveAllowed);
+                    keepAlive = processor.isKeepAlive();
+                } catch (RuntimeException errorMessage) {
+                    // Here: Create a log of the exception and the state of the system
+                    errorMessage.printStackTrace();
+                    response = context.getFailedResponse().getServerErrorMessage(header);
+                    keepAlive = false;
+                }
+                long writeStart = System.nanoTime();
+                sendResponse(response);
+                long end = System.nanoTime();
+                metrics.recordRequest(request.getMethod(), response, parseNanos, writeStart - handleStart,
+                        end - writeStart);
+                context.getAccessLog().log(connection.getInetAddress(), request, response, end - handleStart);
+            }
         } catch (BadRequestException errorMessage) {
-            System.out.println(errorMessage);
-        } catch (MethodNotAllowedException errorMessage) {
-            System.out.println(errorMessage);
-        } catch (FileNotFoundException errorMessage) {
-            System.out.println(errorMessage);  
+            log(errorMessage);
+            sendErrorResponse(context.getFailedResponse().getBadRequestMessage(header));
+        } catch (RequestHeaderTooLargeException errorMessage) {
+            log(errorMessage);
+            sendErrorResponse(context.getFailedResponse().getRequestHeaderTooLargeMessage(header));
         } catch (IOException errorMessage) {
-            errorMessage.printStackTrace();
+            // A connection which missed its deadline was closed by the timer wheel
+            if (!closing && !deadline.isExpired()) {
+                errorMessage.printStackTrace();
+            }
         } finally {
+            deadline.cancel();
             closeConnection();
+            activeHandlers.remove(this);
+            context.getAdmissionControl().release(connection.getInetAddress());
+            metrics.connectionClosed();
         }
     }
 
-    private String readInRequest() throws IOException {
-        InputStreamReader inReader = new InputStreamReader(in);
-        BufferedReader reader = new BufferedReader(inReader);
-        String request = reader.readLine();
-        System.out.println("REQUEST: " + request);
-        return request;
+    /**
+     * Closes the connection if the handler is waiting for a further request on
+     * a persistent connection, otherwise the connection is closed after the current response.
+     * Used by a graceful shutdown of the server.
+     */
+    public void closeWhenIdle() {
+        closing = true;
+        Http2Connection currentHttp2 = http2;
+        if (currentHttp2 != null) {
+            currentHttp2.closeWhenIdle();
+        } else if (waitingForRequest) {
+            closeConnection();
+        }
+    }
+
+    /**
+     * Answers the client of an admitted connection with a "503 Service Unavailable" response without
+     * reading its request. Used when the worker pool has no capacity left for the connection.
+     */
+    public void reject() {
+        context.getAdmissionControl().release(connection.getInetAddress());
+        reject(503);
     }
 
-    private void setRequest(String input) throws IOException, BadRequestException {
-        if (!isBadRequest(input)) {
-            this.request = new RequestMessage(input);
-        } else {
-            sendResponse(FailedResponse.getBadRequestMessage().getBytes());
-            throw new BadRequestException("Bad request");
+    /**
+     * Answers the client with an error response without reading its request and closes the connection.
+     *
+     * @param statusCode The status code of the response, 503 if the server or 429 if the client
+     *        has too many connections.
+     */
+    public void reject(int statusCode) {
+        context.getMetrics().connectionRejected();
+        try {
+            sendErrorResponse(context.getFailedResponse().getMessage(statusCode, "HTTP/1.1", header, false, false));
+        } finally {
+            deadline.cancel();
+            closeConnection();
         }
     }
 
-    private void processRequest() throws IOException, MethodNotAllowedException {
-        checkIsMethodAllowed();
-        File requestedFile = setRequestedFile();
-        byte[] message = getResponseMessage(requestedFile);
-        sendResponse(message);
+    /**
+     * Reads from the socket until the parser has a complete request. On a persistent
+     * connection the handler may be closed while it waits for a further request.
+     *
+     * Only the time which is spent in the parser is measured, not the time waiting for the bytes.
+     *
+     * @param first True if it is the first request of the connection.
+     * @return Returns the request or null if the client closed the connection between two requests.
+     */
+    private RequestMessage readRequest(RequestParser parser, boolean first) throws IOException {
+        deadline.waitForRequest(first);
+        long parseStart = System.nanoTime();
+        RequestMessage request = parser.parse();
+        parseNanos = System.nanoTime() - parseStart;
+        while (request == null) {
+            if (readFrom(parser) < 0) {
+                if (parser.isEmpty()) {
+                    return null;
+                }
+                throw new BadRequestException("Bad request: connection closed within the request");
+            }
+            parseStart = System.nanoTime();
+            request = parser.parse();
+            parseNanos += System.nanoTime() - parseStart;
+        }
+        deadline.cancel();
+        return request;
     }
 
-    private boolean isBadRequest(String line) {
-        return (line == null || line.isEmpty());
+    /**
+     * A request for a route of the reverse proxy is not upgraded to HTTP/2, since the proxy only
+     * forwards the requests of HTTP/1.x connections.
+     */
+    private boolean isUpgrade(RequestMessage request) {
+        return Http2Connection.isUpgrade(request) && context.getReverseProxy().getRoute(request.getResource()) == null;
     }
 
-    private void checkIsMethodAllowed() throws IOException, MethodNotAllowedException {
-        Method method = request.getMethod();
-        if (!(method.equals(Method.GET) || method.equals(Method.HEAD))) {
-            sendResponse(FailedResponse.getMethodNotAllowedMessage(request.getHttpVersion()).getBytes());
-            throw new MethodNotAllowedException(method + " is not allowed");
+    private int readFrom(RequestParser parser) throws IOException {
+        if (!parser.isEmpty()) {
+            deadline.startHeader();
+            return parser.readFrom(in);
+        }
+        waitingForRequest = true;
+        try {
+            if (closing) {
+                return -1;
+            }
+            return parser.readFrom(in);
+        } finally {
+            waitingForRequest = false;
         }
     }
 
-    private File setRequestedFile() throws IOException, FileNotFoundException {
-        File requestedFile = new File("." + request.getResource());
-        if(requestedFile.exists()) {
-            System.out.println("Requested file: " + requestedFile);
-            return requestedFile;
-        } else {
-            sendResponse(FailedResponse.getFileNotFoundMessage(request.getHttpVersion(), request.getResource()).getBytes());
-            throw new FileNotFoundException(requestedFile + " not found");
+    /**
+     * Writes the response to the blocking channel of the socket. The header is written
+     * first, file contents are transferred directly from the file to the socket.
+     */
+    private void sendResponse(ResponseMessage msg) throws IOException {
+        WritableByteChannel target = deadline.startWrite(msg, out);
+        try {
+            while (!msg.writeTo(target)) {
+                // A blocking channel transfers large files in several steps
+            }
+        } finally {
+            msg.close();
         }
     }
 
-    private byte[] getResponseMessage(File requestedFile) throws IOException {
-        ResponseMessage responseMessage = new ResponseMessage(connection); 
-        byte[] message = null;
-        if (requestedFile.isFile()) {
-            message = responseMessage.getFileResponseMessage(request.getHttpVersion(), requestedFile);
-        } else if (requestedFile.isDirectory()) {
-            message = responseMessage.getDirectoryResponseMessage(request.getHttpVersion(), requestedFile);
+    private void sendErrorResponse(ResponseMessage msg) {
+        try {
+            sendResponse(msg);
+            context.getMetrics().recordResponse(msg);
+            context.getAccessLog().log(connection.getInetAddress(), null, msg, 0);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        return message;
     }
 
-    private void sendResponse(byte[] msg) throws IOException {
-        out.write(msg);
-        out.flush();
+    private void log(Object message) {
+        if (config.isConsoleLog()) {
+            System.out.println(message);
+        }
     }
 
     private void closeConnection() {
@@ -0,0 +1,219 @@
+package httpwebserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Provides gzip encoded variants of text contents for clients which accept them.
+ * A precompressed sibling file (for example style.css.gz next to style.css) is
+ * preferred. Otherwise eligible files, whose content type is textual and whose size
+ * exceeds the threshold, are compressed on the fly. The compressed files are kept in
+ * a cache, keyed by the path, the size and the last modified time of the file, which is
+ * bounded by the total size of its entries and evicts the least recently used entries.
+ */
+public class Compression {
+
+    private static final String[] COMPRESSIBLE_TYPES = {
+        "text/", "application/javascript", "application/json", "application/xml",
+        "application/xhtml+xml", "image/svg+xml"
+    };
+
+    private boolean enabled;
+    private long minSize;
+    private long maxFileSize;
+    private long cacheMaxBytes;
+    private int level;
+    private long cachedBytes = 0;
+    private Map<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private LongAdder compressions = new LongAdder();
+
+    public Compression(ServerConfig config) {
+        this.enabled = config.isCompressionEnabled();
+        this.minSize = config.getCompressionMinSize();
+        this.maxFileSize = config.getCompressionMaxFileSize();
+        this.cacheMaxBytes = config.getCompressionCacheMaxBytes();
+        this.level = config.getCompressionLevel();
+    }
+
+    /**
+     * Evaluates the Accept-Encoding header of a request, for example "gzip, deflate, br"
+     * or "gzip;q=0". The wildcard "*" accepts gzip unless gzip is excluded explicitly.
+     *
+     * @param request The request.
+     * @return Returns true if the client accepts gzip encoded content.
+     */
+    public boolean acceptsGzip(RequestMessage request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (!enabled || acceptEncoding == null) {
+            return false;
+        }
+        boolean accepted = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            boolean excluded = parameters.length > 1 && isZeroQuality(parameters[1]);
+            if (name.equalsIgnoreCase("gzip")) {
+                return !excluded;
+            } else if (name.equals("*")) {
+                accepted = !excluded;
+            }
+        }
+        return accepted;
+    }
+
+    private static boolean isZeroQuality(String parameter) {
+        String quality = parameter.trim();
+        if (!quality.startsWith("q=")) {
+            return false;
+        }
+        try {
+            return Double.parseDouble(quality.substring(2)) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param contentType The content type of the content or null.
+     * @param length The length of the content in bytes.
+     * @return Returns true if the content is worth being compressed on the fly and small enough to be compressed in memory.
+     */
+    public boolean isCompressible(String contentType, long length) {
+        if (!enabled || contentType == null || length < minSize || length > maxFileSize) {
+            return false;
+        }
+        for (String compressibleType : COMPRESSIBLE_TYPES) {
+            if (contentType.startsWith(compressibleType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param file The requested file.
+     * @return Returns the precompressed sibling file, if it exists and is not older than the file, or null.
+     */
+    public File findPrecompressed(File file) {
+        if (!enabled) {
+            return null;
+        }
+        File precompressed = new File(file.getPath() + ".gz");
+        if (precompressed.isFile() && precompressed.lastModified() >= file.lastModified()) {
+            return precompressed;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the gzip encoded content of a file, from the cache if possible.
+     *
+     * @param file The file.
+     * @param attributes The attributes of the file, they identify its version.
+     * @return Returns the compressed content or null if the file is too large to be compressed in memory.
+     * @throws Throws an IOException if an I/O error occurs when reading the file.
+     */
+    public byte[] getCompressedFile(File file, BasicFileAttributes attributes) throws IOException {
+        if (attributes.size() > maxFileSize) {
+            return null;
+        }
+        String key = getKey(file, attributes);
+        byte[] compressed = get(key);
+        if (compressed == null) {
+            compressed = compress(Files.readAllBytes(file.toPath()));
+            put(key, compressed);
+        }
+        return compressed;
+    }
+
+    /**
+     * Returns the gzip encoded content of a file only if it is cached, the file is neither read
+     * nor compressed. Used for HEAD requests, which need only the length of the content.
+     *
+     * @param file The file.
+     * @param attributes The attributes of the file, they identify its version.
+     * @return Returns the cached compressed content or null.
+     */
+    public byte[] getCachedCompressedFile(File file, BasicFileAttributes attributes) {
+        return get(getKey(file, attributes));
+    }
+
+    /**
+     * @param content The content.
+     * @return Returns the gzip encoded content.
+     */
+    public byte[] compress(byte[] content) {
+        return compress(ByteBuffer.wrap(content));
+    }
+
+    /**
+     * @param content The content, the position of the buffer is not changed.
+     * @return Returns the gzip encoded content.
+     */
+    public byte[] compress(ByteBuffer content) {
+        compressions.increment();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.remaining() / 3 + 64);
+        byte[] chunk = new byte[8192];
+        ByteBuffer source = content.duplicate();
+        try (GZIPOutputStream out = new LeveledGZIPOutputStream(compressed, level)) {
+            while (source.hasRemaining()) {
+                int length = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        } catch (IOException e) {
+            // Writing into memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    public long getCompressions() {
+        return compressions.sum();
+    }
+
+    public synchronized long getCachedBytes() {
+        return this.cachedBytes;
+    }
+
+    private static String getKey(File file, BasicFileAttributes attributes) {
+        return file.getPath() + "|" + attributes.size() + "|" + attributes.lastModifiedTime().toMillis();
+    }
+
+    private synchronized byte[] get(String key) {
+        return cache.get(key);
+    }
+
+    private synchronized void put(String key, byte[] compressed) {
+        if (compressed.length > cacheMaxBytes) {
+            return;
+        }
+        byte[] previous = cache.put(key, compressed);
+        cachedBytes += compressed.length - (previous == null ? 0 : previous.length);
+        Iterator<byte[]> leastRecentlyUsed = cache.values().iterator();
+        while (cachedBytes > cacheMaxBytes && leastRecentlyUsed.hasNext()) {
+            cachedBytes -= leastRecentlyUsed.next().length;
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    /**
+     * A GZIPOutputStream with a configurable compression level.
+     */
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+        private LeveledGZIPOutputStream(ByteArrayOutputStream out, int level) throws IOException {
+            super(out, 8192);
+            def.setLevel(level);
+        }
+    }
+}
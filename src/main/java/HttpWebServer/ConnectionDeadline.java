@@ -0,0 +1,216 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The deadline of a connection, which is watched by the TimerWheel of the server. The
+ * deadline depends on the phase of the connection:
+ * A new connection has to send its request header within --header-timeout milliseconds,
+ * a persistent connection has to start a further request within --idle-timeout milliseconds
+ * and from its first byte on the header has to be complete within --header-timeout. The
+ * header deadline is not moved by the arriving bytes, so a client which sends a header
+ * byte by byte (slowloris) does not hold the connection longer than a fast one.
+ * A request body has to arrive within --body-timeout milliseconds plus the time the received
+ * bytes take at --min-body-rate bytes per second, the deadline moves with every read.
+ * A response has to be written within --write-timeout milliseconds plus the time the
+ * response takes at --min-write-rate bytes per second, a client which reads too slowly
+ * is disconnected. The deadline of a response of unknown length, which is streamed, moves
+ * with the written bytes like the deadline of a body. While a request is processed there
+ * is no deadline.
+ * When the deadline passes, the connection is counted by its phase and the expiry action
+ * runs in the thread of the wheel, it closes the connection or hands it to its event loop.
+ *
+ * @param context The shared components of the server.
+ * @param onExpiry Runs when the deadline passed, it has to return quickly.
+ */
+public class ConnectionDeadline {
+
+    static final int IDLE = 0;
+    static final int HEADER = 1;
+    static final int BODY = 2;
+    static final int WRITE = 3;
+    static final String[] PHASES = {"idle", "header", "body", "write"};
+
+    private ServerConfig config;
+    private Metrics metrics;
+    private Runnable onExpiry;
+    private TimerWheel.Timeout timeout;
+    private volatile int phase = IDLE;
+    private volatile boolean expired = false;
+    private long bodyStart;
+    private long writeStart;
+
+    public ConnectionDeadline(ServerContext context, Runnable onExpiry) {
+        this.config = context.getConfig();
+        this.metrics = context.getMetrics();
+        this.onExpiry = onExpiry;
+        this.timeout = context.getTimerWheel().newTimeout(this::expire);
+    }
+
+    /**
+     * Starts waiting for a request.
+     *
+     * @param first True if it is the first request of the connection, which has to be sent
+     *        within the header timeout, false if the connection is idle between two requests.
+     */
+    public void waitForRequest(boolean first) {
+        if (first) {
+            arm(HEADER, config.getHeaderTimeoutMillis());
+        } else {
+            arm(IDLE, config.getIdleTimeoutMillis());
+        }
+    }
+
+    /**
+     * Starts the header deadline when the first byte of a further request arrived.
+     * Does nothing if the header deadline is already running.
+     */
+    public void startHeader() {
+        if (phase == IDLE) {
+            arm(HEADER, config.getHeaderTimeoutMillis());
+        }
+    }
+
+    /**
+     * Starts the deadline of reading a request body.
+     */
+    public void startBody() {
+        bodyStart = TimerWheel.now();
+        bodyReceived(0);
+    }
+
+    /**
+     * Moves the deadline of the body with the bytes which were received, so the client
+     * has to keep the minimum rate over the whole body.
+     *
+     * @param received The number of bytes of the body which were received so far.
+     */
+    public void bodyReceived(long received) {
+        int bodyTimeout = config.getBodyTimeoutMillis();
+        if (bodyTimeout <= 0) {
+            cancel();
+            return;
+        }
+        long deadline = bodyStart + bodyTimeout;
+        if (config.getMinBodyRate() > 0) {
+            deadline += received * 1000 / config.getMinBodyRate();
+        }
+        phase = BODY;
+        timeout.schedule(Math.max(1, deadline - TimerWheel.now()));
+    }
+
+    /**
+     * Starts the deadline of writing a response. The length of a streamed response is only
+     * known when it was written, its deadline moves with the bytes which are written.
+     *
+     * @param response The response.
+     * @param channel The channel of the connection.
+     * @return Returns the channel into which the response is written.
+     */
+    public WritableByteChannel startWrite(ResponseMessage response, WritableByteChannel channel) {
+        if (response.isLengthKnown()) {
+            startWrite(response.getLength());
+            return channel;
+        }
+        startWrite(0);
+        return new WriteProgress(channel);
+    }
+
+    /**
+     * Starts the deadline of writing a response.
+     *
+     * @param length The number of bytes of the response.
+     */
+    public void startWrite(long length) {
+        writeStart = TimerWheel.now();
+        int writeTimeout = config.getWriteTimeoutMillis();
+        if (writeTimeout <= 0) {
+            cancel();
+            return;
+        }
+        long transferMillis = 0;
+        if (config.getMinWriteRate() > 0 && length > 0) {
+            transferMillis = length * 1000 / config.getMinWriteRate();
+        }
+        arm(WRITE, writeTimeout + transferMillis);
+    }
+
+    /**
+     * Moves the deadline of a streamed response with the bytes which were written, so the client
+     * has to keep the minimum rate over the whole response.
+     *
+     * @param written The number of bytes of the response which were written so far.
+     */
+    private void responseWritten(long written) {
+        int writeTimeout = config.getWriteTimeoutMillis();
+        if (writeTimeout <= 0 || config.getMinWriteRate() <= 0) {
+            return;
+        }
+        long deadline = writeStart + writeTimeout + written * 1000 / config.getMinWriteRate();
+        timeout.schedule(Math.max(1, deadline - TimerWheel.now()));
+    }
+
+    /**
+     * Removes the deadline, for example while a request is processed or after the connection was closed.
+     */
+    public void cancel() {
+        timeout.cancel();
+    }
+
+    /**
+     * @return Returns true if the deadline passed and the connection was closed because of it.
+     */
+    public boolean isExpired() {
+        return this.expired;
+    }
+
+    private void arm(int phase, long timeoutMillis) {
+        this.phase = phase;
+        if (timeoutMillis > 0) {
+            timeout.schedule(timeoutMillis);
+        } else {
+            timeout.cancel();
+        }
+    }
+
+    private void expire() {
+        expired = true;
+        metrics.connectionTimedOut(phase);
+        onExpiry.run();
+    }
+
+    /**
+     * The channel of a connection, which counts the bytes of a streamed response.
+     */
+    private class WriteProgress implements WritableByteChannel {
+
+        private WritableByteChannel channel;
+        private long written = 0;
+
+        private WriteProgress(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            int count = channel.write(source);
+            if (count > 0) {
+                written += count;
+                responseWritten(written);
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
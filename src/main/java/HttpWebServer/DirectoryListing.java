@@ -0,0 +1,285 @@
+package httpwebserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists directories. The entries of a directory are read once with a DirectoryStream
+ * and cached until the last modified time of the directory changes, which happens when
+ * an entry is created, deleted or renamed. The cache is bounded by the total number of
+ * cached entries, the least recently used directories are evicted first.
+ * The listing is sorted and paginated with query parameters:
+ * sort=name|size|modified, order=asc|desc, page=1, limit=1000 and format=html|json.
+ * Directories are listed before files.
+ *
+ * @param config The configuration of the server.
+ */
+public class DirectoryListing {
+
+    private static final String[] SORT_KEYS = {"name", "size", "modified"};
+
+    private int pageSize;
+    private int maxPageSize;
+    private long maxCachedEntries;
+    private long cachedEntries = 0;
+    private Map<String, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+
+    public DirectoryListing(ServerConfig config) {
+        this.pageSize = config.getDirectoryPageSize();
+        this.maxPageSize = Math.max(pageSize, 10000);
+        this.maxCachedEntries = config.getDirectoryCacheMaxEntries();
+    }
+
+    /**
+     * Computes the response message for a page of a directory listing. A HTTP/1.1
+     * client receives the page in chunks, a HTTP/1.0 or HTTP/2 client or a client which
+     * accepts gzip receives it at once, with Content-Length. The page is gzip encoded if it is
+     * large enough.
+     *
+     * @param request The request, its query selects the page.
+     * @param header The header writer of the connection.
+     * @param directory The requested directory.
+     * @param keepAlive True if the connection stays open after the response.
+     * @param compression Decides whether the page is gzip encoded.
+     * @return Returns the response message.
+     * @throws Throws an IOException if an I/O error occurs when reading the directory.
+     */
+    public ResponseMessage getResponseMessage(RequestMessage request, HeaderWriter header, File directory,
+            boolean keepAlive, Compression compression) throws IOException {
+        DirectoryPage page = getPage(request, directory);
+        String httpVersion = request.getHttpVersion();
+        String contentType = page.getContentType();
+        if (compression.acceptsGzip(request)) {
+            byte[] body = page.render();
+            String contentEncoding = null;
+            if (compression.isCompressible(contentType, body.length)) {
+                body = compression.compress(body);
+                contentEncoding = "gzip";
+            }
+            ResponseHeader.writeListingHeader(header, httpVersion, contentType, body.length, contentEncoding,
+                    keepAlive);
+            return ResponseMessage.getHttpMessage(request, header.finish(), new BufferPart(body));
+        }
+        if (!"HTTP/1.1".equals(httpVersion)) {
+            byte[] body = page.render();
+            ResponseHeader.writeListingHeader(header, httpVersion, contentType, body.length, null, keepAlive);
+            return ResponseMessage.getHttpMessage(request, header.finish(), new BufferPart(body));
+        }
+        ResponseHeader.writeListingHeader(header, httpVersion, contentType, -1, null, keepAlive);
+        return ResponseMessage.getHttpMessage(request, header.finish(), new ChunkedPart(page));
+    }
+
+    /**
+     * @param request The request, its query selects the page.
+     * @param directory The requested directory.
+     * @return Returns the requested page of the listing.
+     * @throws Throws an IOException if an I/O error occurs when reading the directory.
+     */
+    public DirectoryPage getPage(RequestMessage request, File directory) throws IOException {
+        FileEntry[] entries = getListing(directory.toPath()).getEntries(
+                getParameter(request, "sort", SORT_KEYS), "desc".equals(request.getQueryParameter("order")));
+        int limit = Math.min(parseNumber(request.getQueryParameter("limit"), pageSize), maxPageSize);
+        int page = parseNumber(request.getQueryParameter("page"), 1);
+        int from = (int) Math.min((long) (page - 1) * limit, entries.length);
+        int to = Math.min(from + limit, entries.length);
+
+        StringBuilder query = new StringBuilder();
+        appendParameter(query, request, "sort");
+        appendParameter(query, request, "order");
+        appendParameter(query, request, "format");
+        if (request.getQueryParameter("limit") != null) {
+            appendParameter(query, "limit", String.valueOf(limit));
+        }
+        String path = request.getResource().endsWith("/") ? request.getResource() : request.getResource() + "/";
+        boolean json = "json".equals(request.getQueryParameter("format"));
+        return new DirectoryPage(path, entries, from, to, query.toString(), page, json);
+    }
+
+    private static int getParameter(RequestMessage request, String name, String[] values) {
+        String value = request.getQueryParameter(name);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static void appendParameter(StringBuilder query, RequestMessage request, String name) {
+        String value = request.getQueryParameter(name);
+        if (value != null && !value.isEmpty()) {
+            appendParameter(query, name, value);
+        }
+    }
+
+    private static void appendParameter(StringBuilder query, String name, String value) {
+        if (query.length() > 0) {
+            query.append('&');
+        }
+        query.append(name).append('=').append(value);
+    }
+
+    /**
+     * @return Returns the positive number or the default value if it is missing or malformed.
+     */
+    private static int parseNumber(String number, int defaultValue) {
+        if (number == null || number.isEmpty() || number.length() > 9) {
+            return defaultValue;
+        }
+        for (int i = 0; i < number.length(); i++) {
+            if (number.charAt(i) < '0' || number.charAt(i) > '9') {
+                return defaultValue;
+            }
+        }
+        int value = Integer.parseInt(number);
+        return value > 0 ? value : defaultValue;
+    }
+
+    /**
+     * @param directory The directory.
+     * @return Returns the listing of the directory, from the cache if it was not modified.
+     * @throws Throws an IOException if an I/O error occurs when reading the directory.
+     */
+    public Listing getListing(Path directory) throws IOException {
+        String key = directory.toString();
+        long lastModified = Files.getLastModifiedTime(directory).toMillis();
+        Listing listing = get(key);
+        if (listing != null && listing.lastModified == lastModified) {
+            return listing;
+        }
+        listing = new Listing(readEntries(directory), lastModified);
+        put(key, listing);
+        return listing;
+    }
+
+    private static FileEntry[] readEntries(Path directory) throws IOException {
+        List<FileEntry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    entries.add(new FileEntry(path.getFileName().toString(), attributes.isDirectory(),
+                            attributes.size(), attributes.lastModifiedTime().toMillis()));
+                } catch (IOException e) {
+                    // The entry was deleted while the directory was read
+                }
+            }
+        }
+        FileEntry[] sorted = entries.toArray(new FileEntry[0]);
+        Arrays.sort(sorted, getComparator(0));
+        return sorted;
+    }
+
+    private static Comparator<FileEntry> getComparator(int sortKey) {
+        Comparator<FileEntry> directoriesFirst = Comparator.comparing(entry -> !entry.isDirectory());
+        switch (sortKey) {
+            case 1:
+                return directoriesFirst.thenComparingLong(FileEntry::getSize).thenComparing(FileEntry::getName);
+            case 2:
+                return directoriesFirst.thenComparingLong(FileEntry::getLastModified).thenComparing(FileEntry::getName);
+            default:
+                return directoriesFirst.thenComparing(FileEntry::getName);
+        }
+    }
+
+    public synchronized long getCachedEntries() {
+        return this.cachedEntries;
+    }
+
+    private synchronized Listing get(String key) {
+        return listings.get(key);
+    }
+
+    private synchronized void put(String key, Listing listing) {
+        Listing previous = listings.put(key, listing);
+        cachedEntries += listing.size() - (previous == null ? 0 : previous.size());
+        Iterator<Listing> leastRecentlyUsed = listings.values().iterator();
+        while (cachedEntries > maxCachedEntries && leastRecentlyUsed.hasNext()) {
+            cachedEntries -= leastRecentlyUsed.next().size();
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    /**
+     * The entries of a directory. The sorted orders are computed once per sort key and order.
+     */
+    public static class Listing {
+
+        private FileEntry[][] sorted = new FileEntry[SORT_KEYS.length * 2][];
+        private long lastModified;
+
+        private Listing(FileEntry[] byName, long lastModified) {
+            this.sorted[0] = byName;
+            this.lastModified = lastModified;
+        }
+
+        private int size() {
+            return sorted[0].length;
+        }
+
+        /**
+         * @param sortKey The index of the sort key: 0 name, 1 size, 2 last modified time.
+         * @param descending True for the descending order, directories are listed first anyway.
+         * @return Returns the sorted entries.
+         */
+        public synchronized FileEntry[] getEntries(int sortKey, boolean descending) {
+            int variant = sortKey * 2 + (descending ? 1 : 0);
+            if (sorted[variant] == null) {
+                FileEntry[] entries = sorted[0].clone();
+                Comparator<FileEntry> comparator = getComparator(sortKey);
+                if (descending) {
+                    Comparator<FileEntry> directoriesFirst = Comparator.comparing(entry -> !entry.isDirectory());
+                    comparator = directoriesFirst.thenComparing(getComparator(sortKey).reversed());
+                }
+                Arrays.sort(entries, comparator);
+                sorted[variant] = entries;
+            }
+            return sorted[variant];
+        }
+    }
+
+    /**
+     * An entry of a directory.
+     */
+    public static class FileEntry {
+
+        private String name;
+        private boolean directory;
+        private long size;
+        private long lastModified;
+
+        private FileEntry(String name, boolean directory, long size, long lastModified) {
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public boolean isDirectory() {
+            return this.directory;
+        }
+
+        public long getSize() {
+            return this.size;
+        }
+
+        public long getLastModified() {
+            return this.lastModified;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package httpwebserver;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * One page of a directory listing, rendered as HTML document or as JSON. The page is
+ * rendered piece by piece, a piece contains up to PIECE_ENTRIES entries, so a
+ * large page can be streamed as chunks without building it in memory at once.
+ *
+ * @param path The requested path of the directory, it ends with '/'.
+ * @param entries The sorted entries of the directory.
+ * @param from The index of the first entry of the page.
+ * @param to The index after the last entry of the page.
+ * @param query The query of the page without page number, for example "sort=size&order=desc&limit=100".
+ * @param page The number of the page, starting with 1.
+ * @param json True if the page is rendered as JSON.
+ */
+public class DirectoryPage implements ChunkedPart.Source {
+
+    private static final int PIECE_ENTRIES = 256;
+
+    private String path;
+    private DirectoryListing.FileEntry[] entries;
+    private int from;
+    private int to;
+    private String query;
+    private int page;
+    private boolean json;
+    private int next = -1;
+
+    public DirectoryPage(String path, DirectoryListing.FileEntry[] entries, int from, int to, String query, int page,
+            boolean json) {
+        this.path = path;
+        this.entries = entries;
+        this.from = from;
+        this.to = to;
+        this.query = query;
+        this.page = page;
+        this.json = json;
+    }
+
+    public String getContentType() {
+        return json ? "application/json; charset=utf-8" : "text/html; charset=utf-8";
+    }
+
+    /**
+     * @return Returns the complete page, for clients which do not support chunks.
+     */
+    public byte[] render() {
+        StringBuilder content = new StringBuilder();
+        while (appendNext(content)) {
+            // Appends all pieces
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the beginning of the page, then the entries piece by piece and finally the end of the page.
+     */
+    @Override
+    public boolean appendNext(StringBuilder piece) {
+        if (next < 0) {
+            appendStart(piece);
+            next = from;
+            return true;
+        }
+        int end = Math.min(to, next + PIECE_ENTRIES);
+        for (int i = next; i < end; i++) {
+            if (json) {
+                appendJsonEntry(piece, entries[i], i == from);
+            } else {
+                appendHtmlEntry(piece, entries[i]);
+            }
+        }
+        next = end;
+        if (next < to) {
+            return true;
+        }
+        appendEnd(piece);
+        return false;
+    }
+
+    private void appendStart(StringBuilder piece) {
+        if (json) {
+            piece.append("{\"path\":");
+            appendJsonString(piece, path);
+            piece.append(",\"page\":").append(page);
+            piece.append(",\"total\":").append(entries.length);
+            piece.append(",\"entries\":[");
+            return;
+        }
+        piece.append("<!DOCTYPE html>\n");
+        piece.append("<html>\n");
+        piece.append("<head>\n");
+        piece.append("<title>Simple Web Server</title>");
+        piece.append("</head>\n");
+        piece.append("<body>\n");
+        piece.append("<h1>Simple Web Server</h1>");
+        piece.append("<h2>").append(escapeHtml(path)).append("</h2>\n");
+        piece.append("<ul>\n");
+    }
+
+    private void appendHtmlEntry(StringBuilder piece, DirectoryListing.FileEntry entry) {
+        String name = entry.getName() + (entry.isDirectory() ? "/" : "");
+        piece.append("<li><a href=\"").append(escapeHtml(path)).append(encodePathSegment(entry.getName()));
+        piece.append(entry.isDirectory() ? "/" : "").append("\">").append(escapeHtml(name)).append("</a></li>\n");
+    }
+
+    private void appendJsonEntry(StringBuilder piece, DirectoryListing.FileEntry entry, boolean first) {
+        piece.append(first ? "" : ",").append("{\"name\":");
+        appendJsonString(piece, entry.getName());
+        piece.append(",\"directory\":").append(entry.isDirectory());
+        piece.append(",\"size\":").append(entry.getSize());
+        piece.append(",\"lastModified\":\"").append(Instant.ofEpochMilli(entry.getLastModified())).append("\"}");
+    }
+
+    private void appendEnd(StringBuilder piece) {
+        boolean hasPrevious = page > 1;
+        boolean hasNext = to < entries.length;
+        if (json) {
+            piece.append("],\"previous\":");
+            appendJsonLink(piece, hasPrevious, page - 1);
+            piece.append(",\"next\":");
+            appendJsonLink(piece, hasNext, page + 1);
+            piece.append("}\n");
+            return;
+        }
+        piece.append("</ul>\n");
+        if (hasPrevious || hasNext) {
+            piece.append("<p>");
+            if (hasPrevious) {
+                piece.append("<a href=\"").append(escapeHtml(getPageLink(page - 1))).append("\">Previous</a> ");
+            }
+            if (hasNext) {
+                piece.append("<a href=\"").append(escapeHtml(getPageLink(page + 1))).append("\">Next</a>");
+            }
+            piece.append("</p>\n");
+        }
+        piece.append("</body>\n");
+        piece.append("</html>\n");
+    }
+
+    private void appendJsonLink(StringBuilder piece, boolean exists, int targetPage) {
+        if (exists) {
+            appendJsonString(piece, getPageLink(targetPage));
+        } else {
+            piece.append("null");
+        }
+    }
+
+    private String getPageLink(int targetPage) {
+        return path + "?" + (query.isEmpty() ? "" : query + "&") + "page=" + targetPage;
+    }
+
+    private static String encodePathSegment(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private static String escapeHtml(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static void appendJsonString(StringBuilder piece, String value) {
+        piece.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                piece.append('\\').append(c);
+            } else if (c < 0x20) {
+                piece.append(String.format("\\u%04x", (int) c));
+            } else {
+                piece.append(c);
+            }
+        }
+        piece.append('"');
+    }
+}
@@ -0,0 +1,279 @@
+package httpwebserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves the requested resources to files below the document root. A resource is
+ * percent-decoded as UTF-8 and normalized segment by segment, a resource which leaves
+ * the document root with "..", or which contains a NUL byte, a backslash or a malformed
+ * encoding, is rejected. Symbolic links are followed as long as their target is below
+ * the document root as well.
+ * The results, also for resources which do not exist, are kept in a bounded concurrent map,
+ * so that repeated requests of the same resource, for example of a hot file or of the paths
+ * a scanner probes, do not touch the file system. An existing file is resolved again after
+ * --path-cache-ttl milliseconds, a missing one already after --path-cache-negative-ttl.
+ *
+ * @param config The configuration of the server.
+ */
+public class DocumentRoot {
+
+    private static final int MAX_CACHED_RESOURCE_LENGTH = 1024;
+
+    private Path root;
+    private Path realRoot;
+    private int maxEntries;
+    private long ttlMillis;
+    private long negativeTtlMillis;
+    private Map<String, Resolution> resolutions = new ConcurrentHashMap<>();
+    private AtomicBoolean sweeping = new AtomicBoolean(false);
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+    private LongAdder rejected = new LongAdder();
+
+    public DocumentRoot(ServerConfig config) {
+        this.root = Paths.get(config.getDocumentRoot()).toAbsolutePath().normalize();
+        this.maxEntries = config.getPathCacheMaxEntries();
+        this.ttlMillis = config.getPathCacheTtlMillis();
+        this.negativeTtlMillis = config.getPathCacheNegativeTtlMillis();
+    }
+
+    /**
+     * @param resource The requested resource without the query, as it was sent by the client.
+     * @return Returns the resolution of the resource, from the cache if it is still valid.
+     * @throws Throws an IOException if an I/O error occurs when reading the attributes of the file.
+     */
+    public Resolution resolve(String resource) throws IOException {
+        long now = System.currentTimeMillis();
+        Resolution resolution = resolutions.get(resource);
+        if (resolution != null && now < resolution.expires) {
+            hits.increment();
+            return resolution;
+        }
+        misses.increment();
+        resolution = resolveUncached(resource, now);
+        if (maxEntries > 0 && resource.length() <= MAX_CACHED_RESOURCE_LENGTH) {
+            put(resource, resolution, now);
+        }
+        return resolution;
+    }
+
+    /**
+     * Removes the resolution of a resource, for example because its file was deleted in the meantime.
+     *
+     * @param resource The requested resource without the query.
+     */
+    public void invalidate(String resource) {
+        resolutions.remove(resource);
+    }
+
+    public Path getRoot() {
+        return this.root;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public int getCachedEntries() {
+        return resolutions.size();
+    }
+
+    private Resolution resolveUncached(String resource, long now) throws IOException {
+        String path = normalize(decode(resource));
+        if (path == null) {
+            rejected.increment();
+            return new Resolution(null, Resolution.REJECTED, now + negativeTtlMillis);
+        }
+        Path file = root.resolve(path);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!isBelowRoot(file)) {
+                return new Resolution(file.toFile(), Resolution.NOT_FOUND, now + negativeTtlMillis);
+            }
+        } catch (NoSuchFileException e) {
+            return new Resolution(file.toFile(), Resolution.NOT_FOUND, now + negativeTtlMillis);
+        }
+        if (attributes.isRegularFile()) {
+            return new Resolution(file.toFile(), Resolution.FILE, now + ttlMillis);
+        } else if (attributes.isDirectory()) {
+            return new Resolution(file.toFile(), Resolution.DIRECTORY, now + ttlMillis);
+        }
+        return new Resolution(file.toFile(), Resolution.NOT_FOUND, now + negativeTtlMillis);
+    }
+
+    /**
+     * @return Returns true if the file is below the document root after all symbolic links are followed.
+     */
+    private boolean isBelowRoot(Path file) throws IOException {
+        if (realRoot == null) {
+            realRoot = root.toRealPath();
+        }
+        return file.toRealPath().startsWith(realRoot);
+    }
+
+    /**
+     * Sweeps the cache when it is full: the expired resolutions are evicted, and arbitrary ones
+     * until a quarter of the entries is free, so the next misses insert without a sweep. Only the
+     * thread which wins the compare-and-set sweeps, the others do not cache their resolution meanwhile.
+     */
+    private void put(String resource, Resolution resolution, long now) {
+        if (resolutions.size() >= maxEntries) {
+            if (!sweeping.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                resolutions.values().removeIf(entry -> now >= entry.expires);
+                int target = maxEntries - Math.max(1, maxEntries / 4);
+                Iterator<Resolution> entries = resolutions.values().iterator();
+                while (resolutions.size() > target && entries.hasNext()) {
+                    entries.next();
+                    entries.remove();
+                }
+            } finally {
+                sweeping.set(false);
+            }
+        }
+        resolutions.put(resource, resolution);
+    }
+
+    /**
+     * @return Returns the percent-decoded resource or null if the encoding is malformed.
+     */
+    static String decode(String resource) {
+        if (resource.indexOf('%') < 0) {
+            return resource;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(resource.length());
+        for (int i = 0; i < resource.length(); i++) {
+            char character = resource.charAt(i);
+            if (character > 0x7f) {
+                int codePoint = resource.codePointAt(i);
+                bytes.writeBytes(new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8));
+                i += Character.charCount(codePoint) - 1;
+                continue;
+            }
+            if (character != '%') {
+                bytes.write(character);
+                continue;
+            }
+            if (i + 2 >= resource.length()) {
+                return null;
+            }
+            int high = Character.digit(resource.charAt(i + 1), 16);
+            int low = Character.digit(resource.charAt(i + 2), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes.write(high << 4 | low);
+            i += 2;
+        }
+        try {
+            return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes.toByteArray())).toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Removes empty and "." segments and resolves ".." segments.
+     *
+     * @return Returns the path relative to the document root, "" for the root itself,
+     *         or null if the path leaves the document root or contains a forbidden character.
+     */
+    static String normalize(String path) {
+        if (path == null || path.indexOf('\0') >= 0 || path.indexOf('\\') >= 0) {
+            return null;
+        }
+        StringBuilder normalized = new StringBuilder(path.length());
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            int length = end - start;
+            if (length == 2 && path.charAt(start) == '.' && path.charAt(start + 1) == '.') {
+                if (normalized.length() == 0) {
+                    return null;
+                }
+                normalized.setLength(Math.max(0, normalized.lastIndexOf("/")));
+            } else if (length > 0 && !(length == 1 && path.charAt(start) == '.')) {
+                if (normalized.length() > 0) {
+                    normalized.append('/');
+                }
+                normalized.append(path, start, end);
+            }
+            start = end + 1;
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * The result of resolving a resource: an existing file or directory, a resource which
+     * does not exist, or a rejected resource.
+     */
+    public static class Resolution {
+
+        private static final int FILE = 0;
+        private static final int DIRECTORY = 1;
+        private static final int NOT_FOUND = 2;
+        private static final int REJECTED = 3;
+
+        private File file;
+        private int kind;
+        private long expires;
+
+        private Resolution(File file, int kind, long expires) {
+            this.file = file;
+            this.kind = kind;
+            this.expires = expires;
+        }
+
+        /**
+         * @return Returns the file below the document root, or null if the resource was rejected.
+         */
+        public File getFile() {
+            return this.file;
+        }
+
+        public boolean isFile() {
+            return kind == FILE;
+        }
+
+        public boolean isDirectory() {
+            return kind == DIRECTORY;
+        }
+
+        public boolean exists() {
+            return kind == FILE || kind == DIRECTORY;
+        }
+
+        public boolean isRejected() {
+            return kind == REJECTED;
+        }
+    }
+}
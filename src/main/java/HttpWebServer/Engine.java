@@ -0,0 +1,11 @@
+package httpwebserver;
+
+/**
+ * Defines which implementation accepts and serves the client connections.
+ *
+ * BLOCKING: AsyncServer, every connection is served by a ClientHandler on blocking sockets.
+ * NIO: NioServer, the connections are multiplexed on a few event loop threads with selectors.
+ */
+public enum Engine {
+    BLOCKING, NIO
+}
@@ -0,0 +1,162 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * A request for a route of the Router, as it is passed to its RequestHandler: the request with the
+ * values of its path parameters and its body, and the builder of the response. The body is read
+ * while the handler consumes it, with the Content-Length or the chunked coding of the request.
+ * A handler which does not read the body completely closes the connection after its response,
+ * because the rest of the body could not be told apart from the next request.
+ *
+ * @param request The request.
+ * @param parameters The values of the path parameters by their names.
+ * @param body The body of the request, or null if the request has none.
+ * @param header The header writer of the connection.
+ * @param keepAlive True if the connection may stay open after the response.
+ * @param client The address of the client.
+ */
+public class Exchange {
+
+    private static final byte[] CONTENT_TYPE = HeaderWriter.ascii("Content-Type: ");
+    private static final byte[] CONTENT_LENGTH = HeaderWriter.ascii("Content-Length: ");
+
+    private RequestMessage request;
+    private Map<String, String> parameters;
+    private RequestBody body;
+    private HeaderWriter header;
+    private boolean keepAlive;
+    private InetAddress client;
+    private StringBuilder responseHeaders = new StringBuilder();
+
+    public Exchange(RequestMessage request, Map<String, String> parameters, RequestBody body, HeaderWriter header,
+            boolean keepAlive, InetAddress client) {
+        this.request = request;
+        this.parameters = parameters;
+        this.body = body;
+        this.header = header;
+        this.keepAlive = keepAlive;
+        this.client = client;
+    }
+
+    public RequestMessage getRequest() {
+        return this.request;
+    }
+
+    public Method getMethod() {
+        return request.getMethod();
+    }
+
+    /**
+     * @param name The name of the parameter in the route, for example "id" for "/users/{id}".
+     * @return Returns the value of the path segment, or null if the route has no such parameter.
+     */
+    public String getPathParameter(String name) {
+        return parameters.get(name);
+    }
+
+    /**
+     * @param name The case-insensitive name of the header.
+     * @return Returns the value of the request header or null if the request has none.
+     */
+    public String getHeader(String name) {
+        return request.getHeader(name);
+    }
+
+    public InetAddress getClientAddress() {
+        return this.client;
+    }
+
+    /**
+     * @return Returns the decoded body of the request, which is empty if the request has none.
+     */
+    public InputStream getBody() {
+        return body != null ? body : InputStream.nullInputStream();
+    }
+
+    /**
+     * Reads the whole body of the request, for small bodies like a form or a JSON document.
+     *
+     * @param maxLength The maximum length of the body.
+     * @return Returns the body of the request.
+     * @throws Throws a BadRequestException if the body is longer than the maximum length,
+     *         and an IOException if the body is malformed or the client does not send it in time.
+     */
+    public byte[] readBody(int maxLength) throws IOException {
+        byte[] content = getBody().readNBytes(maxLength);
+        if (getBody().read() >= 0) {
+            throw new BadRequestException("Bad request: the body exceeds " + maxLength + " bytes");
+        }
+        return content;
+    }
+
+    /**
+     * Adds a header to the response, for example "Cache-Control" or "Location".
+     *
+     * @param name The name of the header.
+     * @param value The value of the header, it must not contain line breaks.
+     * @return Returns this exchange.
+     */
+    public Exchange setHeader(String name, String value) {
+        if (name.indexOf('\r') >= 0 || name.indexOf('\n') >= 0 || value.indexOf('\r') >= 0
+                || value.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("A header must not contain line breaks: " + name);
+        }
+        responseHeaders.append(name).append(": ").append(value).append("\r\n");
+        return this;
+    }
+
+    /**
+     * @param statusCode The status code of the response, for example 204.
+     * @return Returns a response without body.
+     */
+    public ResponseMessage respond(int statusCode) {
+        return respond(statusCode, null, new byte[0]);
+    }
+
+    /**
+     * @param statusCode The status code of the response.
+     * @param contentType The media type of the body or null, the body is encoded as UTF-8.
+     * @param content The body of the response.
+     * @return Returns the response.
+     */
+    public ResponseMessage respond(int statusCode, String contentType, String content) {
+        String type = contentType != null && contentType.startsWith("text/") && !contentType.contains("charset")
+            ? contentType + "; charset=utf-8" : contentType;
+        return respond(statusCode, type, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds the response in the header writer of the connection, a response to a HEAD request has the
+     * header only.
+     *
+     * @param statusCode The status code of the response.
+     * @param contentType The media type of the body, or null if the response has no body.
+     * @param content The body of the response.
+     * @return Returns the response.
+     */
+    public ResponseMessage respond(int statusCode, String contentType, byte[] content) {
+        keepAlive = keepAlive && (body == null || body.isFinished());
+        header.start(request.getHttpVersion(), statusCode);
+        header.append(responseHeaders.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (contentType != null) {
+            header.header(CONTENT_TYPE, contentType);
+        }
+        if (statusCode != 204 && statusCode != 304) {
+            header.header(CONTENT_LENGTH, content.length);
+        }
+        header.connection(keepAlive);
+        return ResponseMessage.getHttpMessage(request, header.finish(), new BufferPart(content));
+    }
+
+    /**
+     * @return Returns true if the connection stays open after the response.
+     */
+    public boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+}
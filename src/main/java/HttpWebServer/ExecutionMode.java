@@ -0,0 +1,15 @@
+package httpwebserver;
+
+/**
+ * Defines how an AsyncServer executes the ClientHandler of an accepted connection, and how a
+ * NioServer executes the processing of its requests.
+ *
+ * POOLED: A bounded pool of worker threads with a bounded queue. Connections which
+ *         neither find a free worker nor a free slot in the queue are rejected with
+ *         a "503 Service Unavailable" response, the NioServer rejects requests in the same way.
+ * VIRTUAL_THREADS: Every connection (every request of a NioServer) is handled by its own virtual
+ *         thread. Requires a Java runtime with virtual threads, otherwise the server falls back to POOLED.
+ */
+public enum ExecutionMode {
+    POOLED, VIRTUAL_THREADS
+}
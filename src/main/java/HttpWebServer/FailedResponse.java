@@ -1,86 +1,192 @@
 package httpwebserver;
 
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
+ * Provides the HTTP responses for errors. The content of each message is a HTML
+ * document which represents the error. All messages are rendered once when the server
+ * starts, for each HTTP version and connection handling: the bodies are kept in read-only
+ * buffers, the header lines are pre-encoded and only completed with the Date header.
+ * Sending an error is therefore a buffer write without any file I/O.
+ *
+ * @param config The configuration of the server, it may define a directory with custom error pages.
  * @author Marcel Unkauf
  */
 public class FailedResponse {
 
+    private static final String[] HTTP_VERSIONS = {"HTTP/1.0", "HTTP/1.1"};
+    private static final byte[] CONTENT_LENGTH = HeaderWriter.ascii("Content-Length: ");
+
+    private ErrorMessage[][] messages = new ErrorMessage[600][];
+
+    public FailedResponse(ServerConfig config) {
+        String directory = config.getErrorPageDirectory();
+        addMessages(400, "", directory);
+        addMessages(404, "", directory);
+        addMessages(405, "Allow: GET, HEAD\r\n", directory);
+        addMessages(429, "Retry-After: 1\r\n", directory);
+        addMessages(431, "", directory);
+        addMessages(500, "", directory);
+        addMessages(502, "", directory);
+        addMessages(503, "Retry-After: 1\r\n", directory);
+        addMessages(504, "", directory);
+    }
+
     /**
-     * Sends a "405 Method Not Allowed" HTTP response.
-     * The content of the message is a HTML document which represents the error.
+     * Returns a "405 Method Not Allowed" HTTP response.
      *
-     * @param httpVersion The HTTP version of the request.
-     * @throws Throws an IOException if an I/O error occurs when sending the HTTP response.
+     * @param request The request with the method which is not allowed.
+     * @param header The header writer of the connection.
+     * @param keepAlive True if the connection stays open after the response.
      */
-    public static String getMethodNotAllowedMessage(String httpVersion) throws IOException {
-        StringBuilder msg = new StringBuilder();
-        msg.append(httpVersion + " 405 Method Not Allowed\n");
-        msg.append("Server: Simple HTTP web server\n");
-        msg.append("Content-Type: text/html; charset=utf-8\n");
-        msg.append("Allow: GET, HEAD\n");
-        msg.append("\n");
-        HtmlFile htmlFile = new HtmlFile(405);
-        msg.append(htmlFile.getHtmlPage());
-        msg.append("\n");
-        return msg.toString();
+    public ResponseMessage getMethodNotAllowedMessage(RequestMessage request, HeaderWriter header, boolean keepAlive) {
+        return getMessage(405, request, header, keepAlive);
     }
     
     /**
-     * Sends a "404 File Not Found" HTTP response.
-     * The content of the message is a HTML document which represents the error.
+     * Returns a "404 File Not Found" HTTP response.
+     *
+     * @param request The request of a file which does not exist.
+     * @param header The header writer of the connection.
+     * @param keepAlive True if the connection stays open after the response.
+     */
+    public ResponseMessage getFileNotFoundMessage(RequestMessage request, HeaderWriter header, boolean keepAlive) {
+        return getMessage(404, request, header, keepAlive);
+    }
+
+    /**
+     * Returns a "429 Too Many Requests" HTTP response to a request which exceeds the rate limit.
+     * The connection is closed after this response.
+     *
+     * @param request The request which is not processed.
+     * @param header The header writer of the connection.
+     */
+    public ResponseMessage getTooManyRequestsMessage(RequestMessage request, HeaderWriter header) {
+        return getMessage(429, request, header, false);
+    }
+
+    /**
+     * Returns a "502 Bad Gateway" HTTP response to a request which no upstream server answered.
+     *
+     * @param request The request which was forwarded.
+     * @param header The header writer of the connection.
+     * @param keepAlive True if the connection stays open after the response.
+     */
+    public ResponseMessage getBadGatewayMessage(RequestMessage request, HeaderWriter header, boolean keepAlive) {
+        return getMessage(502, request, header, keepAlive);
+    }
+
+    /**
+     * Returns a "504 Gateway Timeout" HTTP response to a request whose upstream server did not answer in time.
+     *
+     * @param request The request which was forwarded.
+     * @param header The header writer of the connection.
+     * @param keepAlive True if the connection stays open after the response.
+     */
+    public ResponseMessage getGatewayTimeoutMessage(RequestMessage request, HeaderWriter header, boolean keepAlive) {
+        return getMessage(504, request, header, keepAlive);
+    }
+
+    /**
+     * Returns a "500 Internal Server Error" HTTP response.
+     * The connection is closed after this response.
      *
-     * @param httpVersion The HTTP version of the request.
-     * @param file The requested file.
-     * @throws Throws an IOException if an I/O error occurs when sending the HTTP response.
+     * @param header The header writer of the connection.
      */
-    public static String getFileNotFoundMessage(String httpVersion, String resourceName) throws IOException {
-        StringBuilder msg = new StringBuilder();
-        msg.append(httpVersion + " 404 Not found\n");
-        msg.append("Server: Simple HTTP web server\n");
-        msg.append("Content-Type: text/html; charset=utf-8\n");
-        msg.append("Content-Disposition: inline; filename=\"" + resourceName + "\"\n");
-        msg.append("\n");
-        HtmlFile htmlFile = new HtmlFile(404);
-        msg.append(htmlFile.getHtmlPage());
-        msg.append("\n");
-        return msg.toString();
+    public ResponseMessage getServerErrorMessage(HeaderWriter header) {
+        return getMessage(500, "HTTP/1.1", header, false, false);
     }
 
     /**
-     * Sends a "500 Internal Server Error" HTTP response.
-     * The content of the message is a HTML document which represents the error.
+     * Returns a "400 Bad Request" HTTP response.
+     * The connection is closed after this response.
      *
-     * @throws Throws an IOException if an I/O error occurs when sending the HTTP response.
+     * @param header The header writer of the connection.
      */
-    public static String getServerErrorMessage() throws IOException {
-        StringBuilder msg = new StringBuilder();
-        msg.append("HTTP/1.1 500 Internal Server Error\n");
-        msg.append("Server: Simple HTTP web server\n");
-        msg.append("Content-Type: text/html; charset=utf-8\n");
-        msg.append("\n");
-        HtmlFile htmlFile = new HtmlFile(500);
-        msg.append(htmlFile.getHtmlPage());
-        msg.append("\n");
-        return msg.toString();
+    public ResponseMessage getBadRequestMessage(HeaderWriter header) {
+        return getMessage(400, "HTTP/1.1", header, false, false);
     }
 
     /**
-     * Sends a "400 Bad Request" HTTP response.
-     * The content of the message is a HTML document which represents the error.
+     * Returns a "431 Request Header Fields Too Large" HTTP response.
+     * The connection is closed after this response.
      *
-     * @throws Throws an IOException if an I/O error occurs when sending the HTTP response.
+     * @param header The header writer of the connection.
      */
-    public static String getBadRequestMessage() throws IOException {
-        StringBuilder msg = new StringBuilder();
-        msg.append("HTTP/1.1 400 Bad Request\n");
-        msg.append("Server: Simple HTTP web server\n");
-        msg.append("Content-Type: text/html; charset=utf-8\n");
-        msg.append("\n");
-        HtmlFile htmlFile = new HtmlFile(400);
-        msg.append(htmlFile.getHtmlPage());
-        msg.append("\n");
-        return msg.toString();
+    public ResponseMessage getRequestHeaderTooLargeMessage(HeaderWriter header) {
+        return getMessage(431, "HTTP/1.1", header, false, false);
+    }
+
+    /**
+     * Returns a "503 Service Unavailable" HTTP response.
+     * The connection is closed after this response.
+     *
+     * @param header The header writer of the connection.
+     */
+    public ResponseMessage getServiceUnavailableMessage(HeaderWriter header) {
+        return getMessage(503, "HTTP/1.1", header, false, false);
+    }
+
+    /**
+     * The response to a HEAD request consists of the header only.
+     */
+    private ResponseMessage getMessage(int statusCode, RequestMessage request, HeaderWriter header, boolean keepAlive) {
+        boolean headOnly = request.getMethod() == Method.HEAD;
+        return getMessage(statusCode, request.getHttpVersion(), header, keepAlive, headOnly);
+    }
+
+    /**
+     * @param statusCode The status code of the error.
+     * @param httpVersion The HTTP version of the request, all versions except HTTP/1.0 are answered with HTTP/1.1.
+     * @param header The header writer of the connection.
+     * @param keepAlive True if the connection stays open after the response.
+     * @param headOnly True if the response has no body.
+     */
+    public ResponseMessage getMessage(int statusCode, String httpVersion, HeaderWriter header, boolean keepAlive,
+            boolean headOnly) {
+        ErrorMessage message = messages[statusCode][getVariant(httpVersion, keepAlive)];
+        ResponseMessage response = new ResponseMessage(header.start(message.header).finish());
+        if (!headOnly) {
+            response.addPart(new BufferPart(message.body));
+        }
+        return response;
+    }
+
+    private void addMessages(int statusCode, String headers, String directory) {
+        byte[] body = (new HtmlFile(statusCode, directory).getHtmlPage() + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer bodyBuffer = ByteBuffer.allocateDirect(body.length);
+        bodyBuffer.put(body).flip();
+        HeaderWriter header = new HeaderWriter();
+        messages[statusCode] = new ErrorMessage[HTTP_VERSIONS.length * 2];
+        for (String httpVersion : HTTP_VERSIONS) {
+            for (boolean keepAlive : new boolean[] {true, false}) {
+                header.start(httpVersion, statusCode);
+                header.append(HeaderWriter.ascii("Content-Type: text/html; charset=utf-8\r\n"));
+                header.append(HeaderWriter.ascii(headers));
+                header.header(CONTENT_LENGTH, body.length);
+                header.connection(keepAlive);
+                messages[statusCode][getVariant(httpVersion, keepAlive)] =
+                        new ErrorMessage(header.toFragment(), bodyBuffer.asReadOnlyBuffer());
+            }
+        }
+    }
+
+    private static int getVariant(String httpVersion, boolean keepAlive) {
+        return ("HTTP/1.0".equals(httpVersion) ? 0 : 2) + (keepAlive ? 1 : 0);
+    }
+
+    /**
+     * The pre-encoded header lines of an error message and its body in a read-only direct buffer.
+     */
+    private static class ErrorMessage {
+
+        private byte[] header;
+        private ByteBuffer body;
+
+        private ErrorMessage(byte[] header, ByteBuffer body) {
+            this.header = header;
+            this.body = body;
+        }
     }
 }
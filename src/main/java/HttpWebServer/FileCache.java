@@ -0,0 +1,318 @@
+package httpwebserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory cache of small static files. An entry holds the file content in an
+ * off-heap ByteBuffer together with the pre-encoded header lines of its responses, only the
+ * Date header is added per response, so a hit is answered without any file I/O. The cache is
+ * bounded by the total size of its entries. A hit takes no lock, it only marks its entry as
+ * referenced; when the cache is full, one thread sweeps the entries like a clock and evicts those
+ * which were not referenced since the previous sweep.
+ * An entry is revalidated against the last modified time, the size and the file key
+ * (the inode on Unix) of the file when it was not checked for the revalidation interval.
+ * A textual file is also kept gzip encoded, read from a precompressed sibling file or
+ * compressed once when the file is loaded, the encoded content counts towards the size.
+ *
+ * @param config The configuration of the server.
+ * @param mimeTypes The content types of the files.
+ * @param cacheControlRules The rules for the Cache-Control header of the cached files.
+ * @param compression Selects and computes the gzip encoded variants.
+ */
+public class FileCache {
+
+    private long maxBytes;
+    private long maxFileSize;
+    private long revalidateMillis;
+    private boolean weakETags;
+    private MimeTypes mimeTypes;
+    private CacheControlRules cacheControlRules;
+    private Compression compression;
+    private AtomicLong totalBytes = new AtomicLong(0);
+    private Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private AtomicBoolean evicting = new AtomicBoolean(false);
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+    private LongAdder evictions = new LongAdder();
+
+    public FileCache(ServerConfig config, MimeTypes mimeTypes, CacheControlRules cacheControlRules,
+            Compression compression) {
+        this.maxBytes = config.getFileCacheMaxBytes();
+        this.maxFileSize = config.getFileCacheMaxFileSize();
+        this.revalidateMillis = config.getFileCacheRevalidateMillis();
+        this.weakETags = config.isWeakETags();
+        this.mimeTypes = mimeTypes;
+        this.cacheControlRules = cacheControlRules;
+        this.compression = compression;
+    }
+
+    /**
+     * Looks up the response for a requested resource. A fresh entry is used without
+     * checking the file system at all.
+     *
+     * @param request The request.
+     * @param header The header writer of the connection.
+     * @param keepAlive True if the connection stays open after the response.
+     * @return Returns the response message or null if the resource is not cached.
+     * @throws Throws an IOException if an I/O error occurs when revalidating the entry.
+     */
+    public ResponseMessage getResponseMessage(RequestMessage request, HeaderWriter header, boolean keepAlive)
+            throws IOException {
+        if (!isCacheable(request)) {
+            return null;
+        }
+        String key = request.getResource();
+        Entry entry = get(key);
+        if (entry == null || !isValid(key, entry)) {
+            return null;
+        }
+        hits.increment();
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.getResponseMessage(request, header, keepAlive, compression.acceptsGzip(request));
+    }
+
+    /**
+     * Loads a file into the cache and returns the response for it. Files which are
+     * larger than the maximum file size are not cached. A HEAD request does not load
+     * the file, its response has no body and is computed from the file attributes.
+     *
+     * @param request The request.
+     * @param header The header writer of the connection.
+     * @param file The requested file.
+     * @param keepAlive True if the connection stays open after the response.
+     * @return Returns the response message or null if the file is not cacheable.
+     * @throws Throws an IOException if an I/O error occurs when reading the file.
+     */
+    public ResponseMessage load(RequestMessage request, HeaderWriter header, File file, boolean keepAlive)
+            throws IOException {
+        if (!isCacheable(request)) {
+            return null;
+        }
+        misses.increment();
+        if (request.getMethod() == Method.HEAD) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        if (!attributes.isRegularFile() || attributes.size() > maxFileSize || attributes.size() > maxBytes) {
+            return null;
+        }
+        String cacheControl = cacheControlRules.getCacheControl(request.getResource());
+        Entry entry = new Entry(file, mimeTypes.getType(file.getName()), attributes, new Validators(attributes.size(),
+                attributes.lastModifiedTime().toMillis(), weakETags), cacheControl);
+        entry.loadEncodedContent(compression);
+        put(request.getResource(), entry);
+        return entry.getResponseMessage(request, header, keepAlive, compression.acceptsGzip(request));
+    }
+
+    private boolean isCacheable(RequestMessage request) {
+        String httpVersion = request.getHttpVersion();
+        return maxBytes > 0
+            && ("HTTP/1.1".equals(httpVersion) || "HTTP/1.0".equals(httpVersion) || "HTTP/2.0".equals(httpVersion));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    private Entry get(String key) {
+        return entries.get(key);
+    }
+
+    private void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            totalBytes.addAndGet(-previous.size);
+        }
+        totalBytes.addAndGet(entry.size);
+        if (totalBytes.get() > maxBytes && evicting.compareAndSet(false, true)) {
+            try {
+                evict(key);
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Evicts entries until the cache fits into its size again. A referenced entry, and the entry which
+     * was just put, gets a second chance: the first passes only clear its mark, the last pass evicts
+     * in any order.
+     *
+     * @param key The key of the entry which was just put.
+     */
+    private void evict(String key) {
+        for (int pass = 0; pass < 3 && totalBytes.get() > maxBytes; pass++) {
+            Iterator<Map.Entry<String, Entry>> candidates = entries.entrySet().iterator();
+            while (totalBytes.get() > maxBytes && candidates.hasNext()) {
+                Map.Entry<String, Entry> candidate = candidates.next();
+                Entry entry = candidate.getValue();
+                if (pass < 2 && (entry.referenced || candidate.getKey().equals(key))) {
+                    entry.referenced = false;
+                    continue;
+                }
+                remove(candidate.getKey(), entry);
+            }
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            totalBytes.addAndGet(-entry.size);
+            evictions.increment();
+        }
+    }
+
+    private boolean isValid(String key, Entry entry) throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - entry.checkedAt < revalidateMillis) {
+            return true;
+        }
+        Path path = entry.file.toPath();
+        if (Files.isRegularFile(path)) {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (entry.isUnchanged(attributes)) {
+                entry.checkedAt = now;
+                return true;
+            }
+        }
+        remove(key, entry);
+        return false;
+    }
+
+    /**
+     * A cached file. The response headers depend on the HTTP version, the connection
+     * handling, the content coding and whether the request is a successful conditional
+     * request (304), they are rendered once per combination.
+     */
+    private static class Entry {
+
+        private File file;
+        private MimeTypes.MimeType type;
+        private ByteBuffer content;
+        private long lastModified;
+        private long length;
+        private Object fileKey;
+        private long size;
+        private Validators validators;
+        private ByteBuffer encodedContent;
+        private Validators encodedValidators;
+        private File precompressed;
+        private long precompressedLastModified;
+        private String cacheControl;
+        private volatile long checkedAt = System.currentTimeMillis();
+        private volatile boolean referenced = false;
+        private AtomicReferenceArray<byte[]> headers = new AtomicReferenceArray<>(24);
+
+        private Entry(File file, MimeTypes.MimeType type, BasicFileAttributes attributes, Validators validators,
+                String cacheControl) throws IOException {
+            this.file = file;
+            this.type = type;
+            this.validators = validators;
+            this.cacheControl = cacheControl;
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.length = attributes.size();
+            this.fileKey = attributes.fileKey();
+            this.content = readContent(file.toPath(), (int) length);
+            this.size = length;
+        }
+
+        private void loadEncodedContent(Compression compression) throws IOException {
+            File sibling = compression.findPrecompressed(file);
+            if (sibling != null && sibling.length() <= length) {
+                precompressed = sibling;
+                precompressedLastModified = sibling.lastModified();
+                encodedContent = readContent(sibling.toPath(), (int) sibling.length());
+            } else if (compression.isCompressible(type.getValue(), length)) {
+                encodedContent = ByteBuffer.wrap(compression.compress(content)).asReadOnlyBuffer();
+            } else {
+                return;
+            }
+            encodedValidators = validators.getEncodedVariant("gzip");
+            size += encodedContent.remaining();
+        }
+
+        private static ByteBuffer readContent(Path path, int length) throws IOException {
+            ByteBuffer content = ByteBuffer.allocateDirect(length);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (content.hasRemaining() && channel.read(content) >= 0) {
+                    // Reads until the buffer is full or the file ends
+                }
+            }
+            content.flip();
+            return content.asReadOnlyBuffer();
+        }
+
+        private boolean isUnchanged(BasicFileAttributes attributes) {
+            return attributes.lastModifiedTime().toMillis() == lastModified
+                && attributes.size() == length
+                && (fileKey == null || fileKey.equals(attributes.fileKey()))
+                && (precompressed == null || precompressed.lastModified() == precompressedLastModified);
+        }
+
+        private ResponseMessage getResponseMessage(RequestMessage request, HeaderWriter header, boolean keepAlive,
+                boolean acceptsGzip) {
+            boolean encoded = acceptsGzip && encodedContent != null;
+            boolean notModified = (encoded ? encodedValidators : validators).isNotModified(request);
+            writeHeader(header, request.getHttpVersion(), keepAlive, notModified, encoded);
+            ResponseMessage message = new ResponseMessage(header.finish());
+            if (request.getMethod() != Method.HEAD && !notModified) {
+                message.addPart(new BufferPart(encoded ? encodedContent : content));
+            }
+            return message;
+        }
+
+        /**
+         * Writes the header lines of a variant, they are encoded when the variant is requested first.
+         * The fragments are published through an atomic array, since other threads read them without a lock.
+         */
+        private void writeHeader(HeaderWriter header, String httpVersion, boolean keepAlive, boolean notModified,
+                boolean encoded) {
+            int version = "HTTP/1.1".equals(httpVersion) ? 1 : "HTTP/2.0".equals(httpVersion) ? 2 : 0;
+            int variant = (encoded ? 12 : 0) + (notModified ? 6 : 0) + version * 2 + (keepAlive ? 1 : 0);
+            byte[] fragment = headers.get(variant);
+            if (fragment != null) {
+                header.start(fragment);
+                return;
+            }
+            boolean vary = encodedContent != null;
+            Validators variantValidators = encoded ? encodedValidators : validators;
+            if (notModified) {
+                ResponseHeader.writeNotModifiedHeader(header, httpVersion, keepAlive, variantValidators, cacheControl,
+                        vary);
+            } else {
+                ByteBuffer body = encoded ? encodedContent : content;
+                ResponseHeader.writeResponseHeader(header, httpVersion, file, type, body.remaining(), keepAlive,
+                        variantValidators, cacheControl, encoded ? "gzip" : null, vary);
+            }
+            headers.set(variant, header.toFragment());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A region of a file which is part of a response message. The content is not read
+ * into memory, it is transferred with FileChannel.transferTo, which lets the operating
+ * system copy the file directly to the socket (sendfile) where this is supported.
+ * The file is opened when the part is written for the first time.
+ *
+ * @param file The file.
+ * @param offset The position of the first byte of the region in the file.
+ * @param length The length of the region in bytes.
+ */
+public class FilePart implements MessagePart {
+
+    private Path file;
+    private long position;
+    private long end;
+    private long length;
+    private FileChannel fileChannel;
+
+    public FilePart(Path file, long offset, long length) {
+        this.file = file;
+        this.position = offset;
+        this.end = offset + length;
+        this.length = length;
+    }
+
+    @Override
+    public long getLength() {
+        return this.length;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        if (position >= end) {
+            return true;
+        }
+        if (fileChannel == null) {
+            fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+        }
+        long transferred = fileChannel.transferTo(position, end - position, channel);
+        if (transferred == 0 && position >= fileChannel.size()) {
+            throw new IOException(file + " was truncated while it was sent");
+        }
+        position += transferred;
+        return position >= end;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (fileChannel != null) {
+                fileChannel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
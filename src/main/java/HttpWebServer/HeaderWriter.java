@@ -0,0 +1,253 @@
+package httpwebserver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the header of a HTTP response as ASCII bytes into a buffer, which is reused for
+ * every response of a connection. Status lines, header names and line ends are encoded
+ * once, numbers are written digit by digit, so writing a header allocates nothing but
+ * the ByteBuffer view which is returned by finish(). Every header ends with the Date header,
+ * its value is formatted at most once per second for all connections.
+ * The header of the previous response is overwritten when the next one is started,
+ * a connection starts the next response after the previous one was written completely.
+ */
+public class HeaderWriter {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[] CRLF = ascii("\r\n");
+    private static final byte[] SERVER = ascii("Server: Simple HTTP web server\r\n");
+    private static final byte[] CONNECTION_KEEP_ALIVE = ascii("Connection: keep-alive\r\n");
+    private static final byte[] CONNECTION_CLOSE = ascii("Connection: close\r\n");
+    private static final int[] STATUS_CODES = {200, 206, 304, 400, 404, 405, 416, 429, 431, 500, 502, 503, 504};
+    private static final byte[][][] STATUS_LINES = new byte[3][600][];
+
+    private static volatile DateLine dateLine = new DateLine(System.currentTimeMillis() / 1000);
+
+    static {
+        for (int statusCode : STATUS_CODES) {
+            STATUS_LINES[0][statusCode] = getStatusLine("HTTP/1.0", statusCode);
+            STATUS_LINES[1][statusCode] = getStatusLine("HTTP/1.1", statusCode);
+            STATUS_LINES[2][statusCode] = getStatusLine("HTTP/2.0", statusCode);
+        }
+    }
+
+    private byte[] buffer;
+    private int length = 0;
+
+    public HeaderWriter() {
+        this.buffer = new byte[512];
+    }
+
+    /**
+     * Starts a new header with the status line and the Server header.
+     *
+     * @param httpVersion The HTTP version of the request.
+     * @param statusCode The status code of the response.
+     * @return Returns this writer.
+     */
+    public HeaderWriter start(String httpVersion, int statusCode) {
+        length = 0;
+        byte[] statusLine = null;
+        if (statusCode > 0 && statusCode < 600) {
+            if ("HTTP/1.1".equals(httpVersion)) {
+                statusLine = STATUS_LINES[1][statusCode];
+            } else if ("HTTP/1.0".equals(httpVersion)) {
+                statusLine = STATUS_LINES[0][statusCode];
+            } else if ("HTTP/2.0".equals(httpVersion)) {
+                statusLine = STATUS_LINES[2][statusCode];
+            }
+        }
+        if (statusLine == null) {
+            statusLine = getStatusLine(httpVersion, statusCode);
+        }
+        return append(statusLine).append(SERVER);
+    }
+
+    /**
+     * Starts a new header with lines which were written before, for example by a cache.
+     *
+     * @param fragment The pre-encoded status line and header lines.
+     * @return Returns this writer.
+     */
+    public HeaderWriter start(byte[] fragment) {
+        length = 0;
+        return append(fragment);
+    }
+
+    /**
+     * @param line A pre-encoded header line which ends with CRLF.
+     * @return Returns this writer.
+     */
+    public HeaderWriter append(byte[] line) {
+        ensureCapacity(line.length);
+        System.arraycopy(line, 0, buffer, length, line.length);
+        length += line.length;
+        return this;
+    }
+
+    /**
+     * @param name The pre-encoded name of the header with the colon and the space, for example "ETag: ".
+     * @param value The value of the header.
+     * @return Returns this writer.
+     */
+    public HeaderWriter header(byte[] name, String value) {
+        return header(name, value, EMPTY);
+    }
+
+    /**
+     * Writes a header whose value consists of a constant beginning, a variable part
+     * and a constant end, for example a quoted file name.
+     *
+     * @param prefix The pre-encoded name of the header and the beginning of the value.
+     * @param value The variable part of the value.
+     * @param suffix The pre-encoded end of the value without the line end.
+     * @return Returns this writer.
+     */
+    public HeaderWriter header(byte[] prefix, String value, byte[] suffix) {
+        append(prefix);
+        int valueLength = value.length();
+        ensureCapacity(valueLength);
+        for (int i = 0; i < valueLength; i++) {
+            char c = value.charAt(i);
+            if (c > 0x7f) {
+                // Header values should be ASCII, other characters are encoded as UTF-8
+                length -= i;
+                append(value.getBytes(StandardCharsets.UTF_8));
+                break;
+            }
+            buffer[length++] = (byte) c;
+        }
+        return append(suffix).append(CRLF);
+    }
+
+    /**
+     * @param name The pre-encoded name of the header with the colon and the space, for example "Content-Length: ".
+     * @param value The value of the header, it is not negative.
+     * @return Returns this writer.
+     */
+    public HeaderWriter header(byte[] name, long value) {
+        append(name);
+        ensureCapacity(20 + CRLF.length);
+        int end = length + digits(value);
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+        return append(CRLF);
+    }
+
+    /**
+     * @param keepAlive True if the connection stays open after the response.
+     * @return Returns this writer.
+     */
+    public HeaderWriter connection(boolean keepAlive) {
+        return append(keepAlive ? CONNECTION_KEEP_ALIVE : CONNECTION_CLOSE);
+    }
+
+    /**
+     * @return Returns a copy of the lines which were written since the header was started,
+     *         without the Date header and the empty line, to start a header with it later.
+     */
+    public byte[] toFragment() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Ends the header with the Date header and the empty line.
+     *
+     * @return Returns the header, it is valid until the next header is started.
+     */
+    public ByteBuffer finish() {
+        long now = System.currentTimeMillis() / 1000;
+        DateLine date = dateLine;
+        if (date.second != now) {
+            date = new DateLine(now);
+            dateLine = date;
+        }
+        append(date.line).append(CRLF);
+        return ByteBuffer.wrap(buffer, 0, length);
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            // A response which still refers to the old array keeps it
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+        }
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static byte[] getStatusLine(String httpVersion, int statusCode) {
+        return ascii(httpVersion + " " + statusCode + " " + getReasonPhrase(statusCode) + "\r\n");
+    }
+
+    /**
+     * @param statusCode The status code of a response.
+     * @return Returns the reason phrase of the status code.
+     */
+    public static String getReasonPhrase(int statusCode) {
+        switch (statusCode) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 303: return "See Other";
+            case 304: return "Not Modified";
+            case 307: return "Temporary Redirect";
+            case 308: return "Permanent Redirect";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 411: return "Length Required";
+            case 413: return "Content Too Large";
+            case 415: return "Unsupported Media Type";
+            case 416: return "Range Not Satisfiable";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 502: return "Bad Gateway";
+            case 503: return "Service Unavailable";
+            case 504: return "Gateway Timeout";
+            default: return "Unknown";
+        }
+    }
+
+    /**
+     * @param text A text which consists of ASCII characters.
+     * @return Returns the text encoded as ASCII.
+     */
+    public static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The Date header line of a second.
+     */
+    private static class DateLine {
+
+        private long second;
+        private byte[] line;
+
+        private DateLine(long second) {
+            this.second = second;
+            this.line = ascii("Date: " + Validators.formatDate(second * 1000) + "\r\n");
+        }
+    }
+}
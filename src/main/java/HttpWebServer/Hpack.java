@@ -0,0 +1,415 @@
+package httpwebserver;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HPACK, the header compression of HTTP/2 (RFC 7541). A header block consists of
+ * references to the static table or to the dynamic table of the connection, and of
+ * literal fields whose strings are optionally Huffman encoded. The Decoder reads the
+ * header blocks of the requests, the Encoder writes the header blocks of the responses;
+ * both keep their own dynamic table, which mirrors the table of the client.
+ * Header names and values are handled as octets, one character per byte.
+ */
+public class Hpack {
+
+    private static final String[][] STATIC_TABLE = {
+        {":authority", ""},
+        {":method", "GET"},
+        {":method", "POST"},
+        {":path", "/"},
+        {":path", "/index.html"},
+        {":scheme", "http"},
+        {":scheme", "https"},
+        {":status", "200"},
+        {":status", "204"},
+        {":status", "206"},
+        {":status", "304"},
+        {":status", "400"},
+        {":status", "404"},
+        {":status", "500"},
+        {"accept-charset", ""},
+        {"accept-encoding", "gzip, deflate"},
+        {"accept-language", ""},
+        {"accept-ranges", ""},
+        {"accept", ""},
+        {"access-control-allow-origin", ""},
+        {"age", ""},
+        {"allow", ""},
+        {"authorization", ""},
+        {"cache-control", ""},
+        {"content-disposition", ""},
+        {"content-encoding", ""},
+        {"content-language", ""},
+        {"content-length", ""},
+        {"content-location", ""},
+        {"content-range", ""},
+        {"content-type", ""},
+        {"cookie", ""},
+        {"date", ""},
+        {"etag", ""},
+        {"expect", ""},
+        {"expires", ""},
+        {"from", ""},
+        {"host", ""},
+        {"if-match", ""},
+        {"if-modified-since", ""},
+        {"if-none-match", ""},
+        {"if-range", ""},
+        {"if-unmodified-since", ""},
+        {"last-modified", ""},
+        {"link", ""},
+        {"location", ""},
+        {"max-forwards", ""},
+        {"proxy-authenticate", ""},
+        {"proxy-authorization", ""},
+        {"range", ""},
+        {"referer", ""},
+        {"refresh", ""},
+        {"retry-after", ""},
+        {"server", ""},
+        {"set-cookie", ""},
+        {"strict-transport-security", ""},
+        {"transfer-encoding", ""},
+        {"user-agent", ""},
+        {"vary", ""},
+        {"via", ""},
+        {"www-authenticate", ""}
+    };
+
+    private static final Map<String, Integer> STATIC_NAMES = new HashMap<>();
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_NAMES.put(STATIC_TABLE[i][0], i + 1);
+        }
+    }
+
+    /**
+     * Decodes the header blocks which a client sends on a connection.
+     *
+     * @param maxTableSize The maximum size of the dynamic table, as announced by SETTINGS_HEADER_TABLE_SIZE.
+     * @param maxHeaderListSize The maximum size of the decoded header list of a request.
+     */
+    public static class Decoder {
+
+        private DynamicTable table;
+        private int maxTableSize;
+        private int maxHeaderListSize;
+        private boolean headerListTooLarge = false;
+
+        public Decoder(int maxTableSize, int maxHeaderListSize) {
+            this.table = new DynamicTable(maxTableSize);
+            this.maxTableSize = maxTableSize;
+            this.maxHeaderListSize = maxHeaderListSize;
+        }
+
+        /**
+         * Decodes a complete header block. A block whose header list exceeds the maximum size is decoded
+         * completely, to keep the dynamic table in sync, but its fields are dropped.
+         *
+         * @param block The header block of a HEADERS frame and its CONTINUATION frames.
+         * @param length The length of the header block in bytes.
+         * @return Returns the names and values of the header fields in the order of the block.
+         * @throws Throws a Http2Exception if the header block is malformed.
+         */
+        public List<String[]> decode(byte[] block, int length) throws Http2Exception {
+            List<String[]> fields = new ArrayList<>();
+            long headerListSize = 0;
+            headerListTooLarge = false;
+            int[] position = {0};
+            boolean fieldSeen = false;
+            while (position[0] < length) {
+                int first = block[position[0]] & 0xff;
+                String[] field;
+                if ((first & 0x80) != 0) {
+                    field = getField(readInteger(block, position, length, 7));
+                } else if ((first & 0xc0) == 0x40) {
+                    field = readLiteral(block, position, length, 6);
+                    table.add(field[0], field[1]);
+                } else if ((first & 0xe0) == 0x20) {
+                    if (fieldSeen) {
+                        throw Http2Exception.compressionError("Dynamic table size update after a header field");
+                    }
+                    int size = readInteger(block, position, length, 5);
+                    if (size > maxTableSize) {
+                        throw Http2Exception.compressionError("Dynamic table size update exceeds the maximum");
+                    }
+                    table.setMaxSize(size);
+                    continue;
+                } else {
+                    field = readLiteral(block, position, length, 4);
+                }
+                fieldSeen = true;
+                headerListSize += field[0].length() + field[1].length() + 32;
+                if (headerListSize > maxHeaderListSize) {
+                    headerListTooLarge = true;
+                } else {
+                    fields.add(field);
+                }
+            }
+            if (headerListTooLarge) {
+                fields.clear();
+            }
+            return fields;
+        }
+
+        /**
+         * @return Returns true if the header list of the last decoded block exceeded the maximum size.
+         */
+        public boolean isHeaderListTooLarge() {
+            return this.headerListTooLarge;
+        }
+
+        private String[] getField(int index) throws Http2Exception {
+            if (index <= 0) {
+                throw Http2Exception.compressionError("Invalid index 0");
+            }
+            if (index <= STATIC_TABLE.length) {
+                return STATIC_TABLE[index - 1];
+            }
+            String[] field = table.get(index - STATIC_TABLE.length);
+            if (field == null) {
+                throw Http2Exception.compressionError("Invalid index " + index);
+            }
+            return field;
+        }
+
+        private String[] readLiteral(byte[] block, int[] position, int length, int prefixBits)
+                throws Http2Exception {
+            int nameIndex = readInteger(block, position, length, prefixBits);
+            String name = nameIndex == 0 ? readString(block, position, length) : getField(nameIndex)[0];
+            return new String[] {name, readString(block, position, length)};
+        }
+
+        private static String readString(byte[] block, int[] position, int length) throws Http2Exception {
+            if (position[0] >= length) {
+                throw Http2Exception.compressionError("Truncated header block");
+            }
+            boolean huffman = (block[position[0]] & 0x80) != 0;
+            int stringLength = readInteger(block, position, length, 7);
+            int start = position[0];
+            if (stringLength > length - start) {
+                throw Http2Exception.compressionError("Truncated header block");
+            }
+            position[0] += stringLength;
+            if (huffman) {
+                return Huffman.decode(block, start, stringLength);
+            }
+            return new String(block, start, stringLength, StandardCharsets.ISO_8859_1);
+        }
+
+        private static int readInteger(byte[] block, int[] position, int length, int prefixBits)
+                throws Http2Exception {
+            int mask = (1 << prefixBits) - 1;
+            int value = block[position[0]++] & mask;
+            if (value < mask) {
+                return value;
+            }
+            for (int shift = 0; shift <= 28; shift += 7) {
+                if (position[0] >= length) {
+                    throw Http2Exception.compressionError("Truncated header block");
+                }
+                int next = block[position[0]++] & 0xff;
+                value += (next & 0x7f) << shift;
+                if (value < 0) {
+                    break;
+                }
+                if ((next & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw Http2Exception.compressionError("Integer overflow in a header block");
+        }
+    }
+
+    /**
+     * Encodes the header blocks of the responses of a connection. The fields which repeat across
+     * responses, like Server, Date and Content-Type, are added to the dynamic table and sent as a
+     * single byte afterwards; the fields which differ per file are sent as literals without indexing.
+     * The blocks have to be sent in the order in which they were encoded.
+     */
+    public static class Encoder {
+
+        private static final String[] INDEXED_NAMES = {
+            "server", "date", "content-type", "cache-control", "vary", "accept-ranges", "content-encoding"
+        };
+
+        private DynamicTable table = new DynamicTable(4096);
+        private int pendingTableSize = -1;
+
+        /**
+         * Applies the SETTINGS_HEADER_TABLE_SIZE of the client, the next block starts with a size update.
+         *
+         * @param maxTableSize The maximum size of the dynamic table which the client accepts.
+         */
+        public void setMaxTableSize(int maxTableSize) {
+            int size = Math.min(maxTableSize, 4096);
+            if (size != table.maxSize) {
+                pendingTableSize = size;
+            }
+        }
+
+        /**
+         * @param fields The names and values of the header fields, the names in lower case.
+         * @return Returns the header block.
+         */
+        public byte[] encode(List<String[]> fields) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+            if (pendingTableSize >= 0) {
+                table.setMaxSize(pendingTableSize);
+                writeInteger(out, 0x20, 5, pendingTableSize);
+                pendingTableSize = -1;
+            }
+            for (String[] field : fields) {
+                encode(field[0], field[1], out);
+            }
+            return out.toByteArray();
+        }
+
+        private void encode(String name, String value, ByteArrayOutputStream out) {
+            Integer staticIndex = STATIC_NAMES.get(name);
+            int nameIndex = staticIndex == null ? 0 : staticIndex;
+            if (staticIndex != null) {
+                for (int i = staticIndex - 1; i < STATIC_TABLE.length && STATIC_TABLE[i][0].equals(name); i++) {
+                    if (STATIC_TABLE[i][1].equals(value)) {
+                        writeInteger(out, 0x80, 7, i + 1);
+                        return;
+                    }
+                }
+            }
+            int dynamicIndex = table.indexOf(name, value);
+            if (dynamicIndex > 0) {
+                writeInteger(out, 0x80, 7, STATIC_TABLE.length + dynamicIndex);
+                return;
+            }
+            if (isIndexed(name)) {
+                writeInteger(out, 0x40, 6, nameIndex);
+                table.add(name, value);
+            } else {
+                writeInteger(out, 0x00, 4, nameIndex);
+            }
+            if (nameIndex == 0) {
+                writeString(out, name);
+            }
+            writeString(out, value);
+        }
+
+        private static boolean isIndexed(String name) {
+            for (String indexedName : INDEXED_NAMES) {
+                if (indexedName.equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static void writeString(ByteArrayOutputStream out, String text) {
+            int encodedLength = Huffman.getEncodedLength(text);
+            if (encodedLength < text.length()) {
+                writeInteger(out, 0x80, 7, encodedLength);
+                Huffman.encode(text, out);
+            } else {
+                writeInteger(out, 0x00, 7, text.length());
+                for (int i = 0; i < text.length(); i++) {
+                    out.write(text.charAt(i));
+                }
+            }
+        }
+
+        private static void writeInteger(ByteArrayOutputStream out, int flags, int prefixBits, int value) {
+            int mask = (1 << prefixBits) - 1;
+            if (value < mask) {
+                out.write(flags | value);
+                return;
+            }
+            out.write(flags | mask);
+            value -= mask;
+            while (value >= 0x80) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+
+    /**
+     * The dynamic table, a ring of the most recently added fields. Index 1 is the newest field,
+     * the oldest fields are evicted when the size of the fields exceeds the maximum size.
+     * The size of a field is the length of its name and value plus 32.
+     */
+    private static class DynamicTable {
+
+        private String[][] fields = new String[16][];
+        private int newest = 0;
+        private int count = 0;
+        private int size = 0;
+        private int maxSize;
+
+        private DynamicTable(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private String[] get(int index) {
+            if (index > count) {
+                return null;
+            }
+            return fields[(newest - index + 1 + fields.length) % fields.length];
+        }
+
+        /**
+         * @return Returns the index of the field or 0 if the table does not contain it.
+         */
+        private int indexOf(String name, String value) {
+            for (int index = 1; index <= count; index++) {
+                String[] field = get(index);
+                if (field[0].equals(name) && field[1].equals(value)) {
+                    return index;
+                }
+            }
+            return 0;
+        }
+
+        private void add(String name, String value) {
+            int fieldSize = name.length() + value.length() + 32;
+            if (fieldSize > maxSize) {
+                // A field which is larger than the table empties it
+                count = 0;
+                size = 0;
+                return;
+            }
+            while (size + fieldSize > maxSize) {
+                evictOldest();
+            }
+            if (count == fields.length) {
+                String[][] grown = new String[fields.length * 2][];
+                for (int index = count; index >= 1; index--) {
+                    grown[count - index] = get(index);
+                }
+                fields = grown;
+                newest = count - 1;
+            }
+            newest = (newest + 1) % fields.length;
+            fields[newest] = new String[] {name, value};
+            count++;
+            size += fieldSize;
+        }
+
+        private void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            while (size > maxSize) {
+                evictOldest();
+            }
+        }
+
+        private void evictOldest() {
+            String[] oldest = get(count);
+            size -= oldest[0].length() + oldest[1].length() + 32;
+            count--;
+        }
+    }
+}
@@ -1,26 +1,58 @@
 package httpwebserver;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Loads the HTML page of an error. A page from a custom directory is preferred,
+ * otherwise the built-in page of the classpath is used.
+ *
+ * @param httpResponseStatusCode The status code of the error, the page is named after it, for example 404.html.
+ * @param directory The directory with custom error pages or null.
+ */
 public class HtmlFile {
 
     private InputStream in;
     private String htmlPage;
 
     public HtmlFile(int httpResponseStatusCode) {
-        this.in = HtmlFile.class.getClassLoader().getResourceAsStream(httpResponseStatusCode + ".html");
+        this(httpResponseStatusCode, null);
+    }
+
+    public HtmlFile(int httpResponseStatusCode, String directory) {
+        this.in = openHtmlFile(httpResponseStatusCode + ".html", directory);
         loadHtmlPage();
     }
 
     public String getHtmlPage() {
         return this.htmlPage;
     } 
+
+    private static InputStream openHtmlFile(String fileName, String directory) {
+        if (directory != null) {
+            File customPage = new File(directory, fileName);
+            try {
+                if (customPage.isFile()) {
+                    return new FileInputStream(customPage);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return HtmlFile.class.getClassLoader().getResourceAsStream(fileName);
+    }
     
     private void loadHtmlPage() {
         String content = "";
+        if (in == null) {
+            this.htmlPage = content;
+            return;
+        }
         try {
             content = readHtmlFile();
         } catch(IOException e) {
@@ -31,8 +63,9 @@ public class HtmlFile {
 
     private String readHtmlFile() throws IOException {
         StringBuilder htmlPageContent = new StringBuilder();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-        reader.lines().forEach(line -> htmlPageContent.append(line));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            reader.lines().forEach(line -> htmlPageContent.append(line));
+        }
         return htmlPageContent.toString();
     }
 }
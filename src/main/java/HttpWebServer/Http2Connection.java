@@ -0,0 +1,1275 @@
+package httpwebserver;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Http2Connection serves a connection with cleartext HTTP/2 (h2c), after the ClientHandler
+ * received the connection preface of a client with prior knowledge, or a HTTP/1.1 request
+ * with "Upgrade: h2c". The thread of the ClientHandler reads the frames and decodes the header
+ * blocks, the response of each stream is computed by a RequestProcessor on a worker of the
+ * server, so files are resolved and responses are generated exactly like for HTTP/1.x and a
+ * slow stream does not hold back the frames of the others; the HTTP/1.x header of a
+ * response is translated into a HPACK header block. A writer thread sends the frames:
+ * control frames and header blocks first, then DATA frames of the streams whose flow control
+ * windows allow it. The streams share the connection by weighted fair queuing on their
+ * priorities, so a large file does not hold back the small files which are requested with it.
+ * The connection is watched by the timer wheel of the server: without open streams it is closed
+ * with a GOAWAY after the idle timeout, a frame has to be complete within the header timeout from
+ * its first byte on, and every frame has to be written within the write timeout plus the time it
+ * takes at the minimum write rate. Streams whose flow control windows do not allow them to send
+ * have to be allowed to within the write timeout, so a client can not hold them by its windows.
+ *
+ * @param connection The socket which is connected to the client.
+ * @param context The shared components of the server.
+ * @param workers The executor of the server, which computes the responses of the streams.
+ */
+public class Http2Connection {
+
+    private static final byte[] PREFACE = HeaderWriter.ascii("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n");
+    private static final byte[] SWITCHING_PROTOCOLS =
+            HeaderWriter.ascii("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n");
+
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int PRIORITY = 0x2;
+    private static final int RST_STREAM = 0x3;
+    private static final int SETTINGS = 0x4;
+    private static final int PUSH_PROMISE = 0x5;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    private static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+    private static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    private static final int FRAME_HEADER_LENGTH = 9;
+    private static final int MAX_FRAME_SIZE = 16384;
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+    private static final int DEFAULT_WEIGHT = 16;
+
+    private Socket connection;
+    private SocketChannel out;
+    private ServerContext context;
+    private ServerConfig config;
+    private ExecutorService workers;
+    private InputStream in;
+    private Hpack.Decoder decoder;
+    private Hpack.Encoder encoder = new Hpack.Encoder();
+    private byte[] frameHeader = new byte[FRAME_HEADER_LENGTH];
+    private byte[] payload = new byte[MAX_FRAME_SIZE];
+    private byte[] headerBlock = new byte[MAX_FRAME_SIZE];
+    private int headerBlockLength = 0;
+    private int continuationStreamId = 0;
+    private int[] continuationPriority;
+    private boolean settingsReceived = false;
+    private int lastStreamId = 0;
+
+    // The state which is shared with the writer thread, guarded by this
+    private Map<Integer, Http2Stream> streams = new HashMap<>();
+    private ArrayDeque<ByteBuffer> controlFrames = new ArrayDeque<>();
+    private int connectionWindow = DEFAULT_WINDOW_SIZE;
+    private int initialWindowSize = DEFAULT_WINDOW_SIZE;
+    private long virtualTime = 0;
+    private boolean goingAway = false;
+    private boolean closed = false;
+
+    private ByteBuffer dataFrame = ByteBuffer.allocateDirect(FRAME_HEADER_LENGTH + MAX_FRAME_SIZE);
+    private FrameChannel frameChannel = new FrameChannel();
+    private Thread writer;
+    private ConnectionDeadline readDeadline;
+    private ConnectionDeadline writeDeadline;
+    // True while the reader waits for the first byte of a frame, guarded by this
+    private boolean waitingForFrame = false;
+    // True while the write deadline watches streams which wait for their windows, only used by the writer thread
+    private boolean waitingForWindow = false;
+
+    public Http2Connection(Socket connection, ServerContext context, ExecutorService workers) throws IOException {
+        this.connection = connection;
+        this.out = connection.getChannel();
+        this.context = context;
+        this.config = context.getConfig();
+        this.workers = workers;
+        this.readDeadline = new ConnectionDeadline(context, this::readTimedOut);
+        this.writeDeadline = new ConnectionDeadline(context, this::abort);
+        this.decoder = new Hpack.Decoder(4096, config.getMaxRequestHeaderSize());
+    }
+
+    /**
+     * @param request A request which was parsed by the HTTP/1.x RequestParser.
+     * @return Returns true if the request is the beginning of the HTTP/2 connection preface.
+     */
+    public static boolean isPreface(RequestMessage request) {
+        return request.getMethod() == null && "*".equals(request.getResource())
+            && "HTTP/2.0".equals(request.getHttpVersion());
+    }
+
+    /**
+     * Only requests without a body upgrade the connection, the body of other requests would
+     * have to be read before the client switches to HTTP/2.
+     *
+     * @param request A request which was parsed by the HTTP/1.x RequestParser.
+     * @return Returns true if the client asks to upgrade the connection to HTTP/2.
+     */
+    public static boolean isUpgrade(RequestMessage request) {
+        String upgrade = request.getHeader("Upgrade");
+        String contentLength = request.getHeader("Content-Length");
+        return "HTTP/1.1".equals(request.getHttpVersion()) && upgrade != null
+            && upgrade.toLowerCase(Locale.ROOT).contains("h2c") && request.getHeader("HTTP2-Settings") != null
+            && (contentLength == null || "0".equals(contentLength)) && request.getHeader("Transfer-Encoding") == null;
+    }
+
+    /**
+     * Serves the connection until the client closes it or a protocol error occurs. To do so the class:
+     * Completes the connection preface, after switching the protocol for an upgrade request
+     * Starts the writer thread, which sends the SETTINGS of the server first
+     * Answers the upgrade request on stream 1
+     * Reads and handles the frames of the client
+     *
+     * @param request The request which was read, the connection preface or the upgrade request.
+     * @param buffered The bytes which were read behind the request.
+     * @throws Throws an IOException if an I/O error occurs.
+     */
+    public void serve(RequestMessage request, byte[] buffered) throws IOException {
+        context.getMetrics().http2ConnectionOpened();
+        in = new BufferedInputStream(new SequenceInputStream(new ByteArrayInputStream(buffered),
+                connection.getInputStream()), FRAME_HEADER_LENGTH + MAX_FRAME_SIZE);
+        try {
+            boolean upgrade = !isPreface(request);
+            if (upgrade) {
+                byte[] settings = decodeSettingsHeader(request.getHeader("HTTP2-Settings"));
+                writeDeadline.startWrite(SWITCHING_PROTOCOLS.length);
+                ByteBuffer switching = ByteBuffer.wrap(SWITCHING_PROTOCOLS);
+                while (switching.hasRemaining()) {
+                    out.write(switching);
+                }
+                writeDeadline.cancel();
+                applySettings(settings, settings.length);
+            }
+            // The connection preface has to arrive within the header timeout, like a request header
+            readDeadline.waitForRequest(true);
+            if (!readPreface(upgrade ? 0 : PREFACE.length - 6)) {
+                return;
+            }
+            writer = new Thread(this::writeFrames, "http2-writer-" + connection.getPort());
+            writer.setDaemon(true);
+            synchronized (this) {
+                // The SETTINGS of the server are the first frame, also before a GOAWAY of a shutdown
+                controlFrames.addFirst(getSettingsFrame());
+            }
+            writer.start();
+            try {
+                if (upgrade) {
+                    lastStreamId = 1;
+                    request.setHttpVersion("HTTP/2.0");
+                    startStream(1, DEFAULT_WEIGHT, 0, false, request, System.nanoTime());
+                }
+                readFrames();
+            } finally {
+                synchronized (this) {
+                    closed = true;
+                    notifyAll();
+                }
+                try {
+                    writer.join(config.getIdleTimeoutMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } finally {
+            readDeadline.cancel();
+            writeDeadline.cancel();
+        }
+    }
+
+    /**
+     * Sends a GOAWAY frame, so that the client opens no further streams, and closes the
+     * connection after the open streams were answered. Used by a graceful shutdown of the server.
+     */
+    public synchronized void closeWhenIdle() {
+        if (!goingAway) {
+            goingAway = true;
+            queueControlFrame(getGoAwayFrame(Http2Exception.NO_ERROR));
+        }
+    }
+
+    private static byte[] decodeSettingsHeader(String value) {
+        try {
+            return Base64.getUrlDecoder().decode(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Bad request: malformed HTTP2-Settings header");
+        }
+    }
+
+    /**
+     * @param offset The number of bytes of the preface which were already parsed as a request.
+     * @return Returns false if the client closed the connection.
+     */
+    private boolean readPreface(int offset) throws IOException {
+        byte[] preface = new byte[PREFACE.length - offset];
+        if (!readFully(preface, preface.length, true)) {
+            return false;
+        }
+        for (int i = 0; i < preface.length; i++) {
+            if (preface[i] != PREFACE[offset + i]) {
+                throw new BadRequestException("Bad request: invalid HTTP/2 connection preface");
+            }
+        }
+        return true;
+    }
+
+    private void readFrames() throws IOException {
+        while (true) {
+            try {
+                if (!readFrame()) {
+                    return;
+                }
+            } catch (Http2Exception e) {
+                if (!e.isStreamError()) {
+                    log(e);
+                    synchronized (this) {
+                        goingAway = true;
+                        queueControlFrame(getGoAwayFrame(e.getErrorCode()));
+                    }
+                    return;
+                }
+                resetStream(e.getStreamId(), e.getErrorCode());
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (closed) {
+                        // The writer thread or a deadline closed the connection
+                        return;
+                    }
+                }
+                throw e;
+            }
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads and handles one frame.
+     *
+     * @return Returns false if the client closed the connection between two frames.
+     */
+    private boolean readFrame() throws IOException {
+        if (!awaitFrame()) {
+            return false;
+        }
+        readFully(frameHeader, FRAME_HEADER_LENGTH, false);
+        int length = ((frameHeader[0] & 0xff) << 16) | ((frameHeader[1] & 0xff) << 8) | (frameHeader[2] & 0xff);
+        int type = frameHeader[3] & 0xff;
+        int flags = frameHeader[4] & 0xff;
+        int streamId = readInt(frameHeader, 5) & 0x7fffffff;
+        if (length > MAX_FRAME_SIZE) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, 0, "Frame of " + length + " bytes");
+        }
+        if (!readFully(payload, length, false)) {
+            throw new EOFException("Connection closed within a frame");
+        }
+        if (!settingsReceived && type != SETTINGS) {
+            throw Http2Exception.protocolError("The connection preface does not end with SETTINGS");
+        }
+        if (continuationStreamId != 0 && (type != CONTINUATION || streamId != continuationStreamId)) {
+            throw Http2Exception.protocolError("Expected a CONTINUATION frame of stream " + continuationStreamId);
+        }
+        switch (type) {
+            case DATA:
+                handleData(streamId, flags, length);
+                break;
+            case HEADERS:
+                handleHeaders(streamId, flags, length);
+                break;
+            case PRIORITY:
+                handlePriority(streamId, length);
+                break;
+            case RST_STREAM:
+                handleResetStream(streamId, length);
+                break;
+            case SETTINGS:
+                handleSettings(streamId, flags, length);
+                break;
+            case PUSH_PROMISE:
+                throw Http2Exception.protocolError("A client must not send PUSH_PROMISE");
+            case PING:
+                handlePing(streamId, flags, length);
+                break;
+            case GOAWAY:
+                handleGoAway(streamId);
+                break;
+            case WINDOW_UPDATE:
+                handleWindowUpdate(streamId, length);
+                break;
+            case CONTINUATION:
+                handleContinuation(streamId, flags, length);
+                break;
+            default:
+                // Frames of unknown types are ignored
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the first byte of the next frame. While it waits, a connection without open streams
+     * is closed after the idle timeout, the open streams are watched by the deadline of the writer.
+     * From its first byte on, the frame has to be complete within the header timeout, the deadline
+     * is not moved by the arriving bytes.
+     *
+     * @return Returns false if the client closed the connection.
+     */
+    private boolean awaitFrame() throws IOException {
+        if (in.available() == 0) {
+            synchronized (this) {
+                waitingForFrame = true;
+                if (streams.isEmpty()) {
+                    readDeadline.waitForRequest(false);
+                } else {
+                    readDeadline.cancel();
+                }
+            }
+            int first;
+            try {
+                in.mark(1);
+                first = in.read();
+            } finally {
+                synchronized (this) {
+                    waitingForFrame = false;
+                }
+            }
+            if (first < 0) {
+                return false;
+            }
+            in.reset();
+        }
+        readDeadline.waitForRequest(true);
+        return true;
+    }
+
+    /**
+     * The request bodies are not used, their data is consumed and returned to the flow control windows at once.
+     */
+    private void handleData(int streamId, int flags, int length) throws Http2Exception {
+        checkStreamId(streamId);
+        if (streamId > lastStreamId) {
+            throw Http2Exception.protocolError("DATA on idle stream " + streamId);
+        }
+        if (length > 0) {
+            synchronized (this) {
+                queueControlFrame(getWindowUpdateFrame(0, length));
+                if ((flags & FLAG_END_STREAM) == 0 && streams.containsKey(streamId)) {
+                    queueControlFrame(getWindowUpdateFrame(streamId, length));
+                }
+            }
+        }
+    }
+
+    private void handleHeaders(int streamId, int flags, int length) throws IOException {
+        checkStreamId(streamId);
+        if ((streamId & 1) == 0) {
+            throw Http2Exception.protocolError("Client stream " + streamId + " has an even identifier");
+        }
+        int offset = 0;
+        int padding = 0;
+        if ((flags & FLAG_PADDED) != 0) {
+            if (length < 1) {
+                throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, 0, "HEADERS frame too short");
+            }
+            padding = payload[0] & 0xff;
+            offset = 1;
+        }
+        int weight = DEFAULT_WEIGHT;
+        int dependency = 0;
+        boolean exclusive = false;
+        if ((flags & FLAG_PRIORITY) != 0) {
+            if (length < offset + 5) {
+                throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, 0, "HEADERS frame too short");
+            }
+            exclusive = (payload[offset] & 0x80) != 0;
+            dependency = readInt(payload, offset) & 0x7fffffff;
+            weight = (payload[offset + 4] & 0xff) + 1;
+            offset += 5;
+        }
+        if (padding > length - offset) {
+            throw Http2Exception.protocolError("Padding exceeds the HEADERS frame");
+        }
+        headerBlockLength = 0;
+        appendHeaderBlock(offset, length - offset - padding);
+        if ((flags & FLAG_END_HEADERS) == 0) {
+            continuationStreamId = streamId;
+            continuationPriority = new int[] {weight, dependency, exclusive ? 1 : 0};
+            return;
+        }
+        handleHeaderBlock(streamId, weight, dependency, exclusive);
+    }
+
+    private void handleContinuation(int streamId, int flags, int length) throws IOException {
+        if (continuationStreamId == 0) {
+            throw Http2Exception.protocolError("CONTINUATION without HEADERS");
+        }
+        appendHeaderBlock(0, length);
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            continuationStreamId = 0;
+            handleHeaderBlock(streamId, continuationPriority[0], continuationPriority[1],
+                    continuationPriority[2] == 1);
+        }
+    }
+
+    private void appendHeaderBlock(int offset, int length) throws Http2Exception {
+        int maxLength = Math.max(MAX_FRAME_SIZE, 2 * config.getMaxRequestHeaderSize());
+        if (headerBlockLength + length > maxLength) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, 0, "Header block exceeds " + maxLength + " bytes");
+        }
+        if (headerBlockLength + length > headerBlock.length) {
+            headerBlock = Arrays.copyOf(headerBlock, maxLength);
+        }
+        System.arraycopy(payload, offset, headerBlock, headerBlockLength, length);
+        headerBlockLength += length;
+    }
+
+    /**
+     * Decodes a complete header block, which opens a new stream. A header block on an open stream
+     * is a trailer, which is decoded for the dynamic table but not used.
+     */
+    private void handleHeaderBlock(int streamId, int weight, int dependency, boolean exclusive) throws IOException {
+        long handleStart = System.nanoTime();
+        List<String[]> fields = decoder.decode(headerBlock, headerBlockLength);
+        synchronized (this) {
+            if (streams.containsKey(streamId)) {
+                return;
+            }
+        }
+        if (streamId <= lastStreamId) {
+            throw new Http2Exception(Http2Exception.STREAM_CLOSED, 0, "HEADERS on closed stream " + streamId);
+        }
+        lastStreamId = streamId;
+        if (dependency == streamId) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, streamId, "Stream depends on itself");
+        }
+        synchronized (this) {
+            if (goingAway || streams.size() >= config.getHttp2MaxConcurrentStreams()) {
+                throw new Http2Exception(Http2Exception.REFUSED_STREAM, streamId, "Stream refused");
+            }
+        }
+        RequestMessage request = decoder.isHeaderListTooLarge() ? null : getRequest(streamId, fields);
+        startStream(streamId, weight, dependency, exclusive, request, handleStart);
+    }
+
+    /**
+     * Translates the header fields of a stream into a request, the pseudo header fields
+     * become the request line and ":authority" becomes the Host header.
+     */
+    private RequestMessage getRequest(int streamId, List<String[]> fields) throws Http2Exception {
+        String method = null;
+        String path = null;
+        String scheme = null;
+        String authority = null;
+        List<String[]> headers = new ArrayList<>(fields.size());
+        for (String[] field : fields) {
+            String name = field[0];
+            if (name.startsWith(":")) {
+                if (!headers.isEmpty()) {
+                    throw malformed(streamId, "Pseudo header field after a regular header field");
+                }
+                switch (name) {
+                    case ":method":
+                        method = field[1];
+                        break;
+                    case ":path":
+                        path = field[1];
+                        break;
+                    case ":scheme":
+                        scheme = field[1];
+                        break;
+                    case ":authority":
+                        authority = field[1];
+                        break;
+                    default:
+                        throw malformed(streamId, "Unknown pseudo header field " + name);
+                }
+            } else {
+                if (!name.equals(name.toLowerCase(Locale.ROOT)) || isConnectionHeader(name)
+                        || (name.equals("te") && !field[1].equals("trailers"))) {
+                    throw malformed(streamId, "Header field " + name + " is not allowed");
+                }
+                headers.add(field);
+            }
+        }
+        if (method == null || scheme == null || path == null || path.isEmpty()) {
+            throw malformed(streamId, "Missing pseudo header fields");
+        }
+        RequestMessage request = new RequestMessage(Method.parse(method), RequestMessage.filterOutIPAddress(path),
+                "HTTP/2.0");
+        if (authority != null) {
+            request.addHeader("host", authority);
+        }
+        for (String[] field : headers) {
+            request.addHeader(field[0], field[1]);
+        }
+        return request;
+    }
+
+    private static Http2Exception malformed(int streamId, String message) {
+        return new Http2Exception(Http2Exception.PROTOCOL_ERROR, streamId, "Malformed request: " + message);
+    }
+
+    private static boolean isConnectionHeader(String name) {
+        return name.equals("connection") || name.equals("keep-alive") || name.equals("proxy-connection")
+            || name.equals("transfer-encoding") || name.equals("upgrade");
+    }
+
+    /**
+     * Opens a new stream and lets a worker compute its response. The stream takes part in the
+     * dependency tree and counts against the concurrent streams while its response is computed.
+     *
+     * @param request The request of the stream or null if its header list was too large.
+     */
+    private void startStream(int streamId, int weight, int dependency, boolean exclusive, RequestMessage request,
+            long handleStart) {
+        context.getMetrics().http2StreamOpened();
+        Http2Stream stream = new Http2Stream(streamId, request, handleStart);
+        synchronized (this) {
+            stream.window = initialWindowSize;
+            stream.pass = virtualTime;
+            streams.put(streamId, stream);
+            setPriority(stream, weight, dependency, exclusive);
+        }
+        dispatch(() -> respond(stream));
+    }
+
+    /**
+     * Runs the processing of a stream on a worker. A thread pool whose workers are all busy, for
+     * example with the connections which they read, or an executor which was shut down would leave
+     * the stream waiting, the thread of the connection processes the stream itself then.
+     */
+    private void dispatch(Runnable task) {
+        if (workers instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) workers;
+            if (pool.getActiveCount() >= pool.getMaximumPoolSize()) {
+                task.run();
+                return;
+            }
+        }
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Computes the response of a stream and queues its header block. A response without a body
+     * is complete with the header block, the body of other responses is sent by the writer thread.
+     * A failure of the processing is answered with "500 Internal Server Error" on the stream.
+     * Every stream has its own HeaderWriter, since the streams are processed concurrently.
+     */
+    private void respond(Http2Stream stream) {
+        HeaderWriter header = new HeaderWriter();
+        ResponseMessage response;
+        if (stream.request == null) {
+            response = context.getFailedResponse().getRequestHeaderTooLargeMessage(header);
+        } else {
+            try {
+                response = new RequestProcessor(connection, context, header).process(stream.request, true);
+            } catch (RuntimeException errorMessage) {
+                // Here: Create a log of the exception and the state of the system
+                errorMessage.printStackTrace();
+                response = context.getFailedResponse().getServerErrorMessage(header);
+            }
+        }
+        boolean complete = response.getBodyLength() == 0;
+        synchronized (this) {
+            if (closed || stream.cancelled) {
+                response.close();
+                return;
+            }
+            stream.response = response;
+            stream.remaining = response.getBodyLength();
+            queueControlFrame(getHeadersFrames(stream.id, encoder.encode(getFields(response)), complete));
+            if (complete) {
+                removeStream(stream.id);
+            }
+        }
+        if (complete) {
+            stream.writeStart = System.nanoTime();
+            finishStream(stream);
+        }
+    }
+
+    /**
+     * Translates the HTTP/1.x header of a response into HTTP/2 header fields.
+     * The status line becomes ":status", the names are lower case, and the fields which
+     * only apply to a HTTP/1.x connection are dropped.
+     */
+    private static List<String[]> getFields(ResponseMessage response) {
+        ByteBuffer header = response.getHeader();
+        String text = StandardCharsets.ISO_8859_1.decode(header).toString();
+        List<String[]> fields = new ArrayList<>();
+        fields.add(new String[] {":status", String.valueOf(response.getStatusCode())});
+        int lineStart = text.indexOf("\r\n") + 2;
+        while (lineStart > 1 && lineStart < text.length()) {
+            int lineEnd = text.indexOf("\r\n", lineStart);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            int separator = text.indexOf(':', lineStart);
+            if (separator > lineStart && separator < lineEnd) {
+                String name = text.substring(lineStart, separator).toLowerCase(Locale.ROOT);
+                if (!isConnectionHeader(name)) {
+                    fields.add(new String[] {name, text.substring(separator + 1, lineEnd).trim()});
+                }
+            }
+            lineStart = lineEnd + 2;
+        }
+        return fields;
+    }
+
+    private void handlePriority(int streamId, int length) throws Http2Exception {
+        checkStreamId(streamId);
+        if (length != 5) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, streamId, "PRIORITY frame of " + length + " bytes");
+        }
+        int dependency = readInt(payload, 0) & 0x7fffffff;
+        if (dependency == streamId) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, streamId, "Stream depends on itself");
+        }
+        synchronized (this) {
+            Http2Stream stream = streams.get(streamId);
+            if (stream != null) {
+                setPriority(stream, (payload[4] & 0xff) + 1, dependency, (payload[0] & 0x80) != 0);
+            }
+        }
+    }
+
+    /**
+     * Moves a stream in the dependency tree. A stream which would depend on its own descendant
+     * first moves the descendant to its former parent, an exclusive dependency makes the
+     * stream the only child of its parent.
+     */
+    private void setPriority(Http2Stream stream, int weight, int dependency, boolean exclusive) {
+        Http2Stream parent = streams.get(dependency);
+        if (parent != null && isDescendant(parent, stream.id)) {
+            parent.dependency = stream.dependency;
+        }
+        if (exclusive) {
+            for (Http2Stream sibling : streams.values()) {
+                if (sibling != stream && sibling.dependency == dependency) {
+                    sibling.dependency = stream.id;
+                }
+            }
+        }
+        stream.weight = weight;
+        stream.dependency = dependency;
+    }
+
+    private boolean isDescendant(Http2Stream stream, int ancestorId) {
+        for (int depth = 0; stream != null && depth < streams.size(); depth++) {
+            if (stream.dependency == ancestorId) {
+                return true;
+            }
+            stream = streams.get(stream.dependency);
+        }
+        return false;
+    }
+
+    private void handleResetStream(int streamId, int length) throws Http2Exception {
+        checkStreamId(streamId);
+        if (length != 4) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, 0, "RST_STREAM frame of " + length + " bytes");
+        }
+        if (streamId > lastStreamId) {
+            throw Http2Exception.protocolError("RST_STREAM on idle stream " + streamId);
+        }
+        synchronized (this) {
+            Http2Stream stream = removeStream(streamId);
+            if (stream != null) {
+                cancel(stream);
+            }
+        }
+    }
+
+    private void handleSettings(int streamId, int flags, int length) throws Http2Exception {
+        if (streamId != 0) {
+            throw Http2Exception.protocolError("SETTINGS on stream " + streamId);
+        }
+        if ((flags & FLAG_ACK) != 0) {
+            if (length != 0) {
+                throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, 0, "SETTINGS acknowledgement with payload");
+            }
+            return;
+        }
+        if (length % 6 != 0) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, 0, "SETTINGS frame of " + length + " bytes");
+        }
+        applySettings(payload, length);
+        settingsReceived = true;
+        synchronized (this) {
+            queueControlFrame(getFrame(SETTINGS, FLAG_ACK, 0, new byte[0], 0, 0));
+        }
+    }
+
+    private void applySettings(byte[] settings, int length) throws Http2Exception {
+        for (int i = 0; i + 6 <= length; i += 6) {
+            int identifier = ((settings[i] & 0xff) << 8) | (settings[i + 1] & 0xff);
+            int value = readInt(settings, i + 2);
+            switch (identifier) {
+                case SETTINGS_HEADER_TABLE_SIZE:
+                    synchronized (this) {
+                        encoder.setMaxTableSize(value < 0 ? Integer.MAX_VALUE : value);
+                    }
+                    break;
+                case SETTINGS_ENABLE_PUSH:
+                    if (value != 0 && value != 1) {
+                        throw Http2Exception.protocolError("Invalid SETTINGS_ENABLE_PUSH " + value);
+                    }
+                    break;
+                case SETTINGS_INITIAL_WINDOW_SIZE:
+                    if (value < 0) {
+                        throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, 0, "Initial window size too large");
+                    }
+                    setInitialWindowSize(value);
+                    break;
+                case SETTINGS_MAX_FRAME_SIZE:
+                    // The frames of the server never exceed the default maximum size
+                    if (value < MAX_FRAME_SIZE || value > 0xffffff) {
+                        throw Http2Exception.protocolError("Invalid SETTINGS_MAX_FRAME_SIZE " + value);
+                    }
+                    break;
+                default:
+                    // Unknown settings are ignored
+            }
+        }
+    }
+
+    /**
+     * A new initial window size changes the windows of all open streams by the difference.
+     */
+    private synchronized void setInitialWindowSize(int windowSize) throws Http2Exception {
+        int delta = windowSize - initialWindowSize;
+        for (Http2Stream stream : streams.values()) {
+            if ((long) stream.window + delta > Integer.MAX_VALUE) {
+                throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, 0, "Stream window too large");
+            }
+            stream.window += delta;
+        }
+        initialWindowSize = windowSize;
+        notifyAll();
+    }
+
+    private void handlePing(int streamId, int flags, int length) throws Http2Exception {
+        if (streamId != 0) {
+            throw Http2Exception.protocolError("PING on stream " + streamId);
+        }
+        if (length != 8) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, 0, "PING frame of " + length + " bytes");
+        }
+        if ((flags & FLAG_ACK) == 0) {
+            synchronized (this) {
+                queueControlFrame(getFrame(PING, FLAG_ACK, 0, payload, 0, 8));
+            }
+        }
+    }
+
+    /**
+     * A client which goes away opens no further streams, the open streams are still answered.
+     */
+    private synchronized void handleGoAway(int streamId) throws Http2Exception {
+        if (streamId != 0) {
+            throw Http2Exception.protocolError("GOAWAY on stream " + streamId);
+        }
+        goingAway = true;
+        notifyAll();
+    }
+
+    private void handleWindowUpdate(int streamId, int length) throws Http2Exception {
+        if (length != 4) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, 0, "WINDOW_UPDATE frame of " + length + " bytes");
+        }
+        int increment = readInt(payload, 0) & 0x7fffffff;
+        if (increment == 0) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, streamId, "WINDOW_UPDATE without increment");
+        }
+        synchronized (this) {
+            if (streamId == 0) {
+                if ((long) connectionWindow + increment > Integer.MAX_VALUE) {
+                    throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, 0, "Connection window too large");
+                }
+                connectionWindow += increment;
+            } else {
+                Http2Stream stream = streams.get(streamId);
+                if (stream == null) {
+                    return;
+                }
+                if ((long) stream.window + increment > Integer.MAX_VALUE) {
+                    throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, streamId, "Stream window too large");
+                }
+                stream.window += increment;
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Removes a stream, the caller holds the lock. A connection whose last stream was closed while
+     * the reader waits for a frame is idle from now on, the writer sets its deadline again.
+     */
+    private Http2Stream removeStream(int streamId) {
+        Http2Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            if (streams.isEmpty() && waitingForFrame) {
+                readDeadline.waitForRequest(false);
+            }
+            notifyAll();
+        }
+        return stream;
+    }
+
+    /**
+     * The response of a cancelled stream is closed by the thread which uses it: by the writer thread
+     * while it sends a DATA frame, by the worker while the response is computed.
+     */
+    private static void cancel(Http2Stream stream) {
+        stream.cancelled = true;
+        if (!stream.sending && stream.response != null) {
+            stream.response.close();
+        }
+    }
+
+    private static void checkStreamId(int streamId) throws Http2Exception {
+        if (streamId == 0) {
+            throw Http2Exception.protocolError("Frame requires a stream");
+        }
+    }
+
+    private synchronized void resetStream(int streamId, int errorCode) {
+        Http2Stream stream = removeStream(streamId);
+        if (stream != null) {
+            cancel(stream);
+        }
+        byte[] code = new byte[4];
+        writeInt(code, 0, errorCode);
+        queueControlFrame(getFrame(RST_STREAM, 0, streamId, code, 0, 4));
+    }
+
+    /**
+     * Reads a number of bytes.
+     *
+     * @param boundary True if the bytes are the beginning of a frame.
+     * @return Returns false if the stream ended before the first byte at a frame boundary.
+     */
+    private boolean readFully(byte[] buffer, int length, boolean boundary) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = in.read(buffer, read, length - read);
+            if (count < 0) {
+                if (read == 0 && boundary) {
+                    return false;
+                }
+                throw new EOFException("Connection closed within a frame");
+            }
+            read += count;
+        }
+        return true;
+    }
+
+    /**
+     * Sends the frames until the connection is closed. The control frames and header blocks
+     * are sent in the order in which they were queued, the DATA frames of the streams are sent
+     * when no control frame is waiting.
+     */
+    private void writeFrames() {
+        try {
+            while (true) {
+                ByteBuffer frame = null;
+                Http2Stream stream = null;
+                int allowed = 0;
+                synchronized (this) {
+                    while (controlFrames.isEmpty() && !closed && (stream = getNextStream()) == null) {
+                        if (goingAway && streams.isEmpty()) {
+                            closed = true;
+                            break;
+                        }
+                        watchWindows();
+                        wait();
+                    }
+                    if (!controlFrames.isEmpty()) {
+                        frame = controlFrames.poll();
+                        stream = null;
+                    } else if (closed) {
+                        break;
+                    } else {
+                        allowed = (int) Math.min(Math.min(connectionWindow, stream.window),
+                                Math.min(MAX_FRAME_SIZE, stream.remaining));
+                        connectionWindow -= allowed;
+                        stream.window -= allowed;
+                        stream.sending = true;
+                        waitingForWindow = false;
+                        if (stream.writeStart == 0) {
+                            stream.writeStart = System.nanoTime();
+                        }
+                    }
+                }
+                if (stream == null) {
+                    write(frame);
+                } else {
+                    writeData(stream, allowed);
+                }
+            }
+        } catch (IOException e) {
+            // The client closed the connection
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            writeDeadline.cancel();
+            synchronized (this) {
+                closed = true;
+                for (Http2Stream stream : streams.values()) {
+                    if (stream.response != null) {
+                        stream.response.close();
+                    }
+                }
+                streams.clear();
+            }
+            closeConnection();
+        }
+    }
+
+    /**
+     * Fills a DATA frame from the body of a stream and sends it, the last frame of the body ends the stream.
+     *
+     * @param allowed The number of bytes which the flow control windows allow.
+     */
+    private void writeData(Http2Stream stream, int allowed) throws IOException {
+        dataFrame.clear().position(FRAME_HEADER_LENGTH).limit(FRAME_HEADER_LENGTH + allowed);
+        boolean done;
+        try {
+            int position;
+            do {
+                position = dataFrame.position();
+                done = stream.response.writeBodyTo(frameChannel);
+            } while (!done && dataFrame.hasRemaining() && dataFrame.position() > position);
+        } catch (IOException e) {
+            // The file can not be read, only the stream is reset
+            e.printStackTrace();
+            synchronized (this) {
+                stream.sending = false;
+                connectionWindow += allowed;
+            }
+            resetStream(stream.id, Http2Exception.INTERNAL_ERROR);
+            return;
+        }
+        int length = dataFrame.position() - FRAME_HEADER_LENGTH;
+        synchronized (this) {
+            stream.sending = false;
+            connectionWindow += allowed - length;
+            stream.window += allowed - length;
+            stream.remaining -= length;
+            stream.pass += (Math.max(length, 1) * 256L) / stream.weight;
+            if (stream.cancelled) {
+                stream.response.close();
+                return;
+            }
+            if (done) {
+                removeStream(stream.id);
+            }
+        }
+        dataFrame.flip();
+        writeFrameHeader(dataFrame, length, DATA, done ? FLAG_END_STREAM : 0, stream.id);
+        write(dataFrame);
+        if (done) {
+            finishStream(stream);
+        }
+    }
+
+    /**
+     * Selects the stream which sends the next DATA frame: a stream whose windows allow it to send,
+     * whose ancestors in the dependency tree have nothing to send, and which received the
+     * smallest share of the connection relative to its weight.
+     */
+    private Http2Stream getNextStream() {
+        Http2Stream next = null;
+        for (Http2Stream stream : streams.values()) {
+            if (isSendable(stream) && !hasSendableAncestor(stream) && (next == null || stream.pass < next.pass)) {
+                next = stream;
+            }
+        }
+        if (next != null) {
+            virtualTime = next.pass;
+        }
+        return next;
+    }
+
+    /**
+     * A stream whose response is still computed has nothing to send.
+     */
+    private boolean isSendable(Http2Stream stream) {
+        return stream.response != null && (stream.remaining == 0 || (stream.window > 0 && connectionWindow > 0));
+    }
+
+    private boolean hasSendableAncestor(Http2Stream stream) {
+        Http2Stream parent = streams.get(stream.dependency);
+        for (int depth = 0; parent != null && depth < streams.size(); depth++) {
+            if (isSendable(parent)) {
+                return true;
+            }
+            parent = streams.get(parent.dependency);
+        }
+        return false;
+    }
+
+    private void finishStream(Http2Stream stream) {
+        long end = System.nanoTime();
+        ResponseMessage response = stream.response;
+        response.close();
+        Metrics metrics = context.getMetrics();
+        if (stream.request == null) {
+            metrics.recordResponse(response);
+        } else {
+            metrics.recordRequest(stream.request.getMethod(), response, 0, stream.writeStart - stream.handleStart,
+                    end - stream.writeStart);
+        }
+        context.getAccessLog().log(connection.getInetAddress(), stream.request, response, end - stream.handleStart);
+    }
+
+    /**
+     * Sends a frame within the write timeout plus the time it takes at the minimum write rate.
+     * While streams wait for their windows, the deadline of the waiting keeps running instead.
+     */
+    private void write(ByteBuffer frame) throws IOException {
+        if (!waitingForWindow) {
+            writeDeadline.startWrite(frame.remaining());
+        }
+        while (frame.hasRemaining()) {
+            out.write(frame);
+        }
+    }
+
+    /**
+     * Sets the deadline of the writer before it waits, the caller holds the lock. A stream whose response
+     * is computed has nothing to send, so a stream with a response is waiting for its flow control windows
+     * when no stream can send. The client has to open the windows within the write timeout, the deadline
+     * is not moved by the control frames which are sent meanwhile. Without such streams the writer has
+     * no deadline.
+     */
+    private void watchWindows() {
+        boolean waiting = false;
+        for (Http2Stream stream : streams.values()) {
+            if (stream.response != null) {
+                waiting = true;
+                break;
+            }
+        }
+        if (!waiting) {
+            writeDeadline.cancel();
+        } else if (!waitingForWindow) {
+            writeDeadline.startWrite(0);
+        }
+        waitingForWindow = waiting;
+    }
+
+    /**
+     * Runs in the thread of the timer wheel when the read deadline passed. A connection which waits
+     * for a frame is idle and is closed gracefully, one which is within a frame at once.
+     */
+    private void readTimedOut() {
+        synchronized (this) {
+            if (waitingForFrame) {
+                closeWhenIdle();
+                return;
+            }
+        }
+        abort();
+    }
+
+    /**
+     * Closes the connection at once, the reader and the writer end with an I/O error.
+     * Runs in the thread of the timer wheel when a deadline passed.
+     */
+    private void abort() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        closeConnection();
+    }
+
+    private void queueControlFrame(ByteBuffer frame) {
+        controlFrames.add(frame);
+        notifyAll();
+    }
+
+    private ByteBuffer getSettingsFrame() {
+        byte[] settings = new byte[12];
+        writeSetting(settings, 0, SETTINGS_MAX_CONCURRENT_STREAMS, config.getHttp2MaxConcurrentStreams());
+        writeSetting(settings, 6, SETTINGS_MAX_HEADER_LIST_SIZE, config.getMaxRequestHeaderSize());
+        return getFrame(SETTINGS, 0, 0, settings, 0, settings.length);
+    }
+
+    private ByteBuffer getGoAwayFrame(int errorCode) {
+        byte[] goAway = new byte[8];
+        writeInt(goAway, 0, lastStreamId);
+        writeInt(goAway, 4, errorCode);
+        return getFrame(GOAWAY, 0, 0, goAway, 0, goAway.length);
+    }
+
+    private static ByteBuffer getWindowUpdateFrame(int streamId, int increment) {
+        byte[] windowUpdate = new byte[4];
+        writeInt(windowUpdate, 0, increment);
+        return getFrame(WINDOW_UPDATE, 0, streamId, windowUpdate, 0, 4);
+    }
+
+    /**
+     * @return Returns a HEADERS frame, followed by CONTINUATION frames if the header block does not fit into one frame.
+     */
+    private static ByteBuffer getHeadersFrames(int streamId, byte[] block, boolean endStream) {
+        int frames = Math.max(1, (block.length + MAX_FRAME_SIZE - 1) / MAX_FRAME_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(frames * FRAME_HEADER_LENGTH + block.length);
+        for (int i = 0; i < frames; i++) {
+            int offset = i * MAX_FRAME_SIZE;
+            int length = Math.min(MAX_FRAME_SIZE, block.length - offset);
+            int flags = (i == frames - 1 ? FLAG_END_HEADERS : 0) | (i == 0 && endStream ? FLAG_END_STREAM : 0);
+            writeFrameHeader(buffer, length, i == 0 ? HEADERS : CONTINUATION, flags, streamId);
+            buffer.position(buffer.position() + FRAME_HEADER_LENGTH);
+            buffer.put(block, offset, length);
+        }
+        return buffer.flip();
+    }
+
+    private static ByteBuffer getFrame(int type, int flags, int streamId, byte[] payload, int offset, int length) {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_LENGTH + length);
+        writeFrameHeader(frame, length, type, flags, streamId);
+        frame.position(FRAME_HEADER_LENGTH);
+        frame.put(payload, offset, length);
+        return frame.flip();
+    }
+
+    /**
+     * Writes a frame header at the position of the buffer, without moving the position.
+     */
+    private static void writeFrameHeader(ByteBuffer buffer, int length, int type, int flags, int streamId) {
+        int position = buffer.position();
+        buffer.put(position, (byte) (length >>> 16));
+        buffer.put(position + 1, (byte) (length >>> 8));
+        buffer.put(position + 2, (byte) length);
+        buffer.put(position + 3, (byte) type);
+        buffer.put(position + 4, (byte) flags);
+        buffer.putInt(position + 5, streamId);
+    }
+
+    private static void writeSetting(byte[] settings, int offset, int identifier, int value) {
+        settings[offset] = (byte) (identifier >>> 8);
+        settings[offset + 1] = (byte) identifier;
+        writeInt(settings, offset + 2, value);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+            | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private void log(Object message) {
+        if (config.isConsoleLog()) {
+            System.out.println(message);
+        }
+    }
+
+    private void closeConnection() {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The channel which fills the payload of the DATA frame, it accepts as many bytes as the frame allows.
+     */
+    private class FrameChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer source) {
+            int length = Math.min(source.remaining(), dataFrame.remaining());
+            ByteBuffer part = source.duplicate();
+            part.limit(part.position() + length);
+            dataFrame.put(part);
+            source.position(source.position() + length);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * A stream of the connection with its response, its send window and its priority.
+     * The response is null while it is computed by a worker.
+     */
+    private static class Http2Stream {
+
+        private int id;
+        private RequestMessage request;
+        private ResponseMessage response;
+        private long remaining;
+        private int window;
+        private int weight = DEFAULT_WEIGHT;
+        private int dependency = 0;
+        private long pass;
+        private long handleStart;
+        private long writeStart = 0;
+        private boolean sending = false;
+        private boolean cancelled = false;
+
+        private Http2Stream(int id, RequestMessage request, long handleStart) {
+            this.id = id;
+            this.request = request;
+            this.handleStart = handleStart;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package httpwebserver;
+
+import java.io.IOException;
+
+/**
+ * A violation of the HTTP/2 protocol by the client. A connection error ends the
+ * connection with a GOAWAY frame, a stream error only resets the stream with a RST_STREAM frame.
+ *
+ * @param errorCode The HTTP/2 error code which is sent to the client.
+ * @param streamId The stream of a stream error or 0 for a connection error.
+ */
+public class Http2Exception extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int NO_ERROR = 0x0;
+    public static final int PROTOCOL_ERROR = 0x1;
+    public static final int INTERNAL_ERROR = 0x2;
+    public static final int FLOW_CONTROL_ERROR = 0x3;
+    public static final int STREAM_CLOSED = 0x5;
+    public static final int FRAME_SIZE_ERROR = 0x6;
+    public static final int REFUSED_STREAM = 0x7;
+    public static final int CANCEL = 0x8;
+    public static final int COMPRESSION_ERROR = 0x9;
+
+    private int errorCode;
+    private int streamId;
+
+    public Http2Exception(int errorCode, int streamId, String errorMessage) {
+        super(errorMessage);
+        this.errorCode = errorCode;
+        this.streamId = streamId;
+    }
+
+    public static Http2Exception protocolError(String errorMessage) {
+        return new Http2Exception(PROTOCOL_ERROR, 0, errorMessage);
+    }
+
+    public static Http2Exception compressionError(String errorMessage) {
+        return new Http2Exception(COMPRESSION_ERROR, 0, errorMessage);
+    }
+
+    public int getErrorCode() {
+        return this.errorCode;
+    }
+
+    public int getStreamId() {
+        return this.streamId;
+    }
+
+    /**
+     * @return Returns true if only the stream is reset, not the whole connection.
+     */
+    public boolean isStreamError() {
+        return streamId != 0;
+    }
+}
@@ -0,0 +1,201 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The listening sockets of a server instance and the acceptor threads which accept on them.
+ * The server listens on the port of the configuration or on the addresses of --listen,
+ * for example "127.0.0.1:8080,[::1]:8080,9090". Each address is served by
+ * --acceptor-threads threads. With --reuse-port, where the operating system supports
+ * SO_REUSEPORT (Linux), every acceptor thread gets its own socket on the address and
+ * the kernel distributes the incoming connections over them, otherwise the acceptor
+ * threads of an address share one socket.
+ *
+ * @param config The configuration of the server.
+ * @throws Throws an IllegalArgumentException if an address of --listen is malformed.
+ */
+public class Listeners {
+
+    private ServerConfig config;
+    private List<InetSocketAddress> addresses;
+    private List<ServerSocketChannel> channels = new ArrayList<>();
+    private List<ServerSocketChannel> acceptorChannels = new ArrayList<>();
+
+    public Listeners(ServerConfig config) {
+        this.config = config;
+        this.addresses = parseAddresses(config.getListen(), config.getPort());
+    }
+
+    /**
+     * The accept loop of an engine, which runs in an acceptor thread until the socket is closed.
+     */
+    public interface AcceptLoop {
+
+        /**
+         * @param channel The blocking listening socket of the acceptor thread.
+         * @param acceptor The number of the acceptor thread, from 0.
+         * @throws Throws an IOException if the connections can not be accepted any longer.
+         */
+        void accept(ServerSocketChannel channel, int acceptor) throws IOException;
+    }
+
+    /**
+     * Opens and binds the listening sockets, the receive buffer size is set before the bind,
+     * so that it applies to the accepted connections as well.
+     *
+     * @throws Throws an IOException if an address can not be bound, for example because the port is in use.
+     */
+    public void bind() throws IOException {
+        int acceptorThreads = Math.max(1, config.getAcceptorThreads());
+        try {
+            for (InetSocketAddress address : addresses) {
+                ServerSocketChannel channel = open(address, config.isReusePort());
+                if (!isReusePort(channel)) {
+                    for (int i = 0; i < acceptorThreads; i++) {
+                        acceptorChannels.add(channel);
+                    }
+                    continue;
+                }
+                // The further sockets join the port of the first one, which can be an ephemeral port
+                acceptorChannels.add(channel);
+                InetSocketAddress bound = (InetSocketAddress) channel.getLocalAddress();
+                for (int i = 1; i < acceptorThreads; i++) {
+                    acceptorChannels.add(open(bound, true));
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the accept loop in an acceptor thread per socket and acceptor, the first loop
+     * runs in the calling thread, which returns when it ends.
+     *
+     * @param name The prefix of the names of the acceptor threads.
+     * @param loop The accept loop of the engine.
+     */
+    public void runAcceptors(String name, AcceptLoop loop) {
+        for (int i = 1; i < acceptorChannels.size(); i++) {
+            int acceptor = i;
+            new Thread(() -> runAcceptor(loop, acceptor), name + "-" + (i + 1)).start();
+        }
+        runAcceptor(loop, 0);
+    }
+
+    /**
+     * Applies the socket options of the configuration to an accepted connection.
+     *
+     * @param connection The accepted connection.
+     * @throws Throws an IOException if an option can not be set.
+     */
+    public void configure(SocketChannel connection) throws IOException {
+        connection.setOption(StandardSocketOptions.TCP_NODELAY, config.isTcpNoDelay());
+        if (config.getSendBufferSize() > 0) {
+            connection.setOption(StandardSocketOptions.SO_SNDBUF, config.getSendBufferSize());
+        }
+    }
+
+    /**
+     * @return Returns the addresses the server listens on, with the ports which were actually bound.
+     */
+    public List<InetSocketAddress> getLocalAddresses() {
+        List<InetSocketAddress> localAddresses = new ArrayList<>();
+        for (ServerSocketChannel channel : channels) {
+            try {
+                InetSocketAddress address = (InetSocketAddress) channel.getLocalAddress();
+                if (address != null && !localAddresses.contains(address)) {
+                    localAddresses.add(address);
+                }
+            } catch (IOException e) {
+                // The socket is already closed
+            }
+        }
+        return localAddresses;
+    }
+
+    /**
+     * Closes the listening sockets, the blocked acceptor threads end their loops.
+     */
+    public void close() {
+        for (ServerSocketChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private ServerSocketChannel open(InetSocketAddress address, boolean reusePort) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channels.add(channel);
+        if (reusePort && channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        if (config.getReceiveBufferSize() > 0) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+        }
+        channel.bind(address, config.getAcceptBacklog());
+        return channel;
+    }
+
+    private static boolean isReusePort(ServerSocketChannel channel) throws IOException {
+        return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)
+            && channel.getOption(StandardSocketOptions.SO_REUSEPORT);
+    }
+
+    private void runAcceptor(AcceptLoop loop, int acceptor) {
+        try {
+            loop.accept(acceptorChannels.get(acceptor), acceptor);
+        } catch (IOException e) {
+            // Here: Create a log of the exception and the state of the system
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Parses the addresses of --listen, each of the form "host:port", "[IPv6 address]:port",
+     * ":port" or "port". An address without a host is the wildcard address.
+     *
+     * @param listen The comma separated addresses or null.
+     * @param port The port which is used if no addresses are given.
+     * @return Returns the socket addresses.
+     * @throws Throws an IllegalArgumentException if an address is malformed.
+     */
+    static List<InetSocketAddress> parseAddresses(String listen, int port) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        if (listen == null || listen.trim().isEmpty()) {
+            addresses.add(new InetSocketAddress(port));
+            return addresses;
+        }
+        for (String address : listen.split(",")) {
+            address = address.trim();
+            int separator = address.lastIndexOf(':');
+            String host = separator < 0 ? "" : address.substring(0, separator);
+            if (host.startsWith("[") && host.endsWith("]")) {
+                host = host.substring(1, host.length() - 1);
+            } else if (host.contains(":")) {
+                throw new IllegalArgumentException("IPv6 addresses have to be enclosed in brackets: " + address);
+            }
+            int addressPort;
+            try {
+                addressPort = Integer.parseInt(address.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed listen address: " + address);
+            }
+            if (addressPort < 0 || addressPort > 65535) {
+                throw new IllegalArgumentException("Malformed listen address: " + address);
+            }
+            addresses.add(host.isEmpty() ? new InetSocketAddress(addressPort) : new InetSocketAddress(host, addressPort));
+        }
+        return addresses;
+    }
+}
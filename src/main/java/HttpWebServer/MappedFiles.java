@@ -0,0 +1,262 @@
+package httpwebserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A registry of memory-mapped files for large static files which are served repeatedly.
+ * A file is mapped once, when it is requested first, and the responses write slices of the
+ * mapping, also for ranges, without any read or file open per request.
+ * The mappings are reference counted: the registry holds one reference and every response
+ * part holds one. A mapping which is evicted, because the total mapped bytes exceed the
+ * budget, or which is replaced, because the file changed, is unmapped when the last response
+ * which uses it was written. Files should be replaced by renaming a new file over them,
+ * a mapped file which is truncated in place can not be sent completely.
+ *
+ * @param config The configuration of the server.
+ */
+public class MappedFiles {
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The mappings are released by the garbage collector
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private boolean enabled;
+    private long minFileSize;
+    private long maxFileSize;
+    private long maxBytes;
+    private long mappedBytes = 0;
+    private Map<String, MappedFile> mappings = new LinkedHashMap<>(16, 0.75f, true);
+    private LongAdder mapped = new LongAdder();
+    private LongAdder unmapped = new LongAdder();
+
+    public MappedFiles(ServerConfig config) {
+        this.enabled = config.isMmap();
+        this.minFileSize = config.getMmapMinFileSize();
+        this.maxFileSize = Math.min(config.getMmapMaxFileSize(), Integer.MAX_VALUE);
+        this.maxBytes = config.getMmapMaxBytes();
+    }
+
+    /**
+     * Looks up the mapping of a file, the file is mapped if it is eligible and was not mapped yet
+     * or changed since it was mapped.
+     *
+     * @param file The requested file.
+     * @param attributes The current attributes of the file.
+     * @return Returns the mapping with a reference, which the caller has to release,
+     *         or null if the file is not mapped.
+     * @throws Throws an IOException if an I/O error occurs when mapping the file.
+     */
+    public MappedFile acquire(File file, BasicFileAttributes attributes) throws IOException {
+        long size = attributes.size();
+        if (!enabled || size < minFileSize || size > maxFileSize || size > maxBytes) {
+            return null;
+        }
+        String key = file.getPath();
+        MappedFile mappedFile = get(key, attributes);
+        if (mappedFile != null) {
+            return mappedFile;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != size) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        mapped.increment();
+        mappedFile = new MappedFile(buffer, attributes);
+        mappedFile.retain();
+        put(key, mappedFile);
+        return mappedFile;
+    }
+
+    public long getMapped() {
+        return mapped.sum();
+    }
+
+    public long getUnmapped() {
+        return unmapped.sum();
+    }
+
+    public synchronized long getMappedBytes() {
+        return this.mappedBytes;
+    }
+
+    /**
+     * Releases the references of the registry, the files are unmapped when their last response was written.
+     */
+    public synchronized void close() {
+        for (MappedFile mappedFile : mappings.values()) {
+            mappedFile.release();
+        }
+        mappings.clear();
+        mappedBytes = 0;
+    }
+
+    /**
+     * @return Returns the mapping with a further reference if it is still up to date, otherwise null.
+     */
+    private synchronized MappedFile get(String key, BasicFileAttributes attributes) {
+        MappedFile mappedFile = mappings.get(key);
+        if (mappedFile == null) {
+            return null;
+        }
+        if (!mappedFile.isUnchanged(attributes)) {
+            mappings.remove(key);
+            mappedBytes -= mappedFile.length;
+            mappedFile.release();
+            return null;
+        }
+        mappedFile.retain();
+        return mappedFile;
+    }
+
+    private synchronized void put(String key, MappedFile mappedFile) {
+        MappedFile previous = mappings.put(key, mappedFile);
+        if (previous != null) {
+            mappedBytes -= previous.length;
+            previous.release();
+        }
+        mappedBytes += mappedFile.length;
+        Iterator<MappedFile> leastRecentlyUsed = mappings.values().iterator();
+        while (mappedBytes > maxBytes && leastRecentlyUsed.hasNext()) {
+            MappedFile evicted = leastRecentlyUsed.next();
+            mappedBytes -= evicted.length;
+            leastRecentlyUsed.remove();
+            evicted.release();
+        }
+    }
+
+    /**
+     * A mapped file. It is unmapped when its reference count drops to zero.
+     */
+    public class MappedFile {
+
+        private MappedByteBuffer buffer;
+        private long length;
+        private long lastModified;
+        private Object fileKey;
+        private AtomicInteger references = new AtomicInteger(1);
+
+        private MappedFile(MappedByteBuffer buffer, BasicFileAttributes attributes) {
+            this.buffer = buffer;
+            this.length = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.fileKey = attributes.fileKey();
+        }
+
+        /**
+         * @param offset The position of the first byte of the region in the file.
+         * @param length The length of the region in bytes.
+         * @return Returns a part of a response message with a region of the file, it holds a
+         *         reference until it is closed.
+         */
+        public MessagePart getPart(long offset, long length) {
+            retain();
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit((int) (offset + length)).position((int) offset);
+            return new MappedPart(this, slice);
+        }
+
+        public long getLength() {
+            return this.length;
+        }
+
+        private boolean isUnchanged(BasicFileAttributes attributes) {
+            return attributes.size() == length && attributes.lastModifiedTime().toMillis() == lastModified
+                && (fileKey == null || fileKey.equals(attributes.fileKey()));
+        }
+
+        private void retain() {
+            references.incrementAndGet();
+        }
+
+        /**
+         * Releases a reference, the file is unmapped when the last reference is released.
+         */
+        public void release() {
+            if (references.decrementAndGet() == 0) {
+                unmapped.increment();
+                unmap(buffer);
+                buffer = null;
+            }
+        }
+    }
+
+    /**
+     * A region of a mapped file which is part of a response message.
+     */
+    private static class MappedPart implements MessagePart {
+
+        private MappedFile mappedFile;
+        private ByteBuffer slice;
+        private long length;
+
+        private MappedPart(MappedFile mappedFile, ByteBuffer slice) {
+            this.mappedFile = mappedFile;
+            this.slice = slice;
+            this.length = slice.remaining();
+        }
+
+        @Override
+        public long getLength() {
+            return this.length;
+        }
+
+        @Override
+        public boolean writeTo(WritableByteChannel channel) throws IOException {
+            channel.write(slice);
+            return !slice.hasRemaining();
+        }
+
+        @Override
+        public void close() {
+            if (mappedFile != null) {
+                slice = null;
+                mappedFile.release();
+                mappedFile = null;
+            }
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            // Here: Create a log of the exception and the state of the system
+            e.printStackTrace();
+        }
+    }
+}
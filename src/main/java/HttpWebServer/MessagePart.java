@@ -0,0 +1,39 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A part of a ResponseMessage, for example the header or the content of a file.
+ * A part keeps track of how much of it was written already, therefore it can be
+ * written to a non-blocking channel in several steps.
+ */
+public interface MessagePart {
+
+    /**
+     * @return Returns the length of the part in bytes.
+     */
+    long getLength();
+
+    /**
+     * @return Returns false if the part is produced while it is written, its length is
+     *         only known when it was written completely.
+     */
+    default boolean isLengthKnown() {
+        return true;
+    }
+
+    /**
+     * Writes as much of the remaining part as the channel accepts.
+     *
+     * @param channel The channel which is connected to the client.
+     * @return Returns true if the part was written completely.
+     * @throws Throws an IOException if an I/O error occurs when writing.
+     */
+    boolean writeTo(WritableByteChannel channel) throws IOException;
+
+    /**
+     * Releases the resources of the part, for example an open file.
+     */
+    void close();
+}
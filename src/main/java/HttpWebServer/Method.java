@@ -1,5 +1,32 @@
 package httpwebserver;
 
+/**
+ * The request methods which the server understands. Static files are only served for GET
+ * and HEAD, the other methods are forwarded by the reverse proxy.
+ */
 public enum Method {
-    GET, HEAD
+    GET, HEAD, POST, PUT, DELETE, PATCH, OPTIONS;
+
+    private static final Method[] VALUES = values();
+
+    /**
+     * @param name The name of the method, it is case-sensitive.
+     * @return Returns the method with the name or null if the method is unknown.
+     */
+    public static Method parse(String name) {
+        for (Method method : VALUES) {
+            if (method.name().equals(name)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Returns true if the method can be repeated without a different effect, so a
+     *         request which failed can be sent again.
+     */
+    public boolean isIdempotent() {
+        return this != POST && this != PATCH;
+    }
 }
@@ -1,6 +1,9 @@
 package httpwebserver;
 
 public class MethodNotAllowedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
     public MethodNotAllowedException(String errorMessage) {
         super(errorMessage);
     }
@@ -0,0 +1,287 @@
+package httpwebserver;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects the metrics of a server and renders them in the Prometheus text format.
+ * All counters are LongAdders, which spread concurrent updates over several cells,
+ * so recording a request does not contend on a shared lock or a shared counter.
+ * The latency histograms use fixed buckets, each bucket is a LongAdder as well.
+ */
+public class Metrics {
+
+    private static final String PREFIX = "httpwebserver_";
+
+    private LongAdder[] requestsByMethod = createAdders(Method.values().length + 1);
+    private LongAdder[] responsesByStatus = createAdders(600);
+    private LongAdder bytesSent = new LongAdder();
+    private LongAdder acceptedConnections = new LongAdder();
+    private LongAdder rejectedConnections = new LongAdder();
+    private LongAdder activeConnections = new LongAdder();
+    private LongAdder[] timedOutConnections = createAdders(ConnectionDeadline.PHASES.length);
+    private LongAdder http2Connections = new LongAdder();
+    private LongAdder http2Streams = new LongAdder();
+    private Histogram parseLatency = new Histogram();
+    private Histogram handleLatency = new Histogram();
+    private Histogram writeLatency = new Histogram();
+    private volatile LongSupplier acceptQueueDepth = () -> 0;
+
+    private static LongAdder[] createAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Records a request which was answered.
+     *
+     * @param method The method of the request or null if it is unknown.
+     * @param response The response, it was written completely.
+     * @param parseNanos The time which was spent parsing the request in nanoseconds.
+     * @param handleNanos The time which was spent computing the response in nanoseconds.
+     * @param writeNanos The time which was spent writing the response in nanoseconds.
+     */
+    public void recordRequest(Method method, ResponseMessage response, long parseNanos, long handleNanos,
+            long writeNanos) {
+        requestsByMethod[method == null ? Method.values().length : method.ordinal()].increment();
+        recordResponse(response);
+        parseLatency.record(parseNanos);
+        handleLatency.record(handleNanos);
+        writeLatency.record(writeNanos);
+    }
+
+    /**
+     * Records a response which was sent without a parsed request, for example "400 Bad Request".
+     *
+     * @param response The response.
+     */
+    public void recordResponse(ResponseMessage response) {
+        int statusCode = response.getStatusCode();
+        if (statusCode >= 100 && statusCode < responsesByStatus.length) {
+            responsesByStatus[statusCode].increment();
+        }
+        bytesSent.add(response.getLength());
+    }
+
+    public void connectionAccepted() {
+        acceptedConnections.increment();
+    }
+
+    public void connectionRejected() {
+        rejectedConnections.increment();
+    }
+
+    public void connectionOpened() {
+        activeConnections.increment();
+    }
+
+    public void connectionClosed() {
+        activeConnections.decrement();
+    }
+
+    /**
+     * @param phase The phase of the connection whose deadline passed, see ConnectionDeadline.
+     */
+    public void connectionTimedOut(int phase) {
+        timedOutConnections[phase].increment();
+    }
+
+    public void http2ConnectionOpened() {
+        http2Connections.increment();
+    }
+
+    public void http2StreamOpened() {
+        http2Streams.increment();
+    }
+
+    /**
+     * @param acceptQueueDepth Returns the number of accepted connections which wait to be served.
+     */
+    public void setAcceptQueueDepth(LongSupplier acceptQueueDepth) {
+        this.acceptQueueDepth = acceptQueueDepth;
+    }
+
+    /**
+     * Renders all metrics, including the statistics of the caches and the access log, in the Prometheus text format.
+     *
+     * @param context The components of the server.
+     * @return Returns the metrics as text.
+     */
+    public String render(ServerContext context) {
+        StringBuilder text = new StringBuilder(4096);
+        appendType(text, "requests_total", "counter", "The number of requests by method.");
+        Method[] methods = Method.values();
+        for (int i = 0; i <= methods.length; i++) {
+            String method = i < methods.length ? methods[i].name() : "OTHER";
+            appendSample(text, "requests_total{method=\"" + method + "\"}", requestsByMethod[i].sum());
+        }
+        appendType(text, "responses_total", "counter", "The number of responses by status code.");
+        for (int statusCode = 100; statusCode < responsesByStatus.length; statusCode++) {
+            long count = responsesByStatus[statusCode].sum();
+            if (count > 0) {
+                appendSample(text, "responses_total{status=\"" + statusCode + "\"}", count);
+            }
+        }
+        appendCounter(text, "response_bytes_total", "The number of bytes of the sent responses.", bytesSent.sum());
+        appendCounter(text, "connections_accepted_total", "The number of accepted connections.",
+                acceptedConnections.sum());
+        appendCounter(text, "connections_rejected_total",
+                "The number of connections which were rejected with 503 or 429.", rejectedConnections.sum());
+        appendGauge(text, "connections_active", "The number of open connections.", activeConnections.sum());
+        appendType(text, "connections_timed_out_total", "counter",
+                "The number of connections which were closed by a deadline, by phase.");
+        for (int phase = 0; phase < timedOutConnections.length; phase++) {
+            appendSample(text, "connections_timed_out_total{phase=\"" + ConnectionDeadline.PHASES[phase] + "\"}",
+                    timedOutConnections[phase].sum());
+        }
+        appendCounter(text, "http2_connections_total", "The number of connections which were served with HTTP/2.",
+                http2Connections.sum());
+        appendCounter(text, "http2_streams_total", "The number of HTTP/2 streams which were opened by clients.",
+                http2Streams.sum());
+        AdmissionControl admissionControl = context.getAdmissionControl();
+        appendCounter(text, "connections_over_limit_total", "The number of connections rejected by --max-connections.",
+                admissionControl.getRejectedByLimit());
+        appendCounter(text, "connections_over_ip_limit_total",
+                "The number of connections rejected by --max-connections-per-ip.",
+                admissionControl.getRejectedByAddressLimit());
+        appendCounter(text, "requests_rate_limited_total", "The number of requests rejected by --rate-limit.",
+                admissionControl.getRateLimited());
+        appendGauge(text, "admission_clients", "The number of client addresses with connections or rate limit state.",
+                admissionControl.getClients());
+        appendGauge(text, "accept_queue_depth", "The number of accepted connections which wait to be served.",
+                acceptQueueDepth.getAsLong());
+        parseLatency.render(text, "request_parse_seconds", "The time which was spent parsing a request.");
+        handleLatency.render(text, "request_handle_seconds", "The time which was spent computing a response.");
+        writeLatency.render(text, "response_write_seconds", "The time which was spent writing a response.");
+
+        ReverseProxy proxy = context.getReverseProxy();
+        appendCounter(text, "proxy_bad_gateway_total", "The number of routed requests answered with 502.",
+                proxy.getBadGateway());
+        appendCounter(text, "proxy_gateway_timeout_total", "The number of routed requests answered with 504.",
+                proxy.getGatewayTimeouts());
+        if (!proxy.getUpstreams().isEmpty()) {
+            long now = System.nanoTime();
+            appendType(text, "upstream_requests_total", "counter", "The number of requests sent to an upstream server.");
+            for (Upstream upstream : proxy.getUpstreams()) {
+                appendSample(text, upstreamSample("upstream_requests_total", upstream), upstream.getRequests());
+            }
+            appendType(text, "upstream_failures_total", "counter", "The number of failed requests of an upstream server.");
+            for (Upstream upstream : proxy.getUpstreams()) {
+                appendSample(text, upstreamSample("upstream_failures_total", upstream), upstream.getFailures());
+            }
+            appendType(text, "upstream_active_requests", "gauge", "The number of requests in flight to an upstream server.");
+            for (Upstream upstream : proxy.getUpstreams()) {
+                appendSample(text, upstreamSample("upstream_active_requests", upstream), upstream.getActiveRequests());
+            }
+            appendType(text, "upstream_idle_connections", "gauge", "The number of pooled idle upstream connections.");
+            for (Upstream upstream : proxy.getUpstreams()) {
+                appendSample(text, upstreamSample("upstream_idle_connections", upstream), upstream.getIdleConnections());
+            }
+            appendType(text, "upstream_up", "gauge", "1 if an upstream server is in the rotation, otherwise 0.");
+            for (Upstream upstream : proxy.getUpstreams()) {
+                appendSample(text, upstreamSample("upstream_up", upstream), upstream.isAvailable(now) ? 1 : 0);
+            }
+        }
+
+        DocumentRoot documentRoot = context.getDocumentRoot();
+        appendCounter(text, "path_cache_hits_total", "The number of resources resolved by the path cache.",
+                documentRoot.getHits());
+        appendCounter(text, "path_cache_misses_total", "The number of resources resolved on the file system.",
+                documentRoot.getMisses());
+        appendCounter(text, "paths_rejected_total", "The number of resources rejected with 400, for example traversals.",
+                documentRoot.getRejected());
+        appendGauge(text, "path_cache_entries", "The number of cached resolved paths.",
+                documentRoot.getCachedEntries());
+        FileCache fileCache = context.getFileCache();
+        appendCounter(text, "file_cache_hits_total", "The number of requests answered by the file cache.",
+                fileCache.getHits());
+        appendCounter(text, "file_cache_misses_total", "The number of files loaded into the file cache.",
+                fileCache.getMisses());
+        appendCounter(text, "file_cache_evictions_total", "The number of files evicted from the file cache.",
+                fileCache.getEvictions());
+        appendGauge(text, "file_cache_bytes", "The size of the cached files.", fileCache.getTotalBytes());
+        Compression compression = context.getCompression();
+        appendCounter(text, "compressions_total", "The number of contents which were compressed.",
+                compression.getCompressions());
+        appendGauge(text, "compression_cache_bytes", "The size of the cached compressed files.",
+                compression.getCachedBytes());
+        MappedFiles mappedFiles = context.getMappedFiles();
+        appendCounter(text, "mmap_mapped_total", "The number of files which were memory-mapped.",
+                mappedFiles.getMapped());
+        appendCounter(text, "mmap_unmapped_total", "The number of memory-mapped files which were unmapped.",
+                mappedFiles.getUnmapped());
+        appendGauge(text, "mmap_bytes", "The size of the memory-mapped files in the registry.",
+                mappedFiles.getMappedBytes());
+        appendCounter(text, "access_log_dropped_total", "The number of access log entries dropped on a full buffer.",
+                context.getAccessLog().getDropped());
+        return text.toString();
+    }
+
+    private static String upstreamSample(String name, Upstream upstream) {
+        return name + "{upstream=\"" + upstream.getName() + "\"}";
+    }
+
+    private static void appendCounter(StringBuilder text, String name, String help, long value) {
+        appendType(text, name, "counter", help);
+        appendSample(text, name, value);
+    }
+
+    private static void appendGauge(StringBuilder text, String name, String help, long value) {
+        appendType(text, name, "gauge", help);
+        appendSample(text, name, value);
+    }
+
+    private static void appendType(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void appendSample(StringBuilder text, String name, long value) {
+        text.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * A latency histogram with fixed buckets from 50 microseconds to 10 seconds.
+     */
+    private static class Histogram {
+
+        private static final long[] BOUNDS_NANOS = {
+            50_000L, 100_000L, 250_000L, 500_000L, 1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L,
+            25_000_000L, 50_000_000L, 100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L,
+            2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+        };
+
+        private LongAdder[] buckets = createAdders(BOUNDS_NANOS.length + 1);
+        private LongAdder sumNanos = new LongAdder();
+
+        private void record(long nanos) {
+            int bucket = 0;
+            while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sumNanos.add(nanos);
+        }
+
+        private void render(StringBuilder text, String name, String help) {
+            appendType(text, name, "histogram", help);
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+                cumulative += buckets[i].sum();
+                appendSample(text, name + "_bucket{le=\"" + toSeconds(BOUNDS_NANOS[i]) + "\"}", cumulative);
+            }
+            cumulative += buckets[BOUNDS_NANOS.length].sum();
+            appendSample(text, name + "_bucket{le=\"+Inf\"}", cumulative);
+            text.append(PREFIX).append(name).append("_sum ").append(toSeconds(sumNanos.sum())).append('\n');
+            appendSample(text, name + "_count", cumulative);
+        }
+
+        private static String toSeconds(long nanos) {
+            return String.format(Locale.ROOT, "%.6f", nanos / 1e9).replaceAll("0+$", "").replaceAll("\\.$", ".0");
+        }
+    }
+}
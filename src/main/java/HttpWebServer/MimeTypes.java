@@ -0,0 +1,203 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resolves the content type of a file from its extension. The registry is built once,
+ * from a built-in table and optionally from a file in the format of mime.types
+ * ("type extension extension ..." per line). The extensions are kept in an open addressing
+ * table which is probed with the characters of the file name, so a lookup allocates nothing.
+ * Textual types carry "; charset=utf-8", binary types carry no charset.
+ * Every server holds its own registry in its ServerContext, so servers with different mime.types
+ * files can run in the same JVM.
+ */
+public class MimeTypes {
+
+    private static final MimeType DEFAULT_TYPE = new MimeType("application/octet-stream");
+
+    private static final String[][] BUILT_IN_TYPES = {
+        {"text/html", "html", "htm"},
+        {"text/css", "css"},
+        {"text/plain", "txt", "text", "log", "md", "java", "gradle", "properties", "sh", "conf", "ini"},
+        {"text/csv", "csv"},
+        {"text/xml", "xml"},
+        {"text/yaml", "yaml", "yml"},
+        {"application/javascript", "js", "mjs"},
+        {"application/json", "json", "map"},
+        {"application/manifest+json", "webmanifest"},
+        {"application/xhtml+xml", "xhtml"},
+        {"application/pdf", "pdf"},
+        {"application/zip", "zip"},
+        {"application/gzip", "gz"},
+        {"application/x-tar", "tar"},
+        {"application/java-archive", "jar"},
+        {"application/wasm", "wasm"},
+        {"image/svg+xml", "svg"},
+        {"image/png", "png"},
+        {"image/jpeg", "jpg", "jpeg"},
+        {"image/gif", "gif"},
+        {"image/webp", "webp"},
+        {"image/avif", "avif"},
+        {"image/x-icon", "ico"},
+        {"image/bmp", "bmp"},
+        {"font/woff", "woff"},
+        {"font/woff2", "woff2"},
+        {"font/ttf", "ttf"},
+        {"font/otf", "otf"},
+        {"audio/mpeg", "mp3"},
+        {"audio/ogg", "ogg", "oga"},
+        {"audio/wav", "wav"},
+        {"video/mp4", "mp4"},
+        {"video/webm", "webm"},
+    };
+
+    private volatile Table table = new Table(new LinkedHashMap<>());
+
+    /**
+     * Adds the types of a mime.types file to the built-in types, the types of the file take precedence.
+     *
+     * @param file The mime.types file.
+     * @throws Throws an IOException if an I/O error occurs when reading the file.
+     */
+    public void load(Path file) throws IOException {
+        Map<String, MimeType> additionalTypes = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int comment = line.indexOf('#');
+            String[] fields = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+            if (fields.length < 2 || fields[0].indexOf('/') < 0) {
+                continue;
+            }
+            MimeType type = new MimeType(fields[0].toLowerCase());
+            for (int i = 1; i < fields.length; i++) {
+                additionalTypes.put(fields[i].toLowerCase(), type);
+            }
+        }
+        this.table = new Table(additionalTypes);
+    }
+
+    /**
+     * @param fileName The name of the file.
+     * @return Returns the type of the file, "application/octet-stream" if its extension is unknown.
+     */
+    public MimeType getType(String fileName) {
+        return table.lookup(fileName);
+    }
+
+    /**
+     * @return Returns the hash of the characters from start to end, ignoring the case of ASCII letters.
+     */
+    private static int hash(String text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            hash = 31 * hash + c;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * The open addressing table of the built-in and the additional types, it is not changed once it is built.
+     */
+    private static class Table {
+
+        private String[] extensions;
+        private MimeType[] types;
+        private int mask;
+
+        private Table(Map<String, MimeType> additionalTypes) {
+            Map<String, MimeType> byExtension = new LinkedHashMap<>();
+            for (String[] builtIn : BUILT_IN_TYPES) {
+                MimeType type = new MimeType(builtIn[0]);
+                for (int i = 1; i < builtIn.length; i++) {
+                    byExtension.put(builtIn[i], type);
+                }
+            }
+            byExtension.putAll(additionalTypes);
+
+            int capacity = Integer.highestOneBit(Math.max(1, byExtension.size() * 2 - 1)) << 1;
+            this.extensions = new String[capacity];
+            this.types = new MimeType[capacity];
+            this.mask = capacity - 1;
+            for (Map.Entry<String, MimeType> entry : byExtension.entrySet()) {
+                String extension = entry.getKey();
+                int index = hash(extension, 0, extension.length()) & mask;
+                while (extensions[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                extensions[index] = extension;
+                types[index] = entry.getValue();
+            }
+        }
+
+        private MimeType lookup(String fileName) {
+            int start = fileName.lastIndexOf('.') + 1;
+            int length = fileName.length() - start;
+            if (start == 0 || length == 0) {
+                return DEFAULT_TYPE;
+            }
+            int index = hash(fileName, start, fileName.length()) & mask;
+            while (extensions[index] != null) {
+                String extension = extensions[index];
+                if (extension.length() == length && fileName.regionMatches(true, start, extension, 0, length)) {
+                    return types[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return DEFAULT_TYPE;
+        }
+    }
+
+    /**
+     * A content type with its charset and the precomputed Content-Type header line.
+     */
+    public static class MimeType {
+
+        private String mediaType;
+        private String value;
+        private byte[] headerLine;
+
+        private MimeType(String mediaType) {
+            this.mediaType = mediaType;
+            this.value = isTextual(mediaType) ? mediaType + "; charset=utf-8" : mediaType;
+            this.headerLine = HeaderWriter.ascii("Content-Type: " + value + "\r\n");
+        }
+
+        /**
+         * Textual types are text/*, JavaScript and the JSON and XML based types.
+         */
+        private static boolean isTextual(String mediaType) {
+            return mediaType.startsWith("text/") || mediaType.equals("application/javascript")
+                || mediaType.equals("application/json") || mediaType.equals("application/xml")
+                || mediaType.endsWith("+xml") || mediaType.endsWith("+json");
+        }
+
+        /**
+         * @return Returns the media type without parameters, for example "text/html".
+         */
+        public String getMediaType() {
+            return this.mediaType;
+        }
+
+        /**
+         * @return Returns the value of the Content-Type header, for example "text/html; charset=utf-8".
+         */
+        public String getValue() {
+            return this.value;
+        }
+
+        /**
+         * @return Returns the complete Content-Type header line, encoded as ASCII.
+         */
+        public byte[] getHeaderLine() {
+            return this.headerLine;
+        }
+    }
+}
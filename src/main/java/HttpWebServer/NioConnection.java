@@ -0,0 +1,238 @@
+package httpwebserver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The state of a connection which is served by a NioEventLoop.
+ * A request is read incrementally into the buffer of a RequestParser until the
+ * header block is complete, the response is written as far as the channel accepts it,
+ * file contents are transferred directly from the file to the channel.
+ * On a persistent connection the bytes after the header block stay in the parser,
+ * they are the beginning of the next (pipelined) request.
+ * The response is computed on a worker thread, because it may read files or run request handlers,
+ * the event loop hands the connection over and takes it back when the response is ready. While the
+ * response is computed, the connection is only touched by the worker.
+ * The deadlines of the connection are watched by the timer wheel of the server.
+ *
+ * @param channel The non-blocking channel which is connected to the client.
+ * @param context The shared components of the server.
+ * @param onExpiry Runs in the thread of the timer wheel when a deadline of the connection passed.
+ */
+public class NioConnection {
+
+    private SocketChannel channel;
+    private WritableByteChannel target;
+    private ServerContext context;
+    private ServerConfig config;
+    private RequestParser parser;
+    private HeaderWriter header = new HeaderWriter();
+    private ConnectionDeadline deadline;
+    private RequestMessage request;
+    private ResponseMessage response;
+    private boolean keepAlive = false;
+    private boolean processing = false;
+    private int handledRequests = 0;
+    private RequestMessage processedRequest;
+    private long processStart;
+    private long parseNanos = 0;
+    private long handleNanos = 0;
+    private long writeNanos = 0;
+
+    public NioConnection(SocketChannel channel, ServerContext context, Runnable onExpiry) {
+        this.channel = channel;
+        this.context = context;
+        this.config = context.getConfig();
+        this.parser = new RequestParser(config.getMaxRequestHeaderSize());
+        this.deadline = new ConnectionDeadline(context, onExpiry);
+        deadline.waitForRequest(true);
+    }
+
+    /**
+     * Reads the bytes, which are available on the channel, into the buffer of the parser.
+     *
+     * @return Returns true if a request was received completely or turned out to be
+     *         malformed, false if more bytes are needed.
+     * @throws Throws an IOException if the channel is closed or an I/O error occurs.
+     */
+    public boolean readRequest() throws IOException {
+        if (parser.readFrom(channel) < 0) {
+            throw new EOFException("Connection closed by client");
+        }
+        if (!parser.isEmpty()) {
+            deadline.startHeader();
+        }
+        return isRequestReceived();
+    }
+
+    /**
+     * @return Returns true if the received request needs a RequestProcessor, false if it was malformed
+     *         and already answered with an error response by the parsing step.
+     */
+    public boolean hasRequest() {
+        return this.request != null;
+    }
+
+    /**
+     * Hands the connection over to a worker, it has no deadline until the response is ready.
+     * Called by the event loop.
+     */
+    public void startProcessing() {
+        deadline.cancel();
+        processing = true;
+    }
+
+    /**
+     * Takes the connection back from the worker. Called by the event loop.
+     *
+     * @return Returns true if the worker computed a response.
+     */
+    public boolean finishProcessing() {
+        processing = false;
+        return response != null;
+    }
+
+    /**
+     * Answers the received request with "503 Service Unavailable" if no worker can take it.
+     */
+    public void rejectRequest() {
+        processing = false;
+        request = null;
+        setErrorResponse(context.getFailedResponse().getServiceUnavailableMessage(header));
+        processRequest();
+    }
+
+    /**
+     * Computes the response for the received request with a RequestProcessor.
+     * A malformed request was already answered with an error response by the parsing step,
+     * a request which fails with an unexpected exception is answered with "500 Internal Server Error".
+     */
+    public void processRequest() {
+        deadline.cancel();
+        if (request != null) {
+            processStart = System.nanoTime();
+            RequestProcessor processor = new RequestProcessor(channel.socket(), context, header);
+            boolean keepAliveAllowed = handledRequests + 1 < config.getMaxRequestsPerConnection();
+            try {
+                response = processor.process(request, keepAliveAllowed);
+                keepAlive = processor.isKeepAlive();
+            } catch (RuntimeException errorMessage) {
+                // Here: Create a log of the exception and the state of the system
+                errorMessage.printStackTrace();
+                setErrorResponse(context.getFailedResponse().getServerErrorMessage(header));
+            }
+            processedRequest = request;
+            request = null;
+            handleNanos = System.nanoTime() - processStart;
+        }
+        handledRequests++;
+        target = deadline.startWrite(response, channel);
+    }
+
+    /**
+     * Writes as much of the response as the channel accepts without blocking.
+     *
+     * @return Returns true if the response was written completely.
+     * @throws Throws an IOException if an I/O error occurs when writing.
+     */
+    public boolean writeResponse() throws IOException {
+        long writeStart = System.nanoTime();
+        boolean written = response.writeTo(target);
+        writeNanos += System.nanoTime() - writeStart;
+        if (!written) {
+            return false;
+        }
+        recordResponse();
+        response.close();
+        response = null;
+        deadline.waitForRequest(false);
+        return true;
+    }
+
+    /**
+     * Records the written response. The write time of the metrics only covers the writes, the
+     * duration in the access log also covers the waiting for the channel.
+     */
+    private void recordResponse() {
+        if (processedRequest != null) {
+            context.getMetrics().recordRequest(processedRequest.getMethod(), response, parseNanos, handleNanos,
+                    writeNanos);
+        } else {
+            context.getMetrics().recordResponse(response);
+        }
+        long durationNanos = processedRequest == null ? 0 : System.nanoTime() - processStart;
+        context.getAccessLog().log(channel.socket().getInetAddress(), processedRequest, response, durationNanos);
+        processedRequest = null;
+        parseNanos = 0;
+        handleNanos = 0;
+        writeNanos = 0;
+    }
+
+    /**
+     * Releases the resources of a response which was not written completely.
+     */
+    public void close() {
+        deadline.cancel();
+        if (response != null) {
+            response.close();
+            response = null;
+        }
+    }
+
+    /**
+     * @return Returns true if the connection stays open after the current response.
+     */
+    public boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+
+    /**
+     * Prepares the connection for the next request on a persistent connection.
+     *
+     * @return Returns true if the next request was already received completely (pipelining).
+     */
+    public boolean startNextRequest() {
+        if (!parser.isEmpty()) {
+            deadline.startHeader();
+        }
+        return isRequestReceived();
+    }
+
+    /**
+     * @return Returns true if the connection waits for a further request and
+     *         has not received any part of it yet.
+     */
+    public boolean isWaitingForRequest() {
+        return !processing && response == null && parser.isEmpty() && handledRequests > 0;
+    }
+
+    private boolean isRequestReceived() {
+        long parseStart = System.nanoTime();
+        try {
+            request = parser.parse();
+            return request != null;
+        } catch (BadRequestException errorMessage) {
+            log(errorMessage);
+            setErrorResponse(context.getFailedResponse().getBadRequestMessage(header));
+        } catch (RequestHeaderTooLargeException errorMessage) {
+            log(errorMessage);
+            setErrorResponse(context.getFailedResponse().getRequestHeaderTooLargeMessage(header));
+        } finally {
+            parseNanos += System.nanoTime() - parseStart;
+        }
+        return true;
+    }
+
+    private void log(Object message) {
+        if (config.isConsoleLog()) {
+            System.out.println(message);
+        }
+    }
+
+    private void setErrorResponse(ResponseMessage errorResponse) {
+        response = errorResponse;
+        keepAlive = false;
+    }
+}
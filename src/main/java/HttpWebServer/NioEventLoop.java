@@ -0,0 +1,264 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A NioEventLoop serves many connections in a single thread. It waits with a Selector
+ * until one of its connections can be read or written and then lets the NioConnection
+ * of this channel do as much work as possible without blocking.
+ * The loop itself only reads and writes: the response of a received request is computed by a
+ * worker of the executor, which may block on the file system or in a request handler. The
+ * connection is not selected meanwhile, the worker hands it back through a queue and the loop
+ * writes the response.
+ * A connection which missed a deadline is handed back by the timer wheel through a queue
+ * and closed by the event loop, so the loop does not scan its connections for timeouts.
+ */
+public class NioEventLoop implements Runnable {
+
+    private ServerContext context;
+    private ExecutorService workers;
+    private Selector selector;
+    private Queue<SocketChannel> newConnections = new ConcurrentLinkedQueue<>();
+    private Queue<SelectionKey> processedConnections = new ConcurrentLinkedQueue<>();
+    private Queue<SelectionKey> expiredConnections = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param context The shared components of the server.
+     * @param workers The executor which computes the responses, it is shared by the event loops.
+     * @throws Throws an IOException if the selector can not be opened.
+     */
+    public NioEventLoop(ServerContext context, ExecutorService workers) throws IOException {
+        this.context = context;
+        this.workers = workers;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Hands a new connection over to this event loop. Can be called from any thread.
+     *
+     * @param channel The non-blocking channel of the accepted connection.
+     */
+    public void register(SocketChannel channel) {
+        newConnections.add(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * @return Returns the number of connections which were handed over but are not registered yet.
+     */
+    public int getPendingConnections() {
+        return newConnections.size();
+    }
+
+    /**
+     * Stops the event loop as soon as its open connections are finished.
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Closes the selector and all connections which are still open.
+     */
+    public void close() {
+        for (SelectionKey key : selector.keys()) {
+            closeConnection(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running || !selector.keys().isEmpty()) {
+                selector.select(running ? 0 : 100);
+                registerNewConnections();
+                handleSelectedKeys();
+                writeProcessedResponses();
+                closeExpiredConnections();
+                if (!running) {
+                    closeWaitingConnections();
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // The event loop was closed by a shutdown
+        } catch (IOException e) {
+            // Here: Create a log of the exception and the state of the system
+            e.printStackTrace();
+        }
+    }
+
+    private void registerNewConnections() {
+        SocketChannel channel;
+        while ((channel = newConnections.poll()) != null) {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new NioConnection(channel, context, () -> expire(key)));
+                context.getMetrics().connectionOpened();
+            } catch (ClosedChannelException e) {
+                // The connection was closed before it was registered, its admission is given back
+                context.getAdmissionControl().release(channel.socket().getInetAddress());
+            }
+        }
+    }
+
+    private void handleSelectedKeys() {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            try {
+                if (key.isReadable()) {
+                    handleRead(key);
+                } else if (key.isWritable()) {
+                    handleWrite(key);
+                }
+            } catch (IOException e) {
+                closeConnection(key);
+            }
+        }
+    }
+
+    private void handleRead(SelectionKey key) throws IOException {
+        NioConnection connection = (NioConnection) key.attachment();
+        if (!connection.readRequest()) {
+            return;
+        }
+        process(key);
+    }
+
+    /**
+     * Lets a worker compute the response of the received request. A malformed request was already
+     * answered by the parser, its error response is written at once, as is the "503 Service Unavailable"
+     * response when no worker can take the request.
+     */
+    private void process(SelectionKey key) throws IOException {
+        NioConnection connection = (NioConnection) key.attachment();
+        if (!connection.hasRequest()) {
+            connection.processRequest();
+            handleWrite(key);
+            return;
+        }
+        key.interestOps(0);
+        connection.startProcessing();
+        try {
+            workers.execute(() -> {
+                try {
+                    connection.processRequest();
+                } finally {
+                    processedConnections.add(key);
+                    selector.wakeup();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            connection.rejectRequest();
+            handleWrite(key);
+        }
+    }
+
+    /**
+     * Writes the responses which the workers computed. A connection which missed a deadline
+     * in the meantime was closed, the response is released.
+     */
+    private void writeProcessedResponses() {
+        SelectionKey key;
+        while ((key = processedConnections.poll()) != null) {
+            NioConnection connection = (NioConnection) key.attachment();
+            if (!connection.finishProcessing() || !key.isValid()) {
+                closeConnection(key);
+                continue;
+            }
+            try {
+                handleWrite(key);
+            } catch (IOException e) {
+                closeConnection(key);
+            }
+        }
+    }
+
+    /**
+     * Writes the response and, on a persistent connection, continues with
+     * the request which was already received.
+     */
+    private void handleWrite(SelectionKey key) throws IOException {
+        NioConnection connection = (NioConnection) key.attachment();
+        if (!connection.writeResponse()) {
+            key.interestOps(SelectionKey.OP_WRITE);
+            return;
+        }
+        if (!connection.isKeepAlive()) {
+            closeConnection(key);
+            return;
+        }
+        if (!connection.startNextRequest()) {
+            key.interestOps(SelectionKey.OP_READ);
+            return;
+        }
+        process(key);
+    }
+
+    /**
+     * Hands a connection, which missed a deadline, back to the event loop. Called by the timer wheel.
+     */
+    private void expire(SelectionKey key) {
+        expiredConnections.add(key);
+        selector.wakeup();
+    }
+
+    private void closeExpiredConnections() {
+        SelectionKey key;
+        while ((key = expiredConnections.poll()) != null) {
+            if (key.isValid()) {
+                closeConnection(key);
+            }
+        }
+    }
+
+    /**
+     * Closes the persistent connections, which wait for a further request, during a shutdown.
+     */
+    private void closeWaitingConnections() {
+        for (SelectionKey key : selector.keys()) {
+            NioConnection connection = (NioConnection) key.attachment();
+            if (key.isValid() && connection.isWaitingForRequest()) {
+                closeConnection(key);
+            }
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        if (key.channel().isOpen()) {
+            context.getAdmissionControl().release(((SocketChannel) key.channel()).socket().getInetAddress());
+            context.getMetrics().connectionClosed();
+        }
+        key.cancel();
+        NioConnection connection = (NioConnection) key.attachment();
+        if (connection != null) {
+            connection.close();
+        }
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
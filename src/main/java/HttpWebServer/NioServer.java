@@ -0,0 +1,162 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A non-blocking server instance which runs in a thread.
+ * NioServer accepts the client connections on the acceptor threads of its Listeners and
+ * distributes them round-robin over a fixed number of NioEventLoops, each of them serves
+ * its connections with a Selector. The responses are computed by workers of an executor of
+ * the ExecutionMode, so that file I/O and request handlers do not stall an event loop.
+ * Connections which are not admitted by the AdmissionControl are answered by the acceptor thread.
+ *
+ * @param context The shared components of the server.
+ */
+public class NioServer implements ServerInstance {
+
+    private ServerContext context;
+    private ServerConfig config;
+    private Listeners listeners;
+    private ExecutorService workers;
+    private NioEventLoop[] eventLoops;
+    private Thread[] eventLoopThreads;
+    private volatile boolean running = true;
+
+    public NioServer(ServerContext context) {
+        this.context = context;
+        this.config = context.getConfig();
+        this.listeners = new Listeners(config);
+        this.workers = AsyncServer.createExecutor(config, "nio-worker");
+    }
+
+    @Override
+    public void run() {
+        try {
+            startEventLoops();
+        } catch (IOException e) {
+            // Here: Create a log of the exception and the state of the system
+            e.printStackTrace();
+            return;
+        }
+        if (config.isConsoleLog()) {
+            System.out.println("Server is listening for requests...");
+        }
+        listeners.runAcceptors("nio-acceptor", this::executeServer);
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        listeners.close();
+        if (eventLoops == null) {
+            workers.shutdownNow();
+            return;
+        }
+        for (NioEventLoop eventLoop : eventLoops) {
+            eventLoop.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + config.getShutdownTimeoutSeconds() * 1000L;
+        for (int i = 0; i < eventLoopThreads.length; i++) {
+            awaitEventLoop(eventLoopThreads[i], deadline);
+            eventLoops[i].close();
+        }
+        workers.shutdownNow();
+    }
+
+    private void startEventLoops() throws IOException {
+        int count = Math.max(1, config.getEventLoopThreads());
+        eventLoops = new NioEventLoop[count];
+        eventLoopThreads = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            eventLoops[i] = new NioEventLoop(context, workers);
+            eventLoopThreads[i] = new Thread(eventLoops[i], "nio-event-loop-" + (i + 1));
+            eventLoopThreads[i].start();
+        }
+        context.getMetrics().setAcceptQueueDepth(() -> {
+            long pending = 0;
+            for (NioEventLoop eventLoop : eventLoops) {
+                pending += eventLoop.getPendingConnections();
+            }
+            return pending;
+        });
+    }
+
+    @Override
+    public void bind() throws IOException {
+        listeners.bind();
+    }
+
+    @Override
+    public List<InetSocketAddress> getLocalAddresses() {
+        return listeners.getLocalAddresses();
+    }
+
+    /**
+     * Every acceptor starts the round-robin at another event loop.
+     */
+    private void executeServer(ServerSocketChannel serverChannel, int acceptor) throws IOException {
+        int next = acceptor % eventLoops.length;
+        while (running) {
+            SocketChannel connection;
+            try {
+                connection = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            context.getMetrics().connectionAccepted();
+            AdmissionControl admissionControl = context.getAdmissionControl();
+            int admission = admissionControl.admit(connection.socket().getInetAddress());
+            try {
+                listeners.configure(connection);
+                if (admission != AdmissionControl.ADMITTED) {
+                    reject(connection, admission);
+                    continue;
+                }
+                connection.configureBlocking(false);
+            } catch (IOException e) {
+                // The client has already closed the connection
+                if (admission == AdmissionControl.ADMITTED) {
+                    admissionControl.release(connection.socket().getInetAddress());
+                }
+                connection.close();
+                continue;
+            }
+            eventLoops[next].register(connection);
+            next = (next + 1) % eventLoops.length;
+        }
+    }
+
+    /**
+     * Answers a connection which is not admitted while its channel is still blocking, the small
+     * response fits into the empty send buffer of the socket.
+     */
+    private void reject(SocketChannel connection, int statusCode) throws IOException {
+        context.getMetrics().connectionRejected();
+        ResponseMessage response = context.getFailedResponse().getMessage(statusCode, "HTTP/1.1", new HeaderWriter(),
+                false, false);
+        try {
+            while (!response.writeTo(connection)) {
+                // A blocking channel writes the response at once
+            }
+            context.getMetrics().recordResponse(response);
+            context.getAccessLog().log(connection.socket().getInetAddress(), null, response, 0);
+        } finally {
+            response.close();
+            connection.close();
+        }
+    }
+
+    private void awaitEventLoop(Thread eventLoopThread, long deadline) {
+        try {
+            eventLoopThread.join(Math.max(1, deadline - System.currentTimeMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package httpwebserver;
+
+/**
+ * Defines how the reverse proxy distributes the requests of a route over its upstream servers.
+ *
+ * ROUND_ROBIN: The upstream servers take turns.
+ * LEAST_CONNECTIONS: The upstream server with the fewest requests in flight is chosen,
+ *         the servers take turns if several have as few.
+ */
+public enum ProxyBalancing {
+    ROUND_ROBIN, LEAST_CONNECTIONS
+}
@@ -0,0 +1,167 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The body of a response of an upstream server, which is streamed to the client while it is
+ * read from the upstream connection, so only one buffer of it is held in memory. A body of
+ * unknown length is sent to the client with the chunked transfer coding.
+ * When the body was written completely, the upstream connection is put back into the pool of
+ * its server, otherwise it is closed.
+ *
+ * @param upstream The upstream server.
+ * @param connection The connection to the upstream server.
+ * @param body The decoded body of the response.
+ * @param contentLength The length of the body or -1 if it is unknown.
+ * @param chunked True if the body is sent to the client with the chunked transfer coding.
+ * @param reusable True if the upstream connection can be used again after the body.
+ */
+public class ProxyBodyPart implements MessagePart {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final byte[] CRLF = HeaderWriter.ascii("\r\n");
+    private static final byte[] LAST_CHUNK = HeaderWriter.ascii("0\r\n\r\n");
+
+    private Upstream upstream;
+    private UpstreamConnection connection;
+    private InputStream body;
+    private long contentLength;
+    private boolean chunked;
+    private boolean reusable;
+    private byte[] data = new byte[BUFFER_SIZE];
+    private ByteBuffer chunk;
+    private ByteBuffer pending = ByteBuffer.allocate(0);
+    private long written = 0;
+    private boolean finished = false;
+    private boolean released = false;
+
+    public ProxyBodyPart(Upstream upstream, UpstreamConnection connection, InputStream body, long contentLength,
+            boolean chunked, boolean reusable) {
+        this.upstream = upstream;
+        this.connection = connection;
+        this.body = body;
+        this.contentLength = contentLength;
+        this.chunked = chunked;
+        this.reusable = reusable;
+        if (chunked) {
+            this.chunk = ByteBuffer.allocate(BUFFER_SIZE + 16);
+        }
+    }
+
+    /**
+     * A body of the given length from a stream, which must not end before.
+     *
+     * @param in The stream of the upstream connection.
+     * @param length The length of the body.
+     * @return Returns the body, it ends after the length.
+     */
+    public static InputStream bounded(InputStream in, long length) {
+        return new BoundedInputStream(in, length);
+    }
+
+    /**
+     * @return Returns the length of the body if it is known, otherwise the number of bytes which were
+     *         written so far, it is the length of the part when the part was written completely.
+     */
+    @Override
+    public long getLength() {
+        return contentLength >= 0 ? contentLength : written;
+    }
+
+    @Override
+    public boolean isLengthKnown() {
+        return contentLength >= 0;
+    }
+
+    @Override
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        while (true) {
+            channel.write(pending);
+            if (pending.hasRemaining()) {
+                return false;
+            }
+            if (finished) {
+                return true;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Reads the next piece of the body from the upstream connection, an error counts as a failure of the server.
+     */
+    private void fill() throws IOException {
+        int read;
+        try {
+            read = body.read(data);
+        } catch (IOException e) {
+            upstream.failed();
+            throw e;
+        }
+        if (read < 0) {
+            finished = true;
+            pending = chunked ? ByteBuffer.wrap(LAST_CHUNK) : ByteBuffer.allocate(0);
+            written += pending.remaining();
+            return;
+        }
+        if (chunked) {
+            chunk.clear();
+            chunk.put(Integer.toHexString(read).getBytes(StandardCharsets.US_ASCII)).put(CRLF);
+            chunk.put(data, 0, read).put(CRLF);
+            chunk.flip();
+            pending = chunk;
+        } else {
+            pending = ByteBuffer.wrap(data, 0, read);
+        }
+        written += pending.remaining();
+    }
+
+    /**
+     * Releases the upstream connection, it is only reused if the body was read completely.
+     */
+    @Override
+    public void close() {
+        if (!released) {
+            released = true;
+            upstream.release(connection, finished && reusable);
+        }
+    }
+
+    /**
+     * Reads a body of a known length, the stream of the connection continues behind it.
+     */
+    private static class BoundedInputStream extends InputStream {
+
+        private InputStream in;
+        private long remaining;
+        private byte[] single = new byte[1];
+
+        private BoundedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = in.read(target, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new ProtocolException("Response body ended " + remaining + " bytes too early");
+            }
+            remaining -= read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Forwards a request to an upstream server of its route and turns the answer into the response
+ * to the client. The request header is rewritten: the hop-by-hop headers of the client connection
+ * are removed and X-Forwarded-For and X-Forwarded-Proto are added. The request body is streamed
+ * from the client to the upstream server, the response body from the upstream server to the
+ * client, neither is held in memory as a whole.
+ * A request which can not be sent, because the server can not be connected, is sent to the next
+ * server of the route. A request without body and with an idempotent method is also sent again
+ * if the server did not answer, for example because it closed an idle connection of the pool.
+ * If no server answers, the client receives "502 Bad Gateway", or "504 Gateway Timeout" if the
+ * server did not answer within --proxy-read-timeout milliseconds.
+ *
+ * @param context The shared components of the server.
+ * @param route The route of the request.
+ * @param request The request of the client.
+ * @param body The body of the request, it is empty if the request has none.
+ * @param header The header writer of the client connection.
+ * @param keepAlive True if the client connection stays open after the response, unless the
+ *        response can not be delimited.
+ * @param client The address of the client.
+ */
+public class ProxyExchange {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final byte[] CRLF = HeaderWriter.ascii("\r\n");
+    private static final byte[] LAST_CHUNK = HeaderWriter.ascii("0\r\n\r\n");
+    private static final byte[] CONTENT_LENGTH = HeaderWriter.ascii("Content-Length: ");
+    private static final byte[] TRANSFER_ENCODING_CHUNKED = HeaderWriter.ascii("Transfer-Encoding: chunked\r\n");
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of("connection", "keep-alive", "proxy-connection",
+            "proxy-authenticate", "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade",
+            "content-length");
+
+    private ServerContext context;
+    private ReverseProxy proxy;
+    private ReverseProxy.Route route;
+    private RequestMessage request;
+    private RequestBody body;
+    private HeaderWriter header;
+    private boolean keepAlive;
+    private InetAddress client;
+    private boolean clientFailed = false;
+
+    public ProxyExchange(ServerContext context, ReverseProxy.Route route, RequestMessage request, RequestBody body,
+            HeaderWriter header, boolean keepAlive, InetAddress client) {
+        this.context = context;
+        this.proxy = context.getReverseProxy();
+        this.route = route;
+        this.request = request;
+        this.body = body;
+        this.header = header;
+        this.keepAlive = keepAlive;
+        this.client = client;
+    }
+
+    /**
+     * @return Returns the response to the client, its body is streamed from the upstream server.
+     */
+    public ResponseMessage forward() {
+        List<Upstream> failed = new ArrayList<>(2);
+        boolean reuse = true;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            Upstream upstream = route.choose(proxy.getBalancing(), failed);
+            if (upstream == null) {
+                break;
+            }
+            UpstreamConnection connection;
+            try {
+                connection = upstream.acquire(reuse);
+            } catch (IOException e) {
+                // Nothing was sent, the next server can take the request
+                log(upstream.getName() + " can not be connected: " + e);
+                upstream.failed();
+                failed.add(upstream);
+                continue;
+            }
+            try {
+                sendRequest(connection, upstream);
+                UpstreamConnection.Head head = connection.readHead();
+                upstream.succeeded();
+                if (head.getStatusCode() == 101) {
+                    // The Upgrade header is not forwarded, the switched protocol can not be relayed
+                    log(upstream.getName() + " switched the protocol");
+                    upstream.release(connection, false);
+                    break;
+                }
+                return getResponseMessage(upstream, connection, head);
+            } catch (SocketTimeoutException e) {
+                upstream.release(connection, false);
+                if (clientFailed) {
+                    return getClientErrorMessage(e);
+                }
+                log(upstream.getName() + " did not answer in time");
+                upstream.failed();
+                proxy.gatewayTimeout();
+                keepAlive = keepAlive && body.isFinished();
+                return context.getFailedResponse().getGatewayTimeoutMessage(request, header, keepAlive);
+            } catch (IOException e) {
+                upstream.release(connection, false);
+                if (clientFailed) {
+                    return getClientErrorMessage(e);
+                }
+                if (!isRepeatable()) {
+                    log(upstream.getName() + " failed: " + e);
+                    upstream.failed();
+                    break;
+                }
+                if (connection.isReused()) {
+                    // The server closed the idle connection, the request is sent on a new one
+                    reuse = false;
+                    continue;
+                }
+                log(upstream.getName() + " failed: " + e);
+                upstream.failed();
+                failed.add(upstream);
+                reuse = true;
+            }
+        }
+        proxy.badGateway();
+        keepAlive = keepAlive && body.isFinished();
+        return context.getFailedResponse().getBadGatewayMessage(request, header, keepAlive);
+    }
+
+    /**
+     * @return Returns true if the client connection stays open after the response.
+     */
+    public boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+
+    /**
+     * @return Returns true if the request can be sent again after it was sent (partially) without an answer.
+     */
+    private boolean isRepeatable() {
+        return body.getLength() == 0 && request.getMethod().isIdempotent();
+    }
+
+    private void sendRequest(UpstreamConnection connection, Upstream upstream) throws IOException {
+        StringBuilder head = new StringBuilder(512);
+        head.append(request.getMethod().name()).append(' ').append(request.getResource());
+        if (request.getQuery() != null) {
+            head.append('?').append(request.getQuery());
+        }
+        head.append(" HTTP/1.1\r\n");
+        String connectionHeader = request.getHeader("Connection");
+        for (Map.Entry<String, String> field : request.getHeaders().entrySet()) {
+            String name = field.getKey();
+            if (HOP_BY_HOP_HEADERS.contains(name) || RequestMessage.hasToken(connectionHeader, name)
+                    || name.equals("expect") || name.equals("x-forwarded-for") || name.equals("x-forwarded-proto")) {
+                continue;
+            }
+            head.append(name).append(": ").append(field.getValue()).append("\r\n");
+        }
+        if (request.getHeader("Host") == null) {
+            head.append("host: ").append(upstream.getName()).append("\r\n");
+        }
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        head.append("x-forwarded-for: ").append(forwardedFor == null ? "" : forwardedFor + ", ")
+            .append(client.getHostAddress()).append("\r\n");
+        head.append("x-forwarded-proto: http\r\n");
+        if (body.isChunked()) {
+            head.append("transfer-encoding: chunked\r\n");
+        } else if (body.getLength() > 0 || request.getHeader("Content-Length") != null) {
+            head.append("content-length: ").append(body.getLength()).append("\r\n");
+        }
+        head.append("\r\n");
+        OutputStream out = connection.getOutputStream();
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (body.getLength() != 0) {
+            copyBody(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Streams the request body to the upstream server, a chunked body is sent chunked again.
+     * An error when reading from the client is remembered, it is not a failure of the server.
+     */
+    private void copyBody(OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (true) {
+            int read;
+            try {
+                read = body.read(buffer);
+            } catch (IOException e) {
+                clientFailed = true;
+                throw e;
+            }
+            if (read < 0) {
+                break;
+            }
+            if (body.isChunked()) {
+                out.write(Integer.toHexString(read).getBytes(StandardCharsets.US_ASCII));
+                out.write(CRLF);
+                out.write(buffer, 0, read);
+                out.write(CRLF);
+            } else {
+                out.write(buffer, 0, read);
+            }
+        }
+        if (body.isChunked()) {
+            out.write(LAST_CHUNK);
+        }
+    }
+
+    /**
+     * Builds the response from the header of the upstream server. The body keeps its length if the
+     * server sent one, otherwise it is sent chunked, to a HTTP/1.0 client it is delimited by closing
+     * the connection.
+     */
+    private ResponseMessage getResponseMessage(Upstream upstream, UpstreamConnection connection,
+            UpstreamConnection.Head head) throws IOException {
+        int statusCode = head.getStatusCode();
+        String connectionHeader = head.getHeader("Connection");
+        boolean reusable = head.isHttp10()
+            ? RequestMessage.hasToken(connectionHeader, "keep-alive")
+            : !RequestMessage.hasToken(connectionHeader, "close");
+        boolean hasBody = request.getMethod() != Method.HEAD && statusCode >= 200 && statusCode != 204
+            && statusCode != 304;
+        InputStream in = connection.getInputStream();
+        InputStream responseBody = null;
+        long contentLength = -1;
+        String transferEncoding = head.getHeader("Transfer-Encoding");
+        String contentLengthHeader = head.getHeader("Content-Length");
+        if (!hasBody) {
+            contentLength = 0;
+        } else if (transferEncoding != null) {
+            if (!transferEncoding.trim().toLowerCase().endsWith("chunked")) {
+                throw new ProtocolException("Unsupported Transfer-Encoding " + transferEncoding);
+            }
+            responseBody = new ChunkedInputStream(in);
+        } else if (contentLengthHeader != null) {
+            contentLength = parseContentLength(contentLengthHeader);
+            responseBody = ProxyBodyPart.bounded(in, contentLength);
+        } else {
+            responseBody = in;
+            reusable = false;
+        }
+        boolean http10 = "HTTP/1.0".equals(request.getHttpVersion());
+        boolean chunked = hasBody && contentLength < 0 && !http10;
+        if (hasBody && contentLength < 0 && http10) {
+            keepAlive = false;
+        }
+        keepAlive = keepAlive && body.isFinished();
+
+        header.start(http10 ? "HTTP/1.0" : "HTTP/1.1", statusCode);
+        for (String[] field : head.getHeaders()) {
+            String name = field[0].toLowerCase();
+            if (name.equals("content-length") ? hasBody : HOP_BY_HOP_HEADERS.contains(name)
+                    || RequestMessage.hasToken(connectionHeader, name) || name.equals("server")
+                    || name.equals("date")) {
+                continue;
+            }
+            header.append((field[0] + ": " + field[1] + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        }
+        if (hasBody && contentLength >= 0) {
+            header.header(CONTENT_LENGTH, contentLength);
+        } else if (chunked) {
+            header.append(TRANSFER_ENCODING_CHUNKED);
+        }
+        header.connection(keepAlive);
+        ResponseMessage response = new ResponseMessage(header.finish());
+        if (responseBody != null && contentLength != 0) {
+            response.addPart(new ProxyBodyPart(upstream, connection, responseBody, contentLength, chunked, reusable));
+        } else {
+            upstream.release(connection, reusable);
+        }
+        return response;
+    }
+
+    private static long parseContentLength(String value) throws ProtocolException {
+        String[] values = value.split(",");
+        try {
+            long length = Long.parseLong(values[0].trim());
+            for (String other : values) {
+                if (Long.parseLong(other.trim()) != length) {
+                    throw new ProtocolException("Different Content-Length values: " + value);
+                }
+            }
+            if (length < 0) {
+                throw new ProtocolException("Malformed Content-Length: " + value);
+            }
+            return length;
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Malformed Content-Length: " + value);
+        }
+    }
+
+    /**
+     * The client sent a malformed body or did not send it in time, the client connection is closed.
+     */
+    private ResponseMessage getClientErrorMessage(IOException e) {
+        log(e);
+        keepAlive = false;
+        return context.getFailedResponse().getBadRequestMessage(header);
+    }
+
+    private void log(Object message) {
+        if (context.getConfig().isConsoleLog()) {
+            System.out.println(message);
+        }
+    }
+}
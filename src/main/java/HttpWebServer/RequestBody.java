@@ -0,0 +1,216 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The body of a request on a blocking connection. The body is not read in advance, it is
+ * read from the connection while it is consumed, for example forwarded piece by piece by the
+ * reverse proxy, so a large upload is never held in memory. The framing of the body follows
+ * the request header: a Content-Length, or the chunked transfer coding, which is decoded.
+ * A client which sent "Expect: 100-continue" receives "100 Continue" when the body is read first.
+ * While the body is read, the connection has to deliver it within --body-timeout milliseconds
+ * plus the time it takes at --min-body-rate bytes per second.
+ *
+ * @param parser The parser of the connection, it holds the first bytes of the body.
+ * @param in The blocking stream of the connection.
+ * @param out The channel of the connection, for the interim response.
+ * @param deadline The deadline of the connection.
+ * @param length The length of the body, or -1 if the body is chunked.
+ * @param expectContinue True if the client waits for "100 Continue" before it sends the body.
+ */
+public class RequestBody extends InputStream {
+
+    private static final byte[] CONTINUE = HeaderWriter.ascii("HTTP/1.1 100 Continue\r\n\r\n");
+
+    private RequestParser parser;
+    private InputStream in;
+    private WritableByteChannel out;
+    private ConnectionDeadline deadline;
+    private InputStream source;
+    private ChunkedInputStream chunked;
+    private long length;
+    private long remaining;
+    private long received = 0;
+    private boolean expectContinue;
+    private boolean started = false;
+    private byte[] single = new byte[1];
+
+    private RequestBody(RequestParser parser, InputStream in, WritableByteChannel out, ConnectionDeadline deadline,
+            long length, boolean expectContinue) {
+        this.parser = parser;
+        this.in = in;
+        this.out = out;
+        this.deadline = deadline;
+        this.length = length;
+        this.remaining = length;
+        this.expectContinue = expectContinue;
+        this.source = new ConnectionInput();
+        if (length < 0) {
+            this.chunked = new ChunkedInputStream(source);
+        }
+    }
+
+    /**
+     * @param request The parsed request.
+     * @return Returns the body of the request, which is empty if the request has none.
+     * @throws Throws a BadRequestException if the framing of the body is malformed or ambiguous.
+     */
+    public static RequestBody of(RequestMessage request, RequestParser parser, InputStream in,
+            WritableByteChannel out, ConnectionDeadline deadline) {
+        long length = getDeclaredLength(request);
+        boolean expectContinue = length != 0 && "HTTP/1.1".equals(request.getHttpVersion())
+            && "100-continue".equalsIgnoreCase(request.getHeader("Expect"));
+        return new RequestBody(parser, in, out, deadline, length, expectContinue);
+    }
+
+    /**
+     * @return Returns true if the request declares a body, with a Content-Length larger than 0
+     *         or with a Transfer-Encoding.
+     */
+    public static boolean isPresent(RequestMessage request) {
+        String contentLength = request.getHeader("Content-Length");
+        return request.getHeader("Transfer-Encoding") != null
+            || (contentLength != null && !contentLength.trim().equals("0"));
+    }
+
+    /**
+     * A request with both a Content-Length and a Transfer-Encoding, or with several different
+     * lengths, is rejected, because a server or proxy behind this one could frame it differently.
+     *
+     * @return Returns the declared length, 0 if there is no body, or -1 for a chunked body.
+     */
+    private static long getDeclaredLength(RequestMessage request) {
+        String transferEncoding = request.getHeader("Transfer-Encoding");
+        String contentLength = request.getHeader("Content-Length");
+        if (transferEncoding != null) {
+            if (contentLength != null) {
+                throw new BadRequestException("Bad request: Content-Length and Transfer-Encoding");
+            }
+            if (!transferEncoding.trim().equalsIgnoreCase("chunked")) {
+                throw new BadRequestException("Bad request: unsupported Transfer-Encoding " + transferEncoding);
+            }
+            return -1;
+        }
+        if (contentLength == null) {
+            return 0;
+        }
+        long length = -1;
+        for (String value : contentLength.split(",")) {
+            long parsed = parseLength(value.trim());
+            if (length >= 0 && parsed != length) {
+                throw new BadRequestException("Bad request: different Content-Length values");
+            }
+            length = parsed;
+        }
+        return length;
+    }
+
+    private static long parseLength(String value) {
+        if (value.isEmpty() || value.length() > 18) {
+            throw new BadRequestException("Bad request: malformed Content-Length");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                throw new BadRequestException("Bad request: malformed Content-Length");
+            }
+        }
+        return Long.parseLong(value);
+    }
+
+    /**
+     * @return Returns the length of the body, 0 if there is none, or -1 if the body is chunked.
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * @return Returns true if the body is sent with the chunked transfer coding.
+     */
+    public boolean isChunked() {
+        return this.chunked != null;
+    }
+
+    /**
+     * @return Returns true if the body was read completely, the connection can be used for the next request.
+     */
+    public boolean isFinished() {
+        return chunked != null ? chunked.isFinished() : remaining == 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    /**
+     * The deadline of the body ends with its last byte, the processing of the request has none.
+     *
+     * @throws Throws a ProtocolException if the chunked coding is malformed
+     *         or the client closed the connection within the body.
+     */
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (isFinished()) {
+            return -1;
+        }
+        int read;
+        if (chunked != null) {
+            read = chunked.read(target, offset, length);
+        } else {
+            read = source.read(target, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new ProtocolException("Request body ended after " + received + " bytes");
+            }
+            remaining -= read;
+        }
+        if (isFinished()) {
+            deadline.cancel();
+        }
+        return read;
+    }
+
+    /**
+     * Sends "100 Continue" when the body is read first, and moves the deadline of the body with the received bytes.
+     */
+    private void startBody() throws IOException {
+        started = true;
+        if (expectContinue) {
+            ByteBuffer interim = ByteBuffer.wrap(CONTINUE);
+            while (interim.hasRemaining()) {
+                out.write(interim);
+            }
+        }
+        deadline.startBody();
+    }
+
+    /**
+     * The bytes of the connection, first those which the parser buffered behind the header.
+     */
+    private class ConnectionInput extends InputStream {
+
+        private byte[] single = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (!started) {
+                startBody();
+            }
+            int read = parser.readBody(in, target, offset, length);
+            if (read > 0) {
+                received += read;
+                deadline.bodyReceived(received);
+            }
+            return read;
+        }
+    }
+}
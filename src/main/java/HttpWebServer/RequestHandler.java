@@ -0,0 +1,23 @@
+package httpwebserver;
+
+import java.io.IOException;
+
+/**
+ * Computes the response to a request for a route of the Router, for example a health check or a
+ * small dynamic endpoint. Handlers are called concurrently by the worker threads of the server,
+ * also for the streams of a HTTP/2 connection, never by an event loop of the NIO engine or by the
+ * reader of a HTTP/2 connection, so they have to be thread-safe and may block, for example on a
+ * database; a blocked handler holds its worker, not the other connections or streams.
+ * For example: server.getRouter().get("/health", exchange -> exchange.respond(200, "text/plain", "OK"));
+ */
+@FunctionalInterface
+public interface RequestHandler {
+
+    /**
+     * @param exchange The request, its path parameters and its body, and the builder of the response.
+     * @return Returns the response, usually built with one of the respond methods of the exchange.
+     * @throws Throws an IOException if the response can not be computed, the client receives
+     *         "500 Internal Server Error".
+     */
+    ResponseMessage handle(Exchange exchange) throws IOException;
+}
@@ -0,0 +1,10 @@
+package httpwebserver;
+
+public class RequestHeaderTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RequestHeaderTooLargeException(String errorMessage) {
+        super(errorMessage);
+    }
+}
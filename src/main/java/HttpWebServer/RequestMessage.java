@@ -1,41 +1,107 @@
 package httpwebserver;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class RequestMessage {
 
     private Method method = null;
     private String resource = "";
+    private String query = null;
     private String httpVersion = "";
+    private Map<String, String> headers = new HashMap<>();
+
+    public RequestMessage(Method method, String resource, String httpVersion) {
+        this.method = method;
+        setResource(resource);
+        this.httpVersion = httpVersion;
+    }
 
     public RequestMessage(String input) {
         String[] request = input.split(" ");
         if(RequestMessage.isWellFormated(request)) {
             this.method = defineMethod(request[0].trim());
-            this.resource = request[1].trim();
-            this.resource = filterOutIPAddress(resource);
+            setResource(filterOutIPAddress(request[1].trim()));
             this.httpVersion = request[2].trim();
         } else {
             setDefaultRequest();
         }
     }
 
+    /**
+     * Splits the request target into the resource and the query, for example
+     * "/files/?sort=size" into "/files/" and "sort=size".
+     */
+    private void setResource(String target) {
+        int queryStart = target.indexOf('?');
+        if (queryStart < 0) {
+            this.resource = target;
+        } else {
+            this.resource = target.substring(0, queryStart);
+            this.query = target.substring(queryStart + 1);
+        }
+    }
+
     private static boolean isWellFormated(String[] request) {
         return (request.length == 3);
     }
 
     private Method defineMethod(String method) {
-        switch(method) {
-            case "GET":
-                return Method.GET;
-            case "HEAD":
-                return Method.HEAD;
-            default:
-                return null;
+        return Method.parse(method);
+    }
+
+    /**
+     * Filters out the IP address from the requested resource, only IPv4 addresses!
+     * Removes every occurrence of "//" followed by an IPv4 address. The resource is
+     * scanned by hand instead of with a regular expression, because this runs for
+     * every request; a resource without "//" is returned as it is.
+     */
+    static String filterOutIPAddress(String resource) {
+        int next = resource.indexOf("//");
+        if (next < 0) {
+            return resource;
+        }
+        StringBuilder filtered = new StringBuilder(resource.length());
+        int copied = 0;
+        while (next >= 0) {
+            int addressEnd = findIPv4AddressEnd(resource, next + 2);
+            if (addressEnd < 0) {
+                next = resource.indexOf("//", next + 1);
+                continue;
+            }
+            filtered.append(resource, copied, next);
+            copied = addressEnd;
+            next = resource.indexOf("//", addressEnd);
         }
+        filtered.append(resource, copied, resource.length());
+        return filtered.toString();
     }
 
-    private String filterOutIPAddress(String resource) {
-        // Filter out the IP address from the requested resource, only IPv4 addresses!
-        return resource.replaceAll("/(\\/(?:[0-9]{1,3}\\.){3}[0-9]{1,3})", "");
+    /**
+     * @return Returns the position after the IPv4 address which starts at the position or -1.
+     */
+    private static int findIPv4AddressEnd(String text, int position) {
+        for (int group = 0; group < 4; group++) {
+            int digits = 0;
+            while (digits < 3 && position < text.length() && isDigit(text.charAt(position))) {
+                digits++;
+                position++;
+            }
+            if (digits == 0) {
+                return -1;
+            }
+            if (group < 3) {
+                if (position >= text.length() || text.charAt(position) != '.') {
+                    return -1;
+                }
+                position++;
+            }
+        }
+        return position;
+    }
+
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
     }
 
     private void setDefaultRequest() {
@@ -52,7 +118,108 @@ public class RequestMessage {
         return this.resource;
     }
 
+    /**
+     * @return Returns the query of the request target without the '?' or null if there is none.
+     */
+    public String getQuery() {
+        return this.query;
+    }
+
+    /**
+     * @param name The name of the query parameter.
+     * @return Returns the value of the first parameter with the name, "" for a parameter
+     * without value, or null if the query does not contain the parameter.
+     */
+    public String getQueryParameter(String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            String parameterName = separator < 0 ? parameter : parameter.substring(0, separator);
+            if (parameterName.equals(name)) {
+                return separator < 0 ? "" : parameter.substring(separator + 1);
+            }
+        }
+        return null;
+    }
+
     public String getHttpVersion() {
         return this.httpVersion;
     }
+
+    /**
+     * The request which upgrades a connection to HTTP/2 is answered with HTTP/2.
+     *
+     * @param httpVersion The HTTP version which the response uses.
+     */
+    public void setHttpVersion(String httpVersion) {
+        this.httpVersion = httpVersion;
+    }
+
+    /**
+     * Adds a header of the request. Repeated headers are combined into one.
+     *
+     * @param name The lower case name of the header.
+     * @param value The value of the header.
+     */
+    public void addHeader(String name, String value) {
+        headers.merge(name, value, (first, second) -> first + ", " + second);
+    }
+
+    /**
+     * @return Returns the headers by their lower case names, repeated headers are combined into one.
+     */
+    public Map<String, String> getHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * @return Returns the request line, it is only assembled when it is needed, for example for logging.
+     */
+    public String getRequestLine() {
+        return method + " " + resource + (query == null ? "" : "?" + query) + " " + httpVersion;
+    }
+
+    /**
+     * @param name The case-insensitive name of the header.
+     * @return Returns the value of the header or null if the request does not contain it.
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    /**
+     * Decides whether the client wants to keep the connection open after the response.
+     * HTTP/1.1 connections are persistent unless the client sends "Connection: close",
+     * HTTP/1.0 connections are only persistent with "Connection: keep-alive".
+     * HTTP/2 connections are always persistent, they have no Connection header.
+     */
+    public boolean isKeepAlive() {
+        String connection = getHeader("Connection");
+        if ("HTTP/2.0".equals(httpVersion)) {
+            return true;
+        }
+        if ("HTTP/1.1".equals(httpVersion)) {
+            return !hasToken(connection, "close");
+        }
+        return hasToken(connection, "keep-alive");
+    }
+
+    /**
+     * @param headerValue A comma separated header value or null.
+     * @param token The case-insensitive token.
+     * @return Returns true if the value contains the token, for example "close" in "Connection: close".
+     */
+    static boolean hasToken(String headerValue, String token) {
+        if (headerValue == null) {
+            return false;
+        }
+        for (String value : headerValue.split(",")) {
+            if (value.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
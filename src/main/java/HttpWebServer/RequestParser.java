@@ -0,0 +1,317 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parses HTTP requests directly from the bytes of a connection. The parser owns a
+ * buffer which is reused for all requests of the connection: the bytes are read into
+ * it, the request line and the header block are parsed in place, and the bytes after
+ * a request stay in the buffer as the beginning of the next (pipelined) request.
+ * Common methods, versions and header names are mapped to constants, so only the
+ * resource and the header values are allocated per request.
+ *
+ * @param maxHeaderSize The maximum size of the request line and the header block in bytes.
+ */
+public class RequestParser {
+
+    private static final String[] KNOWN_HEADER_NAMES = {
+        "host", "connection", "user-agent", "accept", "accept-encoding", "accept-language",
+        "cache-control", "if-none-match", "if-modified-since", "range", "if-range",
+        "content-length", "content-type", "transfer-encoding", "upgrade", "http2-settings",
+        "referer", "cookie", "pragma", "te", "expect", "origin", "authorization"
+    };
+
+    private static final Method[] METHODS = Method.values();
+    private static final String PREFACE_LINE = "PRI * HTTP/2.0";
+
+    private byte[] buffer;
+    private int start = 0;
+    private int end = 0;
+    private int scanned = 0;
+
+    public RequestParser(int maxHeaderSize) {
+        this.buffer = new byte[maxHeaderSize];
+    }
+
+    /**
+     * Reads the available bytes of a blocking stream into the buffer.
+     *
+     * @return Returns the number of bytes read or -1 if the stream ended.
+     * @throws Throws an IOException if an I/O error occurs when reading.
+     */
+    public int readFrom(InputStream in) throws IOException {
+        prepareRead();
+        int read = in.read(buffer, end, buffer.length - end);
+        if (read > 0) {
+            end += read;
+        }
+        return read;
+    }
+
+    /**
+     * Reads the available bytes of a (non-blocking) channel into the buffer.
+     *
+     * @return Returns the number of bytes read or -1 if the channel reached its end.
+     * @throws Throws an IOException if an I/O error occurs when reading.
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        prepareRead();
+        int read = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end));
+        if (read > 0) {
+            end += read;
+        }
+        return read;
+    }
+
+    /**
+     * Hands over the bytes which were read behind the last request, for example to
+     * a HTTP/2 connection which takes over the connection.
+     *
+     * @return Returns the buffered bytes, the parser is empty afterwards.
+     */
+    public byte[] takeBuffered() {
+        byte[] buffered = Arrays.copyOfRange(buffer, start, end);
+        start = end;
+        return buffered;
+    }
+
+    /**
+     * Reads bytes of a request body: first the bytes which were buffered behind the header
+     * block, then from the stream. A read which is smaller than the buffer of the parser refills
+     * the buffer, so the chunk lines of a chunked body do not cost a system call per byte;
+     * a larger read goes directly into the target.
+     *
+     * @param in The blocking stream of the connection.
+     * @param target The array which receives the bytes.
+     * @param offset The position in the array of the first byte.
+     * @param length The maximum number of bytes.
+     * @return Returns the number of bytes read or -1 if the stream ended.
+     * @throws Throws an IOException if an I/O error occurs when reading.
+     */
+    public int readBody(InputStream in, byte[] target, int offset, int length) throws IOException {
+        if (start == end) {
+            if (length >= buffer.length) {
+                return in.read(target, offset, length);
+            }
+            int read = readFrom(in);
+            if (read <= 0) {
+                return read;
+            }
+        }
+        int count = Math.min(length, end - start);
+        System.arraycopy(buffer, start, target, offset, count);
+        start += count;
+        scanned = start;
+        return count;
+    }
+
+    /**
+     * @return Returns true if no bytes of a further request are buffered.
+     */
+    public boolean isEmpty() {
+        return start == end;
+    }
+
+    /**
+     * Parses the next request from the buffer.
+     *
+     * @return Returns the request, or null if the header block is not complete yet.
+     * @throws Throws a BadRequestException if the request is malformed.
+     * @throws Throws a RequestHeaderTooLargeException if the header block does not fit into the buffer.
+     */
+    public RequestMessage parse() throws BadRequestException, RequestHeaderTooLargeException {
+        skipEmptyLines();
+        int headerEnd = findHeaderEnd();
+        if (headerEnd < 0) {
+            if (start == 0 && end == buffer.length) {
+                throw new RequestHeaderTooLargeException("Request header exceeds " + buffer.length + " bytes");
+            }
+            return null;
+        }
+        int lineEnd = findLineEnd(start);
+        RequestMessage request = parseRequestLine(start, trimLineEnd(start, lineEnd));
+        int lineStart = lineEnd + 1;
+        while (lineStart < headerEnd) {
+            lineEnd = findLineEnd(lineStart);
+            int contentEnd = trimLineEnd(lineStart, lineEnd);
+            if (contentEnd > lineStart) {
+                parseHeader(request, lineStart, contentEnd);
+            }
+            lineStart = lineEnd + 1;
+        }
+        start = headerEnd;
+        scanned = start;
+        return request;
+    }
+
+    /**
+     * Empty lines in front of a request line are ignored, some clients
+     * send them after the body of a previous request.
+     */
+    private void skipEmptyLines() {
+        while (start < end && (buffer[start] == '\r' || buffer[start] == '\n')) {
+            start++;
+        }
+    }
+
+    /**
+     * Moves the buffered bytes to the beginning of the buffer when the
+     * buffer has no space left at its end.
+     */
+    private void prepareRead() {
+        if (start == end) {
+            start = 0;
+            end = 0;
+            scanned = 0;
+        } else if (end == buffer.length && start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            scanned -= start;
+            start = 0;
+        }
+    }
+
+    /**
+     * Continues the search for the empty line which ends the header block.
+     *
+     * @return Returns the position after the empty line or -1.
+     */
+    private int findHeaderEnd() {
+        for (int i = Math.max(scanned, start); i < end; i++) {
+            if (buffer[i] != '\n') {
+                continue;
+            }
+            if (i - 1 >= start && buffer[i - 1] == '\n') {
+                return i + 1;
+            }
+            if (i - 2 >= start && buffer[i - 1] == '\r' && buffer[i - 2] == '\n') {
+                return i + 1;
+            }
+        }
+        scanned = end;
+        return -1;
+    }
+
+    private int findLineEnd(int from) {
+        int i = from;
+        while (buffer[i] != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    private int trimLineEnd(int lineStart, int lineEnd) {
+        return (lineEnd > lineStart && buffer[lineEnd - 1] == '\r') ? lineEnd - 1 : lineEnd;
+    }
+
+    /**
+     * Parses a request line of the form: METHOD SP resource SP version.
+     * A line which does not consist of three parts is rejected, the only line with
+     * the version HTTP/2.0 is the beginning of the HTTP/2 connection preface.
+     */
+    private RequestMessage parseRequestLine(int from, int to) throws BadRequestException {
+        int firstSpace = indexOf(' ', from, to);
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(' ', firstSpace + 1, to);
+        if (firstSpace == from || secondSpace == firstSpace + 1 || secondSpace < 0
+                || indexOf(' ', secondSpace + 1, to) >= 0) {
+            throw new BadRequestException("Bad request: malformed request line");
+        }
+        if (matches(PREFACE_LINE, from, to)) {
+            return new RequestMessage(null, "*", "HTTP/2.0");
+        }
+        Method method = parseMethod(from, firstSpace);
+        String resource = new String(buffer, firstSpace + 1, secondSpace - firstSpace - 1, StandardCharsets.UTF_8);
+        String httpVersion = parseHttpVersion(secondSpace + 1, to);
+        return new RequestMessage(method, RequestMessage.filterOutIPAddress(resource), httpVersion);
+    }
+
+    private Method parseMethod(int from, int to) {
+        for (Method method : METHODS) {
+            if (matches(method.name(), from, to)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private String parseHttpVersion(int from, int to) throws BadRequestException {
+        if (matches("HTTP/1.1", from, to)) {
+            return "HTTP/1.1";
+        } else if (matches("HTTP/1.0", from, to)) {
+            return "HTTP/1.0";
+        }
+        throw new BadRequestException("Bad request: unsupported HTTP version");
+    }
+
+    private void parseHeader(RequestMessage request, int from, int to) throws BadRequestException {
+        int separator = indexOf(':', from, to);
+        if (separator <= from || buffer[separator - 1] == ' ' || buffer[from] == ' ' || buffer[from] == '\t') {
+            throw new BadRequestException("Bad request: malformed header line");
+        }
+        int valueStart = separator + 1;
+        while (valueStart < to && (buffer[valueStart] == ' ' || buffer[valueStart] == '\t')) {
+            valueStart++;
+        }
+        int valueEnd = to;
+        while (valueEnd > valueStart && (buffer[valueEnd - 1] == ' ' || buffer[valueEnd - 1] == '\t')) {
+            valueEnd--;
+        }
+        String name = getHeaderName(from, separator);
+        String value = new String(buffer, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1);
+        request.addHeader(name, value);
+    }
+
+    /**
+     * @return Returns the lower case header name, a constant for known names.
+     */
+    private String getHeaderName(int from, int to) {
+        for (String knownName : KNOWN_HEADER_NAMES) {
+            if (matchesIgnoreCase(knownName, from, to)) {
+                return knownName;
+            }
+        }
+        return new String(buffer, from, to - from, StandardCharsets.US_ASCII).toLowerCase();
+    }
+
+    private int indexOf(char character, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == character) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(String constant, int from, int to) {
+        if (to - from != constant.length()) {
+            return false;
+        }
+        for (int i = 0; i < constant.length(); i++) {
+            if (buffer[from + i] != constant.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesIgnoreCase(String lowerCaseConstant, int from, int to) {
+        if (to - from != lowerCaseConstant.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseConstant.length(); i++) {
+            int character = buffer[from + i];
+            if (character >= 'A' && character <= 'Z') {
+                character += 'a' - 'A';
+            }
+            if (character != lowerCaseConstant.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,357 @@
+package httpwebserver;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * RequestProcessor computes the HTTP response message for a parsed request.
+ * It does not read from or write to the connection itself, therefore it is
+ * shared by the blocking ClientHandler and the non-blocking NioServer engine.
+ *
+ * @param connection The socket which is connected to the client.
+ * @param context The shared components of the server.
+ * @param header The header writer of the connection, the response headers are written into it.
+ */
+public class RequestProcessor {
+
+    private Socket connection;
+    private ServerContext context;
+    private HeaderWriter header;
+    private RequestMessage request;
+    private boolean keepAlive = false;
+
+    public RequestProcessor(Socket connection, ServerContext context, HeaderWriter header) {
+        this.connection = connection;
+        this.context = context;
+        this.header = header;
+    }
+
+    /**
+     * Processes a HTTP request without access to its body, a request with a body for a route of the
+     * Router is answered with "501 Not Implemented", a request for a route of the reverse proxy with
+     * "502 Bad Gateway".
+     *
+     * @param request The request which was parsed by a RequestParser.
+     * @param keepAliveAllowed False if the connection is closed after this request in any case.
+     * @return Returns the HTTP response message.
+     */
+    public ResponseMessage process(RequestMessage request, boolean keepAliveAllowed) {
+        return process(request, null, keepAliveAllowed);
+    }
+
+    /**
+     * Processes a HTTP request. To do so the class:
+     * Checks the method, answers the reserved metrics path and looks up the requested resource in the file cache
+     * Checks the rate limit of the client, the metrics path is not limited
+     * Passes a request for a route of the Router to its RequestHandler
+     * Forwards a request for a route of the reverse proxy to an upstream server
+     * Resolves the requested resource below the document root
+     * Computes the response message, which is either the requested content,
+     * a "304 Not Modified" response to a conditional request, or an error page
+     *
+     * @param request The request which was parsed by a RequestParser.
+     * @param body The body of the request, or null if the engine can not stream it to a handler or an upstream server.
+     * @param keepAliveAllowed False if the connection is closed after this request in any case.
+     * @return Returns the HTTP response message.
+     */
+    public ResponseMessage process(RequestMessage request, RequestBody body, boolean keepAliveAllowed) {
+        this.request = request;
+        if (context.getConfig().isConsoleLog()) {
+            System.out.println("REQUEST: " + request.getRequestLine());
+        }
+        try {
+            this.keepAlive = keepAliveAllowed && request.isKeepAlive();
+            boolean metrics = request.getResource().equals(context.getConfig().getMetricsPath());
+            Router.Match match = metrics ? null : context.getRouter().match(request.getResource());
+            ReverseProxy.Route route = metrics || match != null ? null
+                : context.getReverseProxy().getRoute(request.getResource());
+            if ((match == null && route == null) || request.getMethod() == null) {
+                checkIsMethodAllowed();
+            }
+            if (match == null && route == null && RequestBody.isPresent(request)) {
+                // The body is not read, the rest of the connection can not be parsed
+                this.keepAlive = false;
+            }
+            if (metrics) {
+                return ResponseMessage.getMetricsResponseMessage(request, header, context, keepAlive);
+            }
+            if (!context.getAdmissionControl().tryAcquire(connection.getInetAddress())) {
+                log("Rate limit exceeded by " + connection.getInetAddress());
+                this.keepAlive = false;
+                return context.getFailedResponse().getTooManyRequestsMessage(request, header);
+            }
+            if (match != null) {
+                return handle(match, body);
+            }
+            if (route != null) {
+                return forward(route, body);
+            }
+            if (!isRangeRequest()) {
+                ResponseMessage cachedResponse = context.getFileCache().getResponseMessage(request, header,
+                        keepAlive);
+                if (cachedResponse != null) {
+                    return cachedResponse;
+                }
+            }
+            DocumentRoot.Resolution resolution = resolveRequestedFile();
+            return getResponseMessage(resolution);
+        } catch (MethodNotAllowedException errorMessage) {
+            log(errorMessage);
+            return context.getFailedResponse().getMethodNotAllowedMessage(request, header, keepAlive);
+        } catch (BadRequestException errorMessage) {
+            log(errorMessage);
+            this.keepAlive = false;
+            return context.getFailedResponse().getBadRequestMessage(header);
+        } catch (FileNotFoundException errorMessage) {
+            log(errorMessage);
+            return context.getFailedResponse().getFileNotFoundMessage(request, header, keepAlive);
+        } catch (NoSuchFileException errorMessage) {
+            // The file was deleted after its path was resolved
+            log(errorMessage);
+            context.getDocumentRoot().invalidate(request.getResource());
+            return context.getFailedResponse().getFileNotFoundMessage(request, header, keepAlive);
+        } catch (IOException errorMessage) {
+            errorMessage.printStackTrace();
+            this.keepAlive = false;
+            return context.getFailedResponse().getServerErrorMessage(header);
+        }
+    }
+
+    /**
+     * @return Returns true if the connection stays open after the response of the processed request.
+     */
+    public boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+
+    private void log(Object message) {
+        if (context.getConfig().isConsoleLog()) {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Passes the request to the handler of its method. A route without handler for the method is
+     * answered with "405 Method Not Allowed" and the methods of the route, a request with a body
+     * which the engine can not stream with "501 Not Implemented".
+     */
+    private ResponseMessage handle(Router.Match match, RequestBody body) throws IOException {
+        RequestHandler handler = match.getHandler(request.getMethod());
+        if (handler == null) {
+            this.keepAlive = keepAlive && !RequestBody.isPresent(request);
+            return new Exchange(request, match.getParameters(), null, header, keepAlive, connection.getInetAddress())
+                .setHeader("Allow", match.getAllowedMethods())
+                .respond(405, "text/plain", "405 Method Not Allowed\n");
+        }
+        if (body == null && RequestBody.isPresent(request)) {
+            log("Request bodies of handlers are not supported by this engine: " + request.getResource());
+            this.keepAlive = false;
+            return new Exchange(request, match.getParameters(), null, header, false, connection.getInetAddress())
+                .respond(501, "text/plain", "501 Not Implemented\n");
+        }
+        Exchange exchange = new Exchange(request, match.getParameters(), body, header, keepAlive,
+                connection.getInetAddress());
+        try {
+            ResponseMessage response = handler.handle(exchange);
+            if (response == null) {
+                throw new IllegalStateException("The handler of " + request.getResource() + " returned no response");
+            }
+            this.keepAlive = exchange.isKeepAlive();
+            return response;
+        } catch (BadRequestException errorMessage) {
+            throw errorMessage;
+        } catch (RuntimeException errorMessage) {
+            // Here: Create a log of the exception and the state of the system
+            errorMessage.printStackTrace();
+            this.keepAlive = false;
+            return context.getFailedResponse().getServerErrorMessage(header);
+        }
+    }
+
+    /**
+     * Forwards the request to an upstream server of the route, the engines which can not stream
+     * the body of the request answer with "502 Bad Gateway".
+     */
+    private ResponseMessage forward(ReverseProxy.Route route, RequestBody body) {
+        if (body == null) {
+            log("The reverse proxy is not supported by this engine: " + request.getResource());
+            this.keepAlive = keepAlive && !RequestBody.isPresent(request);
+            context.getReverseProxy().badGateway();
+            return context.getFailedResponse().getBadGatewayMessage(request, header, keepAlive);
+        }
+        ProxyExchange exchange = new ProxyExchange(context, route, request, body, header, keepAlive,
+                connection.getInetAddress());
+        ResponseMessage response = exchange.forward();
+        this.keepAlive = exchange.isKeepAlive();
+        return response;
+    }
+
+    private void checkIsMethodAllowed() throws MethodNotAllowedException {
+        Method method = request.getMethod();
+        if (!(Method.GET.equals(method) || Method.HEAD.equals(method))) {
+            throw new MethodNotAllowedException(method + " is not allowed");
+        }
+    }
+
+    /**
+     * @return Returns true if the request is a GET request with a Range header, other methods ignore it.
+     */
+    private boolean isRangeRequest() {
+        return request.getMethod() == Method.GET && request.getHeader("Range") != null;
+    }
+
+    /**
+     * @throws Throws a BadRequestException if the resource is malformed or leaves the document root.
+     */
+    private DocumentRoot.Resolution resolveRequestedFile() throws IOException {
+        DocumentRoot.Resolution resolution = context.getDocumentRoot().resolve(request.getResource());
+        if (resolution.isRejected()) {
+            throw new BadRequestException("Bad request: invalid resource " + request.getResource());
+        }
+        if (!resolution.exists()) {
+            throw new FileNotFoundException(resolution.getFile() + " not found");
+        }
+        if (context.getConfig().isConsoleLog()) {
+            System.out.println("Requested file: " + resolution.getFile());
+        }
+        return resolution;
+    }
+
+    private ResponseMessage getResponseMessage(DocumentRoot.Resolution resolution) throws IOException {
+        File requestedFile = resolution.getFile();
+        if (resolution.isFile()) {
+            if (isRangeRequest()) {
+                return getRangeResponseMessage(requestedFile);
+            }
+            ResponseMessage cachedResponse = context.getFileCache().load(request, header, requestedFile, keepAlive);
+            if (cachedResponse != null) {
+                return cachedResponse;
+            }
+            return getFileResponseMessage(requestedFile);
+        } else if (resolution.isDirectory()) {
+            return context.getDirectoryListing().getResponseMessage(request, header, requestedFile, keepAlive,
+                    context.getCompression());
+        }
+        throw new FileNotFoundException(requestedFile + " is neither a file nor a directory");
+    }
+
+    /**
+     * A conditional request for a file, which was not modified since the client
+     * received it, is answered with "304 Not Modified" instead of the file content.
+     * A client which accepts gzip receives the precompressed sibling file if it exists,
+     * or the file compressed on the fly if it is textual and large enough.
+     */
+    private ResponseMessage getFileResponseMessage(File requestedFile) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(requestedFile.toPath(), BasicFileAttributes.class);
+        Validators validators = new Validators(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                context.getConfig().isWeakETags());
+        String cacheControl = context.getCacheControlRules().getCacheControl(request.getResource());
+        Compression compression = context.getCompression();
+        MimeTypes.MimeType type = context.getMimeTypes().getType(requestedFile.getName());
+        File precompressed = compression.findPrecompressed(requestedFile);
+        boolean encodable = precompressed != null || compression.isCompressible(type.getValue(), attributes.size());
+        if (encodable && compression.acceptsGzip(request)) {
+            MessagePart encodedBody = getEncodedFileContent(requestedFile, precompressed, attributes);
+            if (encodedBody != null) {
+                Validators encodedValidators = validators.getEncodedVariant("gzip");
+                if (encodedValidators.isNotModified(request)) {
+                    return ResponseMessage.getNotModifiedResponseMessage(request, header, keepAlive,
+                            encodedValidators, cacheControl, true);
+                }
+                return ResponseMessage.getEncodedFileResponseMessage(request, header, requestedFile, type, encodedBody,
+                        keepAlive, encodedValidators, cacheControl);
+            }
+        }
+        if (validators.isNotModified(request)) {
+            return ResponseMessage.getNotModifiedResponseMessage(request, header, keepAlive, validators, cacheControl,
+                    encodable);
+        }
+        return ResponseMessage.getFileResponseMessage(request, header, requestedFile, type,
+                getFileContent(requestedFile, attributes), keepAlive, validators, cacheControl, encodable);
+    }
+
+    /**
+     * A range request is answered with the requested ranges of the file in its identity
+     * representation. A malformed Range header, and an If-Range header which does not
+     * match the current file, lead to a normal response with the complete file.
+     */
+    private ResponseMessage getRangeResponseMessage(File requestedFile) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(requestedFile.toPath(), BasicFileAttributes.class);
+        Validators validators = new Validators(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                context.getConfig().isWeakETags());
+        String ifRange = request.getHeader("If-Range");
+        List<ByteRange> ranges = ByteRange.parse(request.getHeader("Range"), attributes.size());
+        if (ranges == null || (ifRange != null && !validators.matchesIfRange(ifRange))) {
+            return getFileResponseMessage(requestedFile);
+        }
+        String cacheControl = context.getCacheControlRules().getCacheControl(request.getResource());
+        if (validators.isNotModified(request)) {
+            return ResponseMessage.getNotModifiedResponseMessage(request, header, keepAlive, validators, cacheControl,
+                    false);
+        }
+        if (ranges.isEmpty()) {
+            return ResponseMessage.getRangeNotSatisfiableResponseMessage(request, header, requestedFile, keepAlive);
+        }
+        MappedFiles.MappedFile mappedFile = acquireMappedFile(requestedFile, attributes);
+        try {
+            return ResponseMessage.getPartialContentResponseMessage(request, header, requestedFile,
+                    context.getMimeTypes().getType(requestedFile.getName()), mappedFile, ranges, keepAlive, validators,
+                    cacheControl);
+        } finally {
+            if (mappedFile != null) {
+                mappedFile.release();
+            }
+        }
+    }
+
+    /**
+     * @return Returns the content of the file, from its memory mapping if the file is mapped.
+     */
+    private MessagePart getFileContent(File requestedFile, BasicFileAttributes attributes) throws IOException {
+        MappedFiles.MappedFile mappedFile = acquireMappedFile(requestedFile, attributes);
+        if (mappedFile == null) {
+            return ResponseBody.getFileContent(requestedFile);
+        }
+        try {
+            return mappedFile.getPart(0, mappedFile.getLength());
+        } finally {
+            mappedFile.release();
+        }
+    }
+
+    /**
+     * The response to a HEAD request has no body, therefore a file is only mapped for a GET request.
+     *
+     * @return Returns the memory-mapped file with a reference, or null if it is not mapped.
+     */
+    private MappedFiles.MappedFile acquireMappedFile(File requestedFile, BasicFileAttributes attributes)
+            throws IOException {
+        if (request.getMethod() != Method.GET) {
+            return null;
+        }
+        return context.getMappedFiles().acquire(requestedFile, attributes);
+    }
+
+    /**
+     * A HEAD request does not compress the file, it is answered with the gzip encoded
+     * representation only if the compressed content is already cached.
+     *
+     * @return Returns the gzip encoded content or null if the file is too large to be compressed in memory.
+     */
+    private MessagePart getEncodedFileContent(File requestedFile, File precompressed, BasicFileAttributes attributes)
+            throws IOException {
+        if (precompressed != null) {
+            return ResponseBody.getFileContent(precompressed);
+        }
+        byte[] compressed = request.getMethod() == Method.HEAD
+                ? context.getCompression().getCachedCompressedFile(requestedFile, attributes)
+                : context.getCompression().getCompressedFile(requestedFile, attributes);
+        return compressed == null ? null : new BufferPart(compressed);
+    }
+}
@@ -1,33 +1,305 @@
 package httpwebserver;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Writes the headers of the HTTP responses into the HeaderWriter of a connection.
+ * The header names are encoded once, the caller ends the header with HeaderWriter.finish(),
+ * or keeps the lines with HeaderWriter.toFragment() to start later headers with them.
+ */
 public class ResponseHeader {
 
+    private static final byte[] CONTENT_TYPE = HeaderWriter.ascii("Content-Type: ");
+    private static final byte[] CONTENT_LENGTH = HeaderWriter.ascii("Content-Length: ");
+    private static final byte[] CONTENT_ENCODING = HeaderWriter.ascii("Content-Encoding: ");
+    private static final byte[] CONTENT_RANGE = HeaderWriter.ascii("Content-Range: ");
+    private static final byte[] CONTENT_DISPOSITION = HeaderWriter.ascii("Content-Disposition: inline; filename=\"");
+    private static final byte[] QUOTE = HeaderWriter.ascii("\"");
+    private static final byte[] EMPTY = new byte[0];
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final byte[] ETAG = HeaderWriter.ascii("ETag: ");
+    private static final byte[] LAST_MODIFIED = HeaderWriter.ascii("Last-Modified: ");
+    private static final byte[] CACHE_CONTROL = HeaderWriter.ascii("Cache-Control: ");
+    private static final byte[] ACCEPT_RANGES = HeaderWriter.ascii("Accept-Ranges: bytes\r\n");
+    private static final byte[] VARY_ACCEPT_ENCODING = HeaderWriter.ascii("Vary: Accept-Encoding\r\n");
+    private static final byte[] TRANSFER_ENCODING_CHUNKED = HeaderWriter.ascii("Transfer-Encoding: chunked\r\n");
+    private static final byte[] CACHE_CONTROL_NO_CACHE = HeaderWriter.ascii("Cache-Control: no-cache\r\n");
+    private static final byte[] CACHE_CONTROL_NO_STORE = HeaderWriter.ascii("Cache-Control: no-store\r\n");
+    private static final byte[] METRICS_CONTENT_TYPE =
+            HeaderWriter.ascii("Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n");
+    private static final byte[] CONTENT_RANGE_UNSATISFIED = HeaderWriter.ascii("Content-Range: bytes */");
+    private static final byte[] CONTENT_LENGTH_ZERO = HeaderWriter.ascii("Content-Length: 0\r\n");
+
     /**
-     * Computes a header of the HTTP response message.
+     * Writes a header of the HTTP response message.
      *
+     * @param header The header writer of the connection.
      * @param httpVersion The HTTP version of the request.
      * @param file The requested file.
-     * @param msgBody The body of the response message as byte array.
-     * @return Returns a byte array which represents the header of the HTTP response.
-     * @throws Throws an IOException if an I/O error occurs when reading the file.
-     */
-    public static byte[] getResponseHeader(String httpVersion, File file, byte[] msgBody) throws IOException {
-        StringBuilder header = new StringBuilder();
-        String fileName = file.getName();
-        String contentType = Files.probeContentType(file.toPath());
-        int contentLength = msgBody.equals(null) ? 0 : msgBody.length;
-
-        header.append(httpVersion + " 200 OK\n");
-        header.append("Server: Simple HTTP web server\n");
-        header.append("Content-Type: " + contentType + "; charset=utf-8\n");
-        header.append("Content-Length: " + contentLength + "\n");
-        header.append("Content-Disposition: inline; filename=\"" + fileName + "\"\n");
-        header.append("\n");
-        
-        return header.toString().getBytes();
+     * @param type The content type of the file.
+     * @param contentLength The length of the response body in bytes.
+     * @param keepAlive True if the connection stays open after the response.
+     * @return Returns the writer with the header lines.
+     */
+    public static HeaderWriter writeResponseHeader(HeaderWriter header, String httpVersion, File file,
+            MimeTypes.MimeType type, long contentLength, boolean keepAlive) {
+        return writeResponseHeader(header, httpVersion, file, type, contentLength, keepAlive, null, null);
+    }
+
+    /**
+     * Writes a header of the HTTP response message with caching headers.
+     *
+     * @param header The header writer of the connection.
+     * @param httpVersion The HTTP version of the request.
+     * @param file The requested file.
+     * @param type The content type of the file.
+     * @param contentLength The length of the response body in bytes.
+     * @param keepAlive True if the connection stays open after the response.
+     * @param validators The ETag and the last modified time of the file or null.
+     * @param cacheControl The value of the Cache-Control header or null.
+     * @return Returns the writer with the header lines.
+     */
+    public static HeaderWriter writeResponseHeader(HeaderWriter header, String httpVersion, File file,
+            MimeTypes.MimeType type, long contentLength, boolean keepAlive, Validators validators,
+            String cacheControl) {
+        return writeResponseHeader(header, httpVersion, file, type, contentLength, keepAlive, validators, cacheControl,
+                null, false);
+    }
+
+    /**
+     * Writes a header of the HTTP response message with caching and content encoding headers.
+     *
+     * @param header The header writer of the connection.
+     * @param httpVersion The HTTP version of the request.
+     * @param file The requested file.
+     * @param type The content type of the file.
+     * @param contentLength The length of the encoded response body in bytes.
+     * @param keepAlive True if the connection stays open after the response.
+     * @param validators The ETag and the last modified time of the file or null.
+     * @param cacheControl The value of the Cache-Control header or null.
+     * @param contentEncoding The content coding of the body, for example "gzip", or null.
+     * @param varyAcceptEncoding True if the response depends on the Accept-Encoding header of the request.
+     * @return Returns the writer with the header lines.
+     */
+    public static HeaderWriter writeResponseHeader(HeaderWriter header, String httpVersion, File file,
+            MimeTypes.MimeType type, long contentLength, boolean keepAlive, Validators validators, String cacheControl,
+            String contentEncoding, boolean varyAcceptEncoding) {
+        header.start(httpVersion, 200);
+        header.append(type.getHeaderLine());
+        header.header(CONTENT_LENGTH, contentLength);
+        if (contentEncoding != null) {
+            header.header(CONTENT_ENCODING, contentEncoding);
+        } else if (validators != null) {
+            // Only files have validators, their identity representation supports ranges
+            header.append(ACCEPT_RANGES);
+        }
+        writeContentDisposition(header, file.getName());
+        writeCachingHeaders(header, validators, cacheControl);
+        writeVary(header, varyAcceptEncoding);
+        return header.connection(keepAlive);
+    }
+
+    /**
+     * Writes the header of a "206 Partial Content" response.
+     *
+     * @param header The header writer of the connection.
+     * @param httpVersion The HTTP version of the request.
+     * @param file The requested file.
+     * @param contentType The content type of the body, it is "multipart/byteranges" for several ranges.
+     * @param contentRange The value of the Content-Range header or null for several ranges.
+     * @param contentLength The length of the response body in bytes.
+     * @param keepAlive True if the connection stays open after the response.
+     * @param validators The ETag and the last modified time of the file.
+     * @param cacheControl The value of the Cache-Control header or null.
+     * @return Returns the writer with the header lines.
+     */
+    public static HeaderWriter writePartialContentHeader(HeaderWriter header, String httpVersion, File file,
+            String contentType, String contentRange, long contentLength, boolean keepAlive, Validators validators,
+            String cacheControl) {
+        header.start(httpVersion, 206);
+        header.header(CONTENT_TYPE, contentType);
+        header.header(CONTENT_LENGTH, contentLength);
+        if (contentRange != null) {
+            header.header(CONTENT_RANGE, contentRange);
+        }
+        header.append(ACCEPT_RANGES);
+        writeContentDisposition(header, file.getName());
+        writeCachingHeaders(header, validators, cacheControl);
+        return header.connection(keepAlive);
+    }
+
+    /**
+     * Writes the header of a "416 Range Not Satisfiable" response, which has no body.
+     *
+     * @param header The header writer of the connection.
+     * @param httpVersion The HTTP version of the request.
+     * @param keepAlive True if the connection stays open after the response.
+     * @param fileLength The length of the requested file in bytes.
+     * @return Returns the writer with the header lines.
+     */
+    public static HeaderWriter writeRangeNotSatisfiableHeader(HeaderWriter header, String httpVersion,
+            boolean keepAlive, long fileLength) {
+        header.start(httpVersion, 416);
+        header.header(CONTENT_RANGE_UNSATISFIED, fileLength);
+        header.append(CONTENT_LENGTH_ZERO);
+        return header.connection(keepAlive);
+    }
+
+    /**
+     * Writes the header of the response with the metrics of the server, which must not be cached.
+     *
+     * @param header The header writer of the connection.
+     * @param httpVersion The HTTP version of the request.
+     * @param contentLength The length of the metrics in bytes.
+     * @param keepAlive True if the connection stays open after the response.
+     * @return Returns the writer with the header lines.
+     */
+    public static HeaderWriter writeMetricsHeader(HeaderWriter header, String httpVersion, long contentLength,
+            boolean keepAlive) {
+        header.start(httpVersion, 200);
+        header.append(METRICS_CONTENT_TYPE);
+        header.header(CONTENT_LENGTH, contentLength);
+        header.append(CACHE_CONTROL_NO_STORE);
+        return header.connection(keepAlive);
+    }
+
+    /**
+     * Writes the header of a directory listing, which is either sent at once or in chunks.
+     *
+     * @param header The header writer of the connection.
+     * @param httpVersion The HTTP version of the request.
+     * @param contentType The content type of the listing, HTML or JSON.
+     * @param contentLength The length of the response body in bytes or -1 for chunked transfer coding.
+     * @param contentEncoding The content coding of the body, for example "gzip", or null.
+     * @param keepAlive True if the connection stays open after the response.
+     * @return Returns the writer with the header lines.
+     */
+    public static HeaderWriter writeListingHeader(HeaderWriter header, String httpVersion, String contentType,
+            long contentLength, String contentEncoding, boolean keepAlive) {
+        header.start(httpVersion, 200);
+        header.header(CONTENT_TYPE, contentType);
+        if (contentLength < 0) {
+            header.append(TRANSFER_ENCODING_CHUNKED);
+        } else {
+            header.header(CONTENT_LENGTH, contentLength);
+        }
+        if (contentEncoding != null) {
+            header.header(CONTENT_ENCODING, contentEncoding);
+        }
+        header.append(CACHE_CONTROL_NO_CACHE);
+        writeVary(header, true);
+        return header.connection(keepAlive);
+    }
+
+    /**
+     * Writes the header of a "304 Not Modified" response, which has no body.
+     *
+     * @param header The header writer of the connection.
+     * @param httpVersion The HTTP version of the request.
+     * @param keepAlive True if the connection stays open after the response.
+     * @param validators The ETag and the last modified time of the file.
+     * @param cacheControl The value of the Cache-Control header or null.
+     * @return Returns the writer with the header lines.
+     */
+    public static HeaderWriter writeNotModifiedHeader(HeaderWriter header, String httpVersion, boolean keepAlive,
+            Validators validators, String cacheControl) {
+        return writeNotModifiedHeader(header, httpVersion, keepAlive, validators, cacheControl, false);
+    }
+
+    /**
+     * Writes the header of a "304 Not Modified" response for a content which is
+     * available in several content codings.
+     *
+     * @param header The header writer of the connection.
+     * @param httpVersion The HTTP version of the request.
+     * @param keepAlive True if the connection stays open after the response.
+     * @param validators The ETag and the last modified time of the selected representation.
+     * @param cacheControl The value of the Cache-Control header or null.
+     * @param varyAcceptEncoding True if the response depends on the Accept-Encoding header of the request.
+     * @return Returns the writer with the header lines.
+     */
+    public static HeaderWriter writeNotModifiedHeader(HeaderWriter header, String httpVersion, boolean keepAlive,
+            Validators validators, String cacheControl, boolean varyAcceptEncoding) {
+        header.start(httpVersion, 304);
+        writeCachingHeaders(header, validators, cacheControl);
+        writeVary(header, varyAcceptEncoding);
+        return header.connection(keepAlive);
+    }
+
+    /**
+     * Writes the file name as quoted string, quotes and backslashes are escaped and control
+     * characters are dropped. A name with other than ASCII characters gets an ASCII value,
+     * where these characters are replaced by '_', and the percent-encoded UTF-8 name
+     * as extended parameter (RFC 6266).
+     */
+    private static void writeContentDisposition(HeaderWriter header, String fileName) {
+        boolean plain = true;
+        for (int i = 0; i < fileName.length() && plain; i++) {
+            char c = fileName.charAt(i);
+            plain = c >= 0x20 && c < 0x7f && c != '"' && c != '\\';
+        }
+        if (plain) {
+            header.header(CONTENT_DISPOSITION, fileName, QUOTE);
+            return;
+        }
+        StringBuilder name = new StringBuilder(fileName.length());
+        StringBuilder value = new StringBuilder(fileName.length() + 8);
+        boolean ascii = true;
+        for (int i = 0; i < fileName.length(); i++) {
+            char c = fileName.charAt(i);
+            if (Character.isISOControl(c)) {
+                continue;
+            }
+            name.append(c);
+            if (c == '"' || c == '\\') {
+                value.append('\\').append(c);
+            } else if (c < 0x80) {
+                value.append(c);
+            } else {
+                ascii = false;
+                if (!Character.isLowSurrogate(c)) {
+                    value.append('_');
+                }
+            }
+        }
+        if (ascii) {
+            header.header(CONTENT_DISPOSITION, value.toString(), QUOTE);
+            return;
+        }
+        value.append("\"; filename*=UTF-8''");
+        for (byte b : name.toString().getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xff;
+            if (isAttrChar(c)) {
+                value.append((char) c);
+            } else {
+                value.append('%').append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+            }
+        }
+        header.header(CONTENT_DISPOSITION, value.toString(), EMPTY);
+    }
+
+    /**
+     * @return Returns true if the byte is an attr-char of RFC 8187, which is not percent-encoded.
+     */
+    private static boolean isAttrChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+            || "!#$&+-.^_`|~".indexOf(c) >= 0;
+    }
+
+    private static void writeCachingHeaders(HeaderWriter header, Validators validators, String cacheControl) {
+        if (validators != null) {
+            header.header(ETAG, validators.getETag());
+            header.header(LAST_MODIFIED, validators.getLastModified());
+        }
+        if (cacheControl != null) {
+            header.header(CACHE_CONTROL, cacheControl);
+        }
+    }
+
+    private static void writeVary(HeaderWriter header, boolean varyAcceptEncoding) {
+        if (varyAcceptEncoding) {
+            header.append(VARY_ACCEPT_ENCODING);
+        }
     }
 }
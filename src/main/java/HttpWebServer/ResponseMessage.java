@@ -2,28 +2,286 @@ package httpwebserver;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.Socket;
-import org.apache.commons.lang3.ArrayUtils;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * A HTTP response message which consists of the header and the parts of the body.
+ * The header is written first, the body parts follow without being copied
+ * into one array; file contents are streamed from the file.
+ *
+ * @param header The header of the message, or the complete message.
+ */
 public class ResponseMessage {
 
-    private Socket connection;
+    private List<MessagePart> parts = new ArrayList<>();
+    private ByteBuffer header;
+    private int currentPart = 0;
+    private int statusCode;
 
-    public ResponseMessage(Socket connection) {
-        this.connection = connection;
+    public ResponseMessage(byte[] header) {
+        this(ByteBuffer.wrap(header));
     }
 
-    public byte[] getFileResponseMessage(String httpVersion, File file) throws IOException {
-        byte[] body = ResponseBody.getFileContent(file);
-        byte[] header = ResponseHeader.getResponseHeader(httpVersion, file, body);
-        byte[] httpMessage = ArrayUtils.addAll(header, body);
-        return httpMessage;
+    public ResponseMessage(ByteBuffer header) {
+        parts.add(new BufferPart(header));
+        this.header = header;
+        this.statusCode = parseStatusCode(header);
     }
 
-    public byte[] getDirectoryResponseMessage(String httpVersion, File file) throws IOException {
-        byte[] body = ResponseBody.getDirectoryContent(file, connection);
-        byte[] header = ResponseHeader.getResponseHeader(httpVersion, file, body);
-        byte[] httpMessage = ArrayUtils.addAll(header, body);
-        return httpMessage;
+    /**
+     * @return Returns the status code from the status line of the header, for example
+     * 200 for "HTTP/1.1 200 OK", or 0 if the status line is malformed.
+     */
+    private static int parseStatusCode(ByteBuffer header) {
+        int start = header.position() + "HTTP/1.1 ".length();
+        if (header.limit() < start + 3) {
+            return 0;
+        }
+        int statusCode = 0;
+        for (int i = start; i < start + 3; i++) {
+            int digit = header.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return 0;
+            }
+            statusCode = statusCode * 10 + digit;
+        }
+        return statusCode;
+    }
+
+    /**
+     * Computes the response message for a file. The length of the file is taken from the
+     * file metadata, the content is not read before the message is written.
+     * The response to a HEAD request has the same header as the response to
+     * a GET request, but no body, therefore the file is not opened at all.
+     *
+     * @param header The header writer of the connection.
+     * @param type The content type of the file.
+     * @param body The content of the file, streamed from the file or a memory-mapped region.
+     * @param validators The ETag and the last modified time of the file or null.
+     * @param cacheControl The value of the Cache-Control header or null.
+     * @param varyAcceptEncoding True if the file is also available gzip encoded.
+     */
+    public static ResponseMessage getFileResponseMessage(RequestMessage request, HeaderWriter header, File file,
+            MimeTypes.MimeType type, MessagePart body, boolean keepAlive, Validators validators, String cacheControl,
+            boolean varyAcceptEncoding) {
+        ResponseHeader.writeResponseHeader(header, request.getHttpVersion(), file, type, body.getLength(), keepAlive,
+                validators, cacheControl, null, varyAcceptEncoding);
+        return getHttpMessage(request, header.finish(), body);
+    }
+
+    /**
+     * Computes the response message for the gzip encoded representation of a file,
+     * the body is either a precompressed file or the content compressed in memory.
+     *
+     * @param header The header writer of the connection.
+     * @param type The content type of the file.
+     * @param encodedBody The gzip encoded content of the file.
+     * @param validators The validators of the encoded representation.
+     * @param cacheControl The value of the Cache-Control header or null.
+     */
+    public static ResponseMessage getEncodedFileResponseMessage(RequestMessage request, HeaderWriter header, File file,
+            MimeTypes.MimeType type, MessagePart encodedBody, boolean keepAlive, Validators validators,
+            String cacheControl) {
+        ResponseHeader.writeResponseHeader(header, request.getHttpVersion(), file, type, encodedBody.getLength(),
+                keepAlive, validators, cacheControl, "gzip", true);
+        return getHttpMessage(request, header.finish(), encodedBody);
+    }
+
+    /**
+     * Computes a "206 Partial Content" response message for the requested ranges of a file.
+     * A single range is sent as it is, several ranges are sent as "multipart/byteranges",
+     * where every range is preceded by a boundary and its own Content-Type and Content-Range.
+     * The ranges are streamed from the file at their offsets, or written from the mapping of the file.
+     *
+     * @param header The header writer of the connection.
+     * @param type The content type of the file.
+     * @param mappedFile The memory-mapped file or null if the file is not mapped.
+     * @param ranges The satisfiable ranges, at least one.
+     * @param validators The ETag and the last modified time of the file.
+     * @param cacheControl The value of the Cache-Control header or null.
+     */
+    public static ResponseMessage getPartialContentResponseMessage(RequestMessage request, HeaderWriter header,
+            File file, MimeTypes.MimeType type, MappedFiles.MappedFile mappedFile, List<ByteRange> ranges,
+            boolean keepAlive, Validators validators, String cacheControl) {
+        long fileLength = file.length();
+        String contentType = type.getValue();
+        List<MessagePart> body = new ArrayList<>();
+        String contentRange = null;
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            body.add(getRangeContent(file, mappedFile, range));
+            contentRange = range.getContentRange(fileLength);
+        } else {
+            String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+            for (ByteRange range : ranges) {
+                String partHeader = "\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: " + range.getContentRange(fileLength) + "\r\n\r\n";
+                body.add(new BufferPart(partHeader.getBytes(StandardCharsets.US_ASCII)));
+                body.add(getRangeContent(file, mappedFile, range));
+            }
+            body.add(new BufferPart(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII)));
+            contentType = "multipart/byteranges; boundary=" + boundary;
+        }
+        long contentLength = 0;
+        for (MessagePart part : body) {
+            contentLength += part.getLength();
+        }
+        ResponseHeader.writePartialContentHeader(header, request.getHttpVersion(), file, contentType, contentRange,
+                contentLength, keepAlive, validators, cacheControl);
+        ResponseMessage message = new ResponseMessage(header.finish());
+        if (request.getMethod() != Method.HEAD) {
+            message.parts.addAll(body);
+        } else {
+            body.forEach(MessagePart::close);
+        }
+        return message;
+    }
+
+    private static MessagePart getRangeContent(File file, MappedFiles.MappedFile mappedFile, ByteRange range) {
+        if (mappedFile != null) {
+            return mappedFile.getPart(range.getFirst(), range.getLength());
+        }
+        return new FilePart(file.toPath(), range.getFirst(), range.getLength());
+    }
+
+    /**
+     * Computes a "416 Range Not Satisfiable" response message for a range request
+     * whose ranges all start behind the end of the file.
+     */
+    public static ResponseMessage getRangeNotSatisfiableResponseMessage(RequestMessage request, HeaderWriter header,
+            File file, boolean keepAlive) {
+        return new ResponseMessage(ResponseHeader.writeRangeNotSatisfiableHeader(header, request.getHttpVersion(),
+                keepAlive, file.length()).finish());
+    }
+
+    /**
+     * Computes a "304 Not Modified" response message for a conditional request
+     * whose copy of the file is still valid. The file content is not touched.
+     */
+    public static ResponseMessage getNotModifiedResponseMessage(RequestMessage request, HeaderWriter header,
+            boolean keepAlive, Validators validators, String cacheControl, boolean varyAcceptEncoding) {
+        return new ResponseMessage(ResponseHeader.writeNotModifiedHeader(header, request.getHttpVersion(), keepAlive,
+                validators, cacheControl, varyAcceptEncoding).finish());
+    }
+
+    /**
+     * Computes the response message with the metrics of the server in the Prometheus text format.
+     */
+    public static ResponseMessage getMetricsResponseMessage(RequestMessage request, HeaderWriter header,
+            ServerContext context, boolean keepAlive) {
+        byte[] body = context.getMetrics().render(context).getBytes(StandardCharsets.UTF_8);
+        ResponseHeader.writeMetricsHeader(header, request.getHttpVersion(), body.length, keepAlive);
+        return getHttpMessage(request, header.finish(), new BufferPart(body));
+    }
+
+    /**
+     * @param request The request, the response to a HEAD request has no body.
+     * @param header The header of the response.
+     * @param body The body of the response.
+     * @return Returns the response message.
+     */
+    public static ResponseMessage getHttpMessage(RequestMessage request, ByteBuffer header, MessagePart body) {
+        ResponseMessage message = new ResponseMessage(header);
+        if (request.getMethod() != Method.HEAD) {
+            message.addPart(body);
+        } else {
+            body.close();
+        }
+        return message;
+    }
+
+    public void addPart(MessagePart part) {
+        parts.add(part);
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    /**
+     * @return Returns the length of the complete message in bytes.
+     */
+    public long getLength() {
+        long length = 0;
+        for (MessagePart part : parts) {
+            length += part.getLength();
+        }
+        return length;
+    }
+
+    /**
+     * @return Returns false if the message has a streamed part, its length is only known when it was written.
+     */
+    public boolean isLengthKnown() {
+        for (MessagePart part : parts) {
+            if (!part.isLengthKnown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns the HTTP/1.x header of the message, it is translated into a header block for HTTP/2.
+     */
+    public ByteBuffer getHeader() {
+        return this.header.duplicate();
+    }
+
+    /**
+     * @return Returns the length of the body in bytes.
+     */
+    public long getBodyLength() {
+        return getLength() - parts.get(0).getLength();
+    }
+
+    /**
+     * Writes as much of the body as the channel accepts, without the header.
+     * Used by HTTP/2, which sends the body in DATA frames.
+     *
+     * @param channel The channel which receives the body.
+     * @return Returns true if the body was written completely.
+     * @throws Throws an IOException if an I/O error occurs when writing.
+     */
+    public boolean writeBodyTo(WritableByteChannel channel) throws IOException {
+        if (currentPart == 0) {
+            currentPart = 1;
+        }
+        return writeTo(channel);
+    }
+
+    /**
+     * Writes as much of the message as the channel accepts. On a blocking channel
+     * the method is called until it returns true.
+     *
+     * @param channel The channel which is connected to the client.
+     * @return Returns true if the message was written completely.
+     * @throws Throws an IOException if an I/O error occurs when writing.
+     */
+    public boolean writeTo(WritableByteChannel channel) throws IOException {
+        while (currentPart < parts.size()) {
+            MessagePart part = parts.get(currentPart);
+            if (!part.writeTo(channel)) {
+                return false;
+            }
+            part.close();
+            currentPart++;
+        }
+        return true;
+    }
+
+    /**
+     * Releases the resources of the parts which were not written completely.
+     */
+    public void close() {
+        for (int i = currentPart; i < parts.size(); i++) {
+            parts.get(i).close();
+        }
     }
 }
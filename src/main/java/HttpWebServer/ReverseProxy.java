@@ -0,0 +1,151 @@
+package httpwebserver;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The routing table of the reverse proxy: requests whose resource starts with the prefix of a
+ * route are forwarded to one of the upstream servers of the route instead of being served from
+ * the document root. The routes are configured as a list separated by ';', each route maps a
+ * prefix to a comma separated group of upstream servers, for example:
+ * /api/=127.0.0.1:9001,127.0.0.1:9002;/auth/=127.0.0.1:9100
+ * The longest matching prefix wins. The resource is forwarded as it is, the prefix is not removed.
+ * An upstream server which is part of several routes shares its connection pool and its health.
+ *
+ * @param config The configuration of the server.
+ */
+public class ReverseProxy {
+
+    private List<Route> routes = new ArrayList<>();
+    private Map<String, Upstream> upstreams = new LinkedHashMap<>();
+    private ProxyBalancing balancing;
+    private LongAdder badGateway = new LongAdder();
+    private LongAdder gatewayTimeouts = new LongAdder();
+
+    public ReverseProxy(ServerConfig config) {
+        this.balancing = config.getProxyBalancing();
+        String table = config.getProxyRoutes();
+        if (table == null || table.trim().isEmpty()) {
+            return;
+        }
+        for (String route : table.split(";")) {
+            int separator = route.indexOf('=');
+            String prefix = separator < 0 ? "" : route.substring(0, separator).trim();
+            if (!prefix.startsWith("/") || separator == route.length() - 1) {
+                throw new IllegalArgumentException("Malformed proxy route: " + route);
+            }
+            List<Upstream> group = new ArrayList<>();
+            for (InetSocketAddress address : Listeners.parseAddresses(route.substring(separator + 1), 0)) {
+                if (address.isUnresolved() || address.getAddress().isAnyLocalAddress() || address.getPort() == 0) {
+                    throw new IllegalArgumentException("Malformed upstream server in proxy route: " + route);
+                }
+                Upstream upstream = new Upstream(address, config);
+                group.add(upstreams.computeIfAbsent(upstream.getName(), name -> upstream));
+            }
+            routes.add(new Route(prefix, group.toArray(new Upstream[0])));
+        }
+        routes.sort(Comparator.comparingInt((Route route) -> route.prefix.length()).reversed());
+    }
+
+    /**
+     * @param resource The requested resource.
+     * @return Returns the route with the longest prefix of the resource, or null if the resource is not forwarded.
+     */
+    public Route getRoute(String resource) {
+        for (Route route : routes) {
+            if (resource.startsWith(route.prefix)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    public ProxyBalancing getBalancing() {
+        return this.balancing;
+    }
+
+    /**
+     * @return Returns the upstream servers of all routes.
+     */
+    public Collection<Upstream> getUpstreams() {
+        return upstreams.values();
+    }
+
+    public void badGateway() {
+        badGateway.increment();
+    }
+
+    public void gatewayTimeout() {
+        gatewayTimeouts.increment();
+    }
+
+    public long getBadGateway() {
+        return badGateway.sum();
+    }
+
+    public long getGatewayTimeouts() {
+        return gatewayTimeouts.sum();
+    }
+
+    /**
+     * Closes the idle connections to the upstream servers.
+     */
+    public void close() {
+        for (Upstream upstream : upstreams.values()) {
+            upstream.close();
+        }
+    }
+
+    /**
+     * A prefix and the group of upstream servers which serve it.
+     */
+    public static class Route {
+
+        private String prefix;
+        private Upstream[] upstreams;
+        private AtomicInteger next = new AtomicInteger();
+
+        private Route(String prefix, Upstream[] upstreams) {
+            this.prefix = prefix;
+            this.upstreams = upstreams;
+        }
+
+        /**
+         * Chooses the upstream server of a request. The search starts at the next server in turn
+         * and skips the servers which are out of the rotation.
+         *
+         * @param balancing How the requests are distributed.
+         * @param excluded The servers which already failed for this request.
+         * @return Returns the upstream server or null if none is available.
+         */
+        public Upstream choose(ProxyBalancing balancing, List<Upstream> excluded) {
+            long now = System.nanoTime();
+            int start = Math.floorMod(next.getAndIncrement(), upstreams.length);
+            Upstream chosen = null;
+            for (int i = 0; i < upstreams.length; i++) {
+                Upstream upstream = upstreams[(start + i) % upstreams.length];
+                if (!upstream.isAvailable(now) || excluded.contains(upstream)) {
+                    continue;
+                }
+                if (balancing == ProxyBalancing.ROUND_ROBIN) {
+                    return upstream;
+                }
+                if (chosen == null || upstream.getActiveRequests() < chosen.getActiveRequests()) {
+                    chosen = upstream;
+                }
+            }
+            return chosen;
+        }
+
+        public String getPrefix() {
+            return this.prefix;
+        }
+    }
+}
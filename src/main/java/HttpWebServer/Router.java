@@ -0,0 +1,254 @@
+package httpwebserver;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The routes of the request handlers. A route is a pattern of path segments and a handler for a method:
+ * an exact path ("/health"), a path with parameters ("/users/{id}/posts"), or a prefix, which ends
+ * with "/*" and also matches every path below it ("/hooks/*"). Requests which match no route are
+ * served by the reverse proxy or from the document root as before.
+ * Whenever a route is added, all routes are compiled into a trie of path segments, which is then
+ * published at once, so routes can be added while the server is running. A lookup walks the trie
+ * along the segments of the resource, a literal segment before a parameter before a prefix, and
+ * takes no lock and no regular expression; it is linear in the length of the path unless literal
+ * and parameter routes overlap and the lookup has to go back.
+ * A HEAD request is handled by the GET handler of its route, its body is dropped.
+ */
+public class Router {
+
+    private List<Route> routes = new ArrayList<>();
+    private volatile Node root = null;
+
+    /**
+     * @param method The method of the requests.
+     * @param pattern The pattern of the path, it starts with "/".
+     * @param handler The handler of the requests.
+     * @return Returns this router.
+     * @throws Throws an IllegalArgumentException if the pattern is malformed or the route exists already.
+     */
+    public synchronized Router add(Method method, String pattern, RequestHandler handler) {
+        if (method == null || handler == null) {
+            throw new IllegalArgumentException("A route needs a method and a handler: " + pattern);
+        }
+        List<Route> extended = new ArrayList<>(routes);
+        extended.add(new Route(method, pattern, handler));
+        this.root = compile(extended);
+        this.routes = extended;
+        return this;
+    }
+
+    public Router get(String pattern, RequestHandler handler) {
+        return add(Method.GET, pattern, handler);
+    }
+
+    public Router post(String pattern, RequestHandler handler) {
+        return add(Method.POST, pattern, handler);
+    }
+
+    /**
+     * @param resource The requested resource without the query.
+     * @return Returns the route of the resource with the values of its parameters, or null if no route matches.
+     */
+    public Match match(String resource) {
+        Node current = root;
+        if (current == null || resource.isEmpty() || resource.charAt(0) != '/') {
+            return null;
+        }
+        String[] values = new String[current.maxParameters];
+        return match(current, resource, 1, values);
+    }
+
+    /**
+     * @param start The index of the first character of the next segment.
+     */
+    private static Match match(Node node, String resource, int start, String[] values) {
+        if (start > resource.length()) {
+            return node.handlers != null ? new Match(node, node.handlers, values) : null;
+        }
+        int end = resource.indexOf('/', start);
+        if (end < 0) {
+            end = resource.length();
+        }
+        Match match = null;
+        Node literal = node.literals == null ? null : node.literals.get(resource.substring(start, end));
+        if (literal != null) {
+            match = match(literal, resource, end + 1, values);
+        }
+        if (match == null && node.parameter != null && end > start) {
+            values[node.parameter.depth] = resource.substring(start, end);
+            match = match(node.parameter, resource, end + 1, values);
+        }
+        if (match == null && node.prefixHandlers != null) {
+            match = new Match(node, node.prefixHandlers, values);
+        }
+        return match;
+    }
+
+    private static Node compile(List<Route> routes) {
+        Node root = new Node(null, null, 0);
+        for (Route route : routes) {
+            Node node = root;
+            for (int i = 0; i < route.segments.length; i++) {
+                String segment = route.segments[i];
+                if (segment.equals("*") && i == route.segments.length - 1) {
+                    node.prefixHandlers = put(node.prefixHandlers, route);
+                    node = null;
+                    break;
+                }
+                node = node.child(segment, route.pattern);
+            }
+            if (node != null) {
+                node.handlers = put(node.handlers, route);
+            }
+            root.maxParameters = Math.max(root.maxParameters, route.parameters);
+        }
+        return root;
+    }
+
+    private static Map<Method, RequestHandler> put(Map<Method, RequestHandler> handlers, Route route) {
+        if (handlers == null) {
+            handlers = new EnumMap<>(Method.class);
+        }
+        if (handlers.putIfAbsent(route.method, route.handler) != null) {
+            throw new IllegalArgumentException("The route exists already: " + route.method + " " + route.pattern);
+        }
+        return handlers;
+    }
+
+    /**
+     * A registered route, its pattern split into segments.
+     */
+    private static class Route {
+
+        private Method method;
+        private String pattern;
+        private String[] segments;
+        private int parameters = 0;
+        private RequestHandler handler;
+
+        private Route(Method method, String pattern, RequestHandler handler) {
+            if (pattern == null || !pattern.startsWith("/")) {
+                throw new IllegalArgumentException("A route has to start with '/': " + pattern);
+            }
+            this.method = method;
+            this.pattern = pattern;
+            this.handler = handler;
+            this.segments = pattern.equals("/") ? new String[] {""} : pattern.substring(1).split("/", -1);
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (isParameter(segment)) {
+                    if (segment.length() == 2) {
+                        throw new IllegalArgumentException("A path parameter needs a name: " + pattern);
+                    }
+                    parameters++;
+                } else if (segment.contains("{") || segment.contains("}")
+                        || (segment.contains("*") && !(segment.equals("*") && i == segments.length - 1))) {
+                    throw new IllegalArgumentException("Malformed route: " + pattern);
+                }
+            }
+        }
+    }
+
+    private static boolean isParameter(String segment) {
+        return segment.startsWith("{") && segment.endsWith("}");
+    }
+
+    /**
+     * A node of the trie, it stands for the path segments from the root to it.
+     */
+    private static class Node {
+
+        private Node parent;
+        private String parameterName;
+        private int depth;
+        private int maxParameters = 0;
+        private Map<String, Node> literals;
+        private Node parameter;
+        private Map<Method, RequestHandler> handlers;
+        private Map<Method, RequestHandler> prefixHandlers;
+
+        /**
+         * @param parent The node of the previous segment.
+         * @param parameterName The name of the parameter if the node stands for one.
+         * @param depth The index of the value of the parameter, otherwise the number of parameters up to this node.
+         */
+        private Node(Node parent, String parameterName, int depth) {
+            this.parent = parent;
+            this.parameterName = parameterName;
+            this.depth = depth;
+        }
+
+        private Node child(String segment, String pattern) {
+            int parameters = parameterName == null ? depth : depth + 1;
+            if (isParameter(segment)) {
+                String name = segment.substring(1, segment.length() - 1);
+                if (parameter == null) {
+                    parameter = new Node(this, name, parameters);
+                } else if (!parameter.parameterName.equals(name)) {
+                    throw new IllegalArgumentException("The path parameter {" + parameter.parameterName
+                            + "} has another name in: " + pattern);
+                }
+                return parameter;
+            }
+            if (literals == null) {
+                literals = new HashMap<>();
+            }
+            return literals.computeIfAbsent(segment, name -> new Node(this, null, parameters));
+        }
+    }
+
+    /**
+     * The route which matches a resource, with the values of the path parameters.
+     */
+    public static class Match {
+
+        private Map<Method, RequestHandler> handlers;
+        private Map<String, String> parameters;
+
+        private Match(Node node, Map<Method, RequestHandler> handlers, String[] values) {
+            this.handlers = handlers;
+            this.parameters = new HashMap<>();
+            for (Node current = node; current != null; current = current.parent) {
+                if (current.parameterName != null) {
+                    parameters.put(current.parameterName, values[current.depth]);
+                }
+            }
+        }
+
+        /**
+         * @param method The method of the request.
+         * @return Returns the handler of the method, or null if the route does not accept the method.
+         */
+        public RequestHandler getHandler(Method method) {
+            RequestHandler handler = handlers.get(method);
+            if (handler == null && method == Method.HEAD) {
+                handler = handlers.get(Method.GET);
+            }
+            return handler;
+        }
+
+        /**
+         * @return Returns the methods of the route for the Allow header, for example "GET, HEAD, POST".
+         */
+        public String getAllowedMethods() {
+            StringBuilder allowed = new StringBuilder();
+            for (Method method : Method.values()) {
+                if (getHandler(method) != null) {
+                    allowed.append(allowed.length() == 0 ? "" : ", ").append(method.name());
+                }
+            }
+            return allowed.toString();
+        }
+
+        /**
+         * @return Returns the values of the path parameters by their names.
+         */
+        public Map<String, String> getParameters() {
+            return this.parameters;
+        }
+    }
+}
@@ -1,31 +1,102 @@
 package httpwebserver;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+
 /**
- * Creates and starts a BackgroundServer instance in a thread.
+ * Creates and starts a server instance in a thread.
  * In case no port is specified is the default port 8080.
+ * The engine (blocking AsyncServer or non-blocking NioServer) and the execution mode of
+ * the client handlers can be selected with a ServerConfig, or on the command line,
+ * for example: --engine=nio or --execution-mode=virtual_threads
+ * A server can listen on several addresses and ports at once, for example:
+ * --listen=127.0.0.1:8080,[::1]:8080 --acceptor-threads=4 --reuse-port=true
+ * Request handlers are registered with the router of the server, for example:
+ * server.getRouter().get("/users/{id}", exchange -> exchange.respond(200, "text/plain", exchange.getPathParameter("id")));
  *
  * @author Marcel Unkauf
  */
 public class Server {
 
-    private int port;
+    private ServerContext context;
+    private ServerInstance serverInstance;
+    private List<InetSocketAddress> addresses;
 
-    public Server() {   // Think about using a Threadpool!
-        int defaultPort = 8080;
-        this.port = defaultPort;
-        new Thread(new AsyncServer(port)).start();
+    public Server() {
+        this(new ServerConfig());
     }
 
     public Server(int port) {
-        this.port = port;
-        new Thread(new AsyncServer(port)).start();
+        this(new ServerConfig(port));
+    }
+
+    /**
+     * @param config The configuration of the server.
+     * @throws Throws an UncheckedIOException if the server can not listen on its addresses
+     * or the access log can not be opened.
+     */
+    public Server(ServerConfig config) {
+        this.context = new ServerContext(config);
+        this.serverInstance = createServerInstance(context);
+        try {
+            serverInstance.bind();
+            this.addresses = serverInstance.getLocalAddresses();
+        } catch (IOException e) {
+            String listen = config.getListen() != null ? config.getListen() : "port " + config.getPort();
+            throw new UncheckedIOException("Server can not listen on " + listen, e);
+        }
+        try {
+            context.start();
+        } catch (IOException e) {
+            serverInstance.shutdown();
+            throw new UncheckedIOException("Server can not open the access log", e);
+        }
+        new Thread(serverInstance).start();
     }
 
+    /**
+     * @return Returns the router of the server, its routes are served by request handlers
+     *         instead of from the document root, they can be added while the server is running.
+     */
+    public Router getRouter() {
+        return context.getRouter();
+    }
+
+    /**
+     * @return Returns the port of the first address the server listens on.
+     */
     public int getPort() {
-        return this.port;
+        return addresses.get(0).getPort();
+    }
+
+    /**
+     * @return Returns the addresses the server listens on, with the ports which were actually bound,
+     *         for example if the port 0 was configured.
+     */
+    public List<InetSocketAddress> getAddresses() {
+        return this.addresses;
+    }
+
+    /**
+     * Stops the server gracefully: No new connections are accepted and
+     * the requests which are currently processed are finished.
+     */
+    public void stop() {
+        serverInstance.shutdown();
+        context.close();
+    }
+
+    private static ServerInstance createServerInstance(ServerContext context) {
+        if (context.getConfig().getEngine() == Engine.NIO) {
+            return new NioServer(context);
+        }
+        return new AsyncServer(context);
     }
 
     public static void main(String[] args) {
-        new Server();
+        Server server = new Server(ServerConfig.fromArguments(args));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
     }
 }
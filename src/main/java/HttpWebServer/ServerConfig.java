@@ -0,0 +1,1050 @@
+package httpwebserver;
+
+/**
+ * Holds the settings of a Server instance. Every setting has a default value,
+ * therefore a new ServerConfig can be used as it is.
+ *
+ * @author Marcel Unkauf
+ */
+public class ServerConfig {
+
+    private int port = 8080;
+    private String listen = null;
+    private int acceptorThreads = 1;
+    private boolean reusePort = false;
+    private int acceptBacklog = 1024;
+    private boolean tcpNoDelay = true;
+    private int sendBufferSize = 0;
+    private int receiveBufferSize = 0;
+    private Engine engine = Engine.BLOCKING;
+    private int eventLoopThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutionMode executionMode = ExecutionMode.POOLED;
+    private int workerThreads = 200;
+    private int queueCapacity = 1000;
+    private int maxConnections = 0;
+    private int maxConnectionsPerIp = 0;
+    private int rateLimit = 0;
+    private int rateLimitBurst = 0;
+    private int shutdownTimeoutSeconds = 30;
+    private int idleTimeoutMillis = 5000;
+    private int headerTimeoutMillis = 10000;
+    private int writeTimeoutMillis = 30000;
+    private int minWriteRate = 4096;
+    private int bodyTimeoutMillis = 30000;
+    private int minBodyRate = 4096;
+    private int maxRequestsPerConnection = 100;
+    private long fileCacheMaxBytes = 64L * 1024 * 1024;
+    private long fileCacheMaxFileSize = 1024 * 1024;
+    private long fileCacheRevalidateMillis = 1000;
+    private String documentRoot = ".";
+    private int pathCacheMaxEntries = 10000;
+    private long pathCacheTtlMillis = 5000;
+    private long pathCacheNegativeTtlMillis = 1000;
+    private String errorPageDirectory = null;
+    private int maxRequestHeaderSize = 8192;
+    private boolean weakETags = false;
+    private String cacheControlRules = null;
+    private boolean compressionEnabled = true;
+    private long compressionMinSize = 1024;
+    private long compressionMaxFileSize = 8L * 1024 * 1024;
+    private long compressionCacheMaxBytes = 32L * 1024 * 1024;
+    private int compressionLevel = 6;
+    private boolean consoleLog = false;
+    private String metricsPath = "/metrics";
+    private String accessLogFile = null;
+    private String accessLogFormat = "combined";
+    private int accessLogBufferSize = 8192;
+    private long accessLogFlushIntervalMillis = 1000;
+    private long accessLogMaxFileBytes = 100L * 1024 * 1024;
+    private int accessLogMaxFiles = 5;
+    private String accessLogOverflow = "drop";
+    private int directoryPageSize = 1000;
+    private long directoryCacheMaxEntries = 100000;
+    private String mimeTypesFile = null;
+    private boolean mmap = false;
+    private long mmapMinFileSize = 1024 * 1024;
+    private long mmapMaxFileSize = 100L * 1024 * 1024;
+    private long mmapMaxBytes = 512L * 1024 * 1024;
+    private boolean http2 = false;
+    private int http2MaxConcurrentStreams = 100;
+    private String proxyRoutes = null;
+    private ProxyBalancing proxyBalancing = ProxyBalancing.ROUND_ROBIN;
+    private int proxyMaxIdleConnections = 16;
+    private int proxyIdleTimeoutMillis = 4000;
+    private int proxyConnectTimeoutMillis = 1000;
+    private int proxyReadTimeoutMillis = 30000;
+    private int proxyMaxFails = 3;
+    private int proxyFailTimeoutMillis = 10000;
+
+    public ServerConfig() {
+    }
+
+    public ServerConfig(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Creates a configuration from command line arguments of the form --name=value,
+     * for example: --port=8080 --engine=nio --execution-mode=virtual_threads
+     *
+     * @param args The command line arguments.
+     * @return Returns the configuration which is described by the arguments.
+     * @throws Throws an IllegalArgumentException if an argument is unknown or malformed.
+     */
+    public static ServerConfig fromArguments(String[] args) {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Malformed argument: " + arg);
+            }
+            config.set(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return config;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "port":
+                this.port = Integer.parseInt(value);
+                break;
+            case "listen":
+                this.listen = value.isEmpty() ? null : value;
+                break;
+            case "acceptor-threads":
+                this.acceptorThreads = Integer.parseInt(value);
+                break;
+            case "reuse-port":
+                this.reusePort = Boolean.parseBoolean(value);
+                break;
+            case "accept-backlog":
+                this.acceptBacklog = Integer.parseInt(value);
+                break;
+            case "tcp-no-delay":
+                this.tcpNoDelay = Boolean.parseBoolean(value);
+                break;
+            case "send-buffer-size":
+                this.sendBufferSize = Integer.parseInt(value);
+                break;
+            case "receive-buffer-size":
+                this.receiveBufferSize = Integer.parseInt(value);
+                break;
+            case "engine":
+                this.engine = Engine.valueOf(value.toUpperCase());
+                break;
+            case "event-loop-threads":
+                this.eventLoopThreads = Integer.parseInt(value);
+                break;
+            case "execution-mode":
+                this.executionMode = ExecutionMode.valueOf(value.toUpperCase().replace('-', '_'));
+                break;
+            case "worker-threads":
+                this.workerThreads = Integer.parseInt(value);
+                break;
+            case "queue-capacity":
+                this.queueCapacity = Integer.parseInt(value);
+                break;
+            case "max-connections":
+                this.maxConnections = Integer.parseInt(value);
+                break;
+            case "max-connections-per-ip":
+                this.maxConnectionsPerIp = Integer.parseInt(value);
+                break;
+            case "rate-limit":
+                this.rateLimit = Integer.parseInt(value);
+                break;
+            case "rate-limit-burst":
+                this.rateLimitBurst = Integer.parseInt(value);
+                break;
+            case "shutdown-timeout":
+                this.shutdownTimeoutSeconds = Integer.parseInt(value);
+                break;
+            case "idle-timeout":
+                this.idleTimeoutMillis = Integer.parseInt(value);
+                break;
+            case "header-timeout":
+                this.headerTimeoutMillis = Integer.parseInt(value);
+                break;
+            case "write-timeout":
+                this.writeTimeoutMillis = Integer.parseInt(value);
+                break;
+            case "min-write-rate":
+                this.minWriteRate = Integer.parseInt(value);
+                break;
+            case "body-timeout":
+                this.bodyTimeoutMillis = Integer.parseInt(value);
+                break;
+            case "min-body-rate":
+                this.minBodyRate = Integer.parseInt(value);
+                break;
+            case "max-requests-per-connection":
+                this.maxRequestsPerConnection = Integer.parseInt(value);
+                break;
+            case "file-cache-max-bytes":
+                this.fileCacheMaxBytes = Long.parseLong(value);
+                break;
+            case "file-cache-max-file-size":
+                this.fileCacheMaxFileSize = Long.parseLong(value);
+                break;
+            case "file-cache-revalidate":
+                this.fileCacheRevalidateMillis = Long.parseLong(value);
+                break;
+            case "document-root":
+                this.documentRoot = value;
+                break;
+            case "path-cache-max-entries":
+                this.pathCacheMaxEntries = Integer.parseInt(value);
+                break;
+            case "path-cache-ttl":
+                this.pathCacheTtlMillis = Long.parseLong(value);
+                break;
+            case "path-cache-negative-ttl":
+                this.pathCacheNegativeTtlMillis = Long.parseLong(value);
+                break;
+            case "error-pages":
+                this.errorPageDirectory = value;
+                break;
+            case "max-request-header-size":
+                this.maxRequestHeaderSize = Integer.parseInt(value);
+                break;
+            case "weak-etags":
+                this.weakETags = Boolean.parseBoolean(value);
+                break;
+            case "cache-control":
+                this.cacheControlRules = value;
+                break;
+            case "compression":
+                this.compressionEnabled = Boolean.parseBoolean(value);
+                break;
+            case "compression-min-size":
+                this.compressionMinSize = Long.parseLong(value);
+                break;
+            case "compression-max-file-size":
+                this.compressionMaxFileSize = Long.parseLong(value);
+                break;
+            case "compression-cache-max-bytes":
+                this.compressionCacheMaxBytes = Long.parseLong(value);
+                break;
+            case "compression-level":
+                this.compressionLevel = Integer.parseInt(value);
+                break;
+            case "console-log":
+                this.consoleLog = Boolean.parseBoolean(value);
+                break;
+            case "metrics-path":
+                this.metricsPath = value.isEmpty() ? null : value;
+                break;
+            case "access-log":
+                this.accessLogFile = value.isEmpty() ? null : value;
+                break;
+            case "access-log-format":
+                this.accessLogFormat = value;
+                break;
+            case "access-log-buffer-size":
+                this.accessLogBufferSize = Integer.parseInt(value);
+                break;
+            case "access-log-flush-interval":
+                this.accessLogFlushIntervalMillis = Long.parseLong(value);
+                break;
+            case "access-log-max-file-size":
+                this.accessLogMaxFileBytes = Long.parseLong(value);
+                break;
+            case "access-log-max-files":
+                this.accessLogMaxFiles = Integer.parseInt(value);
+                break;
+            case "access-log-overflow":
+                this.accessLogOverflow = value;
+                break;
+            case "directory-page-size":
+                this.directoryPageSize = Integer.parseInt(value);
+                break;
+            case "directory-cache-max-entries":
+                this.directoryCacheMaxEntries = Long.parseLong(value);
+                break;
+            case "mime-types":
+                this.mimeTypesFile = value.isEmpty() ? null : value;
+                break;
+            case "mmap":
+                this.mmap = Boolean.parseBoolean(value);
+                break;
+            case "mmap-min-file-size":
+                this.mmapMinFileSize = Long.parseLong(value);
+                break;
+            case "mmap-max-file-size":
+                this.mmapMaxFileSize = Long.parseLong(value);
+                break;
+            case "mmap-max-bytes":
+                this.mmapMaxBytes = Long.parseLong(value);
+                break;
+            case "http2":
+                this.http2 = Boolean.parseBoolean(value);
+                break;
+            case "http2-max-concurrent-streams":
+                this.http2MaxConcurrentStreams = Integer.parseInt(value);
+                break;
+            case "proxy-routes":
+                this.proxyRoutes = value.isEmpty() ? null : value;
+                break;
+            case "proxy-balancing":
+                this.proxyBalancing = ProxyBalancing.valueOf(value.toUpperCase().replace('-', '_'));
+                break;
+            case "proxy-max-idle-connections":
+                this.proxyMaxIdleConnections = Integer.parseInt(value);
+                break;
+            case "proxy-idle-timeout":
+                this.proxyIdleTimeoutMillis = Integer.parseInt(value);
+                break;
+            case "proxy-connect-timeout":
+                this.proxyConnectTimeoutMillis = Integer.parseInt(value);
+                break;
+            case "proxy-read-timeout":
+                this.proxyReadTimeoutMillis = Integer.parseInt(value);
+                break;
+            case "proxy-max-fails":
+                this.proxyMaxFails = Integer.parseInt(value);
+                break;
+            case "proxy-fail-timeout":
+                this.proxyFailTimeoutMillis = Integer.parseInt(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown argument: --" + name);
+        }
+    }
+
+    public int getPort() {
+        return this.port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * @return Returns the comma separated addresses the server listens on, for example
+     *         "127.0.0.1:8080,[::1]:8080,9090", or null if it listens on the port on all interfaces.
+     */
+    public String getListen() {
+        return this.listen;
+    }
+
+    public void setListen(String listen) {
+        this.listen = listen;
+    }
+
+    /**
+     * @return Returns the number of threads which accept the connections of each address.
+     */
+    public int getAcceptorThreads() {
+        return this.acceptorThreads;
+    }
+
+    public void setAcceptorThreads(int acceptorThreads) {
+        this.acceptorThreads = acceptorThreads;
+    }
+
+    /**
+     * @return Returns true if every acceptor thread gets its own socket with SO_REUSEPORT,
+     *         where the operating system supports it.
+     */
+    public boolean isReusePort() {
+        return this.reusePort;
+    }
+
+    public void setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    /**
+     * @return Returns the maximum number of connections which wait to be accepted, per socket.
+     *         The operating system may limit it further (net.core.somaxconn on Linux).
+     */
+    public int getAcceptBacklog() {
+        return this.acceptBacklog;
+    }
+
+    public void setAcceptBacklog(int acceptBacklog) {
+        this.acceptBacklog = acceptBacklog;
+    }
+
+    /**
+     * @return Returns true if Nagle's algorithm is disabled on the accepted connections.
+     */
+    public boolean isTcpNoDelay() {
+        return this.tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * @return Returns the socket send buffer size in bytes of the connections, 0 keeps the system default.
+     */
+    public int getSendBufferSize() {
+        return this.sendBufferSize;
+    }
+
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    /**
+     * @return Returns the socket receive buffer size in bytes of the connections, 0 keeps the system default.
+     */
+    public int getReceiveBufferSize() {
+        return this.receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public Engine getEngine() {
+        return this.engine;
+    }
+
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    public int getEventLoopThreads() {
+        return this.eventLoopThreads;
+    }
+
+    public void setEventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return this.executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public int getWorkerThreads() {
+        return this.workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @return Returns the maximum number of open connections, further connections are answered with 503.
+     *         0 means no limit.
+     */
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return Returns the maximum number of open connections of a client address, further connections
+     *         are answered with 429. 0 means no limit.
+     */
+    public int getMaxConnectionsPerIp() {
+        return this.maxConnectionsPerIp;
+    }
+
+    public void setMaxConnectionsPerIp(int maxConnectionsPerIp) {
+        this.maxConnectionsPerIp = maxConnectionsPerIp;
+    }
+
+    /**
+     * @return Returns the number of requests per second of a client address, further requests
+     *         are answered with 429. 0 means no limit.
+     */
+    public int getRateLimit() {
+        return this.rateLimit;
+    }
+
+    public void setRateLimit(int rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * @return Returns the number of requests a client address can send at once before the rate limit applies,
+     *         0 means one second of the rate limit.
+     */
+    public int getRateLimitBurst() {
+        return this.rateLimitBurst;
+    }
+
+    public void setRateLimitBurst(int rateLimitBurst) {
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
+    public int getShutdownTimeoutSeconds() {
+        return this.shutdownTimeoutSeconds;
+    }
+
+    public void setShutdownTimeoutSeconds(int shutdownTimeoutSeconds) {
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+    }
+
+    /**
+     * @return Returns the time in milliseconds after which a persistent connection
+     *         without a new request is closed, 0 means no timeout.
+     */
+    public int getIdleTimeoutMillis() {
+        return this.idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(int idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * @return Returns the time in milliseconds within which a request header has to be complete,
+     *         counted from the connect or from the first byte of the request, 0 means no timeout.
+     */
+    public int getHeaderTimeoutMillis() {
+        return this.headerTimeoutMillis;
+    }
+
+    public void setHeaderTimeoutMillis(int headerTimeoutMillis) {
+        this.headerTimeoutMillis = headerTimeoutMillis;
+    }
+
+    /**
+     * @return Returns the time in milliseconds which a client has to read a response, in addition
+     *         to the time the response takes at the minimum write rate, 0 means no timeout.
+     */
+    public int getWriteTimeoutMillis() {
+        return this.writeTimeoutMillis;
+    }
+
+    public void setWriteTimeoutMillis(int writeTimeoutMillis) {
+        this.writeTimeoutMillis = writeTimeoutMillis;
+    }
+
+    /**
+     * @return Returns the number of bytes per second which a client has to read at least, 0 means no minimum.
+     */
+    public int getMinWriteRate() {
+        return this.minWriteRate;
+    }
+
+    public void setMinWriteRate(int minWriteRate) {
+        this.minWriteRate = minWriteRate;
+    }
+
+    /**
+     * @return Returns the time in milliseconds within which a request body has to arrive, in addition
+     *         to the time the body takes at the minimum body rate, 0 means no timeout.
+     */
+    public int getBodyTimeoutMillis() {
+        return this.bodyTimeoutMillis;
+    }
+
+    public void setBodyTimeoutMillis(int bodyTimeoutMillis) {
+        this.bodyTimeoutMillis = bodyTimeoutMillis;
+    }
+
+    /**
+     * @return Returns the number of bytes per second which a client has to send a request body with
+     *         at least, 0 means no minimum.
+     */
+    public int getMinBodyRate() {
+        return this.minBodyRate;
+    }
+
+    public void setMinBodyRate(int minBodyRate) {
+        this.minBodyRate = minBodyRate;
+    }
+
+    /**
+     * @return Returns the number of requests after which a persistent connection is closed.
+     */
+    public int getMaxRequestsPerConnection() {
+        return this.maxRequestsPerConnection;
+    }
+
+    public void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
+    /**
+     * @return Returns the maximum total size of the cached files in bytes, 0 disables the file cache.
+     */
+    public long getFileCacheMaxBytes() {
+        return this.fileCacheMaxBytes;
+    }
+
+    public void setFileCacheMaxBytes(long fileCacheMaxBytes) {
+        this.fileCacheMaxBytes = fileCacheMaxBytes;
+    }
+
+    /**
+     * @return Returns the size in bytes up to which a file is cached.
+     */
+    public long getFileCacheMaxFileSize() {
+        return this.fileCacheMaxFileSize;
+    }
+
+    public void setFileCacheMaxFileSize(long fileCacheMaxFileSize) {
+        this.fileCacheMaxFileSize = fileCacheMaxFileSize;
+    }
+
+    /**
+     * @return Returns the time in milliseconds for which a cached file is used
+     *         without checking whether the file was modified.
+     */
+    public long getFileCacheRevalidateMillis() {
+        return this.fileCacheRevalidateMillis;
+    }
+
+    public void setFileCacheRevalidateMillis(long fileCacheRevalidateMillis) {
+        this.fileCacheRevalidateMillis = fileCacheRevalidateMillis;
+    }
+
+    /**
+     * @return Returns the directory whose files and subdirectories are served, by default the working directory.
+     */
+    public String getDocumentRoot() {
+        return this.documentRoot;
+    }
+
+    public void setDocumentRoot(String documentRoot) {
+        this.documentRoot = documentRoot;
+    }
+
+    /**
+     * @return Returns the maximum number of resolved paths which are cached, 0 disables the cache.
+     */
+    public int getPathCacheMaxEntries() {
+        return this.pathCacheMaxEntries;
+    }
+
+    public void setPathCacheMaxEntries(int pathCacheMaxEntries) {
+        this.pathCacheMaxEntries = pathCacheMaxEntries;
+    }
+
+    /**
+     * @return Returns the time in milliseconds for which the resolved path of an existing file or directory is used.
+     */
+    public long getPathCacheTtlMillis() {
+        return this.pathCacheTtlMillis;
+    }
+
+    public void setPathCacheTtlMillis(long pathCacheTtlMillis) {
+        this.pathCacheTtlMillis = pathCacheTtlMillis;
+    }
+
+    /**
+     * @return Returns the time in milliseconds for which a resource which does not exist is answered with 404
+     *         without checking the file system again.
+     */
+    public long getPathCacheNegativeTtlMillis() {
+        return this.pathCacheNegativeTtlMillis;
+    }
+
+    public void setPathCacheNegativeTtlMillis(long pathCacheNegativeTtlMillis) {
+        this.pathCacheNegativeTtlMillis = pathCacheNegativeTtlMillis;
+    }
+
+    /**
+     * @return Returns the directory with custom error pages (for example 404.html)
+     *         or null if the built-in pages are used.
+     */
+    public String getErrorPageDirectory() {
+        return this.errorPageDirectory;
+    }
+
+    public void setErrorPageDirectory(String errorPageDirectory) {
+        this.errorPageDirectory = errorPageDirectory;
+    }
+
+    /**
+     * @return Returns the maximum size of the request line and the header block of a request in bytes.
+     */
+    public int getMaxRequestHeaderSize() {
+        return this.maxRequestHeaderSize;
+    }
+
+    public void setMaxRequestHeaderSize(int maxRequestHeaderSize) {
+        this.maxRequestHeaderSize = maxRequestHeaderSize;
+    }
+
+    /**
+     * @return Returns true if the ETags of the files are marked as weak validators.
+     */
+    public boolean isWeakETags() {
+        return this.weakETags;
+    }
+
+    public void setWeakETags(boolean weakETags) {
+        this.weakETags = weakETags;
+    }
+
+    /**
+     * @return Returns the Cache-Control rules, for example "*.css=max-age=86400;/static/=no-cache", or null.
+     */
+    public String getCacheControlRules() {
+        return this.cacheControlRules;
+    }
+
+    public void setCacheControlRules(String cacheControlRules) {
+        this.cacheControlRules = cacheControlRules;
+    }
+
+    /**
+     * @return Returns true if textual contents are gzip encoded for clients which accept it.
+     */
+    public boolean isCompressionEnabled() {
+        return this.compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * @return Returns the minimum size in bytes of a content which is compressed on the fly.
+     */
+    public long getCompressionMinSize() {
+        return this.compressionMinSize;
+    }
+
+    public void setCompressionMinSize(long compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    /**
+     * @return Returns the maximum size in bytes of a file which is compressed on the fly.
+     */
+    public long getCompressionMaxFileSize() {
+        return this.compressionMaxFileSize;
+    }
+
+    public void setCompressionMaxFileSize(long compressionMaxFileSize) {
+        this.compressionMaxFileSize = compressionMaxFileSize;
+    }
+
+    /**
+     * @return Returns the maximum total size in bytes of the cached compressed files.
+     */
+    public long getCompressionCacheMaxBytes() {
+        return this.compressionCacheMaxBytes;
+    }
+
+    public void setCompressionCacheMaxBytes(long compressionCacheMaxBytes) {
+        this.compressionCacheMaxBytes = compressionCacheMaxBytes;
+    }
+
+    /**
+     * @return Returns the deflate compression level from 1 (fastest) to 9 (smallest).
+     */
+    public int getCompressionLevel() {
+        return this.compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return Returns true if every request and every accepted connection is logged to the console,
+     * the access log is the alternative which does not slow down the requests.
+     */
+    public boolean isConsoleLog() {
+        return this.consoleLog;
+    }
+
+    public void setConsoleLog(boolean consoleLog) {
+        this.consoleLog = consoleLog;
+    }
+
+    /**
+     * @return Returns the reserved path of the metrics in the Prometheus text format, or null if they are not exposed.
+     */
+    public String getMetricsPath() {
+        return this.metricsPath;
+    }
+
+    public void setMetricsPath(String metricsPath) {
+        this.metricsPath = metricsPath;
+    }
+
+    /**
+     * @return Returns the path of the access log file or null if there is no access log.
+     */
+    public String getAccessLogFile() {
+        return this.accessLogFile;
+    }
+
+    public void setAccessLogFile(String accessLogFile) {
+        this.accessLogFile = accessLogFile;
+    }
+
+    /**
+     * @return Returns the format of the access log, either "combined" (Combined Log Format) or "json".
+     */
+    public String getAccessLogFormat() {
+        return this.accessLogFormat;
+    }
+
+    public void setAccessLogFormat(String accessLogFormat) {
+        this.accessLogFormat = accessLogFormat;
+    }
+
+    /**
+     * @return Returns the number of entries which the access log buffers until they are written.
+     */
+    public int getAccessLogBufferSize() {
+        return this.accessLogBufferSize;
+    }
+
+    public void setAccessLogBufferSize(int accessLogBufferSize) {
+        this.accessLogBufferSize = accessLogBufferSize;
+    }
+
+    /**
+     * @return Returns the maximum time in milliseconds until a buffered entry is written to the file.
+     */
+    public long getAccessLogFlushIntervalMillis() {
+        return this.accessLogFlushIntervalMillis;
+    }
+
+    public void setAccessLogFlushIntervalMillis(long accessLogFlushIntervalMillis) {
+        this.accessLogFlushIntervalMillis = accessLogFlushIntervalMillis;
+    }
+
+    /**
+     * @return Returns the size in bytes at which the access log file is rotated.
+     */
+    public long getAccessLogMaxFileBytes() {
+        return this.accessLogMaxFileBytes;
+    }
+
+    public void setAccessLogMaxFileBytes(long accessLogMaxFileBytes) {
+        this.accessLogMaxFileBytes = accessLogMaxFileBytes;
+    }
+
+    /**
+     * @return Returns the number of rotated access log files which are kept.
+     */
+    public int getAccessLogMaxFiles() {
+        return this.accessLogMaxFiles;
+    }
+
+    public void setAccessLogMaxFiles(int accessLogMaxFiles) {
+        this.accessLogMaxFiles = accessLogMaxFiles;
+    }
+
+    /**
+     * @return Returns "drop" if entries are dropped when the buffer is full, or "block" if the request waits.
+     */
+    public String getAccessLogOverflow() {
+        return this.accessLogOverflow;
+    }
+
+    public void setAccessLogOverflow(String accessLogOverflow) {
+        this.accessLogOverflow = accessLogOverflow;
+    }
+
+    /**
+     * @return Returns the number of entries on a page of a directory listing, unless the request sets a limit.
+     */
+    public int getDirectoryPageSize() {
+        return this.directoryPageSize;
+    }
+
+    public void setDirectoryPageSize(int directoryPageSize) {
+        this.directoryPageSize = directoryPageSize;
+    }
+
+    /**
+     * @return Returns the maximum number of directory entries which are cached for directory listings.
+     */
+    public long getDirectoryCacheMaxEntries() {
+        return this.directoryCacheMaxEntries;
+    }
+
+    public void setDirectoryCacheMaxEntries(long directoryCacheMaxEntries) {
+        this.directoryCacheMaxEntries = directoryCacheMaxEntries;
+    }
+
+    /**
+     * @return Returns the mime.types file which extends the built-in content types or null.
+     */
+    public String getMimeTypesFile() {
+        return this.mimeTypesFile;
+    }
+
+    public void setMimeTypesFile(String mimeTypesFile) {
+        this.mimeTypesFile = mimeTypesFile;
+    }
+
+    /**
+     * @return Returns true if large files are served from memory-mapped buffers.
+     */
+    public boolean isMmap() {
+        return this.mmap;
+    }
+
+    public void setMmap(boolean mmap) {
+        this.mmap = mmap;
+    }
+
+    /**
+     * @return Returns the minimum size in bytes of a file which is memory-mapped, smaller files are streamed or cached.
+     */
+    public long getMmapMinFileSize() {
+        return this.mmapMinFileSize;
+    }
+
+    public void setMmapMinFileSize(long mmapMinFileSize) {
+        this.mmapMinFileSize = mmapMinFileSize;
+    }
+
+    /**
+     * @return Returns the maximum size in bytes of a file which is memory-mapped.
+     */
+    public long getMmapMaxFileSize() {
+        return this.mmapMaxFileSize;
+    }
+
+    public void setMmapMaxFileSize(long mmapMaxFileSize) {
+        this.mmapMaxFileSize = mmapMaxFileSize;
+    }
+
+    /**
+     * @return Returns the maximum total size in bytes of the memory-mapped files.
+     */
+    public long getMmapMaxBytes() {
+        return this.mmapMaxBytes;
+    }
+
+    public void setMmapMaxBytes(long mmapMaxBytes) {
+        this.mmapMaxBytes = mmapMaxBytes;
+    }
+
+    /**
+     * @return Returns true if the blocking engine accepts cleartext HTTP/2 (h2c), with prior knowledge
+     *         or by an upgrade of a HTTP/1.1 request.
+     */
+    public boolean isHttp2() {
+        return this.http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    /**
+     * @return Returns the maximum number of concurrent streams of a HTTP/2 connection.
+     */
+    public int getHttp2MaxConcurrentStreams() {
+        return this.http2MaxConcurrentStreams;
+    }
+
+    public void setHttp2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+        this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+    }
+
+    /**
+     * @return Returns the routes of the reverse proxy, for example "/api/=127.0.0.1:9001,127.0.0.1:9002",
+     *         or null if no request is forwarded.
+     */
+    public String getProxyRoutes() {
+        return this.proxyRoutes;
+    }
+
+    public void setProxyRoutes(String proxyRoutes) {
+        this.proxyRoutes = proxyRoutes;
+    }
+
+    /**
+     * @return Returns how the requests of a route are distributed across its upstream servers.
+     */
+    public ProxyBalancing getProxyBalancing() {
+        return this.proxyBalancing;
+    }
+
+    public void setProxyBalancing(ProxyBalancing proxyBalancing) {
+        this.proxyBalancing = proxyBalancing;
+    }
+
+    /**
+     * @return Returns the maximum number of idle keep-alive connections per upstream server.
+     */
+    public int getProxyMaxIdleConnections() {
+        return this.proxyMaxIdleConnections;
+    }
+
+    public void setProxyMaxIdleConnections(int proxyMaxIdleConnections) {
+        this.proxyMaxIdleConnections = proxyMaxIdleConnections;
+    }
+
+    /**
+     * @return Returns the time in milliseconds after which an idle upstream connection is closed,
+     *         it should be shorter than the keep-alive timeout of the upstream servers.
+     */
+    public int getProxyIdleTimeoutMillis() {
+        return this.proxyIdleTimeoutMillis;
+    }
+
+    public void setProxyIdleTimeoutMillis(int proxyIdleTimeoutMillis) {
+        this.proxyIdleTimeoutMillis = proxyIdleTimeoutMillis;
+    }
+
+    /**
+     * @return Returns the time in milliseconds to connect to an upstream server.
+     */
+    public int getProxyConnectTimeoutMillis() {
+        return this.proxyConnectTimeoutMillis;
+    }
+
+    public void setProxyConnectTimeoutMillis(int proxyConnectTimeoutMillis) {
+        this.proxyConnectTimeoutMillis = proxyConnectTimeoutMillis;
+    }
+
+    /**
+     * @return Returns the time in milliseconds an upstream server may take for each read of its response,
+     *         the client receives "504 Gateway Timeout" if it takes longer for the header.
+     */
+    public int getProxyReadTimeoutMillis() {
+        return this.proxyReadTimeoutMillis;
+    }
+
+    public void setProxyReadTimeoutMillis(int proxyReadTimeoutMillis) {
+        this.proxyReadTimeoutMillis = proxyReadTimeoutMillis;
+    }
+
+    /**
+     * @return Returns the number of failures in a row after which an upstream server is taken out of
+     *         the rotation, 0 keeps every server in the rotation.
+     */
+    public int getProxyMaxFails() {
+        return this.proxyMaxFails;
+    }
+
+    public void setProxyMaxFails(int proxyMaxFails) {
+        this.proxyMaxFails = proxyMaxFails;
+    }
+
+    /**
+     * @return Returns the time in milliseconds an upstream server stays out of the rotation.
+     */
+    public int getProxyFailTimeoutMillis() {
+        return this.proxyFailTimeoutMillis;
+    }
+
+    public void setProxyFailTimeoutMillis(int proxyFailTimeoutMillis) {
+        this.proxyFailTimeoutMillis = proxyFailTimeoutMillis;
+    }
+}
@@ -0,0 +1,138 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Holds the configuration and the components which are shared by all
+ * connections of a server, for example the admission control, the mime types, the timer wheel,
+ * the router, the reverse proxy, the document root, the file cache, the directory listings,
+ * the error responses, the metrics and the access log.
+ *
+ * @param config The configuration of the server.
+ */
+public class ServerContext {
+
+    private static final long TIMER_TICK_MILLIS = 100;
+    private static final int TIMER_SLOTS = 512;
+
+    private ServerConfig config;
+    private AdmissionControl admissionControl;
+    private MimeTypes mimeTypes;
+    private TimerWheel timerWheel;
+    private Router router;
+    private ReverseProxy reverseProxy;
+    private DocumentRoot documentRoot;
+    private CacheControlRules cacheControlRules;
+    private Compression compression;
+    private FileCache fileCache;
+    private DirectoryListing directoryListing;
+    private MappedFiles mappedFiles;
+    private FailedResponse failedResponse;
+    private Metrics metrics;
+    private AccessLog accessLog;
+
+    public ServerContext(ServerConfig config) {
+        this.config = config;
+        this.admissionControl = new AdmissionControl(config);
+        this.mimeTypes = new MimeTypes();
+        this.timerWheel = new TimerWheel(TIMER_TICK_MILLIS, TIMER_SLOTS);
+        this.router = new Router();
+        this.reverseProxy = new ReverseProxy(config);
+        this.documentRoot = new DocumentRoot(config);
+        this.cacheControlRules = new CacheControlRules(config.getCacheControlRules());
+        this.compression = new Compression(config);
+        this.fileCache = new FileCache(config, mimeTypes, cacheControlRules, compression);
+        this.directoryListing = new DirectoryListing(config);
+        this.mappedFiles = new MappedFiles(config);
+        this.failedResponse = new FailedResponse(config);
+        this.metrics = new Metrics();
+        this.accessLog = new AccessLog(config);
+    }
+
+    /**
+     * Starts the components which need a thread or a file, for example the timer wheel and the access log,
+     * and loads the mime.types file.
+     *
+     * @throws Throws an IOException if a component can not be started.
+     */
+    public void start() throws IOException {
+        if (config.getMimeTypesFile() != null) {
+            mimeTypes.load(Paths.get(config.getMimeTypesFile()));
+        }
+        timerWheel.start();
+        accessLog.start();
+    }
+
+    /**
+     * Stops the components which were started, the access log writes its remaining entries.
+     * The memory-mapped files are unmapped when their last response was written, the idle upstream
+     * connections of the reverse proxy are closed.
+     */
+    public void close() {
+        timerWheel.close();
+        reverseProxy.close();
+        accessLog.close();
+        mappedFiles.close();
+    }
+
+    public ServerConfig getConfig() {
+        return this.config;
+    }
+
+    public AdmissionControl getAdmissionControl() {
+        return this.admissionControl;
+    }
+
+    public MimeTypes getMimeTypes() {
+        return this.mimeTypes;
+    }
+
+    public TimerWheel getTimerWheel() {
+        return this.timerWheel;
+    }
+
+    public Router getRouter() {
+        return this.router;
+    }
+
+    public ReverseProxy getReverseProxy() {
+        return this.reverseProxy;
+    }
+
+    public DocumentRoot getDocumentRoot() {
+        return this.documentRoot;
+    }
+
+    public CacheControlRules getCacheControlRules() {
+        return this.cacheControlRules;
+    }
+
+    public Compression getCompression() {
+        return this.compression;
+    }
+
+    public FileCache getFileCache() {
+        return this.fileCache;
+    }
+
+    public DirectoryListing getDirectoryListing() {
+        return this.directoryListing;
+    }
+
+    public MappedFiles getMappedFiles() {
+        return this.mappedFiles;
+    }
+
+    public FailedResponse getFailedResponse() {
+        return this.failedResponse;
+    }
+
+    public Metrics getMetrics() {
+        return this.metrics;
+    }
+
+    public AccessLog getAccessLog() {
+        return this.accessLog;
+    }
+}
@@ -0,0 +1,31 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * A server instance which runs in a thread and accepts client connections
+ * until it is shut down.
+ */
+public interface ServerInstance extends Runnable {
+
+    /**
+     * Opens the listening socket. Called before the instance is started in its thread,
+     * so that the server accepts connections as soon as it is created.
+     *
+     * @throws Throws an IOException if the socket can not be bound, for example because the port is in use.
+     */
+    void bind() throws IOException;
+
+    /**
+     * @return Returns the addresses the instance listens on, with the ports which were actually bound.
+     */
+    List<InetSocketAddress> getLocalAddresses();
+
+    /**
+     * Stops accepting new connections and waits until the in-flight
+     * requests are finished or the shutdown timeout is reached.
+     */
+    void shutdown();
+}
@@ -0,0 +1,224 @@
+package httpwebserver;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel which watches the deadlines of all connections with a single thread.
+ * The deadlines are measured with the monotonic clock of System.nanoTime().
+ * The time is divided into ticks, every tick has a slot in a ring of slots, and a timeout
+ * waits in the slot of the tick in which its deadline falls; a deadline which is more than one
+ * revolution away stays in its slot for further revolutions. Every tick the thread looks at one
+ * slot only, so the cost does not grow with the number of connections.
+ * Deadlines are usually moved later, for example with every new request, therefore a later
+ * deadline is only written into the timeout, which is moved to its new slot when its old slot
+ * is reached. Only an earlier deadline is handed to the thread through a queue. The slots are
+ * only changed by the thread of the wheel and need no lock.
+ *
+ * @param tickMillis The length of a tick in milliseconds, the precision of the deadlines.
+ * @param slots The number of slots, it is rounded up to a power of two.
+ */
+public class TimerWheel {
+
+    /**
+     * The deadline of a timeout which is not armed.
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private long tickMillis;
+    private Timeout[] slots;
+    private int mask;
+    private long currentTick;
+    private Queue<Timeout> rescheduled = new ConcurrentLinkedQueue<>();
+    private Thread thread;
+    private volatile boolean running;
+
+    public TimerWheel(long tickMillis, int slots) {
+        this.tickMillis = Math.max(1, tickMillis);
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.slots = new Timeout[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Starts the thread of the wheel.
+     */
+    public void start() {
+        currentTick = Math.floorDiv(now(), tickMillis);
+        running = true;
+        thread = new Thread(this::run, "timer-wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the thread of the wheel, the pending timeouts do not expire any longer.
+     */
+    public void close() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param task Runs in the thread of the wheel when the timeout expires, it has to return quickly.
+     * @return Returns a new timeout which is not armed yet.
+     */
+    public Timeout newTimeout(Runnable task) {
+        return new Timeout(this, task);
+    }
+
+    /**
+     * @return Returns the current time of the monotonic clock in milliseconds.
+     */
+    static long now() {
+        return System.nanoTime() / 1_000_000L;
+    }
+
+    private void run() {
+        while (running) {
+            long now = now();
+            long tick = Math.floorDiv(now, tickMillis);
+            if (tick <= currentTick) {
+                LockSupport.parkNanos(((currentTick + 1) * tickMillis - now) * 1_000_000L);
+                continue;
+            }
+            scheduleRescheduled();
+            // A tick which was missed, because the thread was not scheduled in time, is processed late
+            while (currentTick < tick) {
+                currentTick++;
+                expire(currentTick, now);
+            }
+        }
+    }
+
+    private void scheduleRescheduled() {
+        Timeout timeout;
+        while ((timeout = rescheduled.poll()) != null) {
+            timeout.queued.set(false);
+            unlink(timeout);
+            schedule(timeout);
+        }
+    }
+
+    private void expire(long tick, long now) {
+        Timeout timeout = slots[(int) (tick & mask)];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.tick <= tick) {
+                unlink(timeout);
+                long deadline = timeout.deadline.get();
+                if (deadline <= now && timeout.deadline.compareAndSet(deadline, NEVER)) {
+                    schedule(timeout);
+                    runTask(timeout);
+                } else {
+                    schedule(timeout);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void runTask(Timeout timeout) {
+        try {
+            timeout.task.run();
+        } catch (RuntimeException e) {
+            // Here: Create a log of the exception and the state of the system
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Puts a timeout into the slot of its deadline, at the earliest into the next slot.
+     * A timeout without deadline is not put into a slot, it is queued when it is armed again:
+     * the deadline is read after the scheduled time was reset, and the arming thread reads the
+     * scheduled time after it has written the deadline, so one of both threads sees the other.
+     */
+    private void schedule(Timeout timeout) {
+        timeout.scheduled = NEVER;
+        long deadline = timeout.deadline.get();
+        if (deadline == NEVER) {
+            return;
+        }
+        long tick = Math.max(currentTick + 1, Math.floorDiv(deadline + tickMillis - 1, tickMillis));
+        timeout.tick = tick;
+        timeout.scheduled = tick * tickMillis;
+        int slot = (int) (tick & mask);
+        timeout.slot = slot;
+        timeout.next = slots[slot];
+        if (slots[slot] != null) {
+            slots[slot].previous = timeout;
+        }
+        slots[slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.slot < 0) {
+            return;
+        }
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.slot = -1;
+    }
+
+    /**
+     * A deadline which can be moved, armed and disarmed from any thread. When it passes,
+     * the task of the timeout runs once, until the timeout is armed again.
+     */
+    public static class Timeout {
+
+        private TimerWheel wheel;
+        private Runnable task;
+        private AtomicLong deadline = new AtomicLong(NEVER);
+        private volatile long scheduled = NEVER;
+        private AtomicBoolean queued = new AtomicBoolean();
+        // Only used by the thread of the wheel
+        private long tick;
+        private int slot = -1;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(TimerWheel wheel, Runnable task) {
+            this.wheel = wheel;
+            this.task = task;
+        }
+
+        /**
+         * Arms the timeout, or moves its deadline if it is already armed.
+         *
+         * @param delayMillis The time in milliseconds from now after which the timeout expires.
+         */
+        public void schedule(long delayMillis) {
+            long deadline = now() + delayMillis;
+            this.deadline.set(deadline);
+            if (deadline < scheduled && !queued.getAndSet(true)) {
+                wheel.rescheduled.add(this);
+            }
+        }
+
+        /**
+         * Disarms the timeout. It stays in its slot until the slot is reached.
+         */
+        public void cancel() {
+            deadline.set(NEVER);
+        }
+    }
+}
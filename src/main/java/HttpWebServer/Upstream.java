@@ -0,0 +1,165 @@
+package httpwebserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An upstream server of the reverse proxy, with a pool of its idle keep-alive connections
+ * and its passive health state.
+ * The pool is a deque which is used as a stack: the most recently used connection is taken
+ * first, so the connections at the bottom of the stack become idle and are closed after
+ * --proxy-idle-timeout milliseconds, before the upstream server closes them itself. At most
+ * --proxy-max-idle-connections idle connections are kept.
+ * The health is checked passively by the requests themselves: after --proxy-max-fails failures
+ * in a row (the server can not be connected, does not answer in time or answers with a
+ * malformed response) the server is taken out of the rotation for --proxy-fail-timeout
+ * milliseconds, afterwards requests try it again and the first success restores it.
+ *
+ * @param address The address of the upstream server.
+ * @param config The configuration of the server.
+ */
+public class Upstream {
+
+    private InetSocketAddress address;
+    private String name;
+    private int connectTimeout;
+    private int readTimeout;
+    private int maxIdleConnections;
+    private long idleTimeoutNanos;
+    private int maxFails;
+    private long failTimeoutNanos;
+    private Deque<UpstreamConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private AtomicInteger activeRequests = new AtomicInteger();
+    private AtomicInteger failuresInRow = new AtomicInteger();
+    private volatile long downUntil = 0;
+    private LongAdder requests = new LongAdder();
+    private LongAdder failures = new LongAdder();
+
+    public Upstream(InetSocketAddress address, ServerConfig config) {
+        this.address = address;
+        this.name = address.getHostString() + ":" + address.getPort();
+        this.connectTimeout = config.getProxyConnectTimeoutMillis();
+        this.readTimeout = config.getProxyReadTimeoutMillis();
+        this.maxIdleConnections = config.getProxyMaxIdleConnections();
+        this.idleTimeoutNanos = config.getProxyIdleTimeoutMillis() * 1_000_000L;
+        this.maxFails = config.getProxyMaxFails();
+        this.failTimeoutNanos = config.getProxyFailTimeoutMillis() * 1_000_000L;
+    }
+
+    /**
+     * Takes an idle connection from the pool or connects a new one. The connection counts as a
+     * request in flight until it is released.
+     *
+     * @param reuse False if a new connection is needed, for example because a reused one failed.
+     * @return Returns the connection to the upstream server.
+     * @throws Throws an IOException if the server can not be connected.
+     */
+    public UpstreamConnection acquire(boolean reuse) throws IOException {
+        activeRequests.incrementAndGet();
+        requests.increment();
+        long now = System.nanoTime();
+        UpstreamConnection connection;
+        while (reuse && (connection = idleConnections.pollFirst()) != null) {
+            if (now - connection.getLastUsed() < idleTimeoutNanos) {
+                return connection;
+            }
+            connection.close();
+        }
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, connectTimeout);
+            socket.setSoTimeout(readTimeout);
+            socket.setTcpNoDelay(true);
+            return new UpstreamConnection(socket);
+        } catch (IOException e) {
+            socket.close();
+            activeRequests.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Ends a request in flight and puts its connection back into the pool if it can be used again.
+     *
+     * @param connection The connection of the request.
+     * @param reusable True if the response was read completely and the server keeps the connection open.
+     */
+    public void release(UpstreamConnection connection, boolean reusable) {
+        activeRequests.decrementAndGet();
+        if (reusable && idleConnections.size() < maxIdleConnections) {
+            connection.markUsed();
+            idleConnections.offerFirst(connection);
+        } else {
+            connection.close();
+        }
+    }
+
+    /**
+     * Records a failed request, the server is taken out of the rotation after too many failures in a row.
+     */
+    public void failed() {
+        failures.increment();
+        if (failuresInRow.incrementAndGet() >= maxFails && maxFails > 0) {
+            downUntil = System.nanoTime() + failTimeoutNanos;
+        }
+    }
+
+    /**
+     * Records a successful request, the server is healthy again.
+     */
+    public void succeeded() {
+        if (failuresInRow.get() != 0) {
+            failuresInRow.set(0);
+        }
+    }
+
+    /**
+     * @param now The current time of System.nanoTime().
+     * @return Returns true if the server takes requests, it is healthy or its fail timeout is over.
+     */
+    public boolean isAvailable(long now) {
+        return maxFails <= 0 || failuresInRow.get() < maxFails || now - downUntil >= 0;
+    }
+
+    /**
+     * Closes the idle connections.
+     */
+    public void close() {
+        UpstreamConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return Returns the address as host:port, for example for the labels of the metrics.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    public InetSocketAddress getAddress() {
+        return this.address;
+    }
+
+    public int getActiveRequests() {
+        return activeRequests.get();
+    }
+
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+}
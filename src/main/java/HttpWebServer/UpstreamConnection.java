@@ -0,0 +1,193 @@
+package httpwebserver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A keep-alive connection from the reverse proxy to an upstream server. The request is written
+ * through a buffer, the response header is parsed from a buffered stream, and the response body
+ * is read from the same stream by the part which streams it to the client.
+ *
+ * @param socket The connected socket, with the read timeout of the proxy.
+ */
+public class UpstreamConnection {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private long lastUsed = 0;
+    private StringBuilder line = new StringBuilder();
+
+    public UpstreamConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    }
+
+    /**
+     * @return Returns true if the connection was taken from the pool, it may have been closed by the
+     *         upstream server in the meantime.
+     */
+    public boolean isReused() {
+        return this.lastUsed != 0;
+    }
+
+    /**
+     * @return Returns the time of System.nanoTime() at which the connection was put back into the pool.
+     */
+    public long getLastUsed() {
+        return this.lastUsed;
+    }
+
+    public void markUsed() {
+        this.lastUsed = System.nanoTime();
+    }
+
+    public InputStream getInputStream() {
+        return this.in;
+    }
+
+    public OutputStream getOutputStream() {
+        return this.out;
+    }
+
+    /**
+     * Reads the header of the response, interim responses (1xx) are skipped.
+     *
+     * @return Returns the header of the response.
+     * @throws Throws a ProtocolException if the header is malformed or too large, or the connection
+     *         was closed before the first byte of the response.
+     */
+    public Head readHead() throws IOException {
+        while (true) {
+            Head head = readHeadBlock();
+            if (head.statusCode >= 200 || head.statusCode == 101) {
+                return head;
+            }
+        }
+    }
+
+    private Head readHeadBlock() throws IOException {
+        int size = 0;
+        String statusLine = readLine(MAX_HEADER_SIZE);
+        if (statusLine == null) {
+            throw new ProtocolException("Connection closed before the response");
+        }
+        size += statusLine.length();
+        if (!statusLine.startsWith("HTTP/1.") || statusLine.length() < 12 || statusLine.charAt(8) != ' ') {
+            throw new ProtocolException("Malformed status line: " + statusLine);
+        }
+        int statusCode;
+        try {
+            statusCode = Integer.parseInt(statusLine.substring(9, 12));
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Malformed status line: " + statusLine);
+        }
+        Head head = new Head(statusCode, statusLine.startsWith("HTTP/1.0"));
+        while (true) {
+            String headerLine = readLine(MAX_HEADER_SIZE - size);
+            if (headerLine == null) {
+                throw new ProtocolException("Connection closed within the response header");
+            }
+            if (headerLine.isEmpty()) {
+                return head;
+            }
+            size += headerLine.length();
+            int separator = headerLine.indexOf(':');
+            if (separator <= 0 || headerLine.charAt(0) == ' ' || headerLine.charAt(0) == '\t') {
+                throw new ProtocolException("Malformed header line: " + headerLine);
+            }
+            head.headers.add(new String[] {headerLine.substring(0, separator), headerLine.substring(separator + 1).trim()});
+        }
+    }
+
+    /**
+     * @return Returns the line without its line end, or null if the stream ended before the line.
+     */
+    private String readLine(int maxLength) throws IOException {
+        line.setLength(0);
+        while (true) {
+            int character = in.read();
+            if (character < 0) {
+                return null;
+            }
+            if (character == '\n') {
+                int end = line.length();
+                if (end > 0 && line.charAt(end - 1) == '\r') {
+                    line.setLength(end - 1);
+                }
+                return line.toString();
+            }
+            if (line.length() >= maxLength) {
+                throw new ProtocolException("Response header exceeds " + MAX_HEADER_SIZE + " bytes");
+            }
+            line.append((char) character);
+        }
+    }
+
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Here: Create a log of the exception and the state of the system
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The status code and the header fields of a response, in the order and the case in which they were received.
+     */
+    public static class Head {
+
+        private int statusCode;
+        private boolean http10;
+        private List<String[]> headers = new ArrayList<>();
+
+        private Head(int statusCode, boolean http10) {
+            this.statusCode = statusCode;
+            this.http10 = http10;
+        }
+
+        public int getStatusCode() {
+            return this.statusCode;
+        }
+
+        /**
+         * @return Returns true if the upstream server answered with HTTP/1.0.
+         */
+        public boolean isHttp10() {
+            return this.http10;
+        }
+
+        /**
+         * @return Returns the header fields as pairs of name and value.
+         */
+        public List<String[]> getHeaders() {
+            return this.headers;
+        }
+
+        /**
+         * @param name The case-insensitive name of the header.
+         * @return Returns the values of all fields with the name separated by ", ", or null if there is none.
+         */
+        public String getHeader(String name) {
+            String value = null;
+            for (String[] field : headers) {
+                if (field[0].equalsIgnoreCase(name)) {
+                    value = value == null ? field[1] : value + ", " + field[1];
+                }
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package httpwebserver;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * The validators of a file: an entity tag (ETag) derived from the size and the last
+ * modified time, and the last modified time itself. They let a client revalidate its
+ * copy with a conditional request (If-None-Match, If-Modified-Since), which is answered
+ * with "304 Not Modified" and without a body if the file did not change.
+ *
+ * @param length The size of the file in bytes.
+ * @param lastModified The last modified time of the file in milliseconds.
+ * @param weak True if the ETag is marked as weak validator.
+ */
+public class Validators {
+
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    private String eTag;
+    private long lastModifiedSeconds;
+    private String lastModified;
+
+    public Validators(long length, long lastModified, boolean weak) {
+        this.eTag = (weak ? "W/" : "") + "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        this.lastModifiedSeconds = lastModified / 1000;
+        this.lastModified = formatDate(lastModified);
+    }
+
+    private Validators(String eTag, long lastModifiedSeconds, String lastModified) {
+        this.eTag = eTag;
+        this.lastModifiedSeconds = lastModifiedSeconds;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Every content coding of a file is a representation of its own and needs an ETag of its own,
+     * otherwise a cache could answer a request with a representation the client does not accept.
+     *
+     * @param contentCoding The content coding, for example "gzip".
+     * @return Returns the validators of the encoded representation, the ETag carries the coding as suffix.
+     */
+    public Validators getEncodedVariant(String contentCoding) {
+        String variantTag = eTag.substring(0, eTag.length() - 1) + "-" + contentCoding + "\"";
+        return new Validators(variantTag, lastModifiedSeconds, lastModified);
+    }
+
+    public String getETag() {
+        return this.eTag;
+    }
+
+    /**
+     * @return Returns the last modified time as HTTP date, for example "Wed, 10 Mar 2021 12:00:00 GMT".
+     */
+    public String getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Evaluates the conditional headers of a request. If-None-Match takes precedence,
+     * If-Modified-Since is only evaluated without it. ETags are compared weakly.
+     *
+     * @param request The request.
+     * @return Returns true if the client's copy is still valid.
+     */
+    public boolean isNotModified(RequestMessage request) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesETag(ifNoneMatch);
+        }
+        String ifModifiedSince = request.getHeader("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            long since = parseDate(ifModifiedSince);
+            return since >= 0 && lastModifiedSeconds <= since;
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates the If-Range header of a range request. The ranges are only sent if the
+     * client's copy is the current one, which requires a strong ETag or the exact date.
+     *
+     * @param ifRange The value of the If-Range header.
+     * @return Returns true if the requested ranges can be sent.
+     */
+    public boolean matchesIfRange(String ifRange) {
+        String validator = ifRange.trim();
+        if (validator.startsWith("\"") || validator.startsWith("W/")) {
+            return !eTag.startsWith("W/") && validator.equals(eTag);
+        }
+        return validator.equals(lastModified);
+    }
+
+    private boolean matchesETag(String ifNoneMatch) {
+        String opaqueTag = withoutWeakPrefix(eTag);
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.equals("*") || withoutWeakPrefix(candidate).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String withoutWeakPrefix(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * @param millis A point in time in milliseconds.
+     * @return Returns the point in time as HTTP date.
+     */
+    public static String formatDate(long millis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+    }
+
+    /**
+     * @return Returns the HTTP date in seconds since the epoch or -1 if it is malformed.
+     */
+    private static long parseDate(String date) {
+        try {
+            return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A unit test which tests the formats, the rotation and the overflow policy of the AccessLog.
+ */
+public class AccessLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void combinedFormatTest() throws IOException {
+        Path file = directory.resolve("access.log");
+        AccessLog accessLog = new AccessLog(getConfig(file, "combined", 1024 * 1024));
+        accessLog.start();
+        accessLog.log(InetAddress.getLoopbackAddress(), getRequest(), getResponse(), 1_500_000);
+        accessLog.log(InetAddress.getLoopbackAddress(), null, getResponse(), 0);
+        accessLog.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("127.0.0.1 - - ["));
+        assertTrue(lines.get(0).endsWith("\"GET /index.html HTTP/1.1\" 200 22 \"-\" \"curl/7.68.0\" 1500"));
+        assertTrue(lines.get(1).contains("\"-\" 200 22"));
+    }
+
+    @Test
+    void combinedEscapingTest() throws IOException {
+        Path file = directory.resolve("access.log");
+        AccessLog accessLog = new AccessLog(getConfig(file, "combined", 1024 * 1024));
+        accessLog.start();
+        RequestMessage request = new RequestMessage("GET /index.html HTTP/1.1");
+        request.addHeader("referer", "\" 404 0 \"x");
+        request.addHeader("user-agent", "a\\b\u001b[31m");
+        accessLog.log(InetAddress.getLoopbackAddress(), request, getResponse(), 0);
+        accessLog.close();
+
+        String line = Files.readAllLines(file).get(0);
+        assertTrue(line.endsWith(" 200 22 \"\\\" 404 0 \\\"x\" \"a\\\\b\\x1B[31m\" 0"));
+    }
+
+    @Test
+    void jsonFormatTest() throws IOException {
+        Path file = directory.resolve("access.json");
+        AccessLog accessLog = new AccessLog(getConfig(file, "json", 1024 * 1024));
+        accessLog.start();
+        accessLog.log(InetAddress.getLoopbackAddress(), getRequest(), getResponse(), 1_500_000);
+        accessLog.close();
+
+        String line = Files.readAllLines(file).get(0);
+        assertTrue(line.contains("\"request\":\"GET /index.html HTTP/1.1\""));
+        assertTrue(line.contains("\"status\":200"));
+        assertTrue(line.contains("\"referer\":null"));
+        assertTrue(line.endsWith("\"durationMicros\":1500}"));
+    }
+
+    @Test
+    void rotationTest() throws IOException {
+        Path file = directory.resolve("access.log");
+        ServerConfig config = getConfig(file, "combined", 100);
+        config.setAccessLogFlushIntervalMillis(0);
+        AccessLog accessLog = new AccessLog(config);
+        accessLog.start();
+        for (int i = 0; i < 3; i++) {
+            accessLog.log(InetAddress.getLoopbackAddress(), getRequest(), getResponse(), 0);
+            sleep(50);
+        }
+        accessLog.close();
+
+        assertEquals(1, Files.readAllLines(file).size());
+        assertTrue(Files.exists(directory.resolve("access.log.1")));
+        assertTrue(Files.exists(directory.resolve("access.log.2")));
+    }
+
+    @Test
+    void dropWhenFullTest() {
+        ServerConfig config = getConfig(directory.resolve("access.log"), "combined", 1024 * 1024);
+        config.setAccessLogBufferSize(2);
+        AccessLog accessLog = new AccessLog(config);
+        for (int i = 0; i < 5; i++) {
+            accessLog.log(InetAddress.getLoopbackAddress(), getRequest(), getResponse(), 0);
+        }
+
+        assertEquals(3, accessLog.getDropped());
+    }
+
+    private ServerConfig getConfig(Path file, String format, long maxFileBytes) {
+        ServerConfig config = new ServerConfig();
+        config.setAccessLogFile(file.toString());
+        config.setAccessLogFormat(format);
+        config.setAccessLogMaxFileBytes(maxFileBytes);
+        config.setAccessLogMaxFiles(2);
+        return config;
+    }
+
+    private RequestMessage getRequest() {
+        RequestMessage request = new RequestMessage("GET /index.html HTTP/1.1");
+        request.addHeader("user-agent", "curl/7.68.0");
+        return request;
+    }
+
+    private ResponseMessage getResponse() {
+        return new ResponseMessage("HTTP/1.1 200 OK\n\nHello".getBytes());
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
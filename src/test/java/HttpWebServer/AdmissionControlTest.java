@@ -0,0 +1,67 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * A unit test which tests the connection limits and the rate limit of the AdmissionControl.
+ */
+public class AdmissionControlTest {
+
+    @Test
+    void maxConnectionsTest() throws UnknownHostException {
+        ServerConfig config = new ServerConfig();
+        config.setMaxConnections(2);
+        AdmissionControl admissionControl = new AdmissionControl(config);
+        InetAddress client = InetAddress.getByName("10.0.0.1");
+
+        assertEquals(AdmissionControl.ADMITTED, admissionControl.admit(client));
+        assertEquals(AdmissionControl.ADMITTED, admissionControl.admit(client));
+        assertEquals(503, admissionControl.admit(client));
+        admissionControl.release(client);
+        assertEquals(AdmissionControl.ADMITTED, admissionControl.admit(client));
+        assertEquals(1, admissionControl.getRejectedByLimit());
+    }
+
+    @Test
+    void maxConnectionsPerIpTest() throws UnknownHostException {
+        ServerConfig config = new ServerConfig();
+        config.setMaxConnectionsPerIp(1);
+        AdmissionControl admissionControl = new AdmissionControl(config);
+        InetAddress first = InetAddress.getByName("10.0.0.1");
+        InetAddress second = InetAddress.getByName("10.0.0.2");
+
+        assertEquals(AdmissionControl.ADMITTED, admissionControl.admit(first));
+        assertEquals(429, admissionControl.admit(first));
+        assertEquals(AdmissionControl.ADMITTED, admissionControl.admit(second));
+        admissionControl.release(first);
+        admissionControl.release(second);
+        // The states of clients without connections are removed
+        assertEquals(0, admissionControl.getClients());
+        assertEquals(0, admissionControl.getConnections());
+        assertEquals(AdmissionControl.ADMITTED, admissionControl.admit(first));
+    }
+
+    @Test
+    void rateLimitTest() throws UnknownHostException {
+        ServerConfig config = new ServerConfig();
+        config.setRateLimit(1);
+        config.setRateLimitBurst(3);
+        AdmissionControl admissionControl = new AdmissionControl(config);
+        InetAddress first = InetAddress.getByName("10.0.0.1");
+        InetAddress second = InetAddress.getByName("10.0.0.2");
+
+        assertTrue(admissionControl.tryAcquire(first));
+        assertTrue(admissionControl.tryAcquire(first));
+        assertTrue(admissionControl.tryAcquire(first));
+        assertFalse(admissionControl.tryAcquire(first));
+        assertTrue(admissionControl.tryAcquire(second));
+        assertEquals(1, admissionControl.getRateLimited());
+        assertTrue(new AdmissionControl(new ServerConfig()).tryAcquire(first));
+    }
+}
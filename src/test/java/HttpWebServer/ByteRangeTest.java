@@ -0,0 +1,48 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+/**
+ * A unit test which tests the parsing of the Range header.
+ */
+public class ByteRangeTest {
+
+    @Test
+    void singleRangeTest() {
+        assertEquals("bytes 0-499/1000", ByteRange.parse("bytes=0-499", 1000).get(0).getContentRange(1000));
+        assertEquals("bytes 500-999/1000", ByteRange.parse("bytes=500-", 1000).get(0).getContentRange(1000));
+        assertEquals("bytes 800-999/1000", ByteRange.parse("bytes=-200", 1000).get(0).getContentRange(1000));
+        assertEquals("bytes 900-999/1000", ByteRange.parse("bytes=900-5000", 1000).get(0).getContentRange(1000));
+        assertEquals("bytes 0-999/1000", ByteRange.parse("bytes=-5000", 1000).get(0).getContentRange(1000));
+    }
+
+    @Test
+    void multipleRangesTest() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-9, 20-29,2000-", 1000);
+
+        assertEquals(2, ranges.size());
+        assertEquals(20, ranges.get(1).getFirst());
+        assertEquals(10, ranges.get(1).getLength());
+    }
+
+    @Test
+    void unsatisfiableRangeTest() {
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=0-", 0).isEmpty());
+    }
+
+    @Test
+    void malformedRangeTest() {
+        assertNull(ByteRange.parse("items=0-9", 1000));
+        assertNull(ByteRange.parse("bytes=9-0", 1000));
+        assertNull(ByteRange.parse("bytes=a-9", 1000));
+        assertNull(ByteRange.parse("bytes=-", 1000));
+        assertNull(ByteRange.parse("bytes=5", 1000));
+    }
+}
@@ -0,0 +1,60 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A unit test which tests that the ChunkedInputStream decodes chunked bodies and rejects malformed ones.
+ */
+public class ChunkedInputStreamTest {
+
+    @Test
+    void decodeTest() throws IOException {
+        ChunkedInputStream body = chunked("5\r\nHello\r\n7;name=value\r\n, World\r\n0\r\nTrailer: x\r\n\r\nNEXT");
+        assertEquals("Hello, World", new String(body.readAllBytes(), StandardCharsets.US_ASCII));
+        assertTrue(body.isFinished());
+    }
+
+    @Test
+    void stopsAfterLastChunkTest() throws IOException {
+        InputStream connection = stream("3\r\nabc\r\n0\r\n\r\nGET / HTTP/1.1\r\n");
+        ChunkedInputStream body = new ChunkedInputStream(connection);
+        assertEquals("abc", new String(body.readAllBytes(), StandardCharsets.US_ASCII));
+        assertEquals("GET / HTTP/1.1\r\n", new String(connection.readAllBytes(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void malformedSizeTest() {
+        assertThrows(ProtocolException.class, () -> chunked("x\r\nabc\r\n0\r\n\r\n").readAllBytes());
+        assertThrows(ProtocolException.class, () -> chunked("-3\r\nabc\r\n0\r\n\r\n").readAllBytes());
+    }
+
+    @Test
+    void truncatedBodyTest() {
+        ChunkedInputStream body = chunked("a\r\nabc");
+        assertThrows(ProtocolException.class, body::readAllBytes);
+        assertFalse(body.isFinished());
+    }
+
+    @Test
+    void missingLineEndTest() {
+        assertThrows(ProtocolException.class, () -> chunked("3\r\nabcd\r\n0\r\n\r\n").readAllBytes());
+    }
+
+    private static ChunkedInputStream chunked(String encoded) {
+        return new ChunkedInputStream(stream(encoded));
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
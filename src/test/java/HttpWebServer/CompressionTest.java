@@ -0,0 +1,77 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A unit test which tests the negotiation of the content coding and the compression.
+ */
+public class CompressionTest {
+
+    @TempDir
+    Path directory;
+
+    private Compression compression = new Compression(new ServerConfig());
+
+    @Test
+    void acceptEncodingTest() {
+        assertTrue(compression.acceptsGzip(getRequest("gzip, deflate, br")));
+        assertTrue(compression.acceptsGzip(getRequest("deflate, GZIP;q=0.5")));
+        assertTrue(compression.acceptsGzip(getRequest("*")));
+        assertFalse(compression.acceptsGzip(getRequest("gzip;q=0")));
+        assertFalse(compression.acceptsGzip(getRequest("*, gzip;q=0.0")));
+        assertFalse(compression.acceptsGzip(getRequest("deflate, br")));
+        assertFalse(compression.acceptsGzip(new RequestMessage("GET / HTTP/1.1")));
+    }
+
+    @Test
+    void compressibleTest() {
+        assertTrue(compression.isCompressible("text/html", 4096));
+        assertTrue(compression.isCompressible("image/svg+xml", 4096));
+        assertFalse(compression.isCompressible("text/html", 100));
+        assertFalse(compression.isCompressible("image/png", 4096));
+        assertFalse(compression.isCompressible(null, 4096));
+    }
+
+    @Test
+    void compressTest() throws IOException {
+        byte[] content = "Simple HTTP web server ".repeat(100).getBytes();
+        byte[] compressed = compression.compress(content);
+
+        assertTrue(compressed.length < content.length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void cachedCompressedFileTest() throws IOException {
+        Path file = directory.resolve("a.txt");
+        Files.write(file, "Simple HTTP web server ".repeat(100).getBytes());
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+        assertNull(compression.getCachedCompressedFile(file.toFile(), attributes));
+        byte[] compressed = compression.getCompressedFile(file.toFile(), attributes);
+        assertSame(compressed, compression.getCachedCompressedFile(file.toFile(), attributes));
+        assertEquals(1, compression.getCompressions());
+    }
+
+    private RequestMessage getRequest(String acceptEncoding) {
+        RequestMessage request = new RequestMessage("GET / HTTP/1.1");
+        request.addHeader("accept-encoding", acceptEncoding);
+        return request;
+    }
+}
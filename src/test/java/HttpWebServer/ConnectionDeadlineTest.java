@@ -0,0 +1,66 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A unit test which tests the write deadline of the ConnectionDeadline for responses of known and unknown length.
+ */
+public class ConnectionDeadlineTest {
+
+    private ServerContext context;
+    private CountDownLatch expired = new CountDownLatch(1);
+    private ConnectionDeadline deadline;
+    private WritableByteChannel channel = Channels.newChannel(new ByteArrayOutputStream());
+
+    @BeforeEach
+    void startWheel() {
+        ServerConfig config = new ServerConfig();
+        config.setWriteTimeoutMillis(300);
+        config.setMinWriteRate(1000);
+        context = new ServerContext(config);
+        context.getTimerWheel().start();
+        deadline = new ConnectionDeadline(context, expired::countDown);
+    }
+
+    @AfterEach
+    void closeWheel() {
+        deadline.cancel();
+        context.getTimerWheel().close();
+    }
+
+    @Test
+    void knownLengthTest() throws InterruptedException {
+        ResponseMessage response = new ResponseMessage(new byte[100]);
+
+        assertSame(channel, deadline.startWrite(response, channel));
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertTrue(deadline.isExpired());
+    }
+
+    @Test
+    void streamedResponseTest() throws IOException, InterruptedException {
+        ResponseMessage response = new ResponseMessage(new byte[100]);
+        response.addPart(new ChunkedPart(piece -> false));
+
+        WritableByteChannel target = deadline.startWrite(response, channel);
+        assertNotSame(channel, target);
+        // 2000 bytes at 1000 bytes per second move the deadline by two seconds
+        target.write(ByteBuffer.allocate(2000));
+        assertFalse(expired.await(1000, TimeUnit.MILLISECONDS));
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+    }
+}
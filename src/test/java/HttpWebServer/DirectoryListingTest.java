@@ -0,0 +1,93 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * A unit test which tests the sorting, the pagination and the cache of the DirectoryListing.
+ */
+public class DirectoryListingTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sortTest() throws IOException {
+        createEntries();
+        DirectoryListing listing = new DirectoryListing(new ServerConfig());
+
+        assertEquals("[sub, a.txt, b.txt, c.txt]", getNames(listing, "GET /dir/ HTTP/1.1"));
+        assertEquals("[sub, c.txt, b.txt, a.txt]", getNames(listing, "GET /dir/?order=desc HTTP/1.1"));
+        assertEquals("[sub, b.txt, c.txt, a.txt]", getNames(listing, "GET /dir/?sort=size HTTP/1.1"));
+    }
+
+    @Test
+    void paginationTest() throws IOException {
+        createEntries();
+        DirectoryListing listing = new DirectoryListing(new ServerConfig());
+        String page = render(listing, "GET /dir/?format=json&limit=2&page=2 HTTP/1.1");
+
+        assertTrue(page.contains("\"total\":4"));
+        assertTrue(page.contains("\"name\":\"b.txt\""));
+        assertTrue(page.contains("\"name\":\"c.txt\""));
+        assertTrue(page.contains("\"previous\":\"/dir/?format=json&limit=2&page=1\""));
+        assertTrue(page.contains("\"next\":null"));
+    }
+
+    @Test
+    void modifiedDirectoryTest() throws IOException {
+        createEntries();
+        DirectoryListing listing = new DirectoryListing(new ServerConfig());
+        DirectoryListing.Listing cached = listing.getListing(directory);
+        assertSame(cached, listing.getListing(directory));
+
+        Files.createFile(directory.resolve("d.txt"));
+        Files.setLastModifiedTime(directory, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        assertEquals(5, listing.getListing(directory).getEntries(0, false).length);
+        assertEquals(5, listing.getCachedEntries());
+    }
+
+    @Test
+    void evictionTest() throws IOException {
+        createEntries();
+        ServerConfig config = new ServerConfig();
+        config.setDirectoryCacheMaxEntries(3);
+        DirectoryListing listing = new DirectoryListing(config);
+        listing.getListing(directory.resolve("sub"));
+        listing.getListing(directory);
+
+        assertEquals(0, listing.getCachedEntries());
+    }
+
+    private void createEntries() throws IOException {
+        Files.write(directory.resolve("b.txt"), new byte[10]);
+        Files.write(directory.resolve("a.txt"), new byte[30]);
+        Files.write(directory.resolve("c.txt"), new byte[20]);
+        Files.createDirectory(directory.resolve("sub"));
+    }
+
+    private String getNames(DirectoryListing listing, String requestLine) throws IOException {
+        StringBuilder names = new StringBuilder();
+        for (String line : render(listing, requestLine).split("\n")) {
+            if (line.startsWith("<li>")) {
+                names.append(names.length() == 0 ? "" : ", ");
+                names.append(line.substring(line.indexOf("\">") + 2, line.indexOf("</a>")).replace("/", ""));
+            }
+        }
+        return "[" + names + "]";
+    }
+
+    private String render(DirectoryListing listing, String requestLine) throws IOException {
+        RequestMessage request = new RequestMessage(requestLine);
+        return new String(listing.getPage(request, directory.toFile()).render(), StandardCharsets.UTF_8);
+    }
+}
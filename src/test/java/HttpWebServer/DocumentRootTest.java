@@ -0,0 +1,102 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A unit test which tests the decoding, the normalization and the cached resolution of the DocumentRoot.
+ */
+public class DocumentRootTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void decodeTest() {
+        assertEquals("/a b/\u00e4.txt", DocumentRoot.decode("/a%20b/%C3%A4.txt"));
+        assertEquals("/\u00e4.txt", DocumentRoot.decode("/\u00e4.txt"));
+        assertNull(DocumentRoot.decode("/a%2"));
+        assertNull(DocumentRoot.decode("/a%zz"));
+        assertNull(DocumentRoot.decode("/%C3%28"));
+    }
+
+    @Test
+    void normalizeTest() {
+        assertEquals("", DocumentRoot.normalize("/"));
+        assertEquals("a/c", DocumentRoot.normalize("//a/./b/../c/"));
+        assertNull(DocumentRoot.normalize("/../etc/passwd"));
+        assertNull(DocumentRoot.normalize("/a/../../etc/passwd"));
+        assertNull(DocumentRoot.normalize("/a\0.txt"));
+        assertNull(DocumentRoot.normalize("/..\\etc"));
+    }
+
+    @Test
+    void resolveTest() throws IOException {
+        Files.createDirectory(directory.resolve("docs"));
+        Files.write(directory.resolve("docs").resolve("a b.txt"), "a".getBytes());
+        DocumentRoot documentRoot = getDocumentRoot(10000);
+
+        assertTrue(documentRoot.resolve("/docs/a%20b.txt").isFile());
+        assertTrue(documentRoot.resolve("/docs/").isDirectory());
+        assertFalse(documentRoot.resolve("/docs/missing.txt").exists());
+        assertTrue(documentRoot.resolve("/%2e%2e/secret.txt").isRejected());
+        assertEquals(directory.resolve("docs").resolve("a b.txt").toFile(),
+                documentRoot.resolve("/docs/a%20b.txt").getFile());
+        assertEquals(1, documentRoot.getHits());
+        assertEquals(1, documentRoot.getRejected());
+    }
+
+    @Test
+    void negativeCacheTest() throws IOException {
+        DocumentRoot documentRoot = getDocumentRoot(10000);
+        assertFalse(documentRoot.resolve("/late.txt").exists());
+        Files.write(directory.resolve("late.txt"), "a".getBytes());
+
+        // The missing file is still cached, until it is invalidated or the TTL expires
+        assertFalse(documentRoot.resolve("/late.txt").exists());
+        documentRoot.invalidate("/late.txt");
+        assertTrue(documentRoot.resolve("/late.txt").exists());
+    }
+
+    @Test
+    void boundedCacheTest() throws IOException {
+        DocumentRoot documentRoot = getDocumentRoot(10);
+        for (int i = 0; i < 100; i++) {
+            documentRoot.resolve("/missing" + i);
+        }
+        assertTrue(documentRoot.getCachedEntries() <= 10);
+        // A sweep frees a quarter of the entries, the latest resolutions are cached again
+        assertTrue(documentRoot.getCachedEntries() > 0);
+        documentRoot.resolve("/missing99");
+        assertEquals(1, documentRoot.getHits());
+    }
+
+    @Test
+    void symbolicLinkTest() throws IOException {
+        Path outside = Files.createTempFile("outside", ".txt");
+        try {
+            Files.createSymbolicLink(directory.resolve("link.txt"), outside);
+            assertFalse(getDocumentRoot(10000).resolve("/link.txt").exists());
+        } catch (UnsupportedOperationException e) {
+            // The file system does not support symbolic links
+        } finally {
+            Files.delete(outside);
+        }
+    }
+
+    private DocumentRoot getDocumentRoot(int maxEntries) {
+        ServerConfig config = new ServerConfig();
+        config.setDocumentRoot(directory.toString());
+        config.setPathCacheMaxEntries(maxEntries);
+        config.setPathCacheNegativeTtlMillis(60000);
+        return new DocumentRoot(config);
+    }
+}
@@ -0,0 +1,95 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A unit test which tests the hits, the revalidation and the eviction of the FileCache.
+ */
+public class FileCacheTest {
+
+    @TempDir
+    Path directory;
+
+    HeaderWriter header = new HeaderWriter();
+
+    @Test
+    void cacheHitTest() throws IOException {
+        FileCache cache = getCache(1024);
+        File file = createFile("a.txt", 100);
+        RequestMessage request = new RequestMessage("GET /a.txt HTTP/1.1");
+
+        assertNull(cache.getResponseMessage(request, header, true));
+        assertNotNull(cache.load(request, header, file, true));
+        assertNotNull(cache.getResponseMessage(request, header, true));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void headRequestTest() throws IOException {
+        FileCache cache = getCache(1024);
+        File file = createFile("a.txt", 100);
+        RequestMessage head = new RequestMessage("HEAD /a.txt HTTP/1.1");
+
+        assertNull(cache.load(head, header, file, true));
+        assertEquals(0, cache.getTotalBytes());
+        cache.load(new RequestMessage("GET /a.txt HTTP/1.1"), header, file, true);
+        assertNotNull(cache.getResponseMessage(head, header, true));
+    }
+
+    @Test
+    void modifiedFileTest() throws IOException {
+        FileCache cache = getCache(1024);
+        File file = createFile("a.txt", 100);
+        RequestMessage request = new RequestMessage("GET /a.txt HTTP/1.1");
+        cache.load(request, header, file, true);
+
+        Files.write(file.toPath(), new byte[200]);
+        assertNull(cache.getResponseMessage(request, header, true));
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    void evictionTest() throws IOException {
+        FileCache cache = getCache(250);
+        RequestMessage first = new RequestMessage("GET /a.txt HTTP/1.1");
+        RequestMessage second = new RequestMessage("GET /b.txt HTTP/1.1");
+        RequestMessage third = new RequestMessage("GET /c.txt HTTP/1.1");
+        cache.load(first, header, createFile("a.txt", 100), true);
+        cache.load(second, header, createFile("b.txt", 100), true);
+        cache.getResponseMessage(first, header, true);
+        cache.load(third, header, createFile("c.txt", 100), true);
+
+        assertNotNull(cache.getResponseMessage(first, header, true));
+        assertNull(cache.getResponseMessage(second, header, true));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(200, cache.getTotalBytes());
+    }
+
+    private FileCache getCache(long maxBytes) {
+        ServerConfig config = getConfig(maxBytes);
+        return new FileCache(config, new MimeTypes(), new CacheControlRules(null), new Compression(config));
+    }
+
+    private ServerConfig getConfig(long maxBytes) {
+        ServerConfig config = new ServerConfig();
+        config.setFileCacheMaxBytes(maxBytes);
+        config.setFileCacheRevalidateMillis(0);
+        return config;
+    }
+
+    private File createFile(String name, int size) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, new byte[size]);
+        return file.toFile();
+    }
+}
@@ -0,0 +1,59 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A unit test which tests the status lines, the header values and the Date header of the HeaderWriter.
+ */
+public class HeaderWriterTest {
+
+    private static final byte[] CONTENT_LENGTH = HeaderWriter.ascii("Content-Length: ");
+    private static final byte[] ETAG = HeaderWriter.ascii("ETag: ");
+
+    @Test
+    void headerTest() {
+        HeaderWriter header = new HeaderWriter();
+        String text = toString(header.start("HTTP/1.1", 404).header(CONTENT_LENGTH, 1234567890123L)
+                .header(ETAG, "\"abc\"").connection(false).finish());
+
+        assertTrue(text.startsWith("HTTP/1.1 404 Not Found\r\nServer: Simple HTTP web server\r\n"
+                + "Content-Length: 1234567890123\r\nETag: \"abc\"\r\nConnection: close\r\nDate: "));
+        assertTrue(text.endsWith(" GMT\r\n\r\n"));
+    }
+
+    @Test
+    void reuseTest() {
+        HeaderWriter header = new HeaderWriter();
+        header.start("HTTP/1.0", 200).header(CONTENT_LENGTH, 0);
+        byte[] fragment = header.toFragment();
+        header.start("HTTP/1.1", 500).finish();
+
+        String text = toString(header.start(fragment).finish());
+        assertTrue(text.startsWith("HTTP/1.0 200 OK\r\nServer: Simple HTTP web server\r\nContent-Length: 0\r\nDate: "));
+    }
+
+    @Test
+    void growAndNonAsciiTest() {
+        HeaderWriter header = new HeaderWriter();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append('a');
+        }
+        String text = toString(header.start("HTTP/1.1", 299).header(ETAG, value.toString())
+                .header(ETAG, "\u00e4").finish());
+
+        assertTrue(text.startsWith("HTTP/1.1 299 Unknown\r\n"));
+        assertTrue(text.contains("ETag: " + value + "\r\n"));
+        assertTrue(text.contains("ETag: \u00e4\r\n"));
+        assertEquals(2, text.split("\r\n\r\n", -1).length);
+    }
+
+    private static String toString(ByteBuffer header) {
+        return StandardCharsets.UTF_8.decode(header).toString();
+    }
+}
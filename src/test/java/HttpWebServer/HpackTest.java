@@ -0,0 +1,93 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A unit test which tests the Huffman code and the HPACK Decoder and Encoder
+ * with the examples of RFC 7541, Appendix C.
+ */
+public class HpackTest {
+
+    @Test
+    void huffmanTest() throws Http2Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Huffman.encode("www.example.com", out);
+        byte[] encoded = out.toByteArray();
+
+        assertArrayEquals(bytes("f1e3c2e5f23a6ba0ab90f4ff"), encoded);
+        assertEquals(encoded.length, Huffman.getEncodedLength("www.example.com"));
+        assertEquals("www.example.com", Huffman.decode(encoded, 0, encoded.length));
+        assertThrows(Http2Exception.class, () -> Huffman.decode(bytes("f1e3c2e5f23a6ba0ab90f400"), 0, 12));
+    }
+
+    @Test
+    void decoderTest() throws Http2Exception {
+        Hpack.Decoder decoder = new Hpack.Decoder(4096, 8192);
+        List<String[]> first = decoder.decode(bytes("828684418cf1e3c2e5f23a6ba0ab90f4ff"), 17);
+        List<String[]> second = decoder.decode(bytes("828684be5886a8eb10649cbf"), 12);
+        List<String[]> third = decoder.decode(bytes("828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf"), 24);
+
+        assertField(first.get(0), ":method", "GET");
+        assertField(first.get(3), ":authority", "www.example.com");
+        assertField(second.get(3), ":authority", "www.example.com");
+        assertField(second.get(4), "cache-control", "no-cache");
+        assertField(third.get(1), ":scheme", "https");
+        assertField(third.get(2), ":path", "/index.html");
+        assertField(third.get(4), "custom-key", "custom-value");
+    }
+
+    @Test
+    void headerListTooLargeTest() throws Http2Exception {
+        Hpack.Decoder decoder = new Hpack.Decoder(4096, 100);
+        assertTrue(decoder.decode(bytes("828684418cf1e3c2e5f23a6ba0ab90f4ff"), 17).isEmpty());
+        assertTrue(decoder.isHeaderListTooLarge());
+        // The dynamic table is still updated
+        assertField(decoder.decode(bytes("be"), 1).get(0), ":authority", "www.example.com");
+        assertFalse(decoder.isHeaderListTooLarge());
+    }
+
+    @Test
+    void encoderTest() throws Http2Exception {
+        Hpack.Encoder encoder = new Hpack.Encoder();
+        Hpack.Decoder decoder = new Hpack.Decoder(4096, 8192);
+        List<String[]> fields = new ArrayList<>();
+        fields.add(new String[] {":status", "200"});
+        fields.add(new String[] {"server", "Simple HTTP web server"});
+        fields.add(new String[] {"content-length", "1234"});
+        fields.add(new String[] {"x-custom", "value"});
+
+        byte[] first = encoder.encode(fields);
+        byte[] second = encoder.encode(fields);
+        List<String[]> decoded = decoder.decode(first, first.length);
+        decoder.decode(second, second.length);
+
+        assertEquals(0x88, first[0] & 0xff);
+        assertTrue(second.length < first.length);
+        assertEquals(fields.size(), decoded.size());
+        for (int i = 0; i < fields.size(); i++) {
+            assertField(decoded.get(i), fields.get(i)[0], fields.get(i)[1]);
+        }
+    }
+
+    private static void assertField(String[] field, String name, String value) {
+        assertEquals(name, field[0]);
+        assertEquals(value, field[1]);
+    }
+
+    private static byte[] bytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,55 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * A unit test which tests the parsing of the listen addresses and the binding of the Listeners.
+ */
+public class ListenersTest {
+
+    @Test
+    void parseAddressesTest() {
+        List<InetSocketAddress> addresses = Listeners.parseAddresses("127.0.0.1:8080, [::1]:8081,:8082,8083", 80);
+
+        assertEquals(4, addresses.size());
+        assertEquals("127.0.0.1", addresses.get(0).getHostString());
+        assertEquals(8080, addresses.get(0).getPort());
+        assertEquals(8081, addresses.get(1).getPort());
+        assertTrue(addresses.get(1).getAddress().isLoopbackAddress());
+        assertTrue(addresses.get(2).getAddress().isAnyLocalAddress());
+        assertEquals(8083, addresses.get(3).getPort());
+        assertEquals(List.of(new InetSocketAddress(80)), Listeners.parseAddresses(null, 80));
+    }
+
+    @Test
+    void malformedAddressTest() {
+        assertThrows(IllegalArgumentException.class, () -> Listeners.parseAddresses("localhost", 80));
+        assertThrows(IllegalArgumentException.class, () -> Listeners.parseAddresses("::1:8080", 80));
+        assertThrows(IllegalArgumentException.class, () -> Listeners.parseAddresses("127.0.0.1:70000", 80));
+    }
+
+    @Test
+    void reusePortTest() throws IOException {
+        ServerConfig config = new ServerConfig();
+        config.setListen("127.0.0.1:0");
+        config.setAcceptorThreads(3);
+        config.setReusePort(true);
+        Listeners listeners = new Listeners(config);
+        listeners.bind();
+        try {
+            // The sockets of the acceptors share the ephemeral port of the first one
+            assertEquals(1, listeners.getLocalAddresses().size());
+            assertTrue(listeners.getLocalAddresses().get(0).getPort() > 0);
+        } finally {
+            listeners.close();
+        }
+        assertTrue(listeners.getLocalAddresses().isEmpty());
+    }
+}
@@ -0,0 +1,125 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * A unit test which tests the reuse, the replacement, the eviction and the reference counting of the MappedFiles.
+ */
+public class MappedFilesTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reuseTest() throws IOException {
+        MappedFiles mappedFiles = getMappedFiles(1024);
+        File file = createFile("a.txt", "0123456789");
+
+        MappedFiles.MappedFile first = mappedFiles.acquire(file, getAttributes(file));
+        MappedFiles.MappedFile second = mappedFiles.acquire(file, getAttributes(file));
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals("2345", read(first.getPart(2, 4)));
+        assertEquals(1, mappedFiles.getMapped());
+        assertEquals(10, mappedFiles.getMappedBytes());
+        first.release();
+        second.release();
+    }
+
+    @Test
+    void sizeLimitTest() throws IOException {
+        ServerConfig config = new ServerConfig();
+        config.setMmap(true);
+        config.setMmapMinFileSize(5);
+        config.setMmapMaxFileSize(10);
+        MappedFiles mappedFiles = new MappedFiles(config);
+        File small = createFile("a.txt", "0123");
+        File large = createFile("b.txt", "0123456789a");
+
+        assertNull(mappedFiles.acquire(small, getAttributes(small)));
+        assertNull(mappedFiles.acquire(large, getAttributes(large)));
+        assertNull(new MappedFiles(new ServerConfig()).acquire(small, getAttributes(small)));
+    }
+
+    @Test
+    void modifiedFileTest() throws IOException {
+        MappedFiles mappedFiles = getMappedFiles(1024);
+        File file = createFile("a.txt", "0123456789");
+        MappedFiles.MappedFile first = mappedFiles.acquire(file, getAttributes(file));
+        MessagePart part = first.getPart(0, 10);
+        first.release();
+
+        Files.write(file.toPath(), "abcdefghij".getBytes());
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() + 2000));
+        MappedFiles.MappedFile second = mappedFiles.acquire(file, getAttributes(file));
+        assertNotSame(first, second);
+        assertEquals(0, mappedFiles.getUnmapped());
+        part.close();
+        assertEquals(1, mappedFiles.getUnmapped());
+        assertEquals("abcdefghij", read(second.getPart(0, 10)));
+        second.release();
+    }
+
+    @Test
+    void evictionTest() throws IOException {
+        MappedFiles mappedFiles = getMappedFiles(25);
+        File a = createFile("a.txt", "0123456789");
+        File b = createFile("b.txt", "0123456789");
+        File c = createFile("c.txt", "0123456789");
+        mappedFiles.acquire(a, getAttributes(a)).release();
+        mappedFiles.acquire(b, getAttributes(b)).release();
+        mappedFiles.acquire(a, getAttributes(a)).release();
+        mappedFiles.acquire(c, getAttributes(c)).release();
+
+        assertEquals(1, mappedFiles.getUnmapped());
+        assertEquals(20, mappedFiles.getMappedBytes());
+        mappedFiles.close();
+        assertEquals(3, mappedFiles.getUnmapped());
+        assertEquals(0, mappedFiles.getMappedBytes());
+    }
+
+    private MappedFiles getMappedFiles(long maxBytes) {
+        ServerConfig config = new ServerConfig();
+        config.setMmap(true);
+        config.setMmapMinFileSize(0);
+        config.setMmapMaxBytes(maxBytes);
+        return new MappedFiles(config);
+    }
+
+    private File createFile(String name, String content) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, content.getBytes());
+        return file.toFile();
+    }
+
+    private BasicFileAttributes getAttributes(File file) throws IOException {
+        return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    }
+
+    private String read(MessagePart part) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            while (!part.writeTo(Channels.newChannel(out))) {
+                // The channel writes everything at once
+            }
+        } finally {
+            part.close();
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,56 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A unit test which tests the lookup, the charset rules and the mime.types file of the MimeTypes.
+ */
+public class MimeTypesTest {
+
+    @TempDir
+    Path directory;
+
+    MimeTypes mimeTypes = new MimeTypes();
+
+    @Test
+    void builtInTypesTest() {
+        assertEquals("text/html; charset=utf-8", mimeTypes.getType("index.html").getValue());
+        assertEquals("text/html; charset=utf-8", mimeTypes.getType("INDEX.HTM").getValue());
+        assertEquals("image/png", mimeTypes.getType("logo.min.png").getValue());
+        assertEquals("image/svg+xml; charset=utf-8", mimeTypes.getType("logo.svg").getValue());
+        assertEquals("Content-Type: application/json; charset=utf-8\r\n",
+                new String(mimeTypes.getType("a.json").getHeaderLine(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void unknownTypesTest() {
+        assertEquals("application/octet-stream", mimeTypes.getType("LICENSE").getValue());
+        assertEquals("application/octet-stream", mimeTypes.getType("archive.").getValue());
+        assertEquals("application/octet-stream", mimeTypes.getType("data.unknown").getValue());
+    }
+
+    @Test
+    void mimeTypesFileTest() throws IOException {
+        Path file = directory.resolve("mime.types");
+        Files.write(file, ("# Comment\n"
+                + "text/x-custom    cst  CUS\n"
+                + "image/x-custom   png\n"
+                + "application/vnd.custom+json  cjson # Trailing comment\n").getBytes());
+        mimeTypes.load(file);
+
+        assertEquals("text/x-custom; charset=utf-8", mimeTypes.getType("a.cst").getValue());
+        assertEquals("text/x-custom; charset=utf-8", mimeTypes.getType("a.cus").getValue());
+        assertEquals("image/x-custom", mimeTypes.getType("a.png").getValue());
+        assertEquals("application/vnd.custom+json; charset=utf-8", mimeTypes.getType("a.cjson").getValue());
+        assertEquals("text/css; charset=utf-8", mimeTypes.getType("a.css").getValue());
+        // The types of the file only apply to the registry which loaded it
+        assertEquals("image/png", new MimeTypes().getType("a.png").getValue());
+    }
+}
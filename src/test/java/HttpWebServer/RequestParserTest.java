@@ -0,0 +1,123 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A unit test which tests the parsing of request lines and headers by the RequestParser.
+ */
+public class RequestParserTest {
+
+    @Test
+    void requestLineAndHeadersTest() throws IOException {
+        RequestParser parser = getParser("GET /index.html HTTP/1.1\r\nHost: localhost\r\nX-Custom:  value \r\n\r\n", 1024);
+        RequestMessage request = parser.parse();
+
+        assertEquals(Method.GET, request.getMethod());
+        assertEquals("/index.html", request.getResource());
+        assertSame("HTTP/1.1", request.getHttpVersion());
+        assertEquals("localhost", request.getHeader("HOST"));
+        assertEquals("value", request.getHeader("x-custom"));
+        assertTrue(parser.isEmpty());
+    }
+
+    @Test
+    void pipelinedRequestsTest() throws IOException {
+        RequestParser parser = getParser("HEAD /a HTTP/1.1\n\nGET /b HTTP/1.0\r\nConnection: keep-alive\r\n\r\n", 1024);
+
+        assertEquals("/a", parser.parse().getResource());
+        RequestMessage second = parser.parse();
+        assertEquals("/b", second.getResource());
+        assertTrue(second.isKeepAlive());
+        assertNull(parser.parse());
+    }
+
+    @Test
+    void incrementalRequestTest() throws IOException {
+        String request = "GET /split HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        RequestParser parser = new RequestParser(1024);
+        InputStream in = new ByteArrayInputStream(request.getBytes());
+        RequestMessage parsed = null;
+        for (int i = 0; i < request.length() && parsed == null; i++) {
+            parser.readFrom(new ByteArrayInputStream(new byte[] {(byte) in.read()}));
+            parsed = parser.parse();
+        }
+        assertEquals("/split", parsed.getResource());
+    }
+
+    @Test
+    void headerTooLargeTest() throws IOException {
+        RequestParser parser = getParser("GET / HTTP/1.1\r\nCookie: " + "x".repeat(100), 64);
+        assertThrows(RequestHeaderTooLargeException.class, () -> parser.parse());
+    }
+
+    @Test
+    void malformedHeaderTest() throws IOException {
+        RequestParser parser = getParser("GET / HTTP/1.1\r\nno separator\r\n\r\n", 1024);
+        assertThrows(BadRequestException.class, () -> parser.parse());
+    }
+
+    @Test
+    void malformedRequestLineTest() throws IOException {
+        assertThrows(BadRequestException.class, () -> getParser("GET /\r\n\r\n", 1024).parse());
+        assertThrows(BadRequestException.class, () -> getParser("GET / HTTP/1.1 x\r\n\r\n", 1024).parse());
+        assertThrows(BadRequestException.class, () -> getParser("GET  / HTTP/1.1\r\n\r\n", 1024).parse());
+        assertThrows(BadRequestException.class, () -> getParser("GARBAGE\r\n\r\n", 1024).parse());
+    }
+
+    @Test
+    void httpVersionTest() throws IOException {
+        assertSame("HTTP/1.0", getParser("GET / HTTP/1.0\r\n\r\n", 1024).parse().getHttpVersion());
+        assertThrows(BadRequestException.class, () -> getParser("GET / HTTP/1.2\r\n\r\n", 1024).parse());
+        assertThrows(BadRequestException.class, () -> getParser("GET / HTTP/2.0\r\n\r\n", 1024).parse());
+        assertThrows(BadRequestException.class, () -> getParser("GET / HTTP/x\r\n\r\n", 1024).parse());
+        // The beginning of the HTTP/2 connection preface is the only request line of version 2.0
+        assertTrue(Http2Connection.isPreface(getParser("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n", 1024).parse()));
+    }
+
+    @Test
+    void readBodyTest() throws IOException {
+        RequestParser parser = getParser("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n5\r", 1024);
+        parser.parse();
+        int[] reads = new int[1];
+        InputStream in = new ByteArrayInputStream("\nhello\r\n0\r\n\r\n".getBytes()) {
+            @Override
+            public synchronized int read(byte[] target, int offset, int length) {
+                reads[0]++;
+                return super.read(target, offset, length);
+            }
+        };
+        byte[] body = new byte[1024];
+        assertEquals(1, parser.readBody(in, body, 0, 1));
+        assertEquals('5', body[0]);
+        assertEquals(1, parser.readBody(in, body, 0, 1));
+        assertEquals(1, parser.readBody(in, body, 0, 1));
+        assertEquals('\n', body[0]);
+        assertEquals(5, parser.readBody(in, body, 0, 5));
+        assertEquals("hello", new String(body, 0, 5));
+        assertEquals(1, reads[0]);
+        assertEquals(7, parser.readBody(in, body, 0, 1024));
+        assertEquals(-1, parser.readBody(in, body, 0, 1024));
+    }
+
+    @Test
+    void filterOutIPAddressTest() {
+        assertEquals("/src/main", RequestMessage.filterOutIPAddress("/src/main"));
+        assertEquals("/src", RequestMessage.filterOutIPAddress("//192.168.0.1/src"));
+        assertEquals("//1234.1.1.1/src", RequestMessage.filterOutIPAddress("//1234.1.1.1/src"));
+    }
+
+    private RequestParser getParser(String input, int maxHeaderSize) throws IOException {
+        RequestParser parser = new RequestParser(maxHeaderSize);
+        parser.readFrom(new ByteArrayInputStream(input.getBytes()));
+        return parser;
+    }
+}
@@ -0,0 +1,38 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A unit test which tests the file name in the Content-Disposition header of the ResponseHeader.
+ */
+public class ResponseHeaderTest {
+
+    private MimeTypes.MimeType type = new MimeTypes().getType("a.txt");
+
+    @Test
+    void plainFileNameTest() {
+        assertTrue(getHeader("index.html").contains("\r\nContent-Disposition: inline; filename=\"index.html\"\r\n"));
+    }
+
+    @Test
+    void escapedFileNameTest() {
+        assertTrue(getHeader("a\"b\\c\r\nd.txt")
+                .contains("\r\nContent-Disposition: inline; filename=\"a\\\"b\\\\cd.txt\"\r\n"));
+    }
+
+    @Test
+    void nonAsciiFileNameTest() {
+        assertTrue(getHeader("\u00e4 b\u20ac.txt").contains("\r\nContent-Disposition: inline; filename=\"_ b_.txt\"; "
+                + "filename*=UTF-8''%C3%A4%20b%E2%82%AC.txt\r\n"));
+    }
+
+    private String getHeader(String fileName) {
+        HeaderWriter header = new HeaderWriter();
+        ResponseHeader.writeResponseHeader(header, "HTTP/1.1", new File(fileName), type, 0, true);
+        return StandardCharsets.US_ASCII.decode(header.finish()).toString();
+    }
+}
@@ -0,0 +1,255 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.TestInstance.Lifecycle;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A unit test which tests the reverse proxy of the Server class against small upstream servers on the loopback interface.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class ReverseProxyTest {
+
+    private static final int PORT = 8093;
+
+    private Backend first;
+    private Backend second;
+    private Backend pooled;
+    private int deadPort;
+    private Server server;
+
+    @BeforeAll
+    void setUp() throws IOException {
+        first = new Backend("first");
+        second = new Backend("second");
+        pooled = new Backend("pooled");
+        try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            deadPort = closed.getLocalPort();
+        }
+        ServerConfig config = new ServerConfig(PORT);
+        config.setProxyRoutes("/api/=" + first.getAddress() + "," + second.getAddress()
+                + ";/api/pooled/=" + pooled.getAddress()
+                + ";/health/=127.0.0.1:" + deadPort + "," + first.getAddress()
+                + ";/down/=127.0.0.1:" + deadPort);
+        config.setProxyMaxFails(1);
+        config.setHttp2(true);
+        server = new Server(config);
+    }
+
+    @AfterAll
+    void tearDown() throws IOException {
+        server.stop();
+        first.close();
+        second.close();
+        pooled.close();
+    }
+
+    @Test
+    void longestPrefixTest() throws IOException {
+        String response = send("GET /api/pooled/items?id=7 HTTP/1.1\r\nHost: example\r\nConnection: close\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(response.contains("pooled GET /api/pooled/items?id=7 HTTP/1.1"));
+    }
+
+    @Test
+    void roundRobinTest() throws IOException {
+        int firstCount = 0;
+        int secondCount = 0;
+        for (int i = 0; i < 4; i++) {
+            String response = send("GET /api/items HTTP/1.1\r\nConnection: close\r\n\r\n");
+            firstCount += response.contains("first GET /api/items") ? 1 : 0;
+            secondCount += response.contains("second GET /api/items") ? 1 : 0;
+        }
+        assertEquals(2, firstCount);
+        assertEquals(2, secondCount);
+    }
+
+    @Test
+    void connectionReuseTest() throws IOException {
+        int before = pooled.connections.get();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(send("GET /api/pooled/reuse HTTP/1.1\r\nConnection: close\r\n\r\n")
+                    .startsWith("HTTP/1.1 200 OK\r\n"));
+        }
+        assertTrue(pooled.connections.get() - before <= 1);
+    }
+
+    @Test
+    void forwardedHeadersTest() throws IOException {
+        String response = send("GET /api/pooled/headers HTTP/1.1\r\nConnection: close, X-Private\r\n"
+                + "X-Private: secret\r\nX-Forwarded-For: 203.0.113.9\r\n\r\n");
+        assertTrue(response.contains("x-forwarded-for=203.0.113.9, "));
+        assertTrue(response.contains("x-forwarded-proto=http"));
+        assertTrue(!response.contains("secret"));
+    }
+
+    @Test
+    void chunkedBodyTest() throws IOException {
+        String response = send("POST /api/pooled/echo HTTP/1.1\r\nTransfer-Encoding: chunked\r\n"
+                + "Connection: close\r\n\r\n5\r\nHello\r\n7\r\n, World\r\n0\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(response.endsWith("\nHello, World"));
+
+        // A response without length is sent chunked to the client
+        String chunked = send("GET /api/pooled/stream HTTP/1.1\r\nConnection: close\r\n\r\n");
+        assertTrue(chunked.contains("Transfer-Encoding: chunked\r\n"));
+        assertTrue(chunked.endsWith("\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    void passiveHealthTest() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            String response = send("GET /health/check HTTP/1.1\r\nConnection: close\r\n\r\n");
+            assertTrue(response.contains("first GET /health/check"));
+        }
+        String metrics = send("GET /metrics HTTP/1.1\r\nConnection: close\r\n\r\n");
+        assertTrue(metrics.contains("httpwebserver_upstream_up{upstream=\"127.0.0.1:" + deadPort + "\"} 0\n"));
+    }
+
+    @Test
+    void badGatewayTest() throws IOException {
+        String response = send("GET /down/ HTTP/1.1\r\nConnection: close\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 502 Bad Gateway\r\n"));
+    }
+
+    @Test
+    void switchingProtocolsTest() throws IOException {
+        String response = send("GET /api/pooled/switch HTTP/1.1\r\nConnection: close\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 502 Bad Gateway\r\n"));
+    }
+
+    @Test
+    void http2UpgradeTest() throws IOException {
+        // A routed request is forwarded over HTTP/1.1 instead of being upgraded to HTTP/2
+        String response = send("GET /api/pooled/upgrade HTTP/1.1\r\nConnection: Upgrade, HTTP2-Settings, close\r\n"
+                + "Upgrade: h2c\r\nHTTP2-Settings: AAMAAABkAAQAAP__\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(response.contains("pooled GET /api/pooled/upgrade HTTP/1.1"));
+    }
+
+    private String send(String request) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * An upstream server with keep-alive connections, it answers with its name, the request line and the
+     * forwarded headers, and echoes the body of the request.
+     */
+    private static class Backend implements Runnable {
+
+        private String name;
+        private ServerSocket serverSocket;
+        private AtomicInteger connections = new AtomicInteger();
+
+        private Backend(String name) throws IOException {
+            this.name = name;
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread thread = new Thread(this);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private String getAddress() {
+            return "127.0.0.1:" + serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    Thread thread = new Thread(() -> serve(socket));
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (socket) {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                while (true) {
+                    String requestLine = readLine(in);
+                    if (requestLine == null) {
+                        return;
+                    }
+                    StringBuilder seen = new StringBuilder();
+                    long length = 0;
+                    boolean chunked = false;
+                    String line;
+                    while (!(line = readLine(in)).isEmpty()) {
+                        String field = line.substring(0, line.indexOf(':')).toLowerCase(Locale.ROOT);
+                        String value = line.substring(line.indexOf(':') + 1).trim();
+                        if (field.equals("content-length")) {
+                            length = Long.parseLong(value);
+                        } else if (field.equals("transfer-encoding")) {
+                            chunked = true;
+                        } else if (field.startsWith("x-")) {
+                            seen.append(' ').append(field).append('=').append(value);
+                        }
+                    }
+                    byte[] body = chunked ? new ChunkedInputStream(in).readAllBytes() : in.readNBytes((int) length);
+                    byte[] text = (name + " " + requestLine + seen + "\n").getBytes(StandardCharsets.ISO_8859_1);
+                    if (requestLine.contains("/switch")) {
+                        out.write(("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: websocket\r\n\r\n")
+                                .getBytes(StandardCharsets.ISO_8859_1));
+                        out.flush();
+                        return;
+                    }
+                    if (requestLine.contains("/stream")) {
+                        out.write(("HTTP/1.1 200 OK\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                        out.write(text);
+                        out.flush();
+                        return;
+                    }
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + (text.length + body.length) + "\r\n\r\n")
+                            .getBytes(StandardCharsets.ISO_8859_1));
+                    out.write(text);
+                    out.write(body);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // The proxy closed the connection
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int character;
+            while ((character = in.read()) != '\n') {
+                if (character < 0) {
+                    return null;
+                }
+                line.append((char) character);
+            }
+            return line.toString().trim();
+        }
+
+        private void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
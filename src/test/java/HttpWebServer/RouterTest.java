@@ -0,0 +1,85 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A unit test which tests that the Router matches exact, parameter and prefix routes in the order of precedence.
+ */
+public class RouterTest {
+
+    private static final RequestHandler HEALTH = exchange -> exchange.respond(200);
+    private static final RequestHandler USER = exchange -> exchange.respond(200);
+    private static final RequestHandler ME = exchange -> exchange.respond(200);
+    private static final RequestHandler POSTS = exchange -> exchange.respond(200);
+    private static final RequestHandler HOOKS = exchange -> exchange.respond(200);
+
+    @Test
+    void exactRouteTest() {
+        Router router = new Router().get("/health", HEALTH);
+        assertSame(HEALTH, router.match("/health").getHandler(Method.GET));
+        assertNull(router.match("/health/"));
+        assertNull(router.match("/healthy"));
+        assertNull(router.match("/"));
+    }
+
+    @Test
+    void parameterRouteTest() {
+        Router router = new Router().get("/users/{id}", USER).get("/users/{id}/posts/{post}", POSTS);
+        Router.Match match = router.match("/users/42/posts/7");
+        assertSame(POSTS, match.getHandler(Method.GET));
+        assertEquals("42", match.getParameters().get("id"));
+        assertEquals("7", match.getParameters().get("post"));
+        assertEquals("42", router.match("/users/42").getParameters().get("id"));
+        assertNull(router.match("/users/"));
+    }
+
+    @Test
+    void precedenceTest() {
+        Router router = new Router().get("/users/{id}", USER).get("/users/me", ME)
+            .get("/users/{id}/posts", POSTS).get("/users/*", HOOKS);
+        assertSame(ME, router.match("/users/me").getHandler(Method.GET));
+        assertSame(USER, router.match("/users/you").getHandler(Method.GET));
+        // The literal segment does not continue, the lookup goes back to the parameter
+        Router.Match posts = router.match("/users/me/posts");
+        assertSame(POSTS, posts.getHandler(Method.GET));
+        assertEquals("me", posts.getParameters().get("id"));
+        assertSame(HOOKS, router.match("/users/me/likes/3").getHandler(Method.GET));
+    }
+
+    @Test
+    void prefixRouteTest() {
+        Router router = new Router().post("/hooks/*", HOOKS);
+        assertSame(HOOKS, router.match("/hooks/").getHandler(Method.POST));
+        assertSame(HOOKS, router.match("/hooks/github/push").getHandler(Method.POST));
+        assertNull(router.match("/hooks"));
+        assertNull(router.match("/hook/x"));
+    }
+
+    @Test
+    void methodsTest() {
+        Router router = new Router().get("/items", USER).post("/items", POSTS);
+        Router.Match match = router.match("/items");
+        assertSame(USER, match.getHandler(Method.HEAD));
+        assertSame(POSTS, match.getHandler(Method.POST));
+        assertNull(match.getHandler(Method.DELETE));
+        assertEquals("GET, HEAD, POST", match.getAllowedMethods());
+    }
+
+    @Test
+    void malformedRouteTest() {
+        Router router = new Router().get("/users/{id}", USER);
+        assertThrows(IllegalArgumentException.class, () -> router.get("/users/{id}", ME));
+        assertThrows(IllegalArgumentException.class, () -> router.get("/users/{name}/posts", POSTS));
+        assertThrows(IllegalArgumentException.class, () -> router.get("users", ME));
+        assertThrows(IllegalArgumentException.class, () -> router.get("/a/*/b", ME));
+        assertThrows(IllegalArgumentException.class, () -> router.get("/a/{}", ME));
+        // A rejected route leaves the routes unchanged
+        assertSame(USER, router.match("/users/1").getHandler(Method.GET));
+        assertNull(router.match("/a/b"));
+    }
+}
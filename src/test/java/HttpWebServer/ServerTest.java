@@ -1,11 +1,19 @@
 package httpwebserver;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.TestInstance.Lifecycle;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -13,7 +21,19 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpClient.Version;
 import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 /**
  * A unit test which tests the basic functionalities of the Server class.
@@ -21,6 +41,10 @@ import java.net.UnknownHostException;
 @TestInstance(Lifecycle.PER_CLASS)
 public class ServerTest {
 
+    private static final String PIPELINED_REQUESTS =
+            "GET /src/test/resources/existing.txt HTTP/1.1\r\nHost: localhost\r\n\r\n"
+            + "HEAD /src/test/resources/existing.txt HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+
     Server server = null;
     String baseURL = null;
 
@@ -100,6 +124,131 @@ public class ServerTest {
         assertEquals(200, response.statusCode());
     }
 
+    @Test
+    void fileContentTest() throws IOException, InterruptedException {
+        byte[] expected = Files.readAllBytes(Paths.get("src/test/resources/existing.txt"));
+        HttpRequest request = HttpRequest.newBuilder()
+                                .uri(URI.create(baseURL + "src/test/resources/existing.txt"))
+                                .version(Version.HTTP_1_1)
+                                .GET()
+                                .build();
+
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofByteArray());
+        assertArrayEquals(expected, response.body());
+    }
+
+    @Test
+    void headContentLengthTest() {
+        HttpRequest request = HttpRequest.newBuilder()
+                                .uri(URI.create(baseURL + "src/test/resources/existing.txt"))
+                                .version(Version.HTTP_1_1)
+                                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                                .build();
+
+        HttpResponse<Void> response = getResponse(request);
+        long fileLength = new File("src/test/resources/existing.txt").length();
+        assertEquals(fileLength, response.headers().firstValueAsLong("Content-Length").getAsLong());
+    }
+
+    @Test
+    void conditionalGetRequestTest() {
+        URI uri = URI.create(baseURL + "src/test/resources/existing.txt");
+        HttpResponse<Void> response = getResponse(HttpRequest.newBuilder(uri).GET().build());
+        String eTag = response.headers().firstValue("ETag").get();
+        String lastModified = response.headers().firstValue("Last-Modified").get();
+
+        HttpResponse<Void> ifNoneMatch = getResponse(HttpRequest.newBuilder(uri)
+                                .header("If-None-Match", eTag)
+                                .GET()
+                                .build());
+        HttpResponse<Void> ifModifiedSince = getResponse(HttpRequest.newBuilder(uri)
+                                .header("If-Modified-Since", lastModified)
+                                .GET()
+                                .build());
+        HttpResponse<Void> otherETag = getResponse(HttpRequest.newBuilder(uri)
+                                .header("If-None-Match", "\"other\"")
+                                .GET()
+                                .build());
+        assertEquals(304, ifNoneMatch.statusCode());
+        assertEquals(304, ifModifiedSince.statusCode());
+        assertEquals(200, otherETag.statusCode());
+    }
+
+    @Test
+    void gzipContentEncodingTest() throws IOException, InterruptedException {
+        byte[] expected = Files.readAllBytes(Paths.get("src/test/resources/compressible.html"));
+        URI uri = URI.create(baseURL + "src/test/resources/compressible.html");
+        HttpResponse<byte[]> gzip = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                                .header("Accept-Encoding", "gzip, deflate")
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        HttpResponse<byte[]> identity = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").get());
+        assertEquals("Accept-Encoding", gzip.headers().firstValue("Vary").get());
+        assertTrue(gzip.headers().firstValue("ETag").get().endsWith("-gzip\""));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.body()))) {
+            assertArrayEquals(expected, in.readAllBytes());
+        }
+        assertFalse(identity.headers().firstValue("Content-Encoding").isPresent());
+        assertEquals("Accept-Encoding", identity.headers().firstValue("Vary").get());
+        assertArrayEquals(expected, identity.body());
+    }
+
+    @Test
+    void rangeRequestTest() throws IOException, InterruptedException {
+        URI uri = URI.create(baseURL + "src/test/resources/existing.txt");
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/existing.txt")));
+        long length = content.length();
+        HttpResponse<String> single = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                                .header("Range", "bytes=2-5")
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> multiple = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                                .header("Range", "bytes=0-1,-2")
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<Void> unsatisfiable = getResponse(HttpRequest.newBuilder(uri)
+                                .header("Range", "bytes=" + length + "-")
+                                .GET()
+                                .build());
+        HttpResponse<Void> changed = getResponse(HttpRequest.newBuilder(uri)
+                                .header("Range", "bytes=2-5")
+                                .header("If-Range", "\"other\"")
+                                .GET()
+                                .build());
+
+        assertEquals(206, single.statusCode());
+        assertEquals(content.substring(2, 6), single.body());
+        assertEquals("bytes 2-5/" + length, single.headers().firstValue("Content-Range").get());
+        assertEquals(206, multiple.statusCode());
+        assertTrue(multiple.headers().firstValue("Content-Type").get().startsWith("multipart/byteranges; boundary="));
+        assertTrue(multiple.body().contains("Content-Range: bytes 0-1/" + length + "\r\n\r\n" + content.substring(0, 2)));
+        assertTrue(multiple.body().contains(content.substring(content.length() - 2)));
+        assertEquals(416, unsatisfiable.statusCode());
+        assertEquals("bytes */" + length, unsatisfiable.headers().firstValue("Content-Range").get());
+        assertEquals(200, changed.statusCode());
+        assertEquals("bytes", changed.headers().firstValue("Accept-Ranges").get());
+    }
+
+    @Test
+    void metricsTest() throws IOException, InterruptedException {
+        getResponse(HttpRequest.newBuilder(URI.create(baseURL + "src/test/resources/existing.txt")).GET().build());
+        HttpRequest request = HttpRequest.newBuilder()
+                                .uri(URI.create(baseURL + "metrics"))
+                                .GET()
+                                .build();
+
+        HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").get().startsWith("text/plain; version=0.0.4"));
+        assertTrue(response.body().contains("httpwebserver_responses_total{status=\"200\"}"));
+        assertTrue(response.body().contains("# TYPE httpwebserver_request_handle_seconds histogram"));
+        assertTrue(response.body().contains("httpwebserver_connections_active "));
+    }
+
     @Test
     void unsuccessfulGetRequestFolderTest() {
         HttpRequest request = HttpRequest.newBuilder()
@@ -125,6 +274,611 @@ public class ServerTest {
         assertEquals(404, response.statusCode());
     }
 
+    @Test
+    void virtualThreadExecutionModeTest() {
+        ServerConfig config = new ServerConfig(8081);
+        config.setExecutionMode(ExecutionMode.VIRTUAL_THREADS);
+        Server virtualThreadServer = new Server(config);
+        HttpRequest request = HttpRequest.newBuilder()
+                                .uri(URI.create(baseURL.replace(":8080", ":8081") + "src/test/resources/existing.txt"))
+                                .version(Version.HTTP_1_1)
+                                .GET()
+                                .build();
+
+        HttpResponse<Void> response = getResponse(request);
+        virtualThreadServer.stop();
+        assertEquals(200, response.statusCode());
+    }
+
+    @Test
+    void exhaustedWorkerPoolTest() throws IOException {
+        ServerConfig config = new ServerConfig(8082);
+        config.setWorkerThreads(1);
+        config.setQueueCapacity(0);
+        config.setShutdownTimeoutSeconds(0);
+        Server pooledServer = new Server(config);
+        HttpRequest request = HttpRequest.newBuilder()
+                                .uri(URI.create(baseURL.replace(":8080", ":8082")))
+                                .version(Version.HTTP_1_1)
+                                .GET()
+                                .build();
+        // Waits until the server is listening
+        sendRawRequest(8082, "GET / HTTP/1.0\r\n\r\n");
+        sleep(200);
+
+        // An idle connection occupies the only worker thread
+        try (Socket idleConnection = new Socket(InetAddress.getLocalHost(), 8082)) {
+            sleep(200);
+            HttpResponse<Void> response = getResponse(request);
+            assertEquals(503, response.statusCode());
+            // The idle connection still holds the worker, it is not closed by the rejection
+            idleConnection.setSoTimeout(100);
+            assertFalse(isClosedByServer(idleConnection));
+        } finally {
+            pooledServer.stop();
+        }
+    }
+
+    @Test
+    void nioEngineTest() throws IOException {
+        ServerConfig config = new ServerConfig(8083);
+        config.setEngine(Engine.NIO);
+        config.setEventLoopThreads(2);
+        Server nioServer = new Server(config);
+        String nioURL = baseURL.replace(":8080", ":8083");
+        try {
+            HttpResponse<Void> found = getResponse(HttpRequest.newBuilder()
+                                .uri(URI.create(nioURL + "src/test/resources/existing.txt"))
+                                .version(Version.HTTP_1_1)
+                                .GET()
+                                .build());
+            HttpResponse<Void> notFound = getResponse(HttpRequest.newBuilder()
+                                .uri(URI.create(nioURL + "src/test/resources/notExisting.txt"))
+                                .version(Version.HTTP_1_1)
+                                .GET()
+                                .build());
+            HttpResponse<Void> head = getResponse(HttpRequest.newBuilder()
+                                .uri(URI.create(nioURL))
+                                .version(Version.HTTP_1_1)
+                                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                                .build());
+            assertEquals(200, found.statusCode());
+            assertEquals(404, notFound.statusCode());
+            assertEquals(200, head.statusCode());
+            assertEquals(2, countResponses(sendRawRequest(8083, PIPELINED_REQUESTS)));
+        } finally {
+            nioServer.stop();
+        }
+    }
+
+    @Test
+    void mappedFileTest() throws IOException, InterruptedException {
+        ServerConfig config = new ServerConfig(8084);
+        config.setFileCacheMaxBytes(0);
+        config.setMmap(true);
+        config.setMmapMinFileSize(0);
+        Server mmapServer = new Server(config);
+        URI uri = URI.create(baseURL.replace(":8080", ":8084") + "src/test/resources/existing.txt");
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/existing.txt")));
+        try {
+            HttpResponse<String> full = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> range = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                                .header("Range", "bytes=2-5")
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, full.statusCode());
+            assertEquals(content, full.body());
+            assertEquals(206, range.statusCode());
+            assertEquals(content.substring(2, 6), range.body());
+        } finally {
+            mmapServer.stop();
+        }
+    }
+
+    @Test
+    void http2UpgradeTest() throws IOException, InterruptedException, ExecutionException {
+        ServerConfig config = new ServerConfig(8085);
+        config.setHttp2(true);
+        Server http2Server = new Server(config);
+        String http2URL = baseURL.replace(":8080", ":8085") + "src/test/resources/";
+        String content = new String(Files.readAllBytes(Paths.get("src/test/resources/existing.txt")));
+        HttpClient client = HttpClient.newBuilder().version(Version.HTTP_2).build();
+        try {
+            HttpResponse<String> upgraded = client.send(HttpRequest.newBuilder(URI.create(http2URL + "existing.txt"))
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+            List<CompletableFuture<HttpResponse<String>>> multiplexed = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                multiplexed.add(client.sendAsync(HttpRequest.newBuilder(URI.create(http2URL + "existing.txt"))
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            HttpResponse<String> range = client.send(HttpRequest.newBuilder(URI.create(http2URL + "existing.txt"))
+                                .header("Range", "bytes=2-5")
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> listing = client.send(HttpRequest.newBuilder(URI.create(http2URL + "existing/"))
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> notFound = client.send(HttpRequest.newBuilder(URI.create(http2URL + "notExisting.txt"))
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(Version.HTTP_2, upgraded.version());
+            assertEquals(200, upgraded.statusCode());
+            assertEquals(content, upgraded.body());
+            for (CompletableFuture<HttpResponse<String>> response : multiplexed) {
+                assertEquals(Version.HTTP_2, response.get().version());
+                assertEquals(content, response.get().body());
+            }
+            assertEquals(206, range.statusCode());
+            assertEquals(content.substring(2, 6), range.body());
+            assertEquals(200, listing.statusCode());
+            assertTrue(listing.body().contains("href=\"/src/test/resources/existing/first.txt\""));
+            assertFalse(listing.headers().firstValue("Transfer-Encoding").isPresent());
+            assertEquals(404, notFound.statusCode());
+        } finally {
+            http2Server.stop();
+        }
+    }
+
+    @Test
+    void http2PriorKnowledgeTest() throws IOException {
+        ServerConfig config = new ServerConfig(8086);
+        config.setHttp2(true);
+        Server http2Server = new Server(config);
+        byte[] content = Files.readAllBytes(Paths.get("src/test/resources/existing.txt"));
+        byte[] path = "/src/test/resources/existing.txt".getBytes();
+        // :method GET, :scheme http and :path as a literal without indexing
+        ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+        headerBlock.write(new byte[] {(byte) 0x82, (byte) 0x86, 0x04, (byte) path.length});
+        headerBlock.write(path);
+        try (Socket socket = new Socket(InetAddress.getLocalHost(), 8086)) {
+            socket.setSoTimeout(5000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes());
+            writeFrame(out, 0x4, 0, 0, new byte[0]);
+            writeFrame(out, 0x1, 0x5, 1, headerBlock.toByteArray());
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] headers = null;
+            boolean endStream = false;
+            while (!endStream) {
+                int length = in.readUnsignedShort() << 8 | in.readUnsignedByte();
+                int type = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                int streamId = in.readInt();
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (streamId == 1 && type == 0x1) {
+                    headers = payload;
+                } else if (streamId == 1 && type == 0x0) {
+                    body.write(payload);
+                }
+                endStream = streamId == 1 && (flags & 0x1) != 0;
+            }
+            assertEquals(0x88, headers[0] & 0xff);
+            assertArrayEquals(content, body.toByteArray());
+        } finally {
+            http2Server.stop();
+        }
+    }
+
+    @Test
+    void http2DeadlinesTest() throws IOException {
+        ServerConfig config = new ServerConfig(8100);
+        config.setHttp2(true);
+        config.setIdleTimeoutMillis(500);
+        config.setHeaderTimeoutMillis(500);
+        config.setWriteTimeoutMillis(500);
+        Server http2Server = new Server(config);
+        byte[] path = "/src/test/resources/existing.txt".getBytes();
+        ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+        headerBlock.write(new byte[] {(byte) 0x82, (byte) 0x86, 0x04, (byte) path.length});
+        headerBlock.write(path);
+        try {
+            // An idle connection is closed with a GOAWAY
+            try (Socket socket = new Socket(InetAddress.getLocalHost(), 8100)) {
+                socket.setSoTimeout(5000);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes());
+                writeFrame(out, 0x4, 0, 0, new byte[0]);
+                out.flush();
+                assertTrue(readFrameTypes(socket).contains(0x7));
+            }
+            // A frame which is not completed in time closes the connection
+            try (Socket socket = new Socket(InetAddress.getLocalHost(), 8100)) {
+                socket.setSoTimeout(5000);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes());
+                writeFrame(out, 0x4, 0, 0, new byte[0]);
+                out.write(new byte[] {0, 0, 8});
+                out.flush();
+                assertFalse(readFrameTypes(socket).contains(0x7));
+            }
+            // A stream whose window is never opened closes the connection after the write timeout
+            try (Socket socket = new Socket(InetAddress.getLocalHost(), 8100)) {
+                socket.setSoTimeout(5000);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes());
+                // SETTINGS_INITIAL_WINDOW_SIZE 0
+                writeFrame(out, 0x4, 0, 0, new byte[] {0, 0x4, 0, 0, 0, 0});
+                writeFrame(out, 0x1, 0x5, 1, headerBlock.toByteArray());
+                out.flush();
+                List<Integer> types = readFrameTypes(socket);
+                assertTrue(types.contains(0x1));
+                assertFalse(types.contains(0x0));
+            }
+
+            String metrics = sendRawRequest(8100, "GET /metrics HTTP/1.1\r\nConnection: close\r\n\r\n");
+            assertTrue(metrics.contains("httpwebserver_connections_timed_out_total{phase=\"idle\"} 1\n"));
+            assertTrue(metrics.contains("httpwebserver_connections_timed_out_total{phase=\"header\"} 1\n"));
+            assertTrue(metrics.contains("httpwebserver_connections_timed_out_total{phase=\"write\"} 1\n"));
+        } finally {
+            http2Server.stop();
+        }
+    }
+
+    /**
+     * @return Returns the types of the HTTP/2 frames which the server sent until it closed the connection.
+     */
+    private List<Integer> readFrameTypes(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        List<Integer> types = new ArrayList<>();
+        try {
+            while (true) {
+                int length = in.readUnsignedShort() << 8 | in.readUnsignedByte();
+                types.add(in.readUnsignedByte());
+                in.readUnsignedByte();
+                in.readInt();
+                in.readFully(new byte[length]);
+            }
+        } catch (SocketTimeoutException e) {
+            throw e;
+        } catch (IOException e) {
+            // The server closed the connection
+        }
+        return types;
+    }
+
+    @Test
+    void http2StreamWorkersTest() throws IOException, InterruptedException, ExecutionException {
+        ServerConfig config = new ServerConfig(8099);
+        config.setHttp2(true);
+        Server http2Server = new Server(config);
+        CountDownLatch release = new CountDownLatch(1);
+        http2Server.getRouter()
+            .get("/slow", exchange -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return exchange.respond(200, "text/plain", "slow");
+            })
+            .get("/failing", exchange -> {
+                throw new IllegalStateException("Handler failed");
+            });
+        String http2URL = baseURL.replace(":8080", ":8099");
+        HttpClient client = HttpClient.newBuilder().version(Version.HTTP_2).build();
+        try {
+            HttpResponse<String> upgraded = client.send(HttpRequest.newBuilder(URI.create(http2URL
+                                + "src/test/resources/existing.txt"))
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(Version.HTTP_2, upgraded.version());
+            CompletableFuture<HttpResponse<String>> slow = client.sendAsync(HttpRequest.newBuilder(
+                                URI.create(http2URL + "slow"))
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+            // The blocked stream holds a worker, the other streams of the connection are still answered
+            HttpResponse<String> failing = client.send(HttpRequest.newBuilder(URI.create(http2URL + "failing"))
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> file = client.send(HttpRequest.newBuilder(URI.create(http2URL
+                                + "src/test/resources/existing.txt"))
+                                .GET()
+                                .build(), HttpResponse.BodyHandlers.ofString());
+            assertFalse(slow.isDone());
+            release.countDown();
+
+            assertEquals(500, failing.statusCode());
+            assertEquals(200, file.statusCode());
+            assertEquals(Version.HTTP_2, slow.get().version());
+            assertEquals("slow", slow.get().body());
+        } finally {
+            http2Server.stop();
+        }
+    }
+
+    @Test
+    void pathTraversalTest() throws IOException {
+        String traversal = sendRawRequest(8080, "GET /src/../../etc/passwd HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        String encodedTraversal = sendRawRequest(8080, "GET /%2e%2e/etc/passwd HTTP/1.0\r\n\r\n");
+        String normalized = sendRawRequest(8080,
+                "GET /src/%2e%2e/src/test/resources/./existing.txt HTTP/1.1\r\nConnection: close\r\n\r\n");
+
+        assertTrue(traversal.startsWith("HTTP/1.1 400 "));
+        assertTrue(encodedTraversal.startsWith("HTTP/1.1 400 "));
+        assertTrue(normalized.startsWith("HTTP/1.1 200 OK"));
+    }
+
+    @Test
+    void multipleListenersTest() throws IOException {
+        ServerConfig config = new ServerConfig();
+        config.setListen("8087,:8088");
+        config.setAcceptorThreads(2);
+        config.setReusePort(true);
+        config.setAcceptBacklog(128);
+        config.setSendBufferSize(64 * 1024);
+        config.setReceiveBufferSize(64 * 1024);
+        Server listenersServer = new Server(config);
+        try {
+            assertEquals(8087, listenersServer.getPort());
+            assertEquals(2, listenersServer.getAddresses().size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(2, countResponses(sendRawRequest(8087 + i % 2, PIPELINED_REQUESTS)));
+            }
+        } finally {
+            listenersServer.stop();
+        }
+    }
+
+    @Test
+    void nioMultipleAcceptorsTest() throws IOException {
+        ServerConfig config = new ServerConfig(8089);
+        config.setEngine(Engine.NIO);
+        config.setEventLoopThreads(2);
+        config.setAcceptorThreads(2);
+        config.setReusePort(true);
+        Server nioServer = new Server(config);
+        try {
+            for (int i = 0; i < 4; i++) {
+                assertEquals(2, countResponses(sendRawRequest(8089, PIPELINED_REQUESTS)));
+            }
+        } finally {
+            nioServer.stop();
+        }
+    }
+
+    @Test
+    void admissionControlTest() throws IOException {
+        ServerConfig config = new ServerConfig(8090);
+        config.setMaxConnectionsPerIp(1);
+        config.setRateLimit(1);
+        config.setRateLimitBurst(2);
+        Server limitedServer = new Server(config);
+        String request = "GET /src/test/resources/existing.txt HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        try (Socket connection = new Socket(InetAddress.getLocalHost(), 8090)) {
+            connection.setSoTimeout(5000);
+            connection.getOutputStream().write((request + request + request).getBytes());
+            sleep(200);
+            String secondConnection = sendRawRequest(8090, request);
+            String responses = new String(connection.getInputStream().readAllBytes());
+
+            assertTrue(secondConnection.startsWith("HTTP/1.1 429 Too Many Requests"));
+            assertTrue(secondConnection.contains("Retry-After: 1\r\n"));
+            assertEquals(2, responses.split("HTTP/1.1 200 OK", -1).length - 1);
+            assertTrue(responses.contains("HTTP/1.1 429 Too Many Requests"));
+        } finally {
+            limitedServer.stop();
+        }
+    }
+
+    @Test
+    void headerTimeoutTest() throws IOException {
+        for (Engine engine : new Engine[] {Engine.BLOCKING, Engine.NIO}) {
+            int port = engine == Engine.NIO ? 8092 : 8091;
+            ServerConfig config = new ServerConfig(port);
+            config.setEngine(engine);
+            config.setHeaderTimeoutMillis(500);
+            Server slowServer = new Server(config);
+            String request = "GET /src/test/resources/existing.txt HTTP/1.1\r\nHost: localhost\r\n\r\n";
+            try (Socket connection = new Socket(InetAddress.getLocalHost(), port)) {
+                connection.setSoTimeout(5000);
+                // A slowloris client sends a byte every 100 milliseconds, the header is not complete in time
+                boolean closed = false;
+                for (int i = 0; i < 10 && !closed; i++) {
+                    try {
+                        connection.getOutputStream().write(request.charAt(i));
+                        sleep(100);
+                    } catch (IOException e) {
+                        closed = true;
+                    }
+                }
+                assertTrue(closed || isClosedByServer(connection));
+
+                String metrics = sendRawRequest(port, "GET /metrics HTTP/1.1\r\nConnection: close\r\n\r\n");
+                assertTrue(metrics.contains("httpwebserver_connections_timed_out_total{phase=\"header\"} 1\n"));
+            } finally {
+                slowServer.stop();
+            }
+        }
+    }
+
+    @Test
+    void slowHandlerTest() throws IOException {
+        ServerConfig config = new ServerConfig(8098);
+        config.setEngine(Engine.NIO);
+        config.setEventLoopThreads(1);
+        Server nioServer = new Server(config);
+        CountDownLatch release = new CountDownLatch(1);
+        nioServer.getRouter().get("/slow", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return exchange.respond(200, null, "slow");
+        });
+        try (Socket slow = new Socket(InetAddress.getLocalHost(), 8098)) {
+            slow.setSoTimeout(5000);
+            slow.getOutputStream().write("GET /slow HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes());
+            // The handler blocks a worker, the only event loop still serves the other connections
+            String file = sendRawRequest(8098, "GET /src/test/resources/existing.txt HTTP/1.1\r\n"
+                    + "Connection: close\r\n\r\n");
+            assertTrue(file.startsWith("HTTP/1.1 200 OK\r\n"));
+            release.countDown();
+            String response = new String(slow.getInputStream().readAllBytes());
+            assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+            assertTrue(response.endsWith("\r\n\r\nslow"));
+        } finally {
+            nioServer.stop();
+        }
+    }
+
+    @Test
+    void requestHandlerTest() throws IOException {
+        for (Engine engine : new Engine[] {Engine.BLOCKING, Engine.NIO}) {
+            int port = engine == Engine.NIO ? 8095 : 8094;
+            ServerConfig config = new ServerConfig(port);
+            config.setEngine(engine);
+            Server handlerServer = new Server(config);
+            handlerServer.getRouter()
+                .get("/users/{id}", exchange -> exchange.respond(200, "text/plain",
+                        "user " + exchange.getPathParameter("id")))
+                .post("/echo", exchange -> exchange.respond(200, "text/plain",
+                        new String(exchange.readBody(1024), StandardCharsets.UTF_8)));
+            try {
+                String user = sendRawRequest(port, "GET /users/42 HTTP/1.1\r\nConnection: close\r\n\r\n");
+                assertTrue(user.startsWith("HTTP/1.1 200 OK\r\n"));
+                assertTrue(user.endsWith("\r\n\r\nuser 42"));
+
+                String notAllowed = sendRawRequest(port, "DELETE /users/42 HTTP/1.1\r\nConnection: close\r\n\r\n");
+                assertTrue(notAllowed.startsWith("HTTP/1.1 405 Method Not Allowed\r\n"));
+                assertTrue(notAllowed.contains("\r\nAllow: GET, HEAD\r\n"));
+
+                // A chunked body is decoded for the handler, the next request on the connection follows it
+                String echo = sendRawRequest(port, "POST /echo HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + "5\r\nHello\r\n0\r\n\r\n"
+                        + "GET /src/test/resources/existing.txt HTTP/1.1\r\nConnection: close\r\n\r\n");
+                if (engine == Engine.BLOCKING) {
+                    assertEquals(2, countResponses(echo));
+                    assertTrue(echo.contains("\r\n\r\nHello"));
+                } else {
+                    // The NIO engine does not stream request bodies
+                    assertTrue(echo.startsWith("HTTP/1.1 501 Not Implemented\r\n"));
+                }
+            } finally {
+                handlerServer.stop();
+            }
+        }
+    }
+
+    private void writeFrame(DataOutputStream out, int type, int flags, int streamId, byte[] payload)
+            throws IOException {
+        out.writeShort(payload.length >>> 8);
+        out.writeByte(payload.length);
+        out.writeByte(type);
+        out.writeByte(flags);
+        out.writeInt(streamId);
+        out.write(payload);
+    }
+
+    @Test
+    void pipelinedRequestsTest() throws IOException {
+        String responses = sendRawRequest(8080, PIPELINED_REQUESTS);
+        assertEquals(2, countResponses(responses));
+    }
+
+    @Test
+    void http10ClosesConnectionTest() throws IOException {
+        String responses = sendRawRequest(8080, "GET /src/test/resources/existing.txt HTTP/1.0\r\n\r\n"
+                + "GET /src/test/resources/existing.txt HTTP/1.0\r\n\r\n");
+        assertEquals(1, countResponses(responses));
+    }
+
+    @Test
+    void crlfHeaderTest() throws IOException {
+        String response = sendRawRequest(8080, "GET /src/test/resources/existing.txt HTTP/1.1\r\n"
+                + "Connection: close\r\n\r\n");
+        String header = response.substring(0, response.indexOf("\r\n\r\n") + 2);
+        assertTrue(header.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(header.contains("\r\nDate: "));
+        assertEquals(header.split("\n", -1).length, header.split("\r\n", -1).length);
+    }
+
+    @Test
+    void headErrorWithoutBodyTest() throws IOException {
+        String responses = sendRawRequest(8080, "HEAD /src/test/resources/notExisting.txt HTTP/1.1\r\n\r\n"
+                + "GET /src/test/resources/existing.txt HTTP/1.1\r\nConnection: close\r\n\r\n");
+        assertTrue(responses.startsWith("HTTP/1.1 404"));
+        assertFalse(responses.contains("<title>"));
+        assertEquals(1, countResponses(responses));
+    }
+
+    @Test
+    void chunkedDirectoryListingTest() throws IOException {
+        String chunked = sendRawRequest(8080, "GET /src/test/resources/existing/?limit=2 HTTP/1.1\r\n"
+                + "Connection: close\r\n\r\n");
+        String complete = sendRawRequest(8080, "GET /src/test/resources/existing/?format=json HTTP/1.0\r\n\r\n");
+        assertTrue(chunked.contains("Transfer-Encoding: chunked"));
+        assertTrue(chunked.contains("href=\"/src/test/resources/existing/nested/\""));
+        assertTrue(chunked.contains("?limit=2&amp;page=2\">Next</a>"));
+        assertTrue(chunked.endsWith("\r\n0\r\n\r\n"));
+        assertTrue(complete.contains("Content-Length: "));
+        assertTrue(complete.contains("\"total\":3"));
+    }
+
+    @Test
+    void emptyFileTest() throws IOException {
+        for (Engine engine : new Engine[] {Engine.BLOCKING, Engine.NIO}) {
+            int port = engine == Engine.NIO ? 8097 : 8096;
+            ServerConfig config = new ServerConfig(port);
+            config.setEngine(engine);
+            config.setFileCacheMaxBytes(0);
+            Server uncachedServer = new Server(config);
+            try {
+                String response = sendRawRequest(port, "GET /src/test/resources/empty.txt HTTP/1.1\r\n"
+                        + "Connection: close\r\n\r\n");
+                assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+                assertTrue(response.contains("\r\nContent-Length: 0\r\n"));
+                assertTrue(response.endsWith("\r\n\r\n"));
+            } finally {
+                uncachedServer.stop();
+            }
+        }
+    }
+
+    /**
+     * Sends the raw request bytes and reads the responses until the server closes the connection.
+     */
+    private String sendRawRequest(int port, String request) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLocalHost(), port)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request.getBytes());
+            return new String(socket.getInputStream().readAllBytes());
+        }
+    }
+
+    /**
+     * @return Returns true if the server closed the connection before it sent a response.
+     */
+    private boolean isClosedByServer(Socket connection) {
+        try {
+            return connection.getInputStream().read() < 0;
+        } catch (IOException e) {
+            // The connection was reset
+            return !(e instanceof SocketTimeoutException);
+        }
+    }
+
+        private int countResponses(String responses) {
+        return responses.split("HTTP/1\\.[01] 200 OK", -1).length - 1;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * A helper method which sends the request to the server 
      * and returns the response to the calling method.
@@ -0,0 +1,86 @@
+package httpwebserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A unit test which tests that the timeouts of the TimerWheel expire once, can be moved and can be cancelled.
+ */
+public class TimerWheelTest {
+
+    private TimerWheel wheel;
+
+    @BeforeEach
+    void startWheel() {
+        wheel = new TimerWheel(10, 8);
+        wheel.start();
+    }
+
+    @AfterEach
+    void closeWheel() {
+        wheel.close();
+    }
+
+    @Test
+    void expireTest() throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.newTimeout(expired::countDown).schedule(100);
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void severalRevolutionsTest() throws InterruptedException {
+        // 8 slots of 10 milliseconds, the deadline is several revolutions away
+        CountDownLatch expired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.newTimeout(expired::countDown).schedule(300);
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    void moveTest() throws InterruptedException {
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch expired = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = wheel.newTimeout(() -> {
+            count.incrementAndGet();
+            expired.countDown();
+        });
+        timeout.schedule(100);
+        long start = System.nanoTime();
+        // A later deadline stays in the old slot first, an earlier one is queued
+        timeout.schedule(5000);
+        timeout.schedule(200);
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        Thread.sleep(300);
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    void cancelTest() throws InterruptedException {
+        AtomicInteger count = new AtomicInteger();
+        TimerWheel.Timeout timeout = wheel.newTimeout(count::incrementAndGet);
+        timeout.schedule(50);
+        timeout.cancel();
+        Thread.sleep(200);
+        assertEquals(0, count.get());
+
+        // A cancelled timeout can be armed again
+        timeout.schedule(50);
+        Thread.sleep(300);
+        assertEquals(1, count.get());
+    }
+}